@@ -28,7 +28,7 @@ import com.github.rinde.rinsim.core.model.pdp.PDPModel;
 import com.github.rinde.rinsim.core.model.pdp.Parcel;
 import com.github.rinde.rinsim.core.model.rand.RandomProvider;
 import com.github.rinde.rinsim.core.model.time.Clock;
-import com.github.rinde.rinsim.core.model.time.TickListener;
+import com.github.rinde.rinsim.core.model.time.NextEventTickListener;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.experiment.MASConfiguration;
 import com.github.rinde.rinsim.pdptw.common.AddVehicleEvent;
@@ -142,7 +142,7 @@ public final class Central {
   }
 
   private static final class CentralModel extends AbstractModel<Parcel>
-      implements TickListener {
+      implements NextEventTickListener {
     private boolean hasChanged;
     private final PDPRoadModel roadModel;
     private final SimSolver solverAdapter;
@@ -205,5 +205,14 @@ public final class Central {
 
     @Override
     public void afterTick(TimeLapse timeLapse) {}
+
+    // the solver is only used when a parcel has been added
+    @Override
+    public long getNextEventTime(long currentTime) {
+      if (hasChanged) {
+        return currentTime;
+      }
+      return IDLE;
+    }
   }
 }
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.central;
+
+import static com.github.rinde.rinsim.core.model.pdp.PDPModel.ParcelState.ANNOUNCED;
+import static com.github.rinde.rinsim.core.model.pdp.PDPModel.ParcelState.AVAILABLE;
+import static com.github.rinde.rinsim.core.model.pdp.PDPModel.ParcelState.PICKING_UP;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+import javax.measure.Measure;
+import javax.measure.quantity.Duration;
+
+import com.github.rinde.rinsim.central.GlobalStateObject.VehicleStateObject;
+import com.github.rinde.rinsim.core.model.pdp.PDPModel;
+import com.github.rinde.rinsim.core.model.pdp.PDPModel.PDPModelEventType;
+import com.github.rinde.rinsim.core.model.pdp.PDPModel.VehicleState;
+import com.github.rinde.rinsim.core.model.pdp.PDPModelEvent;
+import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.core.model.pdp.Vehicle;
+import com.github.rinde.rinsim.core.model.road.GenericRoadModel.RoadEventType;
+import com.github.rinde.rinsim.core.model.road.RoadModelEvent;
+import com.github.rinde.rinsim.event.Event;
+import com.github.rinde.rinsim.event.Listener;
+import com.github.rinde.rinsim.pdptw.common.PDPRoadModel;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Builds {@link GlobalStateObject}s of a simulation incrementally. The builder
+ * listens to the events of the {@link PDPModel} to find out which vehicles and
+ * parcels have changed since the previous snapshot, a vehicle has moved if its
+ * position differs from the location in its previous state. The builder does
+ * not listen to the move events of the {@link PDPRoadModel}, such that the
+ * road model does not need to create these events. The
+ * {@link VehicleStateObject}s of unchanged vehicles and the set of open parcels
+ * are shared between consecutive snapshots, only the vehicles that moved, that
+ * started or finished a service or that are servicing are converted again.
+ * When vehicles are not allowed to divert from their destination all vehicles
+ * are converted again as their destination can change without an event. The
+ * resulting states are equal to the states that are created by
+ * {@link Solvers#convert}.
+ * @author Rinde van Lon
+ */
+final class IncrementalStateBuilder {
+  final PDPRoadModel roadModel;
+  final PDPModel pdpModel;
+  // vehicles that changed since the previous snapshot, events may be
+  // dispatched concurrently
+  final Set<Vehicle> changedVehicles;
+  volatile boolean parcelsChanged;
+  private Map<Vehicle, VehicleStateObject> vehicleStates;
+  @Nullable
+  private ImmutableSet<Parcel> openParcels;
+
+  IncrementalStateBuilder(PDPRoadModel rm, PDPModel pm) {
+    roadModel = rm;
+    pdpModel = pm;
+    changedVehicles =
+      Collections.newSetFromMap(new ConcurrentHashMap<Vehicle, Boolean>());
+    vehicleStates = new HashMap<>();
+    parcelsChanged = true;
+
+    pm.getEventAPI().addListener(new Listener() {
+      @Override
+      public void handleEvent(Event e) {
+        final PDPModelEvent event = (PDPModelEvent) e;
+        if (event.vehicle != null) {
+          changedVehicles.add(event.vehicle);
+        }
+        if (event.getEventType() != PDPModelEventType.START_DELIVERY
+          && event.getEventType() != PDPModelEventType.END_DELIVERY) {
+          parcelsChanged = true;
+        }
+      }
+    }, PDPModelEventType.values());
+    rm.getEventAPI().addListener(new Listener() {
+      @Override
+      public void handleEvent(Event e) {
+        final RoadModelEvent event = (RoadModelEvent) e;
+        if (event.roadUser instanceof Vehicle) {
+          changedVehicles.add((Vehicle) event.roadUser);
+        }
+      }
+    }, RoadEventType.REMOVE_ROAD_USER);
+  }
+
+  synchronized GlobalStateObject build(Collection<Vehicle> vehicles,
+      Optional<ImmutableSet<Parcel>> parcels, Measure<Long, Duration> time,
+      Optional<ImmutableList<ImmutableList<Parcel>>> currentRoutes,
+      boolean fixRoutes) {
+    @Nullable
+    Iterator<ImmutableList<Parcel>> routeIterator = null;
+    if (currentRoutes.isPresent()) {
+      checkArgument(currentRoutes.get().size() == vehicles.size(),
+        "The number of routes (%s) must equal the number of vehicles (%s).",
+        currentRoutes.get().size(), vehicles.size());
+      routeIterator = currentRoutes.get().iterator();
+    }
+
+    // equal to Solvers.convert, the destinations of the vehicles do not extend
+    // the set of available parcels
+    final ImmutableSet.Builder<Parcel> availableDestParcels =
+      ImmutableSet.builder();
+    final boolean diversionAllowed = roadModel.isVehicleDiversionAllowed();
+    final Map<Vehicle, VehicleStateObject> states =
+      new HashMap<>(vehicleStates.size());
+    final ImmutableList.Builder<VehicleStateObject> vehicleList =
+      ImmutableList.builder();
+    for (final Vehicle v : vehicles) {
+      final boolean changed = changedVehicles.remove(v);
+      VehicleStateObject vso = vehicleStates.get(v);
+      // an idle vehicle without a destination only changes by an event or
+      // by moving
+      if (changed || vso == null || !diversionAllowed
+        || vso.getDestination().isPresent()
+        || pdpModel.getVehicleState(v) != VehicleState.IDLE
+        || !vso.getLocation().equals(roadModel.getPosition(v))) {
+        vso = Solvers.convertToVehicleState(roadModel, pdpModel, v,
+          ImmutableSet.copyOf(pdpModel.getContents(v)), null,
+          availableDestParcels);
+      }
+      states.put(v, vso);
+      if (routeIterator != null) {
+        vehicleList.add(vso.withRoute(routeIterator.next()));
+      } else {
+        vehicleList.add(vso);
+      }
+    }
+    vehicleStates = states;
+
+    final ImmutableSet<Parcel> availableParcels;
+    if (parcels.isPresent()) {
+      availableParcels = parcels.get();
+    } else {
+      availableParcels = openParcels();
+    }
+    final GlobalStateObject gso = GlobalStateObject.create(
+      availableParcels, vehicleList.build(), time.getValue().longValue(),
+      time.getUnit(), roadModel.getSpeedUnit(), roadModel.getDistanceUnit(),
+      roadModel.getSnapshot());
+    if (fixRoutes) {
+      return Solvers.fixRoutes(gso);
+    }
+    return gso;
+  }
+
+  ImmutableSet<Parcel> openParcels() {
+    final Collection<Parcel> current =
+      pdpModel.getParcels(ANNOUNCED, AVAILABLE, PICKING_UP);
+    ImmutableSet<Parcel> open = openParcels;
+    // parcels can be unregistered without an event, this is detected by the
+    // size check
+    if (open == null || parcelsChanged || open.size() != current.size()) {
+      parcelsChanged = false;
+      open = ImmutableSet.copyOf(current);
+      openParcels = open;
+    }
+    return open;
+  }
+}
@@ -0,0 +1,624 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.central;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.math.RoundingMode;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.annotation.Nullable;
+import javax.measure.Measure;
+import javax.measure.quantity.Duration;
+import javax.measure.quantity.Velocity;
+import javax.measure.unit.Unit;
+
+import com.github.rinde.rinsim.central.GlobalStateObject.VehicleStateObject;
+import com.github.rinde.rinsim.central.Solvers.ExtendedStats;
+import com.github.rinde.rinsim.central.Solvers.MutableStats;
+import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.core.model.road.RoadModelSnapshot;
+import com.github.rinde.rinsim.core.model.road.RoadPath;
+import com.github.rinde.rinsim.geom.Connection;
+import com.github.rinde.rinsim.geom.ConnectionData;
+import com.github.rinde.rinsim.geom.GeomHeuristic;
+import com.github.rinde.rinsim.geom.GeomHeuristics;
+import com.github.rinde.rinsim.geom.Point;
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.math.DoubleMath;
+
+/**
+ * Evaluates the routes of the vehicles in a {@link GlobalStateObject}. This is
+ * the engine behind {@link Solvers#computeStats(GlobalStateObject,
+ * ImmutableList, GeomHeuristic)}, the evaluation of a route results in a
+ * {@link RouteCost} and the route costs of all vehicles can be combined into
+ * the same {@link ExtendedStats} as computed by {@link Solvers}.
+ * <p>
+ * The distance and travel time of each leg, a shortest path between two
+ * points, are cached by the evaluator such that consecutive evaluations do not
+ * search the same paths again. The routes of different vehicles are evaluated
+ * concurrently on a {@link ForkJoinPool}, by default the
+ * {@link ForkJoinPool#commonPool()}, unless the routes are so short in total
+ * that the overhead of the pool exceeds the gain. Route costs can be updated
+ * incrementally using {@link #evaluate(RouteCost, ImmutableList)}, which only
+ * evaluates the part of a route that differs from a previously evaluated
+ * route. This makes the evaluator suitable for the inner loop of local search
+ * algorithms.
+ * <p>
+ * Instances are thread-safe.
+ * @author Rinde van Lon
+ */
+public final class RouteEvaluator {
+  // vehicles are split in more tasks than threads to balance the load
+  private static final int TASKS_PER_THREAD = 4;
+  // routes with fewer legs in total are evaluated in the calling thread
+  private static final int SEQUENTIAL_THRESHOLD = 32;
+  // the number of cached legs is bounded such that an evaluator that is used
+  // in a long running search does not grow without limit
+  private static final int MAX_LEGS = 65536;
+
+  final GlobalStateObject state;
+  final GeomHeuristic heuristic;
+  final ForkJoinPool pool;
+  final Cache<LegKey, Leg> legs;
+
+  RouteEvaluator(GlobalStateObject s, GeomHeuristic h, ForkJoinPool p) {
+    state = s;
+    heuristic = h;
+    pool = p;
+    legs = CacheBuilder.newBuilder()
+      .maximumSize(MAX_LEGS)
+      .<LegKey, Leg>build();
+  }
+
+  /**
+   * @return The state of which the routes are evaluated.
+   */
+  public GlobalStateObject getState() {
+    return state;
+  }
+
+  /**
+   * Evaluates the route of the vehicle with the specified index.
+   * @param vehicleIndex The index of the vehicle in
+   *          {@link GlobalStateObject#getVehicles()}.
+   * @param route The route of the vehicle.
+   * @return The cost of the route.
+   * @throws IllegalArgumentException if the vehicle has a destination that is
+   *           not the first parcel in the route.
+   */
+  public RouteCost evaluate(int vehicleIndex, ImmutableList<Parcel> route) {
+    checkElementIndex(vehicleIndex, state.getVehicles().size());
+    checkDestination(state.getVehicles().get(vehicleIndex), route);
+    return compute(vehicleIndex, route, null, 0);
+  }
+
+  /**
+   * Evaluates the route of the vehicle of the specified previous route cost.
+   * Only the part of the route that follows the longest common prefix with
+   * the previously evaluated route is evaluated again, the result is equal to
+   * the result of {@link #evaluate(int, ImmutableList)}.
+   * @param previous A route cost that was computed by this evaluator.
+   * @param route The new route of the vehicle.
+   * @return The cost of the new route.
+   * @throws IllegalArgumentException if the previous route cost was not
+   *           computed by this evaluator or if the vehicle has a destination
+   *           that is not the first parcel in the route.
+   */
+  public RouteCost evaluate(RouteCost previous, ImmutableList<Parcel> route) {
+    checkArgument(previous.evaluator == this,
+      "The previous route cost must be computed by this evaluator.");
+    final int max = Math.min(route.size(), previous.route.size());
+    int prefix = 0;
+    while (prefix < max
+      && route.get(prefix).equals(previous.route.get(prefix))) {
+      prefix++;
+    }
+    if (prefix == 0) {
+      return evaluate(previous.vehicleIndex, route);
+    }
+    return compute(previous.vehicleIndex, route, previous, prefix);
+  }
+
+  /**
+   * Evaluates the routes of all vehicles concurrently.
+   * @param routes The routes of the vehicles, one route per vehicle. If this is
+   *          <code>null</code> the {@link VehicleStateObject#getRoute()} field
+   *          of <b>each</b> vehicle is used instead.
+   * @return The route costs in the order of the vehicles.
+   * @throws IllegalArgumentException if the number of routes is not equal to
+   *           the number of vehicles, if no route is specified for a vehicle
+   *           or if a vehicle has a destination that is not the first parcel
+   *           in its route.
+   */
+  public ImmutableList<RouteCost> evaluateAll(
+      @Nullable ImmutableList<ImmutableList<Parcel>> routes) {
+    final int numVehicles = state.getVehicles().size();
+    final Optional<ImmutableList<ImmutableList<Parcel>>> r =
+      Optional.fromNullable(routes);
+    if (r.isPresent()) {
+      checkArgument(numVehicles == r.get().size(),
+        "Exactly one route should be supplied for every vehicle in state. %s "
+          + "vehicle(s) in state, received %s route(s).",
+        numVehicles, r.get().size());
+    }
+    // the routes are validated before the concurrent evaluation such that
+    // exceptions are thrown in the calling thread
+    final ImmutableList.Builder<ImmutableList<Parcel>> routesBuilder =
+      ImmutableList.builder();
+    int numLegs = 0;
+    for (int i = 0; i < numVehicles; i++) {
+      final VehicleStateObject vso = state.getVehicles().get(i);
+      checkArgument(r.isPresent() || vso.getRoute().isPresent(),
+        "Vehicle routes must either be specified as an argument or must be part"
+          + " of the state object.");
+      final ImmutableList<Parcel> route;
+      if (r.isPresent()) {
+        route = r.get().get(i);
+      } else {
+        route = vso.getRoute().get();
+      }
+      checkDestination(vso, route);
+      routesBuilder.add(route);
+      // each parcel is a leg, the leg to the depot is included
+      numLegs += route.size() + 1;
+    }
+    final ImmutableList<ImmutableList<Parcel>> allRoutes =
+      routesBuilder.build();
+
+    final RouteCost[] costs = new RouteCost[numVehicles];
+    if (numVehicles == 1 || numLegs < SEQUENTIAL_THRESHOLD) {
+      for (int i = 0; i < numVehicles; i++) {
+        costs[i] = compute(i, allRoutes.get(i), null, 0);
+      }
+    } else {
+      final int threshold = Math.max(1,
+        numVehicles / (pool.getParallelism() * TASKS_PER_THREAD));
+      pool.invoke(
+        new EvaluateTask(this, allRoutes, costs, 0, numVehicles, threshold));
+    }
+    return ImmutableList.copyOf(costs);
+  }
+
+  /**
+   * Combines the route costs of all vehicles into statistics, see
+   * {@link Solvers#computeStats(GlobalStateObject, ImmutableList)}.
+   * @param costs The route costs computed by this evaluator, one for every
+   *          vehicle in the order of the vehicles.
+   * @return The statistics of executing the routes.
+   * @throws IllegalArgumentException if the route costs do not match the
+   *           vehicles of the state.
+   */
+  public ExtendedStats computeStats(List<RouteCost> costs) {
+    final int numVehicles = state.getVehicles().size();
+    checkArgument(costs.size() == numVehicles,
+      "Exactly one route cost should be supplied for every vehicle in state. "
+        + "%s vehicle(s) in state, received %s route cost(s).",
+      numVehicles, costs.size());
+
+    // the values are accumulated in the same order as a sequential
+    // evaluation, the resulting statistics are exactly equal
+    final MutableStats stats = new MutableStats();
+    for (int i = 0; i < numVehicles; i++) {
+      final RouteCost cost = costs.get(i);
+      checkArgument(cost.evaluator == this && cost.vehicleIndex == i,
+        "The route cost at position %s must be computed by this evaluator for "
+          + "the vehicle at that position.",
+        i);
+      cost.addTo(stats);
+    }
+    return new ExtendedStats(stats, 0, stats.maxTime - state.getTime(), true,
+      numVehicles, numVehicles, state.getTimeUnit(), state.getDistUnit(),
+      state.getSpeedUnit());
+  }
+
+  /**
+   * Creates a new evaluator that uses {@link GeomHeuristics#euclidean()}.
+   * @param state The state of which the routes are evaluated.
+   * @return A new instance.
+   */
+  public static RouteEvaluator create(GlobalStateObject state) {
+    return create(state, GeomHeuristics.euclidean());
+  }
+
+  /**
+   * Creates a new evaluator.
+   * @param state The state of which the routes are evaluated.
+   * @param heuristic The heuristic that is used to compute travel times and
+   *          distance.
+   * @return A new instance.
+   */
+  public static RouteEvaluator create(GlobalStateObject state,
+      GeomHeuristic heuristic) {
+    return create(state, heuristic, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a new evaluator that evaluates the routes of different vehicles
+   * on the specified pool.
+   * @param state The state of which the routes are evaluated.
+   * @param heuristic The heuristic that is used to compute travel times and
+   *          distance.
+   * @param pool The pool on which the routes are evaluated concurrently.
+   * @return A new instance.
+   */
+  public static RouteEvaluator create(GlobalStateObject state,
+      GeomHeuristic heuristic, ForkJoinPool pool) {
+    return new RouteEvaluator(state, heuristic, pool);
+  }
+
+  static void checkDestination(VehicleStateObject vso,
+      ImmutableList<Parcel> route) {
+    if (vso.getDestination().isPresent() && !route.isEmpty()) {
+      checkArgument(
+        vso.getDestination().asSet().contains(route.get(0)),
+        "If a vehicle has a destination, the first position in the route "
+          + "must equal this. Expected %s, is %s.",
+        vso.getDestination().get(), route.get(0));
+    }
+  }
+
+  Leg leg(Point from, Point to, Measure<Double, Velocity> speed) {
+    final LegKey key = LegKey.create(from, to, speed.getValue(),
+      speed.getUnit(), state.getTimeUnit(), heuristic);
+    Leg leg = legs.getIfPresent(key);
+    if (leg == null) {
+      final RoadModelSnapshot snapshot = state.getRoadModelSnapshot();
+      final RoadPath path = snapshot.getPathTo(from, to, state.getTimeUnit(),
+        speed, heuristic);
+      leg = new Leg(snapshot.getDistanceOfPath(path.getPath()).getValue(),
+        path.getTravelTime());
+      legs.put(key, leg);
+    }
+    return leg;
+  }
+
+  // evaluates the route starting at the specified position, the positions
+  // before are copied from the prefix
+  RouteCost compute(int vehicleIndex, ImmutableList<Parcel> route,
+      @Nullable RouteCost prefix, int from) {
+    final VehicleStateObject vso = state.getVehicles().get(vehicleIndex);
+    final Measure<Double, Velocity> maxSpeed =
+      Measure.valueOf(vso.getDto().getSpeed(), state.getSpeedUnit());
+    final RouteCost cost = new RouteCost(this, vehicleIndex, route);
+    final Set<Parcel> seen = new HashSet<>();
+
+    long time;
+    Point vehicleLocation;
+    if (prefix == null) {
+      time = state.getTime();
+      vehicleLocation = vso.getLocation();
+      // In case the vehicle is on a connection, the vehicle first has to move
+      // to the connection exit.
+      if (vso.getConnection().isPresent()) {
+        final Connection<? extends ConnectionData> conn =
+          vso.getConnection().get();
+        vehicleLocation = conn.to();
+        final double connectionPercentage =
+          Point.distance(vso.getLocation(), conn.to())
+            / Point.distance(conn.from(), conn.to());
+        cost.exitDistance = conn.getLength() * connectionPercentage;
+        cost.exitTravelTime = leg(conn.from(), conn.to(), maxSpeed).travelTime
+          * connectionPercentage;
+        time = (long) (time + cost.exitTravelTime);
+      }
+      cost.servicing = vso.getRemainingServiceTime() > 0 && !route.isEmpty();
+    } else {
+      cost.copyPrefix(prefix, from);
+      time = prefix.departureTimes[from - 1];
+      vehicleLocation = prefix.locations[from - 1];
+      seen.addAll(route.subList(0, from));
+    }
+
+    for (int j = from; j < route.size(); j++) {
+      final Parcel cur = route.get(j);
+      final boolean inCargo = vso.getContents().contains(cur)
+        || seen.contains(cur);
+      seen.add(cur);
+      cost.deliveries[j] = inCargo;
+
+      final boolean firstAndServicing = j == 0 && cost.servicing;
+      if (firstAndServicing) {
+        // we are already at the service location
+        cost.arrivalTimes[j] = time;
+        time += vso.getRemainingServiceTime();
+      } else {
+        // vehicle is not there yet, go there first, then service
+        final Point nextLoc = inCargo ? cur.getDeliveryLocation()
+          : cur.getPickupLocation();
+        final Leg leg = leg(vehicleLocation, nextLoc, maxSpeed);
+        cost.legDistances[j] = leg.distance;
+        cost.legTravelTimes[j] = leg.travelTime;
+        vehicleLocation = nextLoc;
+        time += DoubleMath.roundToLong(leg.travelTime, RoundingMode.CEILING);
+      }
+      if (inCargo) {
+        // check if we are early
+        if (cur.getDeliveryTimeWindow().isBeforeStart(time)) {
+          time = cur.getDeliveryTimeWindow().begin();
+        }
+        if (!firstAndServicing) {
+          cost.arrivalTimes[j] = time;
+          time += cur.getDeliveryDuration();
+        }
+        // delivering
+        if (cur.getDeliveryTimeWindow().isAfterEnd(time)) {
+          cost.tardiness[j] = time - cur.getDeliveryTimeWindow().end();
+        }
+      } else {
+        // check if we are early
+        if (cur.getPickupTimeWindow().isBeforeStart(time)) {
+          time = cur.getPickupTimeWindow().begin();
+        }
+        if (!firstAndServicing) {
+          cost.arrivalTimes[j] = time;
+          time += cur.getPickupDuration();
+        }
+        // picking up
+        if (cur.getPickupTimeWindow().isAfterEnd(time)) {
+          cost.tardiness[j] = time - cur.getPickupTimeWindow().end();
+        }
+      }
+      cost.departureTimes[j] = time;
+      cost.locations[j] = vehicleLocation;
+    }
+    seen.addAll(route.subList(from, route.size()));
+
+    // go to depot
+    final Leg leg =
+      leg(vehicleLocation, vso.getDto().getStartPosition(), maxSpeed);
+    cost.legDistances[route.size()] = leg.distance;
+    cost.legTravelTimes[route.size()] = leg.travelTime;
+    time += DoubleMath.roundToLong(leg.travelTime, RoundingMode.CEILING);
+    // check overtime
+    if (vso.getDto().getAvailabilityTimeWindow().isAfterEnd(time)) {
+      cost.overTime = time - vso.getDto().getAvailabilityTimeWindow().end();
+    }
+    cost.endTime = time;
+    cost.numParcels = seen.size();
+    return cost;
+  }
+
+  /**
+   * The cost of executing a route by a vehicle, computed by a
+   * {@link RouteEvaluator}. Instances are immutable.
+   * @author Rinde van Lon
+   */
+  public static final class RouteCost {
+    final RouteEvaluator evaluator;
+    final int vehicleIndex;
+    final ImmutableList<Parcel> route;
+    // the distances and travel times of the legs, the last leg is the leg to
+    // the depot
+    final double[] legDistances;
+    final double[] legTravelTimes;
+    final long[] arrivalTimes;
+    final long[] departureTimes;
+    final long[] tardiness;
+    final boolean[] deliveries;
+    final Point[] locations;
+    double exitDistance;
+    double exitTravelTime;
+    boolean servicing;
+    long overTime;
+    long endTime;
+    int numParcels;
+
+    RouteCost(RouteEvaluator eval, int index, ImmutableList<Parcel> r) {
+      evaluator = eval;
+      vehicleIndex = index;
+      route = r;
+      legDistances = new double[r.size() + 1];
+      legTravelTimes = new double[r.size() + 1];
+      arrivalTimes = new long[r.size()];
+      departureTimes = new long[r.size()];
+      tardiness = new long[r.size()];
+      deliveries = new boolean[r.size()];
+      locations = new Point[r.size()];
+    }
+
+    /**
+     * @return The index of the vehicle in
+     *         {@link GlobalStateObject#getVehicles()}.
+     */
+    public int getVehicleIndex() {
+      return vehicleIndex;
+    }
+
+    /**
+     * @return The route that is evaluated.
+     */
+    public ImmutableList<Parcel> getRoute() {
+      return route;
+    }
+
+    /**
+     * @return The time at which the vehicle arrives at the depot.
+     */
+    public long getEndTime() {
+      return endTime;
+    }
+
+    /**
+     * @return The distance that is traveled by the vehicle.
+     */
+    public double getDistance() {
+      double distance = exitDistance;
+      for (int i = 0; i < legDistances.length; i++) {
+        distance += legDistances[i];
+      }
+      return distance;
+    }
+
+    /**
+     * @return The time that the vehicle spends traveling.
+     */
+    public double getTravelTime() {
+      double travelTime = exitTravelTime;
+      for (int i = 0; i < legTravelTimes.length; i++) {
+        travelTime += legTravelTimes[i];
+      }
+      return travelTime;
+    }
+
+    /**
+     * @return The sum of the pickup and delivery tardiness of all parcels in
+     *         the route.
+     */
+    public long getTardiness() {
+      long sum = 0;
+      for (int i = 0; i < tardiness.length; i++) {
+        sum += tardiness[i];
+      }
+      return sum;
+    }
+
+    /**
+     * @return The time that the vehicle arrives at the depot after the end of
+     *         its availability time window.
+     */
+    public long getOverTime() {
+      return overTime;
+    }
+
+    void copyPrefix(RouteCost prefix, int length) {
+      exitDistance = prefix.exitDistance;
+      exitTravelTime = prefix.exitTravelTime;
+      servicing = prefix.servicing;
+      System.arraycopy(prefix.legDistances, 0, legDistances, 0, length);
+      System.arraycopy(prefix.legTravelTimes, 0, legTravelTimes, 0, length);
+      System.arraycopy(prefix.arrivalTimes, 0, arrivalTimes, 0, length);
+      System.arraycopy(prefix.departureTimes, 0, departureTimes, 0, length);
+      System.arraycopy(prefix.tardiness, 0, tardiness, 0, length);
+      System.arraycopy(prefix.deliveries, 0, deliveries, 0, length);
+      System.arraycopy(prefix.locations, 0, locations, 0, length);
+    }
+
+    void addTo(MutableStats stats) {
+      final VehicleStateObject vso =
+        evaluator.state.getVehicles().get(vehicleIndex);
+      final long startTime = evaluator.state.getTime();
+      if (vso.getConnection().isPresent()) {
+        stats.totalDistance += exitDistance;
+        stats.totalTravelTime += exitTravelTime;
+      }
+      final ImmutableList.Builder<Long> truckArrivalTimesBuilder =
+        ImmutableList.builder();
+      truckArrivalTimesBuilder.add(startTime);
+      for (int j = 0; j < route.size(); j++) {
+        if (j > 0 || !servicing) {
+          stats.totalDistance += legDistances[j];
+          stats.totalTravelTime += legTravelTimes[j];
+        }
+        truckArrivalTimesBuilder.add(arrivalTimes[j]);
+        if (deliveries[j]) {
+          stats.deliveryTardiness += tardiness[j];
+          stats.totalDeliveries++;
+        } else {
+          stats.pickupTardiness += tardiness[j];
+          stats.totalPickups++;
+        }
+      }
+      stats.totalDistance += legDistances[route.size()];
+      stats.totalTravelTime += legTravelTimes[route.size()];
+      stats.overTime += overTime;
+      stats.maxTime = Math.max(stats.maxTime, endTime);
+      truckArrivalTimesBuilder.add(endTime);
+      stats.arrivalTimesBuilder.add(truckArrivalTimesBuilder.build());
+
+      if (endTime > startTime) {
+        // time has progressed -> the vehicle has moved
+        stats.movedVehicles++;
+      }
+      stats.totalParcels += numParcels;
+    }
+  }
+
+  static final class Leg {
+    final double distance;
+    final double travelTime;
+
+    Leg(double dist, double tt) {
+      distance = dist;
+      travelTime = tt;
+    }
+  }
+
+  @AutoValue
+  abstract static class LegKey {
+    abstract Point from();
+
+    abstract Point to();
+
+    abstract double speed();
+
+    abstract Unit<Velocity> speedUnit();
+
+    abstract Unit<Duration> timeUnit();
+
+    abstract GeomHeuristic heuristic();
+
+    static LegKey create(Point from, Point to, double speed,
+        Unit<Velocity> speedUnit, Unit<Duration> timeUnit,
+        GeomHeuristic heuristic) {
+      return new AutoValue_RouteEvaluator_LegKey(from, to, speed, speedUnit,
+        timeUnit, heuristic);
+    }
+  }
+
+  static final class EvaluateTask extends RecursiveAction {
+    private static final long serialVersionUID = -3180409722623585137L;
+    final transient RouteEvaluator evaluator;
+    final transient ImmutableList<ImmutableList<Parcel>> routes;
+    final transient RouteCost[] costs;
+    final int begin;
+    final int end;
+    final int threshold;
+
+    EvaluateTask(RouteEvaluator eval, ImmutableList<ImmutableList<Parcel>> rs,
+        RouteCost[] cs, int b, int e, int t) {
+      evaluator = eval;
+      routes = rs;
+      costs = cs;
+      begin = b;
+      end = e;
+      threshold = t;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - begin <= threshold) {
+        for (int i = begin; i < end; i++) {
+          costs[i] = evaluator.compute(i, routes.get(i), null, 0);
+        }
+      } else {
+        final int middle = (begin + end) / 2;
+        invokeAll(
+          new EvaluateTask(evaluator, routes, costs, begin, middle, threshold),
+          new EvaluateTask(evaluator, routes, costs, middle, end, threshold));
+      }
+    }
+  }
+}
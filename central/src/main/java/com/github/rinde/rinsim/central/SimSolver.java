@@ -15,13 +15,8 @@
  */
 package com.github.rinde.rinsim.central;
 
-import static com.github.rinde.rinsim.core.model.pdp.PDPModel.ParcelState.ANNOUNCED;
-import static com.github.rinde.rinsim.core.model.pdp.PDPModel.ParcelState.AVAILABLE;
-import static com.github.rinde.rinsim.core.model.pdp.PDPModel.ParcelState.PICKING_UP;
-
 import java.util.Collection;
 import java.util.List;
-import java.util.Set;
 
 import javax.measure.Measure;
 import javax.measure.quantity.Duration;
@@ -35,7 +30,6 @@ import com.github.rinde.rinsim.core.model.time.Clock;
 import com.github.rinde.rinsim.pdptw.common.PDPRoadModel;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 
 /**
  * Adapter for {@link Solver}s.
@@ -47,6 +41,7 @@ public final class SimSolver implements SimulationConverter {
   final PDPRoadModel roadModel;
   final PDPModel pdpModel;
   final List<Vehicle> vehicles;
+  final IncrementalStateBuilder stateBuilder;
 
   SimSolver(Optional<Solver> s, PDPRoadModel rm, PDPModel pm,
       Clock sim, List<Vehicle> vs) {
@@ -55,6 +50,7 @@ public final class SimSolver implements SimulationConverter {
     roadModel = rm;
     pdpModel = pm;
     vehicles = vs;
+    stateBuilder = new IncrementalStateBuilder(rm, pm);
   }
 
   /**
@@ -87,12 +83,8 @@ public final class SimSolver implements SimulationConverter {
   public GlobalStateObject convert(SolveArgs args) {
     final Collection<Vehicle> vs = vehicles.isEmpty() ? roadModel
       .getObjectsOfType(Vehicle.class) : vehicles;
-    final Set<Parcel> ps = args.parcels.isPresent()
-      ? args.parcels.get()
-      : ImmutableSet.copyOf(pdpModel.getParcels(ANNOUNCED, AVAILABLE,
-        PICKING_UP));
-    return Solvers.convert(roadModel, pdpModel, vs, ps, time(),
-      args.currentRoutes, args.fixRoutes);
+    return stateBuilder.build(vs, args.parcels, time(), args.currentRoutes,
+      args.fixRoutes);
   }
 
   Measure<Long, Duration> time() {
@@ -17,13 +17,10 @@ package com.github.rinde.rinsim.central;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Lists.newArrayList;
-import static com.google.common.collect.Sets.newHashSet;
 
-import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -44,16 +41,12 @@ import com.github.rinde.rinsim.core.model.pdp.PDPModel;
 import com.github.rinde.rinsim.core.model.pdp.PDPModel.VehicleParcelActionInfo;
 import com.github.rinde.rinsim.core.model.pdp.Parcel;
 import com.github.rinde.rinsim.core.model.pdp.Vehicle;
-import com.github.rinde.rinsim.core.model.road.GraphRoadModel;
-import com.github.rinde.rinsim.core.model.road.RoadPath;
 import com.github.rinde.rinsim.core.model.road.RoadModelSnapshot;
 import com.github.rinde.rinsim.core.model.time.Clock;
 import com.github.rinde.rinsim.core.model.time.TimeModel;
 import com.github.rinde.rinsim.geom.Connection;
-import com.github.rinde.rinsim.geom.ConnectionData;
 import com.github.rinde.rinsim.geom.GeomHeuristics;
 import com.github.rinde.rinsim.geom.GeomHeuristic;
-import com.github.rinde.rinsim.geom.Point;
 import com.github.rinde.rinsim.pdptw.common.PDPRoadModel;
 import com.github.rinde.rinsim.pdptw.common.StatisticsDTO;
 import com.google.common.base.Optional;
@@ -64,7 +57,6 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedHashMultiset;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
-import com.google.common.math.DoubleMath;
 
 /**
  * @author Rinde van Lon
@@ -127,7 +119,9 @@ public final class Solvers {
    * statistics describe only a partial simulation. As a result
    * {@link StatisticsDTO#totalDeliveries} does not necessarily equal
    * {@link StatisticsDTO#totalPickups}. The travel times and distance are
-   * computed using the specified heuristic.
+   * computed using the specified heuristic. The routes are evaluated by a
+   * {@link RouteEvaluator}, use it directly to evaluate changes to the routes
+   * incrementally.
    * @param state The state which represents a simulation.
    * @param routes Specifies the route the vehicles are currently following,
    *          must be of same size as the number of vehicles (one route per
@@ -142,170 +136,8 @@ public final class Solvers {
   public static ExtendedStats computeStats(GlobalStateObject state,
       @Nullable ImmutableList<ImmutableList<Parcel>> routes,
       GeomHeuristic heuristic) {
-    final Optional<ImmutableList<ImmutableList<Parcel>>> r = Optional
-      .fromNullable(routes);
-
-    if (r.isPresent()) {
-      checkArgument(
-        state.getVehicles().size() == r.get().size(),
-        "Exactly one route should be supplied for every vehicle in state. %s "
-          + "vehicle(s) in state, received %s route(s).",
-        state.getVehicles().size(), r.get().size());
-    }
-
-    final MutableStats stats = new MutableStats();
-    for (int i = 0; i < state.getVehicles().size(); i++) {
-      calculateStatsForVehicle(stats, state, i, r, heuristic);
-    }
-    final int totalVehicles = state.getVehicles().size();
-    final long simulationTime = stats.maxTime - state.getTime();
-
-    return new ExtendedStats(stats, 0,
-      simulationTime, true, totalVehicles, totalVehicles,
-      state.getTimeUnit(), state.getDistUnit(), state.getSpeedUnit());
-  }
-
-  private static void calculateStatsForVehicle(MutableStats stats,
-      GlobalStateObject state, int vehicleIndex,
-      Optional<ImmutableList<ImmutableList<Parcel>>> r, GeomHeuristic heuristic) {
-
-    final Set<Parcel> parcels = new HashSet<>();
-    final VehicleStateObject vso = state.getVehicles().get(vehicleIndex);
-    checkArgument(r.isPresent() || vso.getRoute().isPresent(),
-      "Vehicle routes must either be specified as an argument or must be part"
-        + " of the state object.");
-
-    final RoadModelSnapshot snapshot = state.getRoadModelSnapshot();
-    final ImmutableList.Builder<Long> truckArrivalTimesBuilder =
-      ImmutableList.builder();
-    truckArrivalTimesBuilder.add(state.getTime());
-
-    final ImmutableList<Parcel> route;
-    if (r.isPresent()) {
-      route = r.get().get(vehicleIndex);
-    } else {
-      route = vso.getRoute().get();
-    }
-    parcels.addAll(route);
-
-    long time = state.getTime();
-    Point vehicleLocation = vso.getLocation();
-    final Measure<Double, Velocity> maxSpeed =
-      Measure.valueOf(vso.getDto().getSpeed(), state.getSpeedUnit());
-
-    // In case the vehicle is on a connection, the vehicle first has to move to
-    // the connection exit.
-    if (vso.getConnection().isPresent()) {
-      final Connection<? extends ConnectionData> conn =
-        vso.getConnection().get();
-      vehicleLocation = conn.to();
-      final double connectionPercentage =
-        Point.distance(vso.getLocation(), conn.to())
-          / Point.distance(conn.from(), conn.to());
-      // Compute distance required to exist the current connection.
-      stats.totalDistance += vso.getConnection().get().getLength()
-        * connectionPercentage;
-      // Compute time required to exit the current connection.
-      final double exitConnTT =
-        snapshot.getPathTo(conn.from(), conn.to(), state.getTimeUnit(),
-          maxSpeed, heuristic).getTravelTime() * connectionPercentage;
-      time += exitConnTT;
-      stats.totalTravelTime += exitConnTT;
-    }
-    final Set<Parcel> seen = newHashSet();
-    for (int j = 0; j < route.size(); j++) {
-      final Parcel cur = route.get(j);
-      final boolean inCargo = vso.getContents().contains(cur)
-        || seen.contains(cur);
-      seen.add(cur);
-      if (vso.getDestination().isPresent() && j == 0) {
-        checkArgument(
-          vso.getDestination().asSet().contains(cur),
-          "If a vehicle has a destination, the first position in the route "
-            + "must equal this. Expected %s, is %s.",
-          vso.getDestination().get(), cur);
-      }
-
-      boolean firstAndServicing = false;
-      if (j == 0 && vso.getRemainingServiceTime() > 0) {
-        // we are already at the service location
-        firstAndServicing = true;
-        truckArrivalTimesBuilder.add(time);
-        time += vso.getRemainingServiceTime();
-      } else {
-        // vehicle is not there yet, go there first, then service
-        final Point nextLoc = inCargo ? cur.getDeliveryLocation()
-          : cur.getPickupLocation();
-        final RoadPath hp =
-          snapshot.getPathTo(vehicleLocation, nextLoc, state.getTimeUnit(),
-            maxSpeed, heuristic);
-        final Measure<Double, Length> distance =
-          snapshot.getDistanceOfPath(hp.getPath());
-        stats.totalDistance += distance.getValue();
-        final double tt = hp.getTravelTime();
-        vehicleLocation = nextLoc;
-        time += DoubleMath.roundToLong(tt, RoundingMode.CEILING);
-        stats.totalTravelTime += tt;
-      }
-      if (inCargo) {
-        // check if we are early
-        if (cur.getDeliveryTimeWindow().isBeforeStart(time)) {
-          time = cur.getDeliveryTimeWindow().begin();
-        }
-
-        if (!firstAndServicing) {
-          truckArrivalTimesBuilder.add(time);
-          time += cur.getDeliveryDuration();
-        }
-        // delivering
-        if (cur.getDeliveryTimeWindow().isAfterEnd(time)) {
-          final long tardiness = time - cur.getDeliveryTimeWindow().end();
-          stats.deliveryTardiness += tardiness;
-        }
-        stats.totalDeliveries++;
-      } else {
-        // check if we are early
-        if (cur.getPickupTimeWindow().isBeforeStart(time)) {
-          time = cur.getPickupTimeWindow().begin();
-        }
-        if (!firstAndServicing) {
-          truckArrivalTimesBuilder.add(time);
-          time += cur.getPickupDuration();
-        }
-        // picking up
-        if (cur.getPickupTimeWindow().isAfterEnd(time)) {
-          final long tardiness = time - cur.getPickupTimeWindow().end();
-          stats.pickupTardiness += tardiness;
-        }
-        stats.totalPickups++;
-      }
-    }
-
-    // go to depot
-    final RoadPath hp =
-      snapshot.getPathTo(vehicleLocation, vso.getDto().getStartPosition(),
-        state.getTimeUnit(),
-        maxSpeed, heuristic);
-    final Measure<Double, Length> distance =
-      snapshot.getDistanceOfPath(hp.getPath());
-    stats.totalDistance += distance.getValue();
-    final double tt = hp.getTravelTime();
-    time += DoubleMath.roundToLong(tt, RoundingMode.CEILING);
-    stats.totalTravelTime += tt;
-    // check overtime
-    if (vso.getDto().getAvailabilityTimeWindow().isAfterEnd(time)) {
-      stats.overTime += time - vso.getDto().getAvailabilityTimeWindow().end();
-    }
-    stats.maxTime = Math.max(stats.maxTime, time);
-
-    truckArrivalTimesBuilder.add(time);
-    stats.arrivalTimesBuilder.add(truckArrivalTimesBuilder.build());
-
-    if (time > state.getTime()) {
-      // time has progressed -> the vehicle has moved
-      stats.movedVehicles++;
-    }
-    stats.totalParcels += parcels.size();
+    final RouteEvaluator evaluator = RouteEvaluator.create(state, heuristic);
+    return evaluator.computeStats(evaluator.evaluateAll(routes));
   }
 
   public static Callable<ImmutableList<ImmutableList<Parcel>>> createSolverCallable(
@@ -461,12 +293,7 @@ public final class Solvers {
       availableDestBuilder.add(destination);
     }
 
-    Optional<? extends Connection<?>> conn =
-      Optional.absent();
-
-    if (rm instanceof GraphRoadModel) {
-      conn = ((GraphRoadModel) rm).getConnection(vehicle);
-    }
+    final Optional<? extends Connection<?>> conn = rm.getConnection(vehicle);
 
     return VehicleStateObject.create(vehicle.getDTO(), rm.getPosition(vehicle),
       conn,
@@ -37,9 +37,14 @@ import javax.measure.unit.Unit;
 import com.github.rinde.rinsim.central.GlobalStateObject;
 import com.github.rinde.rinsim.central.GlobalStateObject.VehicleStateObject;
 import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.core.model.road.RoadModelSnapshot;
 import com.github.rinde.rinsim.core.model.road.RoadModels;
+import com.github.rinde.rinsim.core.model.road.TravelTimeMatrices;
+import com.github.rinde.rinsim.geom.Connection;
+import com.github.rinde.rinsim.geom.GeomHeuristic;
 import com.github.rinde.rinsim.geom.Point;
 import com.github.rinde.rinsim.util.TimeWindow;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -122,7 +127,8 @@ public final class ArraysSolvers {
 
   /**
    * Converts the {@link GlobalStateObject} into an {@link ArraysObject} using
-   * the specified output time unit.
+   * the specified output time unit. The travel times are based on the
+   * Euclidean distance between locations.
    * @param state The state to convert.
    * @param outputTimeUnit The {@link Unit} to use as time in the resulting
    *          object.
@@ -130,6 +136,29 @@ public final class ArraysSolvers {
    */
   public static ArraysObject toSingleVehicleArrays(GlobalStateObject state,
       Unit<Duration> outputTimeUnit) {
+    return toSingleVehicleArrays(state, outputTimeUnit,
+      Optional.<GeomHeuristic>absent());
+  }
+
+  /**
+   * Converts the {@link GlobalStateObject} into an {@link ArraysObject} using
+   * the specified output time unit. The travel times are the travel times of
+   * the shortest paths in the {@link GlobalStateObject#getRoadModelSnapshot()}
+   * according to the specified heuristic, see {@link TravelTimeMatrices}.
+   * @param state The state to convert.
+   * @param outputTimeUnit The {@link Unit} to use as time in the resulting
+   *          object.
+   * @param heuristic The heuristic to use for computing the travel times.
+   * @return An {@link ArraysObject} using the specified output time unit.
+   */
+  public static ArraysObject toSingleVehicleArrays(GlobalStateObject state,
+      Unit<Duration> outputTimeUnit, GeomHeuristic heuristic) {
+    return toSingleVehicleArrays(state, outputTimeUnit,
+      Optional.of(heuristic));
+  }
+
+  static ArraysObject toSingleVehicleArrays(GlobalStateObject state,
+      Unit<Duration> outputTimeUnit, Optional<GeomHeuristic> heuristic) {
 
     final UnitConverter timeConverter = state.getTimeUnit()
       .getConverterTo(outputTimeUnit);
@@ -240,8 +269,14 @@ public final class ArraysSolvers {
       index2parcelBuilder
         .build();
 
-    final int[][] travelTime = ArraysSolvers.toTravelTimeMatrix(pointList,
-      state.getDistUnit(), speed, outputTimeUnit, RoundingMode.CEILING);
+    final int[][] travelTime;
+    if (heuristic.isPresent()) {
+      travelTime = toTravelTimeMatrix(state, v, pointList, speed,
+        outputTimeUnit, heuristic.get());
+    } else {
+      travelTime = ArraysSolvers.toTravelTimeMatrix(pointList,
+        state.getDistUnit(), speed, outputTimeUnit, RoundingMode.CEILING);
+    }
 
     @Nullable
     SolutionObject[] sol = null;
@@ -256,6 +291,48 @@ public final class ArraysSolvers {
       serviceTimes, sol, pointList, parcel2indexMap, index2parcelMap);
   }
 
+  // the first point is the location of the vehicle, the vehicle may be on a
+  // connection in which case it first has to travel to the end of it
+  static int[][] toTravelTimeMatrix(GlobalStateObject state,
+      VehicleStateObject vehicle, List<Point> points,
+      Measure<Double, Velocity> speed, Unit<Duration> outputTimeUnit,
+      GeomHeuristic heuristic) {
+    final Point[] nodes = points.toArray(new Point[points.size()]);
+    nodes[0] = toNode(vehicle);
+    final List<Point> nodeList = Arrays.asList(nodes);
+    final double[][] matrix = TravelTimeMatrices.compute(
+      state.getRoadModelSnapshot(), nodeList, outputTimeUnit, speed, heuristic);
+    final double exitTime =
+      computeExitTravelTime(state, vehicle, speed, outputTimeUnit, heuristic);
+    for (int j = 1; j < matrix[0].length; j++) {
+      matrix[0][j] += exitTime;
+    }
+    return TravelTimeMatrices.toIntMatrix(matrix, RoundingMode.CEILING);
+  }
+
+  static Point toNode(VehicleStateObject vehicle) {
+    if (vehicle.getConnection().isPresent()) {
+      return vehicle.getConnection().get().to();
+    }
+    return vehicle.getLocation();
+  }
+
+  // time needed to travel to the end of the current connection
+  static double computeExitTravelTime(GlobalStateObject state,
+      VehicleStateObject vehicle, Measure<Double, Velocity> speed,
+      Unit<Duration> outputTimeUnit, GeomHeuristic heuristic) {
+    if (!vehicle.getConnection().isPresent()) {
+      return 0d;
+    }
+    final Connection<?> conn = vehicle.getConnection().get();
+    final double connectionPercentage =
+      Point.distance(vehicle.getLocation(), conn.to())
+        / Point.distance(conn.from(), conn.to());
+    final RoadModelSnapshot snapshot = state.getRoadModelSnapshot();
+    return snapshot.getPathTo(conn.from(), conn.to(), outputTimeUnit, speed,
+      heuristic).getTravelTime() * connectionPercentage;
+  }
+
   @Nullable
   static SolutionObject[] toCurrentSolutions(GlobalStateObject state,
       Map<Parcel, ParcelIndexObj> mapping, int[][] travelTime,
@@ -347,20 +424,43 @@ public final class ArraysSolvers {
 
   /**
    * Converts the specified {@link GlobalStateObject} into an
-   * {@link MVArraysObject} using the specified time unit.
+   * {@link MVArraysObject} using the specified time unit. The travel times are
+   * based on the Euclidean distance between locations.
    * @param state The state to convert.
    * @param outputTimeUnit The unit to use for time.
    * @return A {@link MVArraysObject} using the specified output time unit.
    */
   public static MVArraysObject toMultiVehicleArrays(GlobalStateObject state,
       Unit<Duration> outputTimeUnit) {
+    return toMultiVehicleArrays(state, outputTimeUnit,
+      Optional.<GeomHeuristic>absent());
+  }
+
+  /**
+   * Converts the specified {@link GlobalStateObject} into an
+   * {@link MVArraysObject} using the specified time unit. The travel times are
+   * the travel times of the shortest paths in the
+   * {@link GlobalStateObject#getRoadModelSnapshot()} according to the
+   * specified heuristic, see {@link TravelTimeMatrices}.
+   * @param state The state to convert.
+   * @param outputTimeUnit The unit to use for time.
+   * @param heuristic The heuristic to use for computing the travel times.
+   * @return A {@link MVArraysObject} using the specified output time unit.
+   */
+  public static MVArraysObject toMultiVehicleArrays(GlobalStateObject state,
+      Unit<Duration> outputTimeUnit, GeomHeuristic heuristic) {
+    return toMultiVehicleArrays(state, outputTimeUnit, Optional.of(heuristic));
+  }
+
+  static MVArraysObject toMultiVehicleArrays(GlobalStateObject state,
+      Unit<Duration> outputTimeUnit, Optional<GeomHeuristic> heuristic) {
     final ArraysObject singleVehicleArrays = toSingleVehicleArrays(state,
-      outputTimeUnit);
+      outputTimeUnit, heuristic);
     checkArgument(!state.getVehicles().isEmpty(),
       "We need at least one vehicle");
 
     final int[][] vehicleTravelTimes = toVehicleTravelTimes(state,
-      singleVehicleArrays, outputTimeUnit);
+      singleVehicleArrays, outputTimeUnit, heuristic);
     final int[][] inventories = toInventoriesArray(state, singleVehicleArrays);
     final int[] remainingServiceTimes = toRemainingServiceTimes(state,
       outputTimeUnit);
@@ -427,7 +527,8 @@ public final class ArraysSolvers {
   }
 
   static int[][] toVehicleTravelTimes(GlobalStateObject state,
-      ArraysObject sva, Unit<Duration> outputTimeUnit) {
+      ArraysObject sva, Unit<Duration> outputTimeUnit,
+      Optional<GeomHeuristic> heuristic) {
     final int v = state.getVehicles().size();
     final int n = sva.travelTime.length;
     // compute vehicle travel times
@@ -454,27 +555,47 @@ public final class ArraysSolvers {
         final int index = isInCargo ? pio.deliveryIndex : pio.pickupIndex;
 
         checkArgument(index > 0);
-        vehicleTravelTimes[i][index] = computeRoundedTravelTime(speed,
-          Measure.valueOf(
-            Point.distance(cur.getLocation(),
-              sva.location2index.get(index)),
-            state.getDistUnit()),
-          outputTimeUnit);
+        vehicleTravelTimes[i][index] = computeRoundedTravelTimes(state, cur,
+          speed, sva.location2index.subList(index, index + 1), outputTimeUnit,
+          heuristic)[0];
 
       } else {
         // add travel time for every location
-        for (int j = 1; j < n; j++) {
-          vehicleTravelTimes[i][j] = computeRoundedTravelTime(speed,
-            Measure.valueOf(
-              Point.distance(cur.getLocation(), sva.location2index.get(j)),
-              state.getDistUnit()),
-            outputTimeUnit);
-        }
+        final int[] tts = computeRoundedTravelTimes(state, cur, speed,
+          sva.location2index.subList(1, n), outputTimeUnit, heuristic);
+        System.arraycopy(tts, 0, vehicleTravelTimes[i], 1, tts.length);
       }
     }
     return vehicleTravelTimes;
   }
 
+  // travel times from the vehicle to each of the destinations
+  static int[] computeRoundedTravelTimes(GlobalStateObject state,
+      VehicleStateObject vehicle, Measure<Double, Velocity> speed,
+      List<Point> destinations, Unit<Duration> outputTimeUnit,
+      Optional<GeomHeuristic> heuristic) {
+    final int[] tts = new int[destinations.size()];
+    if (!heuristic.isPresent()) {
+      for (int j = 0; j < tts.length; j++) {
+        tts[j] = computeRoundedTravelTime(speed,
+          Measure.valueOf(
+            Point.distance(vehicle.getLocation(), destinations.get(j)),
+            state.getDistUnit()),
+          outputTimeUnit);
+      }
+      return tts;
+    }
+    final double[] row = TravelTimeMatrices.compute(
+      state.getRoadModelSnapshot(), ImmutableList.of(toNode(vehicle)),
+      destinations, outputTimeUnit, speed, heuristic.get())[0];
+    final double exitTime = computeExitTravelTime(state, vehicle, speed,
+      outputTimeUnit, heuristic.get());
+    for (int j = 0; j < tts.length; j++) {
+      tts[j] = DoubleMath.roundToInt(row[j] + exitTime, RoundingMode.CEILING);
+    }
+    return tts;
+  }
+
   static int computeRoundedTravelTime(Measure<Double, Velocity> speed,
       Measure<Double, Length> dist, Unit<Duration> outputTimeUnit) {
     return DoubleMath.roundToInt(
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.central.rt;
+
+import com.github.rinde.rinsim.central.GlobalStateObject;
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The trace of a single run of a {@link RealtimeSolver}, a run starts when the
+ * solver receives a snapshot via
+ * {@link RealtimeSolver#problemChanged(GlobalStateObject)} and stops when the
+ * solver has called {@link Scheduler#doneForNow()} and all tasks that it
+ * submitted to the shared executor for the run have returned. All times are
+ * wall clock times in nanoseconds relative to the start of the run.
+ * @author Rinde van Lon
+ * @see MeasurableRealtimeSolver
+ */
+@AutoValue
+public abstract class AnytimeSolverTrace {
+
+  AnytimeSolverTrace() {}
+
+  /**
+   * @return The snapshot that started the run.
+   */
+  public abstract GlobalStateObject getSnapshot();
+
+  /**
+   * @return All feasible schedules that the solver has published for the
+   *         snapshot, in order of publication.
+   */
+  public abstract ImmutableList<TimedSchedule> getSchedules();
+
+  /**
+   * @return The time at which the run was cancelled, either by a call to
+   *         {@link RealtimeSolver#cancel()} or by a newer snapshot. Is absent
+   *         if the run was not cancelled.
+   */
+  public abstract Optional<Long> getCancelTimeNs();
+
+  /**
+   * @return The time at which the solver reported that it stopped computing.
+   *         Is absent if the solver has not yet stopped.
+   */
+  public abstract Optional<Long> getStopTimeNs();
+
+  /**
+   * @return The latency between the start of the run and the first feasible
+   *         schedule. Is absent if no schedule has been published.
+   */
+  public Optional<Long> getFirstScheduleLatencyNs() {
+    if (getSchedules().isEmpty()) {
+      return Optional.absent();
+    }
+    return Optional.of(getSchedules().get(0).getTimeNs());
+  }
+
+  /**
+   * @return The latency between the cancellation of the run and the moment
+   *         the solver stopped. Is absent if the run was not cancelled or if
+   *         the solver has not yet stopped.
+   */
+  public Optional<Long> getCancelLatencyNs() {
+    if (!getCancelTimeNs().isPresent() || !getStopTimeNs().isPresent()) {
+      return Optional.absent();
+    }
+    return Optional.of(getStopTimeNs().get() - getCancelTimeNs().get());
+  }
+
+  static AnytimeSolverTrace create(GlobalStateObject snapshot,
+      ImmutableList<TimedSchedule> schedules, Optional<Long> cancelTime,
+      Optional<Long> stopTime) {
+    return new AutoValue_AnytimeSolverTrace(snapshot, schedules, cancelTime,
+      stopTime);
+  }
+
+  /**
+   * A schedule that was published during a run.
+   * @author Rinde van Lon
+   */
+  @AutoValue
+  public abstract static class TimedSchedule {
+
+    TimedSchedule() {}
+
+    /**
+     * @return The time at which the schedule was published.
+     */
+    public abstract long getTimeNs();
+
+    /**
+     * @return The objective value of the schedule.
+     */
+    public abstract double getCost();
+
+    static TimedSchedule create(long timeNs, double cost) {
+      return new AutoValue_AnytimeSolverTrace_TimedSchedule(timeNs, cost);
+    }
+  }
+}
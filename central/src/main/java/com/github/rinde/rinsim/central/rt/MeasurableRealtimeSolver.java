@@ -15,6 +15,24 @@
  */
 package com.github.rinde.rinsim.central.rt;
 
+import java.util.List;
+
 import com.github.rinde.rinsim.central.Measurable;
 
-public interface MeasurableRealtimeSolver extends RealtimeSolver, Measurable {}
+/**
+ * A {@link RealtimeSolver} that is {@link Measurable}. Next to the time
+ * measurements of completed computations, it records a trace of each run that
+ * shows how the quality of the published schedules evolves over time and how
+ * quickly the solver reacts to new snapshots and to cancellation.
+ * @author Rinde van Lon
+ * @see RtStAdapters#measure(RealtimeSolver,
+ *      com.github.rinde.rinsim.pdptw.common.ObjectiveFunction)
+ */
+public interface MeasurableRealtimeSolver extends RealtimeSolver, Measurable {
+
+  /**
+   * @return A list of {@link AnytimeSolverTrace}s, one for each run in the
+   *         order in which the runs were started.
+   */
+  List<AnytimeSolverTrace> getTraces();
+}
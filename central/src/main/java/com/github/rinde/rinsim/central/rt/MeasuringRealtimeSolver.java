@@ -0,0 +1,388 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.central.rt;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.rinde.rinsim.central.GlobalStateObject;
+import com.github.rinde.rinsim.central.SolverTimeMeasurement;
+import com.github.rinde.rinsim.central.Solvers;
+import com.github.rinde.rinsim.central.rt.AnytimeSolverTrace.TimedSchedule;
+import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.pdptw.common.ObjectiveFunction;
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.AbstractListeningExecutorService;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Decorator of a {@link RealtimeSolver} that records an
+ * {@link AnytimeSolverTrace} of every run of the decorated solver. The tasks
+ * that the decorated solver submits to the shared executor are tagged with the
+ * run that issued them: a task that is submitted from within another task
+ * belongs to the run of that task, any other task belongs to the most recent
+ * run. The calls to the {@link Scheduler} are attributed as follows:
+ * <ul>
+ * <li>a published schedule belongs to the run of its snapshot or, if the
+ * snapshot did not start a run, to the run of the calling task;</li>
+ * <li>{@link Scheduler#doneForNow()} stops the run of the calling task, when
+ * it is called while the solver is being cancelled it stops the cancelled
+ * runs, otherwise it stops the most recent run.</li>
+ * </ul>
+ * A run that is stopped while some of its tasks are still running records its
+ * stop time when the last of these tasks returns. This way, the cancel latency
+ * includes the time that a solver needs to respond to an interrupt. A run that
+ * is cancelled but never stopped by the solver has no stop time.
+ */
+final class MeasuringRealtimeSolver implements MeasurableRealtimeSolver {
+  static final Logger LOGGER =
+    LoggerFactory.getLogger(MeasuringRealtimeSolver.class);
+  private static final String R_BRACE = ")";
+
+  final RealtimeSolver delegate;
+  final ObjectiveFunction objectiveFunction;
+  Optional<Scheduler> scheduler;
+
+  // the run of the task that is executed by the current thread
+  final ThreadLocal<Run> taskRun;
+  // the runs that are cancelled by the current thread
+  final ThreadLocal<List<Run>> cancelledRuns;
+
+  // all fields below are guarded by 'this'
+  final List<Run> runs;
+  // runs that are not yet stopped by the solver, oldest first
+  final List<Run> openRuns;
+
+  MeasuringRealtimeSolver(RealtimeSolver deleg, ObjectiveFunction objFunc) {
+    delegate = deleg;
+    objectiveFunction = objFunc;
+    scheduler = Optional.absent();
+    taskRun = new ThreadLocal<>();
+    cancelledRuns = new ThreadLocal<>();
+    runs = new ArrayList<>();
+    openRuns = new ArrayList<>();
+  }
+
+  @Override
+  public void init(Scheduler s) {
+    scheduler = Optional.of(s);
+    delegate.init(new MeasuringScheduler());
+  }
+
+  @Override
+  public void problemChanged(GlobalStateObject snapshot) {
+    checkState(scheduler.isPresent(), "Not yet initialized.");
+    final long now = System.nanoTime();
+    final List<Run> cancelled;
+    synchronized (this) {
+      // a new snapshot supersedes the runs that are still computing
+      cancelled = cancelOpenRuns(now);
+      final Run run = new Run(snapshot, now);
+      runs.add(run);
+      openRuns.add(run);
+    }
+    cancelledRuns.set(cancelled);
+    try {
+      delegate.problemChanged(snapshot);
+    } finally {
+      cancelledRuns.remove();
+    }
+  }
+
+  @Override
+  public void receiveSnapshot(GlobalStateObject snapshot) {
+    delegate.receiveSnapshot(snapshot);
+  }
+
+  @Override
+  public void cancel() {
+    final long now = System.nanoTime();
+    final List<Run> cancelled;
+    synchronized (this) {
+      cancelled = cancelOpenRuns(now);
+    }
+    cancelledRuns.set(cancelled);
+    try {
+      delegate.cancel();
+    } finally {
+      cancelledRuns.remove();
+    }
+  }
+
+  @Override
+  public boolean isComputing() {
+    return delegate.isComputing();
+  }
+
+  @Override
+  public synchronized List<AnytimeSolverTrace> getTraces() {
+    final ImmutableList.Builder<AnytimeSolverTrace> traces =
+      ImmutableList.builder();
+    for (final Run run : runs) {
+      traces.add(run.toTrace());
+    }
+    return traces.build();
+  }
+
+  @Override
+  public synchronized List<SolverTimeMeasurement> getTimeMeasurements() {
+    final ImmutableList.Builder<SolverTimeMeasurement> measurements =
+      ImmutableList.builder();
+    for (final Run run : runs) {
+      if (run.stopTime.isPresent() && !run.cancelTime.isPresent()
+        && !run.schedules.isEmpty()) {
+        measurements.add(
+          SolverTimeMeasurement.create(run.snapshot, run.stopTime.get()));
+      }
+    }
+    return measurements.build();
+  }
+
+  @Override
+  public String toString() {
+    return Joiner.on("").join(getClass().getSimpleName(), "(", delegate,
+      R_BRACE);
+  }
+
+  // must be called while holding the lock, returns the cancelled runs
+  List<Run> cancelOpenRuns(long now) {
+    for (final Run run : openRuns) {
+      if (!run.cancelTime.isPresent()) {
+        run.cancelTime = Optional.of(now - run.start);
+      }
+    }
+    return ImmutableList.copyOf(openRuns);
+  }
+
+  // must be called while holding the lock, returns the run of the specified
+  // state or, if the state is not a snapshot that started a run (e.g. a
+  // snapshot received via receiveSnapshot(..)), the run of the calling task
+  // or the most recent run
+  Optional<Run> findRun(GlobalStateObject state) {
+    for (int i = runs.size() - 1; i >= 0; i--) {
+      if (runs.get(i).snapshot == state) {
+        return Optional.of(runs.get(i));
+      }
+    }
+    return currentRun();
+  }
+
+  // must be called while holding the lock, returns the run of the calling
+  // task or the most recent run if the current thread is not executing a task
+  Optional<Run> currentRun() {
+    final Run run = taskRun.get();
+    if (run != null) {
+      return Optional.of(run);
+    }
+    return latestRun();
+  }
+
+  // must be called while holding the lock
+  void stop(Run run, long now) {
+    run.stopRequested = true;
+    openRuns.remove(run);
+    for (final Thread t : run.taskThreads) {
+      if (t != Thread.currentThread()) {
+        // wait for the other tasks of the run to return
+        return;
+      }
+    }
+    if (!run.stopTime.isPresent()) {
+      run.stopTime = Optional.of(now - run.start);
+    }
+  }
+
+  // must be called while holding the lock, returns the most recent run
+  Optional<Run> latestRun() {
+    if (runs.isEmpty()) {
+      return Optional.absent();
+    }
+    return Optional.of(runs.get(runs.size() - 1));
+  }
+
+  static class Run {
+    final GlobalStateObject snapshot;
+    final long start;
+    final List<TimedSchedule> schedules;
+    // the threads that are executing a task of this run
+    final List<Thread> taskThreads;
+    boolean stopRequested;
+    Optional<Long> cancelTime;
+    Optional<Long> stopTime;
+
+    Run(GlobalStateObject snap, long startTime) {
+      snapshot = snap;
+      start = startTime;
+      schedules = new ArrayList<>();
+      taskThreads = new ArrayList<>();
+      cancelTime = Optional.absent();
+      stopTime = Optional.absent();
+    }
+
+    AnytimeSolverTrace toTrace() {
+      return AnytimeSolverTrace.create(snapshot,
+        ImmutableList.copyOf(schedules), cancelTime, stopTime);
+    }
+  }
+
+  class MeasuringScheduler extends Scheduler {
+
+    MeasuringScheduler() {}
+
+    @Override
+    public void updateSchedule(GlobalStateObject state,
+        ImmutableList<ImmutableList<Parcel>> routes) {
+      final long now = System.nanoTime();
+      try {
+        final double cost =
+          objectiveFunction.computeCost(Solvers.computeStats(state, routes));
+        synchronized (MeasuringRealtimeSolver.this) {
+          final Optional<Run> run = findRun(state);
+          if (run.isPresent()) {
+            run.get().schedules
+              .add(TimedSchedule.create(now - run.get().start, cost));
+          }
+        }
+      } catch (final IllegalArgumentException e) {
+        // infeasible schedules are not recorded, the scheduler decides how
+        // to deal with them
+        LOGGER.trace("Infeasible schedule of {}: {}", delegate,
+          e.getMessage());
+      }
+      scheduler.get().updateSchedule(state, routes);
+    }
+
+    @Override
+    public ImmutableList<ImmutableList<Parcel>> getCurrentSchedule() {
+      return scheduler.get().getCurrentSchedule();
+    }
+
+    @Override
+    public void doneForNow() {
+      final long now = System.nanoTime();
+      @Nullable
+      final Run run = taskRun.get();
+      @Nullable
+      final List<Run> cancelled = cancelledRuns.get();
+      synchronized (MeasuringRealtimeSolver.this) {
+        if (run != null) {
+          stop(run, now);
+        } else if (cancelled != null) {
+          for (final Run r : cancelled) {
+            stop(r, now);
+          }
+        } else if (!openRuns.isEmpty()) {
+          stop(openRuns.get(openRuns.size() - 1), now);
+        }
+      }
+      scheduler.get().doneForNow();
+    }
+
+    @Override
+    public ListeningExecutorService getSharedExecutor() {
+      // the executor is stateless, all measurements are stored in the runs
+      return new MeasuringExecutor(scheduler.get().getSharedExecutor());
+    }
+
+    @Override
+    public void reportException(Throwable t) {
+      scheduler.get().reportException(t);
+    }
+  }
+
+  /**
+   * Executor that tags each task with its run and that records which threads
+   * are executing the tasks of a run.
+   */
+  class MeasuringExecutor extends AbstractListeningExecutorService {
+    final ListeningExecutorService delegateExecutor;
+
+    MeasuringExecutor(ListeningExecutorService ex) {
+      delegateExecutor = ex;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+      final Optional<Run> run;
+      synchronized (MeasuringRealtimeSolver.this) {
+        run = currentRun();
+      }
+      if (!run.isPresent()) {
+        delegateExecutor.execute(command);
+        return;
+      }
+      delegateExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          @Nullable
+          final Run previous = taskRun.get();
+          taskRun.set(run.get());
+          synchronized (MeasuringRealtimeSolver.this) {
+            run.get().taskThreads.add(Thread.currentThread());
+          }
+          try {
+            command.run();
+          } finally {
+            final long now = System.nanoTime();
+            synchronized (MeasuringRealtimeSolver.this) {
+              run.get().taskThreads.remove(Thread.currentThread());
+              if (run.get().stopRequested) {
+                stop(run.get(), now);
+              }
+            }
+            taskRun.set(previous);
+          }
+        }
+      });
+    }
+
+    @Override
+    public void shutdown() {
+      delegateExecutor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return delegateExecutor.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return delegateExecutor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return delegateExecutor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+        throws InterruptedException {
+      return delegateExecutor.awaitTermination(timeout, unit);
+    }
+  }
+}
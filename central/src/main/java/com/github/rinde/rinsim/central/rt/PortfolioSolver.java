@@ -0,0 +1,496 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.central.rt;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.rinde.rinsim.central.GlobalStateObject;
+import com.github.rinde.rinsim.central.Solver;
+import com.github.rinde.rinsim.central.Solvers;
+import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.pdptw.common.ObjectiveFunction;
+import com.github.rinde.rinsim.util.StochasticSupplier;
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A {@link RealtimeSolver} that consists of a portfolio of other
+ * {@link RealtimeSolver}s, the members. Each snapshot that is received by the
+ * portfolio is sent to all members, the members compute concurrently on the
+ * shared executor of the {@link Scheduler} (see
+ * {@link Scheduler#getSharedExecutor()}). The portfolio acts as an arbiter:
+ * each schedule that is proposed by a member is evaluated using an
+ * {@link ObjectiveFunction} and is only passed on to the {@link Scheduler} if
+ * it is better than all schedules that were proposed for the current snapshot
+ * so far. The portfolio is done computing when all members are done.
+ * <p>
+ * Optionally, a time limit can be set. When the time limit of a snapshot
+ * expires, all members that are still computing are cancelled as soon as a
+ * schedule has been found for that snapshot.
+ * <p>
+ * Schedules are only accepted for the current snapshot or for a snapshot that
+ * was received afterwards via {@link #receiveSnapshot(GlobalStateObject)}.
+ * Members that report to be done more often than they received a snapshot,
+ * for example because they are cancelled while finishing a computation, are
+ * counted only once per snapshot. Infeasible schedules of a member are logged
+ * and ignored. The {@link Scheduler} is never called while holding the lock of
+ * the portfolio, the best schedule and the completion of the portfolio are
+ * published by one thread at a time such that they arrive in order.
+ * <p>
+ * Note that the size of the thread pool of {@link RtSolverModel} limits the
+ * number of members that can compute concurrently, see
+ * {@link RtSolverModel.Builder#withThreadPoolSize(int)}.
+ * <p>
+ * Instances can be obtained via {@link #builder(ObjectiveFunction)}.
+ * @author Rinde van Lon
+ */
+public final class PortfolioSolver implements RealtimeSolver {
+  static final Logger LOGGER = LoggerFactory.getLogger(PortfolioSolver.class);
+  private static final String R_BRACE = ")";
+  private static final ScheduledExecutorService TIMER =
+    Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+      .setNameFormat(PortfolioSolver.class.getSimpleName() + "-timer")
+      .setDaemon(true)
+      .build());
+
+  final ImmutableList<RealtimeSolver> members;
+  final ObjectiveFunction objectiveFunction;
+  final long timeLimit;
+  Optional<Scheduler> scheduler;
+  List<MemberScheduler> memberSchedulers;
+
+  // all fields below are guarded by 'this'
+  long round;
+  @Nullable
+  GlobalStateObject roundSnapshot;
+  @Nullable
+  GlobalStateObject receivedSnapshot;
+  boolean hasBest;
+  double bestCost;
+  boolean timeUp;
+  // the number of problemChanged(..) invocations of the members and of the
+  // portfolio itself that are not yet done
+  int pendingMembers;
+  int pendingRounds;
+  @Nullable
+  ScheduledFuture<?> timeout;
+  // the best schedule and the number of doneForNow() calls that are not yet
+  // published to the scheduler
+  @Nullable
+  Publication pendingSchedule;
+  int pendingDone;
+  boolean publishing;
+
+  PortfolioSolver(ImmutableList<RealtimeSolver> ms, ObjectiveFunction objFunc,
+      long limit) {
+    members = ms;
+    objectiveFunction = objFunc;
+    timeLimit = limit;
+    scheduler = Optional.absent();
+    memberSchedulers = ImmutableList.of();
+  }
+
+  @Override
+  public void init(Scheduler s) {
+    scheduler = Optional.of(s);
+    final ImmutableList.Builder<MemberScheduler> schedulers =
+      ImmutableList.builder();
+    for (final RealtimeSolver member : members) {
+      schedulers.add(new MemberScheduler(member));
+    }
+    memberSchedulers = schedulers.build();
+    for (final MemberScheduler ms : memberSchedulers) {
+      ms.member.init(ms);
+    }
+  }
+
+  @Override
+  public void problemChanged(GlobalStateObject snapshot) {
+    checkState(scheduler.isPresent(), "Not yet initialized.");
+    final long currentRound;
+    synchronized (this) {
+      round++;
+      currentRound = round;
+      roundSnapshot = snapshot;
+      receivedSnapshot = null;
+      // a schedule of the previous snapshot is outdated
+      pendingSchedule = null;
+      hasBest = false;
+      timeUp = false;
+      pendingRounds++;
+      pendingMembers += members.size();
+      for (final MemberScheduler ms : memberSchedulers) {
+        ms.pending++;
+      }
+      cancelTimeout();
+    }
+    for (final RealtimeSolver member : members) {
+      member.problemChanged(snapshot);
+    }
+    if (timeLimit > 0) {
+      final ScheduledFuture<?> future = TIMER.schedule(new Runnable() {
+        @Override
+        public void run() {
+          timeUp(currentRound);
+        }
+      }, timeLimit, TimeUnit.MILLISECONDS);
+      synchronized (this) {
+        if (round == currentRound && pendingMembers > 0) {
+          timeout = future;
+        } else {
+          future.cancel(false);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void receiveSnapshot(GlobalStateObject snapshot) {
+    synchronized (this) {
+      receivedSnapshot = snapshot;
+    }
+    for (final RealtimeSolver member : members) {
+      member.receiveSnapshot(snapshot);
+    }
+  }
+
+  @Override
+  public void cancel() {
+    synchronized (this) {
+      cancelTimeout();
+    }
+    for (final RealtimeSolver member : members) {
+      member.cancel();
+    }
+  }
+
+  @Override
+  public boolean isComputing() {
+    for (final RealtimeSolver member : members) {
+      if (member.isComputing()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return Joiner.on("").join(getClass().getSimpleName(), "(",
+      Joiner.on(",").join(members), R_BRACE);
+  }
+
+  void timeUp(long expiredRound) {
+    synchronized (this) {
+      if (round != expiredRound) {
+        return;
+      }
+      timeUp = true;
+      if (!hasBest) {
+        LOGGER.trace("Time is up, waiting for a first schedule.");
+        return;
+      }
+    }
+    cancelComputingMembers(expiredRound);
+  }
+
+  void cancelComputingMembers(long expiredRound) {
+    for (final RealtimeSolver member : members) {
+      synchronized (this) {
+        // a member that is computing for a newer snapshot is not cancelled
+        if (round != expiredRound) {
+          return;
+        }
+      }
+      if (member.isComputing()) {
+        LOGGER.trace("Time is up, cancel {}.", member);
+        member.cancel();
+      }
+    }
+  }
+
+  // publishes the pending schedule and doneForNow() calls, at most one thread
+  // publishes at a time, any other thread leaves its publications to it
+  void publish() {
+    synchronized (this) {
+      if (publishing) {
+        return;
+      }
+      publishing = true;
+    }
+    boolean more = true;
+    try {
+      while (more) {
+        more = publishNext();
+      }
+    } finally {
+      if (more) {
+        synchronized (this) {
+          publishing = false;
+        }
+      }
+    }
+  }
+
+  // returns false, and stops publishing, if there was nothing to publish
+  boolean publishNext() {
+    final Publication next;
+    final int doneRounds;
+    synchronized (this) {
+      if (pendingSchedule == null && pendingDone == 0) {
+        publishing = false;
+        return false;
+      }
+      next = pendingSchedule;
+      doneRounds = pendingDone;
+      pendingSchedule = null;
+      pendingDone = 0;
+    }
+    if (next != null) {
+      scheduler.get().updateSchedule(next.state, next.routes);
+    }
+    for (int i = 0; i < doneRounds; i++) {
+      scheduler.get().doneForNow();
+    }
+    return true;
+  }
+
+  // must be called while holding the lock
+  void cancelTimeout() {
+    if (timeout != null) {
+      timeout.cancel(false);
+      timeout = null;
+    }
+  }
+
+  /**
+   * Creates a builder for a portfolio of solvers.
+   * @param objFunc The objective function that is used to compare the
+   *          schedules of the members, lower is better.
+   * @return A new builder without members.
+   */
+  @CheckReturnValue
+  public static Builder builder(ObjectiveFunction objFunc) {
+    return Builder.create(objFunc,
+      ImmutableList.<StochasticSupplier<RealtimeSolver>>of(), 0L);
+  }
+
+  /**
+   * Builder for {@link PortfolioSolver} instances. The builder is a
+   * {@link StochasticSupplier} of the portfolio, it can be used directly in
+   * {@link RtCentral#builder(StochasticSupplier)}. Each member of the
+   * portfolio is supplied with a different seed which is derived from the
+   * seed of the portfolio.
+   * @author Rinde van Lon
+   */
+  @AutoValue
+  public abstract static class Builder
+      implements StochasticSupplier<RealtimeSolver> {
+
+    Builder() {}
+
+    abstract ObjectiveFunction getObjectiveFunction();
+
+    abstract ImmutableList<StochasticSupplier<RealtimeSolver>> getMembers();
+
+    abstract long getTimeLimit();
+
+    /**
+     * Adds a {@link RealtimeSolver} to the portfolio.
+     * @param member The supplier of the member.
+     * @return A new builder with the added member.
+     */
+    @SuppressWarnings("unchecked")
+    @CheckReturnValue
+    public Builder addRealtimeSolver(
+        StochasticSupplier<? extends RealtimeSolver> member) {
+      return create(getObjectiveFunction(),
+        ImmutableList.<StochasticSupplier<RealtimeSolver>>builder()
+          .addAll(getMembers())
+          .add((StochasticSupplier<RealtimeSolver>) member)
+          .build(),
+        getTimeLimit());
+    }
+
+    /**
+     * Adds a {@link Solver} to the portfolio, the solver is adapted using
+     * {@link RtStAdapters#toRealtime(StochasticSupplier)}.
+     * @param member The supplier of the member.
+     * @return A new builder with the added member.
+     */
+    @CheckReturnValue
+    public Builder addSolver(StochasticSupplier<? extends Solver> member) {
+      return addRealtimeSolver(RtStAdapters.toRealtime(member));
+    }
+
+    /**
+     * Sets the time limit of the computations for a single snapshot. When the
+     * time limit expires, all members that are still computing are cancelled
+     * as soon as a schedule has been found. By default there is no time limit.
+     * @param millis The time limit in real-time milliseconds, must be
+     *          positive.
+     * @return A new builder with the time limit.
+     */
+    @CheckReturnValue
+    public Builder withTimeLimit(long millis) {
+      checkArgument(millis > 0, "The time limit must be positive, found %s.",
+        millis);
+      return create(getObjectiveFunction(), getMembers(), millis);
+    }
+
+    @Override
+    public RealtimeSolver get(long seed) {
+      checkState(!getMembers().isEmpty(),
+        "A portfolio needs at least one member.");
+      final RandomGenerator rng = new MersenneTwister(seed);
+      final ImmutableList.Builder<RealtimeSolver> ms = ImmutableList.builder();
+      for (final StochasticSupplier<RealtimeSolver> member : getMembers()) {
+        ms.add(member.get(rng.nextLong()));
+      }
+      return new PortfolioSolver(ms.build(), getObjectiveFunction(),
+        getTimeLimit());
+    }
+
+    @Override
+    public String toString() {
+      return Joiner.on("").join(PortfolioSolver.class.getSimpleName(),
+        ".builder(", getObjectiveFunction(), R_BRACE, getMembers());
+    }
+
+    static Builder create(ObjectiveFunction objFunc,
+        ImmutableList<StochasticSupplier<RealtimeSolver>> ms,
+        long limit) {
+      return new AutoValue_PortfolioSolver_Builder(objFunc, ms, limit);
+    }
+  }
+
+  /**
+   * The scheduler of a single member, schedules are only passed on when they
+   * improve the schedule of the current snapshot.
+   */
+  class MemberScheduler extends Scheduler {
+    final RealtimeSolver member;
+    // the number of problemChanged(..) invocations of the member that are not
+    // yet done, guarded by the lock of the portfolio
+    int pending;
+
+    MemberScheduler(RealtimeSolver m) {
+      member = m;
+    }
+
+    @Override
+    public void updateSchedule(GlobalStateObject state,
+        ImmutableList<ImmutableList<Parcel>> routes) {
+      final double cost;
+      try {
+        cost = objectiveFunction.computeCost(
+          Solvers.computeStats(state, routes));
+      } catch (final IllegalArgumentException e) {
+        LOGGER.warn("Ignore infeasible schedule of {}: {}", member,
+          e.getMessage());
+        return;
+      }
+      final boolean cancelOthers;
+      final long currentRound;
+      synchronized (PortfolioSolver.this) {
+        if (state != roundSnapshot && state != receivedSnapshot) {
+          LOGGER.trace("Ignore outdated schedule of {}.", member);
+          return;
+        }
+        if (hasBest && cost >= bestCost) {
+          LOGGER.trace("Ignore schedule of {} with cost {}, best is {}.",
+            member, cost, bestCost);
+          return;
+        }
+        LOGGER.trace("New best schedule of {} with cost {}.", member, cost);
+        hasBest = true;
+        bestCost = cost;
+        // replaces a schedule that is not yet published, it is worse
+        pendingSchedule = new Publication(state, routes);
+        cancelOthers = timeUp;
+        currentRound = round;
+      }
+      publish();
+      if (cancelOthers) {
+        cancelComputingMembers(currentRound);
+      }
+    }
+
+    @Override
+    public ImmutableList<ImmutableList<Parcel>> getCurrentSchedule() {
+      return scheduler.get().getCurrentSchedule();
+    }
+
+    @Override
+    public void doneForNow() {
+      synchronized (PortfolioSolver.this) {
+        if (pending == 0) {
+          LOGGER.trace("Ignore repeated doneForNow() of {}.", member);
+          return;
+        }
+        pending--;
+        pendingMembers--;
+        if (pendingMembers > 0) {
+          return;
+        }
+        pendingDone += pendingRounds;
+        pendingRounds = 0;
+        cancelTimeout();
+      }
+      publish();
+    }
+
+    @Override
+    public ListeningExecutorService getSharedExecutor() {
+      return scheduler.get().getSharedExecutor();
+    }
+
+    @Override
+    public void reportException(Throwable t) {
+      scheduler.get().reportException(t);
+    }
+  }
+
+  static class Publication {
+    final GlobalStateObject state;
+    final ImmutableList<ImmutableList<Parcel>> routes;
+
+    Publication(GlobalStateObject st,
+        ImmutableList<ImmutableList<Parcel>> rs) {
+      state = st;
+      routes = rs;
+    }
+  }
+}
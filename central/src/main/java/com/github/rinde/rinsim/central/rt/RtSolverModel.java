@@ -29,6 +29,7 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,6 +45,7 @@ import com.github.rinde.rinsim.core.model.pdp.Vehicle;
 import com.github.rinde.rinsim.core.model.time.Clock.ClockEventType;
 import com.github.rinde.rinsim.core.model.time.RealtimeClockController;
 import com.github.rinde.rinsim.core.model.time.RealtimeClockController.ClockMode;
+import com.github.rinde.rinsim.core.model.time.RealtimeClockController.RtClockEventType;
 import com.github.rinde.rinsim.core.model.time.TickListener;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.event.Event;
@@ -54,6 +56,7 @@ import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedHashMultiset;
 import com.google.common.collect.Multiset;
+import com.google.common.math.Stats;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 
@@ -79,6 +82,11 @@ import net.openhft.affinity.AffinityThreadFactory;
  * mode. If the first request comes from an {@link RtSolverUser} the model will
  * be in multi mode.
  * <p>
+ * By default each model creates its own thread pool for the computations of
+ * its solvers. When many simulations run concurrently a
+ * {@link SharedSolverExecutor} can be shared by their models instead, see
+ * {@link Builder#withSharedExecutor(SharedSolverExecutor)}.
+ * <p>
  * See {@link #builder()} for creating the model and setting the initial mode.
  * <p>
  * <b>Model properties</b>
@@ -107,6 +115,7 @@ public final class RtSolverModel
   final SimSolversManager manager;
   final int threadPoolSize;
   final boolean threadGroupingEnabled;
+  final Optional<SharedSolverExecutor> sharedExecutor;
   Optional<ListeningExecutorService> executor;
   Mode mode;
   boolean prevComputing;
@@ -118,7 +127,8 @@ public final class RtSolverModel
   }
 
   RtSolverModel(RealtimeClockController c, PDPRoadModel rm, PDPModel pm,
-      Mode m, int threads, boolean threadGrouping) {
+      Mode m, int threads, boolean threadGrouping,
+      @Nullable SharedSolverExecutor shared) {
     clock = c;
     roadModel = rm;
     pdpModel = pm;
@@ -127,6 +137,7 @@ public final class RtSolverModel
     mode = m;
     threadGroupingEnabled = threadGrouping;
     threadPoolSize = threads;
+    sharedExecutor = Optional.fromNullable(shared);
 
     receivedEvents = Collections.synchronizedList(new ArrayList<Event>());
 
@@ -227,8 +238,22 @@ public final class RtSolverModel
   }
 
   void initExecutor() {
-    if (!executor.isPresent() && mode != Mode.UNKNOWN) {
-
+    if (!executor.isPresent() && mode != Mode.UNKNOWN
+      && sharedExecutor.isPresent()) {
+      final SharedSolverExecutor.Client client = sharedExecutor.get()
+        .newClient(clock.getClockMode() == ClockMode.REAL_TIME);
+      // real-time simulations take precedence in the shared executor
+      clock.getEventAPI().addListener(new Listener() {
+        @Override
+        public void handleEvent(Event e) {
+          client.setRealtime(
+            e.getEventType() == RtClockEventType.SWITCH_TO_REAL_TIME);
+        }
+      }, RtClockEventType.SWITCH_TO_REAL_TIME,
+        RtClockEventType.SWITCH_TO_SIM_TIME);
+      LOGGER.trace("Use shared executor {}.", sharedExecutor.get());
+      executor = Optional.<ListeningExecutorService>of(client);
+    } else if (!executor.isPresent() && mode != Mode.UNKNOWN) {
       final ThreadFactory factory;
       final String newName = String.format("%s-%s",
         Thread.currentThread().getName(), getClass().getSimpleName());
@@ -285,7 +310,7 @@ public final class RtSolverModel
    */
   @CheckReturnValue
   public static Builder builder() {
-    return Builder.create(Mode.UNKNOWN, 0, false);
+    return Builder.create(Mode.UNKNOWN, 0, false, null);
   }
 
   /**
@@ -310,6 +335,9 @@ public final class RtSolverModel
 
     abstract boolean getThreadGrouping();
 
+    @Nullable
+    abstract SharedSolverExecutor getSharedExecutor();
+
     /**
      * The initial mode of the produced {@link RtSolverModel} will be 'single'.
      * See {@link RtSolverModel} for more information.
@@ -317,7 +345,8 @@ public final class RtSolverModel
      */
     @CheckReturnValue
     public Builder withSingleMode() {
-      return create(Mode.SINGLE_MODE, getThreadPoolSize(), getThreadGrouping());
+      return create(Mode.SINGLE_MODE, getThreadPoolSize(), getThreadGrouping(),
+        getSharedExecutor());
     }
 
     /**
@@ -327,7 +356,8 @@ public final class RtSolverModel
      */
     @CheckReturnValue
     public Builder withMultiMode() {
-      return create(Mode.MULTI_MODE, getThreadPoolSize(), getThreadGrouping());
+      return create(Mode.MULTI_MODE, getThreadPoolSize(), getThreadGrouping(),
+        getSharedExecutor());
     }
 
     /**
@@ -341,7 +371,8 @@ public final class RtSolverModel
     @CheckReturnValue
     public Builder withThreadPoolSize(int threads) {
       checkArgument(threads > 0);
-      return create(getMode(), threads, getThreadGrouping());
+      return create(getMode(), threads, getThreadGrouping(),
+        getSharedExecutor());
     }
 
     /**
@@ -355,7 +386,24 @@ public final class RtSolverModel
      */
     @CheckReturnValue
     public Builder withThreadGrouping(boolean grouping) {
-      return create(getMode(), getThreadPoolSize(), grouping);
+      return create(getMode(), getThreadPoolSize(), grouping,
+        getSharedExecutor());
+    }
+
+    /**
+     * Sets the executor that is shared with the models of other simulations.
+     * Instead of creating its own thread pool the model submits the
+     * computations of its solvers to the shared executor, the threadpool size
+     * and thread grouping settings are ignored. Shutting down the model does
+     * not shut down the shared executor. Note that a builder with a shared
+     * executor can not be serialized.
+     * @param executor The shared executor.
+     * @return This, as per the builder pattern.
+     */
+    @CheckReturnValue
+    public Builder withSharedExecutor(SharedSolverExecutor executor) {
+      return create(getMode(), getThreadPoolSize(), getThreadGrouping(),
+        executor);
     }
 
     @Override
@@ -365,11 +413,12 @@ public final class RtSolverModel
       final PDPRoadModel rm = dependencyProvider.get(PDPRoadModel.class);
       final PDPModel pm = dependencyProvider.get(PDPModel.class);
       return new RtSolverModel(c, rm, pm, getMode(), getThreadPoolSize(),
-        getThreadGrouping());
+        getThreadGrouping(), getSharedExecutor());
     }
 
-    static Builder create(Mode m, int t, boolean g) {
-      return new AutoValue_RtSolverModel_Builder(m, t, g);
+    static Builder create(Mode m, int t, boolean g,
+        @Nullable SharedSolverExecutor e) {
+      return new AutoValue_RtSolverModel_Builder(m, t, g, e);
     }
   }
 
@@ -392,6 +441,21 @@ public final class RtSolverModel
       }
       return solvers.build();
     }
+
+    /**
+     * @return Statistics of the time in nanoseconds that the computations of
+     *         this model were waiting in the queue of the
+     *         {@link SharedSolverExecutor}, or absent if no shared executor is
+     *         used.
+     */
+    public Optional<Stats> getQueueingDelayStats() {
+      if (executor.isPresent()
+        && executor.get() instanceof SharedSolverExecutor.Client) {
+        return Optional.of(((SharedSolverExecutor.Client) executor.get())
+          .getQueueingDelayStats());
+      }
+      return Optional.absent();
+    }
   }
 
   class SimSolversManager implements Listener, UncaughtExceptionHandler {
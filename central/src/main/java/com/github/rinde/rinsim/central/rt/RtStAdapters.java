@@ -18,6 +18,7 @@ package com.github.rinde.rinsim.central.rt;
 import com.github.rinde.rinsim.central.GlobalStateObject;
 import com.github.rinde.rinsim.central.Solver;
 import com.github.rinde.rinsim.central.SolverUser;
+import com.github.rinde.rinsim.pdptw.common.ObjectiveFunction;
 import com.github.rinde.rinsim.util.StochasticSupplier;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
@@ -71,6 +72,26 @@ public final class RtStAdapters {
     return new Sup(solver);
   }
 
+  /**
+   * Decorates a {@link RealtimeSolver} such that its runs are measured. For
+   * each snapshot that is received via
+   * {@link RealtimeSolver#problemChanged(GlobalStateObject)} an
+   * {@link AnytimeSolverTrace} is recorded that contains every feasible
+   * schedule that is published by the solver, time-stamped and evaluated with
+   * the specified {@link ObjectiveFunction}. The trace also contains the
+   * latency between the snapshot and the first schedule and the latency
+   * between the cancellation of a run (via {@link RealtimeSolver#cancel()} or
+   * a newer snapshot) and the call to {@link Scheduler#doneForNow()}.
+   * @param solver The solver to measure.
+   * @param objFunc The objective function that is used to evaluate the
+   *          published schedules.
+   * @return The decorated solver.
+   */
+  public static MeasurableRealtimeSolver measure(RealtimeSolver solver,
+      ObjectiveFunction objFunc) {
+    return new MeasuringRealtimeSolver(solver, objFunc);
+  }
+
   public static SolverUser toSimTime(RtSolverUser solverUser) {
     return new RtSolverUserAdapter(solverUser);
   }
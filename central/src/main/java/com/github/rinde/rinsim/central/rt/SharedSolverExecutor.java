@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.central.rt;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.math.Stats;
+import com.google.common.math.StatsAccumulator;
+import com.google.common.util.concurrent.AbstractListeningExecutorService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * An executor for solver computations that is shared by the
+ * {@link RtSolverModel}s of several concurrently running simulations, see
+ * {@link RtSolverModel.Builder#withSharedExecutor(SharedSolverExecutor)}.
+ * Instead of creating a thread pool per simulation, all simulations share a
+ * fixed number of threads which caps the number of concurrent solver
+ * computations of an entire experiment.
+ * <p>
+ * Each simulation has its own task queue, the queues are served in round-robin
+ * order such that a simulation with many tasks can not starve other
+ * simulations. Simulations of which the clock is in
+ * {@link com.github.rinde.rinsim.core.model.time.RealtimeClockController.ClockMode#REAL_TIME}
+ * mode are waiting for their solvers in real time, these simulations take
+ * precedence over simulations in simulated time. The time that tasks spend in
+ * a queue is recorded, see {@link #getQueueingDelayStats()}.
+ * @author Rinde van Lon
+ */
+public final class SharedSolverExecutor {
+  static final Logger LOGGER =
+    LoggerFactory.getLogger(SharedSolverExecutor.class);
+
+  final List<Thread> workers;
+  // all fields below are guarded by 'this'
+  // clients with queued tasks in round-robin order
+  final Deque<Client> ready;
+  final StatsAccumulator queueingDelays;
+  boolean isShutdown;
+
+  SharedSolverExecutor(int maxConcurrency, ThreadFactory factory) {
+    ready = new ArrayDeque<>();
+    queueingDelays = new StatsAccumulator();
+    workers = new ArrayList<>();
+    for (int i = 0; i < maxConcurrency; i++) {
+      final Thread worker = factory.newThread(new Runnable() {
+        @Override
+        public void run() {
+          work();
+        }
+      });
+      workers.add(worker);
+      worker.start();
+    }
+  }
+
+  /**
+   * @return The maximum number of solver computations that are executed
+   *         concurrently.
+   */
+  public int getMaxConcurrency() {
+    return workers.size();
+  }
+
+  /**
+   * @return The number of tasks of all simulations that are waiting to be
+   *         executed.
+   */
+  public synchronized int getQueueSize() {
+    int size = 0;
+    for (final Client c : ready) {
+      size += c.queue.size();
+    }
+    return size;
+  }
+
+  /**
+   * @return Statistics of the time in nanoseconds that the tasks of all
+   *         simulations were waiting in a queue before their execution
+   *         started.
+   */
+  public synchronized Stats getQueueingDelayStats() {
+    return queueingDelays.snapshot();
+  }
+
+  /**
+   * Shuts down this executor, the threads are interrupted and no new tasks are
+   * accepted. Tasks that are waiting in a queue are not executed.
+   */
+  public void shutdown() {
+    synchronized (this) {
+      isShutdown = true;
+      notifyAll();
+    }
+    for (final Thread worker : workers) {
+      worker.interrupt();
+    }
+  }
+
+  /**
+   * Creates a new executor with daemon threads.
+   * @param maxConcurrency The maximum number of solver computations that are
+   *          executed concurrently, must be positive.
+   * @return A new instance.
+   */
+  public static SharedSolverExecutor create(int maxConcurrency) {
+    return create(maxConcurrency, new ThreadFactoryBuilder()
+      .setNameFormat(SharedSolverExecutor.class.getSimpleName() + "-%d")
+      .setDaemon(true)
+      .build());
+  }
+
+  /**
+   * Creates a new executor.
+   * @param maxConcurrency The maximum number of solver computations that are
+   *          executed concurrently, must be positive.
+   * @param factory The factory that is used to create the threads.
+   * @return A new instance.
+   */
+  public static SharedSolverExecutor create(int maxConcurrency,
+      ThreadFactory factory) {
+    checkArgument(maxConcurrency > 0,
+      "The maximum concurrency must be positive, found %s.", maxConcurrency);
+    return new SharedSolverExecutor(maxConcurrency, factory);
+  }
+
+  synchronized Client newClient(boolean realtime) {
+    return new Client(realtime);
+  }
+
+  void work() {
+    final Thread current = Thread.currentThread();
+    while (true) {
+      final Client client;
+      final Runnable task;
+      synchronized (this) {
+        Client next = nextClient();
+        while (next == null) {
+          if (isShutdown) {
+            return;
+          }
+          try {
+            wait();
+          } catch (final InterruptedException e) {
+            LOGGER.trace("{} interrupted while waiting.", current.getName());
+          }
+          next = nextClient();
+        }
+        if (isShutdown) {
+          return;
+        }
+        client = next;
+        final QueuedTask queued = client.queue.removeFirst();
+        if (!client.queue.isEmpty()) {
+          ready.addLast(client);
+        }
+        final long delay = System.nanoTime() - queued.enqueueTime;
+        queueingDelays.add(delay);
+        client.queueingDelays.add(delay);
+        client.running.add(current);
+        task = queued.task;
+      }
+      try {
+        task.run();
+      } catch (final RuntimeException e) {
+        LOGGER.warn("Task threw an exception.", e);
+      } finally {
+        synchronized (this) {
+          client.running.remove(current);
+          notifyAll();
+        }
+        // an interrupt of the client may not affect the next task
+        Thread.interrupted();
+      }
+    }
+  }
+
+  // removes and returns the first client in real-time mode, if there is no
+  // such client the first client is returned
+  Client nextClient() {
+    final Iterator<Client> it = ready.iterator();
+    while (it.hasNext()) {
+      final Client c = it.next();
+      if (c.realtime) {
+        it.remove();
+        return c;
+      }
+    }
+    return ready.pollFirst();
+  }
+
+  static final class QueuedTask {
+    final Runnable task;
+    final long enqueueTime;
+
+    QueuedTask(Runnable t, long time) {
+      task = t;
+      enqueueTime = time;
+    }
+  }
+
+  /**
+   * The view on the shared executor of a single simulation. Shutting down a
+   * client only affects the tasks of its simulation.
+   */
+  final class Client extends AbstractListeningExecutorService {
+    // all fields except realtime are guarded by the shared executor
+    final Deque<QueuedTask> queue;
+    final Set<Thread> running;
+    final StatsAccumulator queueingDelays;
+    volatile boolean realtime;
+    boolean isShutdown;
+
+    Client(boolean rt) {
+      queue = new ArrayDeque<>();
+      running = new HashSet<>();
+      queueingDelays = new StatsAccumulator();
+      realtime = rt;
+    }
+
+    void setRealtime(boolean rt) {
+      realtime = rt;
+    }
+
+    Stats getQueueingDelayStats() {
+      synchronized (SharedSolverExecutor.this) {
+        return queueingDelays.snapshot();
+      }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      synchronized (SharedSolverExecutor.this) {
+        if (isShutdown || SharedSolverExecutor.this.isShutdown) {
+          throw new RejectedExecutionException("Executor is shut down.");
+        }
+        queue.addLast(new QueuedTask(command, System.nanoTime()));
+        if (queue.size() == 1) {
+          ready.addLast(this);
+        }
+        SharedSolverExecutor.this.notifyAll();
+      }
+    }
+
+    @Override
+    public void shutdown() {
+      synchronized (SharedSolverExecutor.this) {
+        isShutdown = true;
+        SharedSolverExecutor.this.notifyAll();
+      }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      final List<Runnable> pending = new ArrayList<>();
+      synchronized (SharedSolverExecutor.this) {
+        isShutdown = true;
+        for (final QueuedTask t : queue) {
+          pending.add(t.task);
+        }
+        queue.clear();
+        ready.remove(this);
+        for (final Thread t : running) {
+          t.interrupt();
+        }
+        SharedSolverExecutor.this.notifyAll();
+      }
+      return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+      synchronized (SharedSolverExecutor.this) {
+        return isShutdown;
+      }
+    }
+
+    @Override
+    public boolean isTerminated() {
+      synchronized (SharedSolverExecutor.this) {
+        return isShutdown && queue.isEmpty() && running.isEmpty();
+      }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+        throws InterruptedException {
+      final long deadline = System.nanoTime() + unit.toNanos(timeout);
+      synchronized (SharedSolverExecutor.this) {
+        while (!isTerminated()) {
+          final long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            return false;
+          }
+          TimeUnit.NANOSECONDS.timedWait(SharedSolverExecutor.this, remaining);
+        }
+        return true;
+      }
+    }
+  }
+}
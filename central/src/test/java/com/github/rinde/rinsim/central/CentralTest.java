@@ -16,6 +16,7 @@
 package com.github.rinde.rinsim.central;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.truth.Truth.assertThat;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -23,6 +24,8 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.measure.unit.SI;
 
@@ -44,13 +47,25 @@ import com.github.rinde.rinsim.core.model.pdp.Parcel;
 import com.github.rinde.rinsim.core.model.pdp.TimeWindowPolicy.TimeWindowPolicies;
 import com.github.rinde.rinsim.core.model.pdp.VehicleDTO;
 import com.github.rinde.rinsim.core.model.road.RoadModelBuilders;
+import com.github.rinde.rinsim.core.model.time.NextEventTickListener;
+import com.github.rinde.rinsim.core.model.time.TimeLapse;
+import com.github.rinde.rinsim.core.model.time.TimeModel;
 import com.github.rinde.rinsim.experiment.Experiment;
 import com.github.rinde.rinsim.experiment.ExperimentResults;
 import com.github.rinde.rinsim.fsm.State;
 import com.github.rinde.rinsim.geom.Point;
+import com.github.rinde.rinsim.pdptw.common.AddDepotEvent;
+import com.github.rinde.rinsim.pdptw.common.AddParcelEvent;
+import com.github.rinde.rinsim.pdptw.common.AddVehicleEvent;
 import com.github.rinde.rinsim.pdptw.common.PDPRoadModel;
 import com.github.rinde.rinsim.pdptw.common.PDPTWTestUtil;
 import com.github.rinde.rinsim.pdptw.common.RouteFollowingVehicle;
+import com.github.rinde.rinsim.pdptw.common.StatisticsDTO;
+import com.github.rinde.rinsim.pdptw.common.StatsTracker;
+import com.github.rinde.rinsim.scenario.Scenario;
+import com.github.rinde.rinsim.scenario.ScenarioController;
+import com.github.rinde.rinsim.scenario.StopConditions;
+import com.github.rinde.rinsim.scenario.TimeOutEvent;
 import com.github.rinde.rinsim.scenario.gendreau06.Gendreau06Parser;
 import com.github.rinde.rinsim.scenario.gendreau06.Gendreau06Scenario;
 import com.github.rinde.rinsim.testutil.TestUtil;
@@ -181,6 +196,92 @@ public class CentralTest {
     assertEquals(v1.getServiceState(), v1.getState());
   }
 
+  /**
+   * Tests that a centrally controlled scenario skips the ticks in which all
+   * vehicles are idle and that the outcome equals that of a simulation in which
+   * all ticks are executed.
+   */
+  @Test
+  public void testNextEventTimeAdvance() {
+    final List<Long> allTicks = new ArrayList<>();
+    final StatisticsDTO expected =
+      runIdleScenario(TimeModel.builder(), allTicks);
+    final List<Long> ticks = new ArrayList<>();
+    final StatisticsDTO actual =
+      runIdleScenario(TimeModel.builder().withNextEventTimeAdvance(), ticks);
+
+    assertThat(expected.totalDeliveries).isEqualTo(2);
+    assertThat(expected.vehiclesAtDepot).isEqualTo(2);
+    assertThat(actual).isEqualTo(expected);
+    assertThat(allTicks).hasSize(4 * 60 * 60 + 1);
+    assertThat(ticks.size()).isLessThan(allTicks.size() / 2);
+    assertThat(allTicks).containsAllIn(ticks);
+  }
+
+  // two parcels that are announced two hours apart, in between the vehicles
+  // are idle
+  static StatisticsDTO runIdleScenario(TimeModel.Builder timeModel,
+      final List<Long> ticks) {
+    final long endTime = 4 * 60 * 60 * 1000L;
+    final VehicleDTO vehicle = VehicleDTO.builder()
+      .startPosition(new Point(5, 5))
+      .availabilityTimeWindow(TimeWindow.create(0, endTime))
+      .build();
+    final Scenario scenario = Scenario.builder()
+      .addModel(timeModel.withTickLength(1000L))
+      .addModel(PDPRoadModel.builder(RoadModelBuilders.plane())
+        .withAllowVehicleDiversion(false))
+      .addModel(DefaultPDPModel.builder())
+      .addEvent(AddDepotEvent.create(-1, new Point(5, 5)))
+      .addEvent(AddVehicleEvent.create(-1, vehicle))
+      .addEvent(AddVehicleEvent.create(-1, vehicle))
+      .addEvent(AddParcelEvent.create(Parcel
+        .builder(new Point(2, 2), new Point(8, 8))
+        .orderAnnounceTime(0L)
+        .pickupTimeWindow(TimeWindow.create(0L, endTime))
+        .deliveryTimeWindow(TimeWindow.create(0L, endTime))
+        .buildDTO()))
+      .addEvent(AddParcelEvent.create(Parcel
+        .builder(new Point(8, 2), new Point(2, 8))
+        .orderAnnounceTime(2 * 60 * 60 * 1000L)
+        .pickupTimeWindow(TimeWindow.create(2 * 60 * 60 * 1000L, endTime))
+        .deliveryTimeWindow(TimeWindow.create(2 * 60 * 60 * 1000L, endTime))
+        .buildDTO()))
+      .addEvent(TimeOutEvent.create(endTime))
+      .scenarioLength(endTime)
+      .setStopCondition(StopConditions.limitedTime(endTime))
+      .build();
+
+    final Simulator simulator = Simulator.builder()
+      .setRandomSeed(123L)
+      .addModel(ScenarioController.builder(scenario)
+        .withEventHandler(AddDepotEvent.class, AddDepotEvent.defaultHandler())
+        .withEventHandler(AddParcelEvent.class,
+          AddParcelEvent.defaultHandler())
+        .withEventHandler(AddVehicleEvent.class, Central.vehicleHandler())
+        .withEventHandler(TimeOutEvent.class, TimeOutEvent.ignoreHandler()))
+      .addModel(Central.builder(RandomSolver.supplier()))
+      .addModel(StatsTracker.builder())
+      .build();
+    simulator.addTickListener(new NextEventTickListener() {
+      @Override
+      public void tick(TimeLapse timeLapse) {
+        ticks.add(timeLapse.getStartTime());
+      }
+
+      @Override
+      public void afterTick(TimeLapse timeLapse) {}
+
+      @Override
+      public long getNextEventTime(long currentTime) {
+        return IDLE;
+      }
+    });
+    simulator.start();
+    return simulator.getModelProvider().getModel(StatsTracker.class)
+      .getStatistics();
+  }
+
   static Parcel createParcel(Point origin, Point dest) {
     return new Parcel(
       Parcel.builder(origin, dest)
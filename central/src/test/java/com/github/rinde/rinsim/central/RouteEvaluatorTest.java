@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.central;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.rinde.rinsim.central.RouteEvaluator.RouteCost;
+import com.github.rinde.rinsim.central.Solvers.ExtendedStats;
+import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.geom.GeomHeuristics;
+import com.github.rinde.rinsim.geom.Point;
+import com.github.rinde.rinsim.util.TimeWindow;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests for {@link RouteEvaluator}.
+ * @author Rinde van Lon
+ */
+public class RouteEvaluatorTest {
+  static final int NUM_VEHICLES = 6;
+  static final int PARCELS_PER_VEHICLE = 5;
+  static final long HALF_HOUR = 30 * 60 * 1000L;
+
+  RandomGenerator rng;
+  GlobalStateObject state;
+  ImmutableList<ImmutableList<Parcel>> routes;
+
+  /**
+   * Creates a random state in which the first vehicle is servicing the first
+   * parcel of its route.
+   */
+  @Before
+  public void setUp() {
+    rng = new MersenneTwister(123L);
+    final GlobalStateObjectBuilder builder =
+      GlobalStateObjectBuilder.globalBuilder()
+        .setPlaneTravelTimes(new Point(0, 0), new Point(10, 10));
+    final ImmutableList.Builder<ImmutableList<Parcel>> routesBuilder =
+      ImmutableList.builder();
+    for (int i = 0; i < NUM_VEHICLES; i++) {
+      final List<Parcel> route = new ArrayList<>();
+      for (int j = 0; j < PARCELS_PER_VEHICLE; j++) {
+        final long begin = rng.nextInt(4) * HALF_HOUR;
+        final Parcel p = Parcel.builder(randomPoint(), randomPoint())
+          .pickupTimeWindow(TimeWindow.create(begin, begin + HALF_HOUR))
+          .deliveryTimeWindow(
+            TimeWindow.create(begin + HALF_HOUR, begin + 2 * HALF_HOUR))
+          .serviceDuration(5 * 60 * 1000L)
+          .build();
+        builder.addAvailableParcel(p);
+        route.add(p);
+        route.add(p);
+      }
+      final GlobalStateObjectBuilder.VSOBuilder vehicle =
+        GlobalStateObjectBuilder.vehicleBuilder()
+          .setLocation(randomPoint());
+      if (i == 0) {
+        vehicle.setLocation(route.get(0).getPickupLocation())
+          .setDestination(route.get(0))
+          .setRemainingServiceTime(2 * 60 * 1000L);
+      }
+      builder.addVehicle(vehicle.build());
+      routesBuilder.add(ImmutableList.copyOf(route));
+    }
+    state = builder.buildUnsafe();
+    routes = routesBuilder.build();
+  }
+
+  /**
+   * Tests that the concurrent evaluation of all routes is equal to the
+   * evaluation of the routes one by one and to
+   * {@link Solvers#computeStats(GlobalStateObject, ImmutableList)}.
+   */
+  @Test
+  public void testEvaluateAll() {
+    final RouteEvaluator evaluator = RouteEvaluator.create(state);
+    final ImmutableList<RouteCost> all = evaluator.evaluateAll(routes);
+    final List<RouteCost> single = new ArrayList<>();
+    for (int i = 0; i < NUM_VEHICLES; i++) {
+      single.add(evaluator.evaluate(i, routes.get(i)));
+      assertThat(all.get(i).getVehicleIndex()).isEqualTo(i);
+      assertEqualCosts(single.get(i), all.get(i));
+    }
+    assertEqualStats(evaluator.computeStats(single),
+      evaluator.computeStats(all));
+    assertEqualStats(Solvers.computeStats(state, routes),
+      evaluator.computeStats(all));
+  }
+
+  /**
+   * Tests that the routes can be evaluated on a specified pool.
+   */
+  @Test
+  public void testEvaluateAllOnPool() {
+    final ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      final RouteEvaluator evaluator =
+        RouteEvaluator.create(state, GeomHeuristics.euclidean(), pool);
+      final ImmutableList<RouteCost> all = evaluator.evaluateAll(routes);
+      for (int i = 0; i < NUM_VEHICLES; i++) {
+        assertEqualCosts(evaluator.evaluate(i, routes.get(i)), all.get(i));
+      }
+      assertEqualStats(Solvers.computeStats(state, routes),
+        evaluator.computeStats(all));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Tests that short routes, which are evaluated in the calling thread, give
+   * the same results.
+   */
+  @Test
+  public void testEvaluateAllShortRoutes() {
+    final ImmutableList.Builder<ImmutableList<Parcel>> builder =
+      ImmutableList.builder();
+    for (final ImmutableList<Parcel> route : routes) {
+      builder.add(route.subList(0, 2));
+    }
+    final ImmutableList<ImmutableList<Parcel>> shortRoutes = builder.build();
+    final RouteEvaluator evaluator = RouteEvaluator.create(state);
+    final ImmutableList<RouteCost> all = evaluator.evaluateAll(shortRoutes);
+    for (int i = 0; i < NUM_VEHICLES; i++) {
+      assertEqualCosts(evaluator.evaluate(i, shortRoutes.get(i)), all.get(i));
+    }
+    assertEqualStats(Solvers.computeStats(state, shortRoutes),
+      evaluator.computeStats(all));
+  }
+
+  /**
+   * Tests that incremental evaluation of changed routes is equal to a full
+   * evaluation.
+   */
+  @Test
+  public void testIncrementalEvaluation() {
+    final RouteEvaluator evaluator = RouteEvaluator.create(state);
+    final List<RouteCost> costs =
+      new ArrayList<>(evaluator.evaluateAll(routes));
+    for (int k = 0; k < 200; k++) {
+      final int v = rng.nextInt(NUM_VEHICLES);
+      final List<Parcel> route = new ArrayList<>(costs.get(v).getRoute());
+      // the first parcel of the servicing vehicle is fixed
+      final int first = v == 0 ? 1 : 0;
+      Collections.swap(route, first + rng.nextInt(route.size() - first),
+        first + rng.nextInt(route.size() - first));
+      final ImmutableList<Parcel> newRoute = ImmutableList.copyOf(route);
+
+      final RouteCost incremental = evaluator.evaluate(costs.get(v), newRoute);
+      assertEqualCosts(evaluator.evaluate(v, newRoute), incremental);
+      costs.set(v, incremental);
+
+      final List<ImmutableList<Parcel>> currentRoutes = new ArrayList<>();
+      for (final RouteCost c : costs) {
+        currentRoutes.add(c.getRoute());
+      }
+      assertEqualStats(
+        Solvers.computeStats(state, ImmutableList.copyOf(currentRoutes)),
+        evaluator.computeStats(costs));
+    }
+  }
+
+  /**
+   * Tests that route costs can not be mixed between evaluators.
+   */
+  @Test
+  public void testForeignRouteCost() {
+    final RouteEvaluator evaluator = RouteEvaluator.create(state);
+    final RouteCost cost =
+      RouteEvaluator.create(state).evaluate(1, routes.get(1));
+    try {
+      evaluator.evaluate(cost, routes.get(1));
+      fail();
+    } catch (final IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("computed by this evaluator");
+    }
+
+    try {
+      evaluator.computeStats(ImmutableList.of(cost));
+      fail();
+    } catch (final IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("for every vehicle");
+    }
+  }
+
+  Point randomPoint() {
+    return new Point(rng.nextDouble() * 10, rng.nextDouble() * 10);
+  }
+
+  static void assertEqualCosts(RouteCost expected, RouteCost actual) {
+    assertThat(actual.getRoute()).isEqualTo(expected.getRoute());
+    assertThat(actual.getEndTime()).isEqualTo(expected.getEndTime());
+    assertThat(actual.getDistance()).isEqualTo(expected.getDistance());
+    assertThat(actual.getTravelTime()).isEqualTo(expected.getTravelTime());
+    assertThat(actual.getTardiness()).isEqualTo(expected.getTardiness());
+    assertThat(actual.getOverTime()).isEqualTo(expected.getOverTime());
+  }
+
+  static void assertEqualStats(ExtendedStats expected, ExtendedStats actual) {
+    assertThat(actual).isEqualTo(expected);
+    assertThat(actual.getArrivalTimes()).isEqualTo(expected.getArrivalTimes());
+  }
+}
@@ -32,6 +32,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
+import javax.measure.Measure;
 import javax.measure.unit.NonSI;
 import javax.measure.unit.SI;
 
@@ -280,6 +281,96 @@ public class SolversTest {
     assertTrue(state6.getAvailableParcels().isEmpty());
   }
 
+  /**
+   * Tests that the incrementally built states are equal to the states that are
+   * converted from scratch and that unchanged parts are shared.
+   */
+  @Test
+  public void incrementalConvertTest() {
+    final DependencyProvider dp = mock(DependencyProvider.class);
+    rm = PDPRoadModel.builder(
+      RoadModelBuilders.plane()
+        .withMaxSpeed(300d))
+      .withAllowVehicleDiversion(true)
+      .build(dp);
+    when(dp.get(RoadModel.class)).thenReturn(rm);
+    pm = DefaultPDPModel.builder()
+      .withTimeWindowPolicy(TimeWindowPolicies.TARDY_ALLOWED)
+      .build(dp);
+    mp = new TestModelProvider(new ArrayList<>(
+      Arrays.<Model<?>>asList(rm, pm)));
+    rm.registerModelProvider(mp);
+    PDPTWTestUtil.register(rm, pm, v1, v2, p1);
+
+    final Clock clock = mock(Clock.class);
+    when(clock.getCurrentTime()).thenReturn(0L);
+    when(clock.getTimeUnit()).thenReturn(NonSI.MINUTE);
+    final SimulationConverter handle = Solvers.converterBuilder()
+      .with(mp)
+      .with(clock)
+      .build();
+    final SolveArgs args = SolveArgs.create().useAllParcels()
+      .noCurrentRoutes();
+
+    final GlobalStateObject s1 = handle.convert(args);
+    assertEqualStates(s1);
+    final GlobalStateObject s2 = handle.convert(args);
+    assertEqualStates(s2);
+    assertSame(s1.getVehicles().get(0), s2.getVehicles().get(0));
+    assertSame(s1.getVehicles().get(1), s2.getVehicles().get(1));
+    assertSame(s1.getAvailableParcels(), s2.getAvailableParcels());
+
+    // only the moved vehicle is converted again
+    rm.moveTo(v1, p1, create(NonSI.HOUR, 0L, 1L));
+    final GlobalStateObject s3 = handle.convert(args);
+    assertEqualStates(s3);
+    assertThat(s3.getVehicles().get(0)).isNotSameAs(s2.getVehicles().get(0));
+    assertSame(s2.getVehicles().get(1), s3.getVehicles().get(1));
+    assertSame(s2.getAvailableParcels(), s3.getAvailableParcels());
+
+    PDPTWTestUtil.register(rm, pm, p2);
+    final GlobalStateObject s4 = handle.convert(args);
+    assertEqualStates(s4);
+    assertThat(s4.getAvailableParcels()).containsExactly(p1, p2).inOrder();
+
+    rm.moveTo(v1, p1, create(NonSI.HOUR, 0, 40));
+    pm.pickup(v1, p1, create(NonSI.HOUR, 0, 1));
+    assertEquals(VehicleState.PICKING_UP, pm.getVehicleState(v1));
+    final GlobalStateObject s5 = handle.convert(args);
+    assertEqualStates(s5);
+    assertSame(p1, s5.getVehicles().get(0).getDestination().get());
+    assertSame(s4.getVehicles().get(1), s5.getVehicles().get(1));
+
+    final ImmutableList<ImmutableList<Parcel>> routes = ImmutableList.of(
+      ImmutableList.of(p1), ImmutableList.<Parcel>of());
+    final GlobalStateObject s6 = handle.convert(SolveArgs.create()
+      .useAllParcels().useCurrentRoutes(routes));
+    assertEqualStates(s6);
+    assertEquals(routes.get(0), s6.getVehicles().get(0).getRoute().get());
+  }
+
+  void assertEqualStates(GlobalStateObject actual) {
+    final GlobalStateObject expected = Solvers.convert(rm, pm,
+      rm.getObjectsOfType(Vehicle.class),
+      ImmutableSet.copyOf(pm.getParcels(ParcelState.ANNOUNCED,
+        ParcelState.AVAILABLE, ParcelState.PICKING_UP)),
+      Measure.valueOf(actual.getTime(), actual.getTimeUnit()),
+      Optional.<ImmutableList<ImmutableList<Parcel>>>absent(), false);
+    assertThat(actual.getAvailableParcels())
+      .containsExactlyElementsIn(expected.getAvailableParcels()).inOrder();
+    assertEquals(expected.getVehicles().size(), actual.getVehicles().size());
+    for (int i = 0; i < expected.getVehicles().size(); i++) {
+      final VehicleStateObject e = expected.getVehicles().get(i);
+      final VehicleStateObject a = actual.getVehicles().get(i);
+      assertEquals(e.getDto(), a.getDto());
+      assertEquals(e.getLocation(), a.getLocation());
+      assertEquals(e.getConnection(), a.getConnection());
+      assertEquals(e.getContents(), a.getContents());
+      assertEquals(e.getRemainingServiceTime(), a.getRemainingServiceTime());
+      assertEquals(e.getDestination(), a.getDestination());
+    }
+  }
+
   /**
    * Tests whether the
    * {@link Solvers#computeStats(GlobalStateObject, ImmutableList)} method
@@ -25,6 +25,7 @@ import static javax.measure.unit.SI.MILLI;
 import static javax.measure.unit.SI.SECOND;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.math.RoundingMode;
 
@@ -41,6 +42,7 @@ import com.github.rinde.rinsim.central.Solvers;
 import com.github.rinde.rinsim.central.Solvers.SimulationConverter;
 import com.github.rinde.rinsim.central.Solvers.SolveArgs;
 import com.github.rinde.rinsim.central.arrays.ArraysSolvers.ArraysObject;
+import com.github.rinde.rinsim.central.arrays.ArraysSolvers.MVArraysObject;
 import com.github.rinde.rinsim.core.Simulator;
 import com.github.rinde.rinsim.core.model.pdp.DefaultPDPModel;
 import com.github.rinde.rinsim.core.model.pdp.Depot;
@@ -48,10 +50,19 @@ import com.github.rinde.rinsim.core.model.pdp.Parcel;
 import com.github.rinde.rinsim.core.model.pdp.TimeWindowPolicy.TimeWindowPolicies;
 import com.github.rinde.rinsim.core.model.pdp.VehicleDTO;
 import com.github.rinde.rinsim.core.model.road.RoadModelBuilders;
+import com.github.rinde.rinsim.core.model.road.RoadModelSnapshot;
+import com.github.rinde.rinsim.geom.Connection;
+import com.github.rinde.rinsim.geom.GeomHeuristic;
+import com.github.rinde.rinsim.geom.GeomHeuristics;
+import com.github.rinde.rinsim.geom.Graph;
+import com.github.rinde.rinsim.geom.Graphs;
+import com.github.rinde.rinsim.geom.LengthData;
 import com.github.rinde.rinsim.geom.Point;
+import com.github.rinde.rinsim.geom.TableGraph;
 import com.github.rinde.rinsim.pdptw.common.PDPRoadModel;
 import com.github.rinde.rinsim.pdptw.common.RouteFollowingVehicle;
 import com.github.rinde.rinsim.util.TimeWindow;
+import com.google.common.math.DoubleMath;
 
 /**
  * @author Rinde van Lon
@@ -198,4 +209,95 @@ public class ArraysSolversTest {
 
     assertArrayEquals(new int[][] {{0, 1}, {0, 2}}, inventories);
   }
+
+  /**
+   * Tests that the travel times of a state on a graph are computed using the
+   * paths in the graph, including the time needed for a vehicle to exit its
+   * current connection.
+   */
+  @Test
+  public void testMultiVehicleArraysOnGraph() {
+    final Point a = new Point(0, 0);
+    final Point b = new Point(5, 0);
+    final Point c = new Point(5, 5);
+    final Point d = new Point(0, 5);
+    final Graph<LengthData> graph = new TableGraph<>();
+    Graphs.addBiPath(graph, a, b, c, d, a);
+
+    final Simulator sim = Simulator.builder()
+      .addModel(DefaultPDPModel.builder())
+      .addModel(PDPRoadModel.builder(RoadModelBuilders.staticGraph(graph))
+        .withAllowVehicleDiversion(false))
+      .build();
+    final RouteFollowingVehicle rfv = new RouteFollowingVehicle(VehicleDTO
+      .builder()
+      .startPosition(a)
+      .speed(50d)
+      .capacity(10)
+      .availabilityTimeWindow(TimeWindow.create(0, 100000000))
+      .build(),
+      false);
+    final Parcel parcel = Parcel.builder(c, d)
+      .pickupTimeWindow(TimeWindow.create(0, 10000000))
+      .deliveryTimeWindow(TimeWindow.create(0, 10000000))
+      .orderAnnounceTime(0L)
+      .pickupDuration(5L)
+      .deliveryDuration(5L)
+      .build();
+    sim.register(new Depot(a));
+    sim.register(rfv);
+    sim.register(parcel);
+    rfv.setRoute(asList(parcel, parcel));
+    // the vehicle starts moving in the second tick
+    sim.tick();
+    sim.tick();
+
+    final GlobalStateObject state = Solvers.converterBuilder().with(sim)
+      .build().convert(SolveArgs.create().noCurrentRoutes().useAllParcels());
+    final GlobalStateObject.VehicleStateObject vso =
+      state.getVehicles().get(0);
+    assertTrue(vso.getConnection().isPresent());
+
+    final GeomHeuristic h = GeomHeuristics.euclidean();
+    final MVArraysObject arrays =
+      ArraysSolvers.toMultiVehicleArrays(state, SECOND, h);
+
+    final RoadModelSnapshot snapshot = state.getRoadModelSnapshot();
+    final Measure<Double, Velocity> speed =
+      Measure.valueOf(vso.getDto().getSpeed(), state.getSpeedUnit());
+    final Connection<?> conn = vso.getConnection().get();
+    final double exit = snapshot.getPathTo(conn.from(), conn.to(), SECOND,
+      speed, h).getTravelTime() * Point.distance(vso.getLocation(), conn.to())
+      / Point.distance(conn.from(), conn.to());
+
+    final int n = arrays.location2index.size();
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        if (i == j) {
+          continue;
+        }
+        Point from = arrays.location2index.get(i);
+        double expected = 0d;
+        if (i == 0) {
+          from = conn.to();
+          expected = exit;
+        }
+        // the end of the connection is used as the destination of the
+        // current location of the vehicle
+        Point to = arrays.location2index.get(j);
+        if (j == 0) {
+          to = conn.to();
+        }
+        if (!from.equals(to)) {
+          expected += snapshot.getPathTo(from, to, SECOND, speed, h)
+            .getTravelTime();
+        }
+        assertEquals(DoubleMath.roundToInt(expected, RoundingMode.CEILING),
+          arrays.travelTime[i][j]);
+      }
+    }
+    final int dest = arrays.parcel2index.get(parcel).pickupIndex;
+    assertEquals(arrays.travelTime[0][dest],
+      arrays.vehicleTravelTimes[0][dest]);
+  }
 }
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.central.rt;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.rinde.rinsim.central.GlobalStateObject;
+import com.github.rinde.rinsim.central.GlobalStateObjectBuilder;
+import com.github.rinde.rinsim.central.Solver;
+import com.github.rinde.rinsim.central.Solvers;
+import com.github.rinde.rinsim.central.rt.PortfolioSolverTest.FakeScheduler;
+import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.geom.Point;
+import com.github.rinde.rinsim.pdptw.common.ObjectiveFunction;
+import com.github.rinde.rinsim.scenario.gendreau06.Gendreau06ObjectiveFunction;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Tests for {@link MeasuringRealtimeSolver}.
+ * @author Rinde van Lon
+ */
+public class MeasuringRealtimeSolverTest {
+  @SuppressWarnings("null")
+  ListeningExecutorService executor;
+  @SuppressWarnings("null")
+  FakeScheduler scheduler;
+  @SuppressWarnings("null")
+  GlobalStateObject state;
+  @SuppressWarnings("null")
+  ImmutableList<ImmutableList<Parcel>> schedule;
+  @SuppressWarnings("null")
+  ObjectiveFunction objFunc;
+
+  /**
+   * Creates a state with one vehicle and one parcel.
+   */
+  @Before
+  public void setUp() {
+    executor = MoreExecutors.listeningDecorator(
+      Executors.newFixedThreadPool(2));
+    scheduler = new FakeScheduler(executor);
+    objFunc = Gendreau06ObjectiveFunction.instance();
+
+    final Parcel a = Parcel.builder(new Point(1, 1), new Point(2, 2)).build();
+    state = GlobalStateObjectBuilder.globalBuilder()
+      .addAvailableParcels(a)
+      .addVehicle(GlobalStateObjectBuilder.vehicleBuilder()
+        .setLocation(new Point(0, 0))
+        .build())
+      .setPlaneTravelTimes(new Point(0, 0), new Point(10, 10))
+      .build();
+    schedule = ImmutableList.of(ImmutableList.of(a, a));
+  }
+
+  /**
+   * Shuts down the executor.
+   */
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Tests the trace of a run that completes normally.
+   */
+  @Test
+  public void testCompletedRun() throws InterruptedException {
+    final MeasurableRealtimeSolver solver = RtStAdapters.measure(
+      RtStAdapters.toRealtime(
+        PortfolioSolverTest.solver(PortfolioSolverTest.SLOW, schedule)
+          .get(0L)),
+      objFunc);
+    solver.init(scheduler);
+    solver.problemChanged(state);
+    assertThat(scheduler.done.await(PortfolioSolverTest.TIMEOUT,
+      TimeUnit.SECONDS)).isTrue();
+
+    assertThat(scheduler.schedules).containsExactly(schedule);
+    assertThat(solver.getTraces()).hasSize(1);
+    final AnytimeSolverTrace trace = solver.getTraces().get(0);
+    assertThat(trace.getSnapshot()).isSameAs(state);
+    assertThat(trace.getSchedules()).hasSize(1);
+    assertThat(trace.getSchedules().get(0).getCost()).isEqualTo(
+      objFunc.computeCost(Solvers.computeStats(state, schedule)));
+    assertThat(trace.getFirstScheduleLatencyNs().get())
+      .isAtLeast(TimeUnit.MILLISECONDS.toNanos(PortfolioSolverTest.SLOW));
+    assertThat(trace.getStopTimeNs().get())
+      .isAtLeast(trace.getFirstScheduleLatencyNs().get());
+    assertThat(trace.getCancelTimeNs().isPresent()).isFalse();
+    assertThat(trace.getCancelLatencyNs().isPresent()).isFalse();
+
+    assertThat(solver.getTimeMeasurements()).hasSize(1);
+    assertThat(solver.getTimeMeasurements().get(0).durationNs())
+      .isEqualTo(trace.getStopTimeNs().get());
+  }
+
+  /**
+   * Tests the traces of runs that are cancelled, either explicitly or by a
+   * newer snapshot.
+   */
+  @Test
+  public void testCancelledRuns() throws InterruptedException {
+    final MeasurableRealtimeSolver solver = RtStAdapters.measure(
+      RtStAdapters.toRealtime(
+        PortfolioSolverTest.solver(PortfolioSolverTest.VERY_SLOW, schedule)
+          .get(0L)),
+      objFunc);
+    solver.init(scheduler);
+    solver.problemChanged(state);
+    solver.problemChanged(state);
+    assertThat(solver.isComputing()).isTrue();
+    solver.cancel();
+    assertThat(solver.isComputing()).isFalse();
+    awaitStopped(solver);
+
+    assertThat(scheduler.schedules).isEmpty();
+    assertThat(scheduler.doneCount.get()).isEqualTo(2);
+    assertThat(solver.getTraces()).hasSize(2);
+    for (final AnytimeSolverTrace trace : solver.getTraces()) {
+      assertThat(trace.getSchedules()).isEmpty();
+      assertThat(trace.getFirstScheduleLatencyNs().isPresent()).isFalse();
+      assertThat(trace.getCancelLatencyNs().get()).isAtLeast(0L);
+      assertThat(trace.getStopTimeNs().get())
+        .isLessThan(TimeUnit.MILLISECONDS.toNanos(
+          PortfolioSolverTest.VERY_SLOW));
+    }
+    assertThat(solver.getTimeMeasurements()).isEmpty();
+  }
+
+  /**
+   * Tests that the cancel latency includes the time that a solver needs to
+   * respond to the cancellation.
+   */
+  @Test
+  public void testUnresponsiveSolver() throws InterruptedException {
+    final CountDownLatch started = new CountDownLatch(1);
+    final MeasurableRealtimeSolver solver = RtStAdapters.measure(
+      RtStAdapters.toRealtime(new Solver() {
+        @Override
+        public ImmutableList<ImmutableList<Parcel>> solve(
+            GlobalStateObject s) {
+          started.countDown();
+          final long end = System.nanoTime()
+            + TimeUnit.MILLISECONDS.toNanos(PortfolioSolverTest.SLOW);
+          // ignores interrupts until it is done
+          while (System.nanoTime() < end) {
+            Thread.yield();
+          }
+          return schedule;
+        }
+      }), objFunc);
+    solver.init(scheduler);
+    solver.problemChanged(state);
+    assertThat(started.await(PortfolioSolverTest.TIMEOUT, TimeUnit.SECONDS))
+      .isTrue();
+    solver.cancel();
+    assertThat(scheduler.doneCount.get()).isEqualTo(1);
+    awaitStopped(solver);
+
+    final AnytimeSolverTrace trace = solver.getTraces().get(0);
+    assertThat(trace.getCancelLatencyNs().get()).isAtLeast(
+      TimeUnit.MILLISECONDS.toNanos(PortfolioSolverTest.SLOW / 2));
+    assertThat(scheduler.schedules).isEmpty();
+  }
+
+  /**
+   * Tests that a run that is cancelled by a new snapshot and that is never
+   * stopped by the solver does not affect the trace of the new run.
+   */
+  @Test
+  public void testCancelledRunWithoutDone() throws InterruptedException {
+    final MeasurableRealtimeSolver solver = RtStAdapters.measure(
+      new ForgetfulSolver(schedule), objFunc);
+    solver.init(scheduler);
+    final GlobalStateObject newer = state.withSingleVehicle(0);
+    solver.problemChanged(state);
+    solver.problemChanged(newer);
+    assertThat(scheduler.done.await(PortfolioSolverTest.TIMEOUT,
+      TimeUnit.SECONDS)).isTrue();
+    assertThat(scheduler.doneCount.get()).isEqualTo(1);
+
+    assertThat(solver.getTraces()).hasSize(2);
+    final AnytimeSolverTrace cancelled = solver.getTraces().get(0);
+    assertThat(cancelled.getSnapshot()).isSameAs(state);
+    assertThat(cancelled.getCancelTimeNs().isPresent()).isTrue();
+    assertThat(cancelled.getStopTimeNs().isPresent()).isFalse();
+    assertThat(cancelled.getSchedules()).isEmpty();
+
+    final AnytimeSolverTrace completed = solver.getTraces().get(1);
+    assertThat(completed.getSnapshot()).isSameAs(newer);
+    assertThat(completed.getCancelTimeNs().isPresent()).isFalse();
+    assertThat(completed.getSchedules()).hasSize(1);
+    assertThat(completed.getStopTimeNs().get())
+      .isAtLeast(TimeUnit.MILLISECONDS.toNanos(PortfolioSolverTest.SLOW));
+
+    assertThat(solver.getTimeMeasurements()).hasSize(1);
+    assertThat(solver.getTimeMeasurements().get(0).input()).isSameAs(newer);
+  }
+
+  static void awaitStopped(MeasurableRealtimeSolver solver)
+      throws InterruptedException {
+    final long deadline = System.nanoTime()
+      + TimeUnit.SECONDS.toNanos(PortfolioSolverTest.TIMEOUT);
+    while (System.nanoTime() < deadline) {
+      boolean stopped = true;
+      for (final AnytimeSolverTrace trace : solver.getTraces()) {
+        stopped &= trace.getStopTimeNs().isPresent();
+      }
+      if (stopped) {
+        return;
+      }
+      Thread.sleep(1L);
+    }
+    fail("The runs did not stop in time.");
+  }
+
+  /**
+   * Solver that does not call {@link Scheduler#doneForNow()} when its
+   * computation is cancelled.
+   */
+  static class ForgetfulSolver implements RealtimeSolver {
+    final ImmutableList<ImmutableList<Parcel>> schedule;
+    Optional<Scheduler> scheduler;
+    Optional<Future<?>> future;
+
+    ForgetfulSolver(ImmutableList<ImmutableList<Parcel>> sch) {
+      schedule = sch;
+      scheduler = Optional.absent();
+      future = Optional.absent();
+    }
+
+    @Override
+    public void init(Scheduler s) {
+      scheduler = Optional.of(s);
+    }
+
+    @Override
+    public void problemChanged(final GlobalStateObject snapshot) {
+      cancel();
+      future = Optional.<Future<?>>of(
+        scheduler.get().getSharedExecutor().submit(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              Thread.sleep(PortfolioSolverTest.SLOW);
+            } catch (final InterruptedException e) {
+              return;
+            }
+            scheduler.get().updateSchedule(snapshot, schedule);
+            scheduler.get().doneForNow();
+          }
+        }));
+    }
+
+    @Override
+    public void receiveSnapshot(GlobalStateObject snapshot) {}
+
+    @Override
+    public void cancel() {
+      if (future.isPresent()) {
+        future.get().cancel(true);
+      }
+    }
+
+    @Override
+    public boolean isComputing() {
+      return future.isPresent() && !future.get().isDone();
+    }
+  }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.central.rt;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.rinde.rinsim.central.GlobalStateObject;
+import com.github.rinde.rinsim.central.GlobalStateObjectBuilder;
+import com.github.rinde.rinsim.central.Solver;
+import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.geom.Point;
+import com.github.rinde.rinsim.pdptw.common.ObjectiveFunction;
+import com.github.rinde.rinsim.scenario.gendreau06.Gendreau06ObjectiveFunction;
+import com.github.rinde.rinsim.util.StochasticSupplier;
+import com.github.rinde.rinsim.util.StochasticSuppliers;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Tests for {@link PortfolioSolver}.
+ * @author Rinde van Lon
+ */
+public class PortfolioSolverTest {
+  static final long TIMEOUT = 10L;
+  static final long SLOW = 200L;
+  static final long VERY_SLOW = 10000L;
+
+  @SuppressWarnings("null")
+  ListeningExecutorService executor;
+  @SuppressWarnings("null")
+  FakeScheduler scheduler;
+  @SuppressWarnings("null")
+  GlobalStateObject state;
+  @SuppressWarnings("null")
+  ImmutableList<ImmutableList<Parcel>> goodSchedule;
+  @SuppressWarnings("null")
+  ImmutableList<ImmutableList<Parcel>> badSchedule;
+  @SuppressWarnings("null")
+  ObjectiveFunction objFunc;
+
+  /**
+   * Creates a state with one vehicle and two parcels and two schedules of
+   * which one is clearly better than the other.
+   */
+  @Before
+  public void setUp() {
+    executor = MoreExecutors.listeningDecorator(
+      Executors.newFixedThreadPool(4));
+    scheduler = new FakeScheduler(executor);
+    objFunc = Gendreau06ObjectiveFunction.instance();
+
+    final Parcel a = Parcel.builder(new Point(1, 1), new Point(2, 2)).build();
+    final Parcel b = Parcel.builder(new Point(2, 2), new Point(3, 3)).build();
+    state = GlobalStateObjectBuilder.globalBuilder()
+      .addAvailableParcels(a, b)
+      .addVehicle(GlobalStateObjectBuilder.vehicleBuilder()
+        .setLocation(new Point(0, 0))
+        .build())
+      .setPlaneTravelTimes(new Point(0, 0), new Point(10, 10))
+      .build();
+    goodSchedule = ImmutableList.of(ImmutableList.of(a, a, b, b));
+    badSchedule = ImmutableList.of(ImmutableList.of(b, a, b, a));
+  }
+
+  /**
+   * Shuts down the executor.
+   */
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Tests that schedules are only published when they improve the best
+   * schedule so far.
+   */
+  @Test
+  public void testArbiter() throws InterruptedException {
+    // the bad schedule is found first, followed by the good schedule
+    RealtimeSolver portfolio = PortfolioSolver.builder(objFunc)
+      .addSolver(solver(0L, badSchedule))
+      .addSolver(solver(SLOW, goodSchedule))
+      .get(123L);
+    solve(portfolio);
+    assertThat(scheduler.schedules)
+      .containsExactly(badSchedule, goodSchedule).inOrder();
+    assertThat(scheduler.doneCount.get()).isEqualTo(1);
+
+    // the good schedule is found first, the bad schedule is ignored
+    scheduler = new FakeScheduler(executor);
+    portfolio = PortfolioSolver.builder(objFunc)
+      .addSolver(solver(SLOW, badSchedule))
+      .addSolver(solver(0L, goodSchedule))
+      .get(123L);
+    solve(portfolio);
+    assertThat(scheduler.schedules).containsExactly(goodSchedule);
+    assertThat(scheduler.doneCount.get()).isEqualTo(1);
+    assertThat(portfolio.isComputing()).isFalse();
+  }
+
+  /**
+   * Tests that members that are still computing when the time limit expires
+   * are cancelled.
+   */
+  @Test
+  public void testTimeLimit() throws InterruptedException {
+    final RealtimeSolver portfolio = PortfolioSolver.builder(objFunc)
+      .addSolver(solver(0L, badSchedule))
+      .addSolver(solver(VERY_SLOW, goodSchedule))
+      .withTimeLimit(SLOW)
+      .get(123L);
+    final long start = System.nanoTime();
+    solve(portfolio);
+    assertThat(System.nanoTime() - start)
+      .isLessThan(TimeUnit.MILLISECONDS.toNanos(VERY_SLOW));
+    assertThat(scheduler.schedules).containsExactly(badSchedule);
+    assertThat(scheduler.doneCount.get()).isEqualTo(1);
+  }
+
+  /**
+   * Tests that a member that reports to be done more than once for a snapshot
+   * is counted once and that schedules for an older snapshot with the same
+   * time are ignored.
+   */
+  @Test
+  public void testManualMember() {
+    final ManualSolver member = new ManualSolver();
+    final RealtimeSolver portfolio = PortfolioSolver.builder(objFunc)
+      .addRealtimeSolver(StochasticSuppliers.constant(member))
+      .get(123L);
+    portfolio.init(scheduler);
+    final GlobalStateObject newer = state.withSingleVehicle(0);
+    portfolio.problemChanged(state);
+    portfolio.problemChanged(newer);
+    assertThat(newer.getTime()).isEqualTo(state.getTime());
+
+    member.scheduler.get().updateSchedule(state, badSchedule);
+    assertThat(scheduler.schedules).isEmpty();
+    member.scheduler.get().updateSchedule(newer, goodSchedule);
+    assertThat(scheduler.schedules).containsExactly(goodSchedule);
+
+    final GlobalStateObject received = state.withSingleVehicle(0);
+    portfolio.receiveSnapshot(received);
+    member.scheduler.get().updateSchedule(newer, badSchedule);
+    member.scheduler.get().updateSchedule(received, badSchedule);
+    assertThat(scheduler.schedules).containsExactly(goodSchedule);
+
+    member.scheduler.get().doneForNow();
+    assertThat(scheduler.doneCount.get()).isEqualTo(0);
+    member.scheduler.get().doneForNow();
+    assertThat(scheduler.doneCount.get()).isEqualTo(2);
+    // a repeated call, e.g. caused by a cancellation, is ignored
+    member.scheduler.get().doneForNow();
+    assertThat(scheduler.doneCount.get()).isEqualTo(2);
+  }
+
+  /**
+   * Tests that an infeasible schedule of a member is ignored and that the
+   * scheduler is not called while the portfolio is locked.
+   */
+  @Test
+  public void testPublication() throws InterruptedException {
+    final ManualSolver member = new ManualSolver();
+    final RealtimeSolver portfolio = PortfolioSolver.builder(objFunc)
+      .addRealtimeSolver(StochasticSuppliers.constant(member))
+      .get(123L);
+    final AtomicInteger receivedSnapshots = new AtomicInteger();
+    scheduler = new FakeScheduler(executor) {
+      @Override
+      public void updateSchedule(GlobalStateObject s,
+          ImmutableList<ImmutableList<Parcel>> routes) {
+        // calls back into the portfolio from another thread
+        final Thread t = new Thread() {
+          @Override
+          public void run() {
+            portfolio.receiveSnapshot(state);
+            receivedSnapshots.incrementAndGet();
+          }
+        };
+        t.start();
+        try {
+          t.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        } catch (final InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        super.updateSchedule(s, routes);
+      }
+    };
+    portfolio.init(scheduler);
+    portfolio.problemChanged(state);
+
+    member.scheduler.get().updateSchedule(state,
+      ImmutableList.<ImmutableList<Parcel>>of());
+    assertThat(scheduler.schedules).isEmpty();
+
+    member.scheduler.get().updateSchedule(state, goodSchedule);
+    assertThat(receivedSnapshots.get()).isEqualTo(1);
+    assertThat(scheduler.schedules).containsExactly(goodSchedule);
+    member.scheduler.get().doneForNow();
+    assertThat(scheduler.doneCount.get()).isEqualTo(1);
+  }
+
+  /**
+   * Tests the validation of the builder.
+   */
+  @Test
+  public void testBuilder() {
+    try {
+      PortfolioSolver.builder(objFunc).get(123L);
+      fail();
+    } catch (final IllegalStateException e) {
+      assertThat(e.getMessage()).contains("at least one member");
+    }
+    try {
+      PortfolioSolver.builder(objFunc).withTimeLimit(0L);
+      fail();
+    } catch (final IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("must be positive");
+    }
+    assertThat(PortfolioSolver.builder(objFunc)
+      .addSolver(solver(0L, goodSchedule))
+      .addSolver(solver(0L, badSchedule))
+      .getMembers()).hasSize(2);
+  }
+
+  void solve(RealtimeSolver portfolio) throws InterruptedException {
+    portfolio.init(scheduler);
+    portfolio.problemChanged(state);
+    assertThat(scheduler.done.await(TIMEOUT, TimeUnit.SECONDS)).isTrue();
+  }
+
+  static StochasticSupplier<Solver> solver(long sleep,
+      final ImmutableList<ImmutableList<Parcel>> schedule) {
+    return StochasticSuppliers.constant(SleepySolver.create(sleep,
+      new Solver() {
+        @Override
+        public ImmutableList<ImmutableList<Parcel>> solve(
+            GlobalStateObject s) {
+          return schedule;
+        }
+      }));
+  }
+
+  static class ManualSolver implements RealtimeSolver {
+    Optional<Scheduler> scheduler;
+
+    ManualSolver() {
+      scheduler = Optional.absent();
+    }
+
+    @Override
+    public void init(Scheduler s) {
+      scheduler = Optional.of(s);
+    }
+
+    @Override
+    public void problemChanged(GlobalStateObject snapshot) {}
+
+    @Override
+    public void receiveSnapshot(GlobalStateObject snapshot) {}
+
+    @Override
+    public void cancel() {}
+
+    @Override
+    public boolean isComputing() {
+      return false;
+    }
+  }
+
+  static class FakeScheduler extends Scheduler {
+    final ListeningExecutorService executor;
+    final List<ImmutableList<ImmutableList<Parcel>>> schedules;
+    final AtomicInteger doneCount;
+    final CountDownLatch done;
+
+    FakeScheduler(ListeningExecutorService ex) {
+      executor = ex;
+      schedules = Collections.synchronizedList(
+        new ArrayList<ImmutableList<ImmutableList<Parcel>>>());
+      doneCount = new AtomicInteger();
+      done = new CountDownLatch(1);
+    }
+
+    @Override
+    public void updateSchedule(GlobalStateObject s,
+        ImmutableList<ImmutableList<Parcel>> routes) {
+      schedules.add(routes);
+    }
+
+    @Override
+    public ImmutableList<ImmutableList<Parcel>> getCurrentSchedule() {
+      return schedules.get(schedules.size() - 1);
+    }
+
+    @Override
+    public void doneForNow() {
+      doneCount.incrementAndGet();
+      done.countDown();
+    }
+
+    @Override
+    public ListeningExecutorService getSharedExecutor() {
+      return executor;
+    }
+
+    @Override
+    public void reportException(Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+}
@@ -57,20 +57,7 @@ public class RtCentralTest {
    */
   @Test
   public void testConfig() {
-    final List<TimedEvent> events = Gendreau06Parser.parse(
-      new File("../scenario-util/files/test/gendreau06/req_rapide_1_240_24"))
-      .getEvents().subList(0, 20);
-
-    final Scenario s = Scenario.builder(Gendreau06Parser.parse(
-      new File("../scenario-util/files/test/gendreau06/req_rapide_1_240_24")))
-      .removeModelsOfType(TimeModel.AbstractBuilder.class)
-      .addModel(TimeModel.builder()
-        .withRealTime()
-        .withStartInClockMode(ClockMode.SIMULATED))
-      .clearEvents()
-      .addEvents(events)
-      .addEvent(TimeOutEvent.create(3 * 60 * 60 * 1000))
-      .build();
+    final Scenario s = createScenario();
 
     final ExperimentResults er = Experiment.builder()
       .addScenario(s)
@@ -87,6 +74,47 @@ public class RtCentralTest {
     assertThat(objVal).isWithin(0.0001).of(495.4718);
   }
 
+  /**
+   * Tests a simulation with a portfolio of solvers.
+   */
+  @Test
+  public void testPortfolio() {
+    final ExperimentResults er = Experiment.builder()
+      .addScenario(createScenario())
+      .withThreads(1)
+      .addConfiguration(RtCentral.solverConfiguration(
+        PortfolioSolver.builder(Gendreau06ObjectiveFunction.instance())
+          .addSolver(RandomSolver.supplier())
+          .addSolver(RandomSolver.supplier()),
+        ""))
+      .usePostProcessor(PostProcessors
+        .statisticsPostProcessor(Gendreau06ObjectiveFunction.instance()))
+      .perform();
+
+    final StatisticsDTO stats =
+      (StatisticsDTO) er.getResults().asList().get(0).getResultObject();
+    assertThat(Gendreau06ObjectiveFunction.instance().isValidResult(stats))
+      .isTrue();
+  }
+
+  static Scenario createScenario() {
+    final List<TimedEvent> events = Gendreau06Parser.parse(
+      new File("../scenario-util/files/test/gendreau06/req_rapide_1_240_24"))
+      .getEvents().subList(0, 20);
+
+    final Scenario s = Scenario.builder(Gendreau06Parser.parse(
+      new File("../scenario-util/files/test/gendreau06/req_rapide_1_240_24")))
+      .removeModelsOfType(TimeModel.AbstractBuilder.class)
+      .addModel(TimeModel.builder()
+        .withRealTime()
+        .withStartInClockMode(ClockMode.SIMULATED))
+      .clearEvents()
+      .addEvents(events)
+      .addEvent(TimeOutEvent.create(3 * 60 * 60 * 1000))
+      .build();
+    return s;
+  }
+
   /**
    * Tests that only correct vehicles are allowed.
    */
@@ -37,10 +37,12 @@ import com.github.rinde.rinsim.central.Solver;
 import com.github.rinde.rinsim.central.Solvers.SolveArgs;
 import com.github.rinde.rinsim.central.rt.RtSimSolver.EventType;
 import com.github.rinde.rinsim.central.rt.RtSolverModel.Mode;
+import com.github.rinde.rinsim.central.rt.RtSolverModel.RtSolverModelAPI;
 import com.github.rinde.rinsim.core.model.DependencyProvider;
 import com.github.rinde.rinsim.core.model.FakeDependencyProvider;
 import com.github.rinde.rinsim.core.model.pdp.DefaultPDPModel;
 import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.core.model.road.GenericRoadModel.RoadEventType;
 import com.github.rinde.rinsim.core.model.road.RoadModelSnapshot;
 import com.github.rinde.rinsim.core.model.road.RoadModelSnapshotTestUtil;
 import com.github.rinde.rinsim.core.model.time.RealtimeClockController;
@@ -49,6 +51,7 @@ import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.core.model.time.TimeLapseFactory;
 import com.github.rinde.rinsim.core.model.time.TimeModel;
 import com.github.rinde.rinsim.event.Event;
+import com.github.rinde.rinsim.event.EventDispatcher;
 import com.github.rinde.rinsim.event.Listener;
 import com.github.rinde.rinsim.geom.Point;
 import com.github.rinde.rinsim.pdptw.common.PDPRoadModel;
@@ -56,6 +59,7 @@ import com.github.rinde.rinsim.testutil.RealtimeTests;
 import com.github.rinde.rinsim.testutil.TestUtil;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.collect.ImmutableSet;
 
 /**
@@ -93,6 +97,8 @@ public class RtSolverModelTest {
     when(rm.getSpeedUnit()).thenReturn(NonSI.KILOMETERS_PER_HOUR);
     when(rm.getDistanceUnit()).thenReturn(SI.KILOMETER);
     when(rm.getSnapshot()).thenReturn(planeSnapshot);
+    when(rm.getEventAPI()).thenReturn(
+      new EventDispatcher(RoadEventType.values()).getPublicEventAPI());
 
     dependencyProvider = FakeDependencyProvider.builder()
       .add(clock, RealtimeClockController.class)
@@ -301,6 +307,44 @@ public class RtSolverModelTest {
     assertThat(m2.mode).isEqualTo(Mode.SINGLE_MODE);
   }
 
+  /**
+   * Tests that models that are built with a shared executor each obtain their
+   * own view on it and that shutting down a model does not affect the other
+   * models.
+   */
+  @Test
+  public void testSharedExecutor() {
+    final SharedSolverExecutor shared = SharedSolverExecutor.create(1);
+    final RtSolverModel m1 = RtSolverModel.builder()
+      .withMultiMode()
+      .withSharedExecutor(shared)
+      .build(dependencyProvider);
+    final RtSolverModel m2 = RtSolverModel.builder()
+      .withMultiMode()
+      .withSharedExecutor(shared)
+      .build(dependencyProvider);
+    final FakeRealtimeSolver frs1 = new FakeRealtimeSolver();
+    final FakeRealtimeSolver frs2 = new FakeRealtimeSolver();
+    m1.get(RtSimSolverBuilder.class).build(frs1);
+    m2.get(RtSimSolverBuilder.class).build(frs2);
+
+    final ListeningExecutorService e1 =
+      frs1.scheduler.get().getSharedExecutor();
+    final ListeningExecutorService e2 =
+      frs2.scheduler.get().getSharedExecutor();
+    assertThat(e1).isInstanceOf(SharedSolverExecutor.Client.class);
+    assertThat(e1).isNotSameAs(e2);
+    assertThat(m1.get(RtSolverModelAPI.class).getQueueingDelayStats()
+      .isPresent()).isTrue();
+    assertThat(model.get(RtSolverModelAPI.class).getQueueingDelayStats()
+      .isPresent()).isFalse();
+
+    m1.shutdown();
+    assertThat(e1.isShutdown()).isTrue();
+    assertThat(e2.isShutdown()).isFalse();
+    shared.shutdown();
+  }
+
   /**
    * Test that two consecutive invocations of the same sim solver are handled
    * correctly. The correct behavior is that the calculation of the first
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.central.rt;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.rinde.rinsim.central.rt.SharedSolverExecutor.Client;
+
+/**
+ * Tests for {@link SharedSolverExecutor}.
+ * @author Rinde van Lon
+ */
+public class SharedSolverExecutorTest {
+  static final long TIMEOUT = 5L;
+
+  @SuppressWarnings("null")
+  SharedSolverExecutor executor;
+  @SuppressWarnings("null")
+  CountDownLatch blocker;
+  @SuppressWarnings("null")
+  CountDownLatch blocking;
+  List<String> order;
+
+  /**
+   * Sets up the shared state.
+   */
+  @Before
+  public void setUp() {
+    blocker = new CountDownLatch(1);
+    blocking = new CountDownLatch(1);
+    order = Collections.synchronizedList(new ArrayList<String>());
+  }
+
+  /**
+   * Shuts down the executor.
+   */
+  @After
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  /**
+   * Tests that the number of concurrently executing tasks of all clients does
+   * not exceed the maximum.
+   */
+  @Test
+  public void testConcurrencyCap() throws InterruptedException,
+      ExecutionException {
+    executor = SharedSolverExecutor.create(2);
+    assertThat(executor.getMaxConcurrency()).isEqualTo(2);
+    final AtomicInteger active = new AtomicInteger();
+    final AtomicInteger maxActive = new AtomicInteger();
+    final List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      final Client client = executor.newClient(false);
+      for (int j = 0; j < 10; j++) {
+        futures.add(client.submit(new Runnable() {
+          @Override
+          public void run() {
+            final int a = active.incrementAndGet();
+            synchronized (maxActive) {
+              maxActive.set(Math.max(maxActive.get(), a));
+            }
+            try {
+              Thread.sleep(1L);
+            } catch (final InterruptedException e) {
+              throw new IllegalStateException(e);
+            }
+            active.decrementAndGet();
+          }
+        }));
+      }
+    }
+    for (final Future<?> f : futures) {
+      f.get();
+    }
+    assertThat(maxActive.get()).isAtMost(2);
+    assertThat(executor.getQueueingDelayStats().count()).isEqualTo(30L);
+    assertThat(executor.getQueueSize()).isEqualTo(0);
+  }
+
+  /**
+   * Tests that the queues of the clients are served in round-robin order.
+   */
+  @Test
+  public void testFairQueueing() throws InterruptedException {
+    executor = SharedSolverExecutor.create(1);
+    final Client a = executor.newClient(false);
+    final Client b = executor.newClient(false);
+    a.execute(blockingTask());
+    blocking.await();
+    for (int i = 0; i < 3; i++) {
+      a.execute(recordingTask("a" + i));
+    }
+    b.execute(recordingTask("b0"));
+    b.execute(recordingTask("b1"));
+    assertThat(executor.getQueueSize()).isEqualTo(5);
+
+    blocker.countDown();
+    a.shutdown();
+    b.shutdown();
+    assertThat(a.awaitTermination(TIMEOUT, TimeUnit.SECONDS)).isTrue();
+    assertThat(b.awaitTermination(TIMEOUT, TimeUnit.SECONDS)).isTrue();
+    assertThat(order).containsExactly("a0", "b0", "a1", "b1", "a2").inOrder();
+    assertThat(a.getQueueingDelayStats().count()).isEqualTo(4L);
+    assertThat(b.getQueueingDelayStats().count()).isEqualTo(2L);
+  }
+
+  /**
+   * Tests that clients in real-time mode take precedence.
+   */
+  @Test
+  public void testRealtimePriority() throws InterruptedException {
+    executor = SharedSolverExecutor.create(1);
+    final Client a = executor.newClient(false);
+    final Client b = executor.newClient(false);
+    a.execute(blockingTask());
+    blocking.await();
+    a.execute(recordingTask("a0"));
+    a.execute(recordingTask("a1"));
+    b.execute(recordingTask("b0"));
+    b.execute(recordingTask("b1"));
+    b.setRealtime(true);
+
+    blocker.countDown();
+    a.shutdown();
+    b.shutdown();
+    assertThat(a.awaitTermination(TIMEOUT, TimeUnit.SECONDS)).isTrue();
+    assertThat(b.awaitTermination(TIMEOUT, TimeUnit.SECONDS)).isTrue();
+    assertThat(order).containsExactly("b0", "b1", "a0", "a1").inOrder();
+  }
+
+  /**
+   * Tests that shutting down a client only affects the tasks of that client.
+   */
+  @Test
+  public void testClientShutdownNow() throws InterruptedException,
+      ExecutionException {
+    executor = SharedSolverExecutor.create(1);
+    final Client a = executor.newClient(false);
+    final Client b = executor.newClient(false);
+    final CountDownLatch started = new CountDownLatch(1);
+    a.execute(new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+        try {
+          Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT));
+          order.add("not interrupted");
+        } catch (final InterruptedException e) {
+          order.add("interrupted");
+        }
+      }
+    });
+    a.execute(recordingTask("a0"));
+    final Future<?> fut = b.submit(recordingTask("b0"));
+    started.await();
+
+    assertThat(a.shutdownNow()).hasSize(1);
+    assertThat(a.isShutdown()).isTrue();
+    assertThat(a.awaitTermination(TIMEOUT, TimeUnit.SECONDS)).isTrue();
+    assertThat(a.isTerminated()).isTrue();
+    try {
+      a.execute(recordingTask("a1"));
+      fail();
+    } catch (final RejectedExecutionException e) {
+      assertThat(e.getMessage()).contains("shut down");
+    }
+
+    fut.get();
+    assertThat(b.isShutdown()).isFalse();
+    assertThat(order).containsExactly("interrupted", "b0").inOrder();
+  }
+
+  /**
+   * Tests that a non-positive maximum concurrency is rejected.
+   */
+  @Test
+  public void testInvalidConcurrency() {
+    executor = SharedSolverExecutor.create(1);
+    try {
+      SharedSolverExecutor.create(0);
+      fail();
+    } catch (final IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("must be positive");
+    }
+  }
+
+  Runnable blockingTask() {
+    return new Runnable() {
+      @Override
+      public void run() {
+        blocking.countDown();
+        try {
+          blocker.await();
+        } catch (final InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    };
+  }
+
+  Runnable recordingTask(final String name) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        order.add(name);
+      }
+    };
+  }
+}
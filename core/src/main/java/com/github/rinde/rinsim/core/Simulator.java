@@ -40,6 +40,7 @@ import com.github.rinde.rinsim.core.model.ModelProvider;
 import com.github.rinde.rinsim.core.model.rand.RandomModel;
 import com.github.rinde.rinsim.core.model.rand.RandomProvider;
 import com.github.rinde.rinsim.core.model.time.ClockController;
+import com.github.rinde.rinsim.core.model.time.NextEventTickListener;
 import com.github.rinde.rinsim.core.model.time.TickListener;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.core.model.time.TimeModel;
@@ -371,7 +372,7 @@ public final class Simulator implements SimulatorAPI {
   }
 
   static class SimulatorModel extends AbstractModel<SimulatorUser>
-      implements TickListener {
+      implements NextEventTickListener {
     final Simulator simulator;
 
     SimulatorModel(Simulator sim) {
@@ -399,6 +400,16 @@ public final class Simulator implements SimulatorAPI {
     @Override
     public void tick(TimeLapse timeLapse) {}
 
+    // objects are only unregistered in afterTick, ticks in which nothing
+    // needs to be unregistered can be skipped
+    @Override
+    public long getNextEventTime(long currentTime) {
+      if (simulator.toUnregister.isEmpty()) {
+        return IDLE;
+      }
+      return currentTime;
+    }
+
     @Override
     public void afterTick(TimeLapse timeLapse) {
       simulator.checkUnregister();
@@ -24,9 +24,15 @@ import static com.google.common.base.Verify.verifyNotNull;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.annotation.Nullable;
 
+import org.apache.commons.math3.random.RandomGenerator;
+
+import com.github.rinde.rinsim.core.model.comm.ParallelDelivery.Delivery;
+import com.github.rinde.rinsim.core.model.comm.ParallelDelivery.Postman;
 import com.github.rinde.rinsim.geom.Point;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Optional;
@@ -52,7 +58,11 @@ public final class CommDevice {
 
   private final List<Message> unreadMessages;
   private final List<Message> outbox;
+  // only used for parallel delivery
+  private final Optional<RandomGenerator> randomGenerator;
+  private final Queue<Delivery> mailbox;
   private int receivedCount;
+  private int maxUnreadCount;
   private boolean registered;
 
   CommDevice(CommDeviceBuilder builder) {
@@ -67,6 +77,8 @@ public final class CommDevice {
     }
     unreadMessages = new ArrayList<>();
     outbox = new ArrayList<>();
+    randomGenerator = model.newDeviceRandomGenerator();
+    mailbox = new ConcurrentLinkedQueue<>();
     receivedCount = 0;
     model.addDevice(this, user);
     registered = true;
@@ -79,6 +91,14 @@ public final class CommDevice {
     return receivedCount;
   }
 
+  /**
+   * @return The largest number of unread messages this device has had, the
+   *         high-water mark of its inbox.
+   */
+  public int getMaxUnreadCount() {
+    return maxUnreadCount;
+  }
+
   /**
    * @return The number of unread messages.
    */
@@ -257,10 +277,15 @@ public final class CommDevice {
   void receive(Message m) {
     unreadMessages.add(m);
     receivedCount++;
+    final int unread = unreadMessages.size();
+    if (unread > maxUnreadCount) {
+      maxUnreadCount = unread;
+    }
+    model.recordUnreadCount(unread);
   }
 
   void sendMessages() {
-    if (!getMaxRange().isPresent() || user.getPosition().isPresent()) {
+    if (canSendMessages()) {
       for (final Message msg : outbox) {
         model.send(msg, reliability);
       }
@@ -268,6 +293,40 @@ public final class CommDevice {
     }
   }
 
+  // messages can only be sent if the device has no range or if its user has a
+  // position
+  boolean canSendMessages() {
+    return !outbox.isEmpty()
+      && (!getMaxRange().isPresent() || user.getPosition().isPresent());
+  }
+
+  void sendMessages(Postman postman) {
+    for (final Message msg : outbox) {
+      model.send(msg, reliability, postman);
+    }
+    outbox.clear();
+  }
+
+  void post(Delivery delivery) {
+    mailbox.add(delivery);
+  }
+
+  void drainMailbox() {
+    if (mailbox.isEmpty()) {
+      return;
+    }
+    final List<Delivery> deliveries = new ArrayList<>(mailbox);
+    mailbox.clear();
+    Collections.sort(deliveries);
+    for (final Delivery d : deliveries) {
+      receive(d.message);
+    }
+  }
+
+  Optional<RandomGenerator> getRandomGenerator() {
+    return randomGenerator;
+  }
+
   void unregister() {
     registered = false;
   }
@@ -308,6 +367,14 @@ public final class CommDevice {
       range = r;
     }
 
+    CommUser getUser() {
+      return user;
+    }
+
+    double getRange() {
+      return range;
+    }
+
     @Override
     public boolean apply(@Nullable CommUser input) {
       final Optional<Point> pos = user.getPosition();
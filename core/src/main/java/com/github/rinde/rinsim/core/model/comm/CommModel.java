@@ -18,24 +18,34 @@ package com.github.rinde.rinsim.core.model.comm;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import org.apache.commons.math3.random.MersenneTwister;
 import org.apache.commons.math3.random.RandomGenerator;
 
 import com.github.rinde.rinsim.core.model.DependencyProvider;
 import com.github.rinde.rinsim.core.model.Model.AbstractModel;
 import com.github.rinde.rinsim.core.model.ModelBuilder;
 import com.github.rinde.rinsim.core.model.ModelBuilder.AbstractModelBuilder;
+import com.github.rinde.rinsim.core.model.comm.CommDevice.RangePredicate;
+import com.github.rinde.rinsim.core.model.comm.ParallelDelivery.Postman;
 import com.github.rinde.rinsim.core.model.rand.RandomProvider;
-import com.github.rinde.rinsim.core.model.time.TickListener;
+import com.github.rinde.rinsim.core.model.road.GridSpatialRegistry;
+import com.github.rinde.rinsim.core.model.time.NextEventTickListener;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.event.Event;
 import com.github.rinde.rinsim.event.EventAPI;
 import com.github.rinde.rinsim.event.EventDispatcher;
+import com.github.rinde.rinsim.geom.Point;
 import com.github.rinde.rinsim.util.LinkedHashBiMap;
 import com.google.auto.value.AutoValue;
 import com.google.common.base.Optional;
@@ -57,15 +67,37 @@ import com.google.common.collect.Maps;
  * <li><i>Dependency:</i> {@link RandomProvider}.</li>
  * </ul>
  * See {@link ModelBuilder} for more information about model properties.
+ * <p>
+ * <b>Ranged broadcasts</b> The positions of all {@link CommUser}s are kept in
+ * an immutable spatial index that is rebuilt at most once per
+ * {@link #afterTick(TimeLapse)}, when the first broadcast with a range is
+ * sent. The index is queried without locking, also during parallel
+ * delivery. A ranged broadcast only visits the users that are near the sender
+ * according to the index, the range of each of these users is then checked
+ * using its current position. The recipients are visited in the order in
+ * which they were registered, the delivery of broadcasts is therefore equal to
+ * visiting all users as long as users do not move while the messages are
+ * being sent.
+ * <p>
+ * <b>Parallel delivery</b> A model that is constructed with
+ * {@link Builder#withParallelDelivery(int)} delivers the messages of different
+ * senders concurrently. The order of the messages in each inbox is equal to
+ * the order of sequential delivery. Instead of the random generator of the
+ * model, each device uses its own random generator for the reliability checks,
+ * the generator is seeded when the device is created. The results are
+ * therefore reproducible and independent of the number of threads, but they
+ * differ from the results of sequential delivery if a reliability is smaller
+ * than one. During delivery {@link CommUser#getPosition()} may be called
+ * concurrently.
  * @author Rinde van Lon
  */
 public final class CommModel extends AbstractModel<CommUser>
-    implements TickListener {
+    implements NextEventTickListener {
 
   /**
    * The types of events that are dispatched by {@link CommModel}. The event
-   * class is {@link CommModelEvent}. Listeners can be added via
-   * {@link CommModel#getEventAPI()}.
+   * class is {@link CommModelEvent}, except for {@link #TICK_TRAFFIC}.
+   * Listeners can be added via {@link CommModel#getEventAPI()}.
    * @author Rinde van Lon
    */
   public enum EventTypes {
@@ -80,7 +112,14 @@ public final class CommModel extends AbstractModel<CommUser>
      * Event type indicating that a {@link CommUser} is removed from the
      * {@link CommModel}.
      */
-    REMOVE_COMM_USER;
+    REMOVE_COMM_USER,
+
+    /**
+     * Event type indicating the message traffic during a tick, it is
+     * dispatched at the end of each {@link CommModel#afterTick(TimeLapse)}.
+     * The event class is {@link CommTrafficEvent}.
+     */
+    TICK_TRAFFIC;
   }
 
   private final double defaultReliability;
@@ -91,6 +130,11 @@ public final class CommModel extends AbstractModel<CommUser>
   private final BiMap<CommUser, CommDevice> unregisteredUsersDevices;
   private boolean usersHasChanged;
   private final EventDispatcher eventDispatcher;
+  @Nullable
+  private GridSpatialRegistry.Snapshot<CommUser> spatialIndex;
+  private boolean spatialIndexIsStale;
+  private final Optional<ParallelDelivery> parallelDelivery;
+  private final TrafficCounter trafficCounter;
 
   CommModel(RandomGenerator rng, Builder b) {
     defaultReliability = b.defaultReliability();
@@ -102,6 +146,13 @@ public final class CommModel extends AbstractModel<CommUser>
     usersDevicesSnapshot = ImmutableBiMap.of();
     eventDispatcher = new EventDispatcher(EventTypes.values());
     randomGenerator = rng;
+    trafficCounter = new TrafficCounter();
+    if (b.deliveryParallelism() > 0) {
+      parallelDelivery =
+        Optional.of(new ParallelDelivery(b.deliveryParallelism()));
+    } else {
+      parallelDelivery = Optional.absent();
+    }
   }
 
   /**
@@ -142,6 +193,7 @@ public final class CommModel extends AbstractModel<CommUser>
     unregDevice.unregister();
     unregisteredUsersDevices.put(commUser, unregDevice);
     usersHasChanged = true;
+    spatialIndexIsStale = true;
     if (eventDispatcher.hasListenerFor(EventTypes.REMOVE_COMM_USER)) {
       eventDispatcher.dispatchEvent(new CommModelEvent(
         EventTypes.REMOVE_COMM_USER, this, unregDevice, commUser));
@@ -187,12 +239,61 @@ public final class CommModel extends AbstractModel<CommUser>
 
   @Override
   public void afterTick(TimeLapse timeLapse) {
-    final Set<CommDevice> devices = usersDevices.values();
-    for (final CommDevice device : devices) {
-      device.sendMessages();
+    spatialIndexIsStale = true;
+    if (parallelDelivery.isPresent()) {
+      deliverInParallel();
+    } else {
+      final Set<CommDevice> devices = usersDevices.values();
+      for (final CommDevice device : devices) {
+        device.sendMessages();
+      }
+    }
+    // the traffic of the tick is only created if someone is interested
+    final boolean dispatch =
+      eventDispatcher.hasListenerFor(EventTypes.TICK_TRAFFIC);
+    final Optional<CommTraffic> tickTraffic = trafficCounter.endTick(dispatch);
+    if (dispatch) {
+      eventDispatcher.dispatchEvent(new CommTrafficEvent(
+        EventTypes.TICK_TRAFFIC, this, timeLapse.getEndTime(),
+        tickTraffic.get()));
     }
   }
 
+  // messages are delivered in the tick in which they are sent, in between
+  // ticks the model has nothing to do
+  @Override
+  public long getNextEventTime(long currentTime) {
+    return IDLE;
+  }
+
+  /**
+   * @return The message traffic of all ticks so far, a new instance is
+   *         created on each call.
+   */
+  public CommTraffic getTraffic() {
+    return trafficCounter.getTotal();
+  }
+
+  void deliverInParallel() {
+    final ImmutableBiMap<CommUser, CommDevice> devices = getUsersAndDevices();
+    final List<Postman> postmen = new ArrayList<>();
+    int sender = 0;
+    for (final CommDevice device : devices.values()) {
+      if (device.canSendMessages()) {
+        postmen.add(
+          new Postman(sender, device, device.getRandomGenerator().get()));
+        // the spatial index is refreshed before the concurrent phase
+        for (final Message msg : device.getOutbox()) {
+          if (isIndexable(msg)) {
+            spatialIndex(((RangePredicate) msg.predicate()).getRange());
+          }
+        }
+      }
+      sender++;
+    }
+    parallelDelivery.get().deliver(postmen, devices.values().asList());
+  }
+
   /**
    * @return An immutable copy of the bimap containing all {@link CommUser}s and
    *         {@link CommDevice}s.
@@ -208,34 +309,139 @@ public final class CommModel extends AbstractModel<CommUser>
   }
 
   void send(Message msg, double senderReliability) {
+    send(msg, senderReliability, usersDevices, null);
+  }
+
+  // is called concurrently, the state of the model is not modified
+  void send(Message msg, double senderReliability, Postman postman) {
+    send(msg, senderReliability, usersDevicesSnapshot, postman);
+  }
+
+  private void send(Message msg, double senderReliability,
+      Map<CommUser, CommDevice> devices, @Nullable Postman postman) {
+    int deliveries = 0;
+    int drops = 0;
+    int rejections = 0;
     // direct
     if (msg.to().isPresent()) {
-      if (usersDevices.containsKey(msg.to().get())) {
-        final CommDevice recipient = usersDevices.get(msg.to().get());
-        doSend(msg, msg.to().get(), recipient, senderReliability);
+      final CommDevice recipient = devices.get(msg.to().get());
+      if (recipient != null) {
+        final Outcome outcome =
+          doSend(msg, msg.to().get(), recipient, senderReliability, postman);
+        if (outcome == Outcome.DELIVERED) {
+          deliveries++;
+        } else if (outcome == Outcome.DROPPED) {
+          drops++;
+        } else {
+          rejections++;
+        }
+      }
+      trafficCounter.recordMessage(msg, deliveries, drops, rejections);
+      return;
+    } else if (isIndexable(msg)) {
+      // ranged broadcast
+      final RangePredicate pred = (RangePredicate) msg.predicate();
+      final Point pos = pred.getUser().getPosition().get();
+      // the query area is slightly enlarged to be robust against rounding
+      // errors, the exact range is checked by the predicate
+      final double range = pred.getRange() + 2 * Math.ulp(
+        Math.max(Math.abs(pos.x), Math.abs(pos.y)) + pred.getRange());
+      for (final CommUser user : spatialIndex(pred.getRange())
+        .findObjectsInRect(new Point(pos.x - range, pos.y - range),
+          new Point(pos.x + range, pos.y + range))) {
+        if (msg.from() != user) {
+          final Outcome outcome =
+            doSend(msg, user, devices.get(user), senderReliability, postman);
+          if (outcome == Outcome.DELIVERED) {
+            deliveries++;
+          } else if (outcome == Outcome.DROPPED) {
+            drops++;
+          }
+        }
       }
     } else {
       // broadcast
-      for (final Entry<CommUser, CommDevice> entry : usersDevices.entrySet()) {
+      for (final Entry<CommUser, CommDevice> entry : devices.entrySet()) {
         if (msg.from() != entry.getKey()) {
-          doSend(msg, entry.getKey(), entry.getValue(), senderReliability);
+          final Outcome outcome = doSend(msg, entry.getKey(),
+            entry.getValue(), senderReliability, postman);
+          if (outcome == Outcome.DELIVERED) {
+            deliveries++;
+          } else if (outcome == Outcome.DROPPED) {
+            drops++;
+          }
         }
       }
     }
+    // all other users are out of range, also those that are not visited when
+    // the spatial index is used
+    rejections = Math.max(0, devices.size() - 1 - deliveries - drops);
+    trafficCounter.recordMessage(msg, deliveries, drops, rejections);
   }
 
-  private void doSend(Message msg, CommUser to, CommDevice recipient,
-      double sendReliability) {
+  // a broadcast can be sent via the spatial index if its range is not empty
+  // and the sender has a position, in all other cases all users are visited
+  static boolean isIndexable(Message msg) {
+    if (msg.predicate() instanceof RangePredicate) {
+      final RangePredicate pred = (RangePredicate) msg.predicate();
+      return pred.getRange() > 0d
+        && pred.getUser().getPosition().isPresent();
+    }
+    return false;
+  }
 
-    if (msg.predicate().apply(to)
-      && hasSucces(sendReliability, recipient.getReliability())) {
-      recipient.receive(msg);
+  GridSpatialRegistry.Snapshot<CommUser> spatialIndex(double range) {
+    GridSpatialRegistry.Snapshot<CommUser> index = spatialIndex;
+    if (index == null || spatialIndexIsStale) {
+      // the cells are sized after the range that is expected to be used most
+      double cellSize = range;
+      if (defaultMaxRange.isPresent() && defaultMaxRange.get() > 0d) {
+        cellSize = defaultMaxRange.get();
+      }
+      // users are added in registration order, the index preserves this order
+      // in its query results
+      final Map<CommUser, Point> positions = new LinkedHashMap<>();
+      synchronized (usersDevices) {
+        for (final CommUser user : usersDevices.keySet()) {
+          final Optional<Point> pos = user.getPosition();
+          if (pos.isPresent()) {
+            positions.put(user, pos.get());
+          }
+        }
+      }
+      index = GridSpatialRegistry.Snapshot.create(cellSize, positions);
+      spatialIndex = index;
+      spatialIndexIsStale = false;
     }
+    return index;
+  }
+
+  private Outcome doSend(Message msg, CommUser to, CommDevice recipient,
+      double sendReliability, @Nullable Postman postman) {
+    if (!msg.predicate().apply(to)) {
+      return Outcome.OUT_OF_RANGE;
+    }
+    if (postman == null) {
+      if (hasSucces(sendReliability, recipient.getReliability())) {
+        recipient.receive(msg);
+        return Outcome.DELIVERED;
+      }
+    } else if (hasSuccess(postman.randomGenerator, sendReliability,
+      recipient.getReliability())) {
+      postman.post(recipient, msg);
+      return Outcome.DELIVERED;
+    }
+    return Outcome.DROPPED;
+  }
+
+  void recordUnreadCount(int unread) {
+    trafficCounter.recordUnreadCount(unread);
   }
 
   void addDevice(CommDevice device, CommUser user) {
     usersDevices.put(user, device);
     usersHasChanged = true;
+    spatialIndexIsStale = true;
     if (eventDispatcher.hasListenerFor(EventTypes.ADD_COMM_USER)) {
       eventDispatcher.dispatchEvent(new CommModelEvent(
         EventTypes.ADD_COMM_USER, this, device, user));
@@ -243,13 +449,25 @@ public final class CommModel extends AbstractModel<CommUser>
   }
 
   boolean hasSucces(double senderReliability, double receiverReliability) {
+    return hasSuccess(randomGenerator, senderReliability, receiverReliability);
+  }
+
+  Optional<RandomGenerator> newDeviceRandomGenerator() {
+    if (parallelDelivery.isPresent()) {
+      return Optional.<RandomGenerator>of(
+        new MersenneTwister(randomGenerator.nextLong()));
+    }
+    return Optional.absent();
+  }
+
+  static boolean hasSuccess(RandomGenerator rng, double senderReliability,
+      double receiverReliability) {
     if (senderReliability == 1d && receiverReliability == 1d) {
       return true;
     }
     // prob of success: senderR * receiverR
     // prob of failure: 1 - (senderR * receiverR)
-    return randomGenerator.nextDouble() < senderReliability
-      * receiverReliability;
+    return rng.nextDouble() < senderReliability * receiverReliability;
   }
 
   /**
@@ -285,13 +503,15 @@ public final class CommModel extends AbstractModel<CommUser>
 
     static Builder create() {
       return new AutoValue_CommModel_Builder(DEFAULT_RELIABILITY,
-        Optional.<Double>absent());
+        Optional.<Double>absent(), 0);
     }
 
     abstract double defaultReliability();
 
     abstract Optional<Double> defaultMaxRange();
 
+    abstract int deliveryParallelism();
+
     /**
      * Returns a copy of this builder with the reliability of the device to be
      * constructed set to the specified value. The reliability is applied for
@@ -304,7 +524,8 @@ public final class CommModel extends AbstractModel<CommUser>
     @CheckReturnValue
     public Builder withDefaultDeviceReliability(double reliability) {
       checkReliability(reliability);
-      return new AutoValue_CommModel_Builder(reliability, defaultMaxRange());
+      return new AutoValue_CommModel_Builder(reliability, defaultMaxRange(),
+        deliveryParallelism());
     }
 
     /**
@@ -319,7 +540,37 @@ public final class CommModel extends AbstractModel<CommUser>
     public Builder withDefaultDeviceMaxRange(double maxRange) {
       checkRangeIsPositive(maxRange);
       return new AutoValue_CommModel_Builder(defaultReliability(),
-        Optional.of(maxRange));
+        Optional.of(maxRange), deliveryParallelism());
+    }
+
+    /**
+     * Returns a copy of this builder that delivers messages concurrently using
+     * as many threads as there are available processors. See
+     * {@link #withParallelDelivery(int)}.
+     * @return A new instance of {@link Builder} with parallel delivery.
+     */
+    @CheckReturnValue
+    public Builder withParallelDelivery() {
+      return withParallelDelivery(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns a copy of this builder that delivers messages concurrently on a
+     * fork-join pool with the specified parallelism. The messages in the
+     * inboxes are ordered as with sequential delivery, but the reliability of
+     * devices is evaluated using a separate random generator per device, see
+     * {@link CommModel} for details. By default, messages are delivered
+     * sequentially.
+     * @param parallelism The number of threads to use, must be strictly
+     *          positive.
+     * @return A new instance of {@link Builder} with parallel delivery.
+     */
+    @CheckReturnValue
+    public Builder withParallelDelivery(int parallelism) {
+      checkArgument(parallelism > 0,
+        "Parallelism must be strictly positive, found %s.", parallelism);
+      return new AutoValue_CommModel_Builder(defaultReliability(),
+        defaultMaxRange(), parallelism);
     }
 
     @Override
@@ -329,6 +580,40 @@ public final class CommModel extends AbstractModel<CommUser>
     }
   }
 
+  enum Outcome {
+    DELIVERED, DROPPED, OUT_OF_RANGE;
+  }
+
+  /**
+   * Event class for {@link EventTypes#TICK_TRAFFIC} events. Contains the
+   * message traffic of a single tick.
+   * @author Rinde van Lon
+   */
+  public static final class CommTrafficEvent extends Event {
+    private final long time;
+    private final CommTraffic traffic;
+
+    CommTrafficEvent(Enum<?> type, Object pIssuer, long t, CommTraffic tr) {
+      super(type, pIssuer);
+      time = t;
+      traffic = tr;
+    }
+
+    /**
+     * @return The end time of the tick.
+     */
+    public long getTime() {
+      return time;
+    }
+
+    /**
+     * @return The message traffic during the tick.
+     */
+    public CommTraffic getTraffic() {
+      return traffic;
+    }
+  }
+
   /**
    * Event class for events dispatched by {@link CommModel}. Contains references
    * to {@link CommDevice} and {@link CommUser} that caused the event.
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.comm;
+
+import java.io.Serializable;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Immutable value object containing the message traffic of a
+ * {@link CommModel} during a period of time. The traffic of the entire
+ * simulation can be obtained via {@link CommModel#getTraffic()}, the traffic of
+ * each tick is dispatched as a {@link CommModel.CommTrafficEvent}.
+ * <p>
+ * A message is counted as sent when it leaves the outbox of its sender. For
+ * each potential recipient of a sent message there are three possible
+ * outcomes: the recipient is out of range, the message is dropped due to the
+ * reliability of the sender and recipient, or the message is delivered.
+ * @author Rinde van Lon
+ */
+@AutoValue
+public abstract class CommTraffic implements Serializable {
+  /**
+   * The number of buckets of the fan-out histogram, see
+   * {@link #getFanOutHistogram()}.
+   */
+  public static final int FAN_OUT_BUCKETS = Integer.SIZE + 1;
+  private static final long serialVersionUID = -2493813475960167025L;
+  private static final CommTraffic EMPTY = create(0, 0, 0, 0, 0, 0, 0, 0, 0,
+    new long[FAN_OUT_BUCKETS]);
+
+  CommTraffic() {}
+
+  /**
+   * @return The number of messages that have been sent, including broadcasts.
+   */
+  public abstract long getSentCount();
+
+  /**
+   * @return The number of broadcast messages that have been sent.
+   */
+  public abstract long getBroadcastCount();
+
+  /**
+   * @return The number of times a message has been delivered to a recipient,
+   *         a broadcast counts once for each recipient.
+   */
+  public abstract long getDeliveredCount();
+
+  /**
+   * @return The number of times a broadcast message has been delivered to a
+   *         recipient, the fan-out of all broadcasts.
+   */
+  public abstract long getBroadcastDeliveredCount();
+
+  /**
+   * @return The number of times a message to a recipient within range was
+   *         lost due to the reliability of the sender or recipient.
+   */
+  public abstract long getDroppedCount();
+
+  /**
+   * @return The number of times a message did not reach a recipient because
+   *         the recipient was out of range.
+   */
+  public abstract long getRangeRejectionCount();
+
+  /**
+   * @return The estimated number of bytes that have been sent, see
+   *         {@link SizedMessageContents}.
+   */
+  public abstract long getSentBytes();
+
+  /**
+   * @return The estimated number of bytes that have been delivered, see
+   *         {@link SizedMessageContents}.
+   */
+  public abstract long getDeliveredBytes();
+
+  /**
+   * @return The largest number of unread messages that a single device had,
+   *         the inbox high-water mark.
+   */
+  public abstract long getMaxUnreadCount();
+
+  /**
+   * @return The distribution of the number of recipients of broadcasts. The
+   *         value at index <code>0</code> is the number of broadcasts that
+   *         were delivered to nobody, the value at index <code>i &gt; 0</code>
+   *         is the number of broadcasts that were delivered to a number of
+   *         recipients in the interval <code>[2^(i-1), 2^i)</code>.
+   */
+  public abstract ImmutableList<Long> getFanOutHistogram();
+
+  /**
+   * @return The mean number of recipients of a broadcast, or <code>0</code>
+   *         if no broadcasts have been sent.
+   */
+  public double getMeanFanOut() {
+    if (getBroadcastCount() == 0) {
+      return 0d;
+    }
+    return getBroadcastDeliveredCount() / (double) getBroadcastCount();
+  }
+
+  /**
+   * Combines this traffic with the traffic of the subsequent period.
+   * @param next The traffic of the subsequent period.
+   * @return The combined traffic.
+   */
+  public CommTraffic plus(CommTraffic next) {
+    final long[] hist = new long[FAN_OUT_BUCKETS];
+    for (int i = 0; i < FAN_OUT_BUCKETS; i++) {
+      hist[i] = getFanOutHistogram().get(i) + next.getFanOutHistogram().get(i);
+    }
+    return create(
+      getSentCount() + next.getSentCount(),
+      getBroadcastCount() + next.getBroadcastCount(),
+      getDeliveredCount() + next.getDeliveredCount(),
+      getBroadcastDeliveredCount() + next.getBroadcastDeliveredCount(),
+      getDroppedCount() + next.getDroppedCount(),
+      getRangeRejectionCount() + next.getRangeRejectionCount(),
+      getSentBytes() + next.getSentBytes(),
+      getDeliveredBytes() + next.getDeliveredBytes(),
+      Math.max(getMaxUnreadCount(), next.getMaxUnreadCount()),
+      hist);
+  }
+
+  /**
+   * @return An instance without any traffic.
+   */
+  public static CommTraffic empty() {
+    return EMPTY;
+  }
+
+  static CommTraffic create(long sent, long broadcasts, long delivered,
+      long broadcastDelivered, long dropped, long rangeRejections,
+      long sentBytes, long deliveredBytes, long maxUnread, long[] fanOut) {
+    final ImmutableList.Builder<Long> builder = ImmutableList.builder();
+    for (final long f : fanOut) {
+      builder.add(f);
+    }
+    return new AutoValue_CommTraffic(sent, broadcasts, delivered,
+      broadcastDelivered, dropped, rangeRejections, sentBytes, deliveredBytes,
+      maxUnread, builder.build());
+  }
+
+  static int fanOutBucket(int recipients) {
+    return Integer.SIZE - Integer.numberOfLeadingZeros(recipients);
+  }
+}
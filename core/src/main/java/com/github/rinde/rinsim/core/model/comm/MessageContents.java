@@ -17,7 +17,8 @@ package com.github.rinde.rinsim.core.model.comm;
 
 /**
  * A marker interface for contents of messages. Implementations should be
- * immutable.
+ * immutable. Contents that implement {@link SizedMessageContents} report their
+ * estimated size, which is included in the {@link CommTraffic} statistics.
  * @author Rinde van Lon
  */
 public interface MessageContents {}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.comm;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Delivers the messages in the outboxes of {@link CommDevice}s concurrently on
+ * a {@link ForkJoinPool}. Delivery happens in two phases: first the outboxes
+ * of the senders are drained concurrently, each message that passes the range
+ * and reliability checks is posted in the lock-free mailbox of its recipient.
+ * Next, the mailboxes of all devices are drained concurrently into the inboxes,
+ * the messages are sorted such that the order in each inbox is equal to the
+ * order of sequential delivery.
+ * @author Rinde van Lon
+ */
+final class ParallelDelivery {
+  // devices are split in more tasks than threads to balance the load
+  private static final int TASKS_PER_THREAD = 4;
+  // pools are shared by all models with the same parallelism, the worker
+  // threads are daemon threads that terminate when they are idle
+  private static final ConcurrentMap<Integer, ForkJoinPool> POOLS =
+    new ConcurrentHashMap<>();
+
+  private final ForkJoinPool pool;
+
+  ParallelDelivery(int parallelism) {
+    pool = sharedPool(parallelism);
+  }
+
+  static ForkJoinPool sharedPool(int parallelism) {
+    final ForkJoinPool pool = POOLS.get(parallelism);
+    if (pool != null) {
+      return pool;
+    }
+    final ForkJoinPool newPool = new ForkJoinPool(parallelism);
+    final ForkJoinPool existing = POOLS.putIfAbsent(parallelism, newPool);
+    if (existing == null) {
+      return newPool;
+    }
+    newPool.shutdown();
+    return existing;
+  }
+
+  int getParallelism() {
+    return pool.getParallelism();
+  }
+
+  void deliver(List<Postman> postmen, List<CommDevice> devices) {
+    if (!postmen.isEmpty()) {
+      pool.invoke(new SendTask(postmen, 0, postmen.size(),
+        threshold(postmen.size())));
+    }
+    pool.invoke(new DrainTask(devices, 0, devices.size(),
+      threshold(devices.size())));
+  }
+
+  int threshold(int size) {
+    return Math.max(1, size / (pool.getParallelism() * TASKS_PER_THREAD));
+  }
+
+  /**
+   * Posts the messages of a single sender, a postman is confined to one
+   * thread. The deliveries are numbered by the index of the sender in the
+   * registration order and a sequence number, this defines the order in
+   * which the recipient receives the messages.
+   */
+  static final class Postman {
+    final int sender;
+    final CommDevice device;
+    final RandomGenerator randomGenerator;
+    private int sequence;
+
+    Postman(int s, CommDevice d, RandomGenerator rng) {
+      sender = s;
+      device = d;
+      randomGenerator = rng;
+    }
+
+    void post(CommDevice recipient, Message msg) {
+      recipient.post(new Delivery(sender, sequence++, msg));
+    }
+  }
+
+  static final class Delivery implements Comparable<Delivery> {
+    final int sender;
+    final int sequence;
+    final Message message;
+
+    Delivery(int s, int seq, Message msg) {
+      sender = s;
+      sequence = seq;
+      message = msg;
+    }
+
+    @Override
+    public int compareTo(Delivery o) {
+      final int cmp = Integer.compare(sender, o.sender);
+      if (cmp != 0) {
+        return cmp;
+      }
+      return Integer.compare(sequence, o.sequence);
+    }
+  }
+
+  static final class SendTask extends RecursiveAction {
+    private static final long serialVersionUID = -1785136549296370581L;
+    final transient List<Postman> postmen;
+    final int begin;
+    final int end;
+    final int threshold;
+
+    SendTask(List<Postman> ps, int b, int e, int t) {
+      postmen = ps;
+      begin = b;
+      end = e;
+      threshold = t;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - begin <= threshold) {
+        for (int i = begin; i < end; i++) {
+          final Postman p = postmen.get(i);
+          p.device.sendMessages(p);
+        }
+      } else {
+        final int middle = (begin + end) / 2;
+        invokeAll(new SendTask(postmen, begin, middle, threshold),
+          new SendTask(postmen, middle, end, threshold));
+      }
+    }
+  }
+
+  static final class DrainTask extends RecursiveAction {
+    private static final long serialVersionUID = 5023763931432866407L;
+    final transient List<CommDevice> devices;
+    final int begin;
+    final int end;
+    final int threshold;
+
+    DrainTask(List<CommDevice> ds, int b, int e, int t) {
+      devices = ds;
+      begin = b;
+      end = e;
+      threshold = t;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - begin <= threshold) {
+        for (int i = begin; i < end; i++) {
+          devices.get(i).drainMailbox();
+        }
+      } else {
+        final int middle = (begin + end) / 2;
+        invokeAll(new DrainTask(devices, begin, middle, threshold),
+          new DrainTask(devices, middle, end, threshold));
+      }
+    }
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.comm;
+
+/**
+ * Contents of messages that provide an estimate of their size. The estimate is
+ * used by the {@link CommModel} to measure the volume of the message traffic,
+ * see {@link CommTraffic#getSentBytes()}. Contents that do not implement this
+ * interface are counted as zero bytes.
+ * @author Rinde van Lon
+ */
+public interface SizedMessageContents extends MessageContents {
+  /**
+   * @return The estimated size of the contents in bytes, for example the size
+   *         of an encoding of the contents that would be used by a real
+   *         communication device. Should be non-negative and constant.
+   */
+  int getEstimatedSize();
+}
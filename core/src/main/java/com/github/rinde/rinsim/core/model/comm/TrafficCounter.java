@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.comm;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Optional;
+
+/**
+ * Counts the message traffic of a {@link CommModel} during a tick and the
+ * total of all ticks. The outcomes for the recipients of a message are counted
+ * locally by the sender and are added at once, therefore the counters are
+ * only updated a few times per message. At the end of a tick the counters are
+ * added to the totals, a {@link CommTraffic} is only created when it is
+ * requested. This class is thread-safe.
+ * @author Rinde van Lon
+ */
+final class TrafficCounter {
+  private final AtomicLong sent;
+  private final AtomicLong broadcasts;
+  private final AtomicLong delivered;
+  private final AtomicLong broadcastDelivered;
+  private final AtomicLong dropped;
+  private final AtomicLong rangeRejections;
+  private final AtomicLong sentBytes;
+  private final AtomicLong deliveredBytes;
+  private final AtomicLong maxUnread;
+  private final AtomicLongArray fanOut;
+  // the totals of all ended ticks, guarded by 'this'
+  private long totalSent;
+  private long totalBroadcasts;
+  private long totalDelivered;
+  private long totalBroadcastDelivered;
+  private long totalDropped;
+  private long totalRangeRejections;
+  private long totalSentBytes;
+  private long totalDeliveredBytes;
+  private long totalMaxUnread;
+  private final long[] totalFanOut;
+
+  TrafficCounter() {
+    sent = new AtomicLong();
+    broadcasts = new AtomicLong();
+    delivered = new AtomicLong();
+    broadcastDelivered = new AtomicLong();
+    dropped = new AtomicLong();
+    rangeRejections = new AtomicLong();
+    sentBytes = new AtomicLong();
+    deliveredBytes = new AtomicLong();
+    maxUnread = new AtomicLong();
+    fanOut = new AtomicLongArray(CommTraffic.FAN_OUT_BUCKETS);
+    totalFanOut = new long[CommTraffic.FAN_OUT_BUCKETS];
+  }
+
+  void recordMessage(Message msg, int deliveries, int drops, int rejections) {
+    final int size = estimatedSize(msg);
+    sent.incrementAndGet();
+    if (msg.isBroadcast()) {
+      broadcasts.incrementAndGet();
+      broadcastDelivered.addAndGet(deliveries);
+      fanOut.incrementAndGet(CommTraffic.fanOutBucket(deliveries));
+    }
+    if (deliveries > 0) {
+      delivered.addAndGet(deliveries);
+    }
+    if (drops > 0) {
+      dropped.addAndGet(drops);
+    }
+    if (rejections > 0) {
+      rangeRejections.addAndGet(rejections);
+    }
+    if (size > 0) {
+      sentBytes.addAndGet(size);
+      deliveredBytes.addAndGet((long) size * deliveries);
+    }
+  }
+
+  void recordUnreadCount(int unread) {
+    long max = maxUnread.get();
+    while (unread > max && !maxUnread.compareAndSet(max, unread)) {
+      max = maxUnread.get();
+    }
+  }
+
+  // adds the traffic of the tick to the totals and resets the counters, the
+  // traffic of the tick is only returned if requested, should not be called
+  // concurrently with the record methods
+  synchronized Optional<CommTraffic> endTick(boolean tickTraffic) {
+    Optional<CommTraffic> result = Optional.absent();
+    if (tickTraffic) {
+      final long[] hist = new long[CommTraffic.FAN_OUT_BUCKETS];
+      for (int i = 0; i < hist.length; i++) {
+        hist[i] = fanOut.get(i);
+      }
+      result = Optional.of(CommTraffic.create(sent.get(), broadcasts.get(),
+        delivered.get(), broadcastDelivered.get(), dropped.get(),
+        rangeRejections.get(), sentBytes.get(), deliveredBytes.get(),
+        maxUnread.get(), hist));
+    }
+    for (int i = 0; i < totalFanOut.length; i++) {
+      totalFanOut[i] += fanOut.getAndSet(i, 0);
+    }
+    totalSent += sent.getAndSet(0);
+    totalBroadcasts += broadcasts.getAndSet(0);
+    totalDelivered += delivered.getAndSet(0);
+    totalBroadcastDelivered += broadcastDelivered.getAndSet(0);
+    totalDropped += dropped.getAndSet(0);
+    totalRangeRejections += rangeRejections.getAndSet(0);
+    totalSentBytes += sentBytes.getAndSet(0);
+    totalDeliveredBytes += deliveredBytes.getAndSet(0);
+    totalMaxUnread = Math.max(totalMaxUnread, maxUnread.getAndSet(0));
+    return result;
+  }
+
+  synchronized CommTraffic getTotal() {
+    return CommTraffic.create(totalSent, totalBroadcasts, totalDelivered,
+      totalBroadcastDelivered, totalDropped, totalRangeRejections,
+      totalSentBytes, totalDeliveredBytes, totalMaxUnread, totalFanOut);
+  }
+
+  static int estimatedSize(Message msg) {
+    if (msg.getContents() instanceof SizedMessageContents) {
+      return ((SizedMessageContents) msg.getContents()).getEstimatedSize();
+    }
+    return 0;
+  }
+}
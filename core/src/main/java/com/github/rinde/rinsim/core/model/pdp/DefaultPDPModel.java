@@ -17,30 +17,35 @@ package com.github.rinde.rinsim.core.model.pdp;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
-import static com.google.common.collect.Lists.newArrayList;
-import static com.google.common.collect.Maps.newLinkedHashMap;
-import static java.util.Collections.unmodifiableSet;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.github.rinde.rinsim.core.model.DependencyProvider;
 import com.github.rinde.rinsim.core.model.ModelBuilder.AbstractModelBuilder;
+import com.github.rinde.rinsim.core.model.pdp.ParcelStateMap.Deadline;
 import com.github.rinde.rinsim.core.model.pdp.TimeWindowPolicy.TimeWindowPolicies;
 import com.github.rinde.rinsim.core.model.road.RoadModel;
+import com.github.rinde.rinsim.core.model.time.NextEventTickListener;
+import com.github.rinde.rinsim.core.model.time.ParallelTicks;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.event.EventAPI;
 import com.github.rinde.rinsim.event.EventDispatcher;
-import com.github.rinde.rinsim.util.CategoryMap;
+import com.github.rinde.rinsim.geom.Point;
 import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.LinkedHashMultimap;
-import com.google.common.collect.Multimap;
 
 /**
  * Assumptions of the model, any vehicle can pickup any (kind of) parcel (as
@@ -78,7 +83,15 @@ import com.google.common.collect.Multimap;
  *
  * @author Rinde van Lon
  */
-public final class DefaultPDPModel extends PDPModel {
+public final class DefaultPDPModel extends PDPModel
+    implements NextEventTickListener {
+  private static final String VEHICLE_AVAILABLE_MSG =
+    "vehicle must be registered and must be available";
+  private static final String PARCEL_PICKUP_STATE_MSG =
+    "Parcel must be registered and must be either ANNOUNCED or AVAILABE, "
+      + "it is: %s. Parcel: %s.";
+  private static final String PARCEL_AVAILABLE_MSG =
+    "parcel must be registered and in AVAILABLE state, current state: %s";
 
   /**
    * The {@link EventDispatcher} used for generating events.
@@ -91,44 +104,41 @@ public final class DefaultPDPModel extends PDPModel {
   protected final RoadModel roadModel;
 
   /**
-   * Multimap for keeping references to the contents of {@link Container}s.
+   * The current time.
    */
-  protected final Multimap<Container, Parcel> containerContents;
+  protected volatile long currentTime;
 
   /**
-   * Map for keeping the size of the contents of {@link Container}s.
+   * The {@link TimeWindowPolicy} that is used.
    */
-  protected final Map<Container, Double> containerContentsSize;
+  protected final TimeWindowPolicy timeWindowPolicy;
 
   /**
-   * Map for keeping the capacity of {@link Container}s.
+   * Map that stores the contents, capacity and, for {@link Vehicle}s, the
+   * state and any pending {@link Action} of each {@link Container}.
    */
-  protected final Map<Container, Double> containerCapacities;
+  final ConcurrentMap<Container, ContainerState> containers;
 
   /**
-   * Map that stores the state of {@link Vehicle}s.
+   * The registered {@link Vehicle}s in order of registration.
    */
-  protected volatile Map<Vehicle, VehicleState> vehicleState;
+  volatile ImmutableSet<Vehicle> vehicles;
 
   /**
-   * Map that stores the state of {@link Parcel}s.
+   * Stores the state of {@link Parcel}s.
    */
-  protected volatile CategoryMap<ParcelState, Parcel> parcelState;
+  final ParcelStateMap parcelState;
 
   /**
-   * The current time.
+   * The pending actions of all vehicles ordered by their completion time.
    */
-  protected long currentTime;
+  final ConcurrentSkipListMap<Deadline, Action> pendingActions;
 
-  /**
-   * The {@link TimeWindowPolicy} that is used.
-   */
-  protected final TimeWindowPolicy timeWindowPolicy;
+  private final AtomicLong actionSequence;
 
-  /**
-   * Map that stores any pending {@link Action}s of {@link Vehicle}s.
-   */
-  final Map<Vehicle, Action> pendingVehicleActions;
+  // the events that are created by the current thread while it holds the
+  // lock of a container, they are dispatched after the lock is released
+  private final ThreadLocal<List<PDPModelEvent>> pendingEvents;
 
   /**
    * Initializes the PDPModel.
@@ -136,101 +146,132 @@ public final class DefaultPDPModel extends PDPModel {
    */
   DefaultPDPModel(RoadModel rm, TimeWindowPolicy twp) {
     timeWindowPolicy = twp;
-
-    containerContents = LinkedHashMultimap.create();
-    containerContentsSize = newLinkedHashMap();
-    containerCapacities = newLinkedHashMap();
-    pendingVehicleActions = newLinkedHashMap();
-    vehicleState = newLinkedHashMap();
-    parcelState = CategoryMap.create();
-
+    containers = new ConcurrentHashMap<>();
+    vehicles = ImmutableSet.of();
+    parcelState = new ParcelStateMap();
+    pendingActions = new ConcurrentSkipListMap<>();
+    actionSequence = new AtomicLong();
+    pendingEvents = new ThreadLocal<List<PDPModelEvent>>() {
+      @Override
+      protected List<PDPModelEvent> initialValue() {
+        return new ArrayList<>();
+      }
+    };
     eventDispatcher = new EventDispatcher(PDPModelEventType.values());
     roadModel = rm;
   }
 
   @Override
   public ImmutableSet<Parcel> getContents(Container container) {
-    synchronized (this) {
-      checkArgument(containerCapacities.containsKey(container));
-      return ImmutableSet.copyOf(containerContents.get(container));
-    }
+    final ContainerState cs = containers.get(container);
+    checkArgument(cs != null);
+    return cs.contents;
   }
 
   @Override
   public double getContentsSize(Container container) {
-    synchronized (this) {
-      return containerContentsSize.get(container);
-    }
+    return state(container).contentsSize;
   }
 
   @Override
   public double getContainerCapacity(Container container) {
-    synchronized (this) {
-      return containerCapacities.get(container);
-    }
+    return state(container).capacity;
+  }
+
+  ContainerState state(Container container) {
+    final ContainerState cs = containers.get(container);
+    checkArgument(cs != null, "%s is not registered.", container);
+    return cs;
+  }
+
+  ContainerState vehicleState(Vehicle vehicle) {
+    final ContainerState cs = containers.get(vehicle);
+    checkArgument(cs != null && cs.vehicleState != null,
+      "vehicle must be registered");
+    return cs;
   }
 
   @Override
   public void pickup(Vehicle vehicle, Parcel parcel, TimeLapse time) {
-    synchronized (this) {
-      /* 1 */checkVehicleInRoadModel(vehicle);
-      /* 2 */checkArgument(roadModel.containsObject(parcel),
-        "parcel does not exist in RoadModel");
-      final ParcelState ps = parcelState.getKeys(parcel);
-      /* 3 */checkArgument(
-        ps == ParcelState.AVAILABLE || ps == ParcelState.ANNOUNCED,
-        "Parcel must be registered and must be either ANNOUNCED or AVAILABE, "
-          + "it is: %s. Parcel: %s.",
-        ps, parcel);
-      /* 4 */checkArgument(vehicleState.get(vehicle) == VehicleState.IDLE,
-        "vehicle must be registered and must be available");
-      /* 5 */checkArgument(roadModel.equalPosition(vehicle, parcel),
-        "vehicle must be at the same location as the parcel it wishes to "
-          + "pickup");
-      final double newSize = containerContentsSize.get(vehicle)
-        + parcel.getNeededCapacity();
-      /* 6 */checkArgument(
-        newSize <= containerCapacities.get(vehicle),
-        "parcel does not fit in vehicle. Parcel size: %s, current contents "
-          + "size: %s, capacity: %s.",
-        parcel.getNeededCapacity(), containerContentsSize.get(vehicle),
-        containerCapacities.get(vehicle));
-
-      checkArgument(
-        timeWindowPolicy.canPickup(parcel.getPickupTimeWindow(),
-          time.getTime(), parcel.getPickupDuration()),
-        "parcel pickup is not allowed according to the time window policy: "
-          + "%s, current time: %s, time window %s.",
-        timeWindowPolicy, time.getTime(), parcel.getPickupTimeWindow());
-
-      checkArgument(parcel.canBePickedUp(vehicle, time.getTime()),
-        "the parcel does not allow pickup now");
-
-      eventDispatcher
-        .dispatchEvent(new PDPModelEvent(PDPModelEventType.START_PICKUP,
+    ParallelTicks.access(parcel, true);
+    /* 1 */checkVehicleInRoadModel(vehicle);
+    final ContainerState cs = containers.get(vehicle);
+    /* 4 */checkArgument(cs != null && cs.vehicleState != null,
+      VEHICLE_AVAILABLE_MSG);
+    try {
+      synchronized (cs) {
+        /* 2 */checkArgument(roadModel.containsObject(parcel),
+          "parcel does not exist in RoadModel");
+        final ParcelState ps = parcelState.getState(parcel);
+        /* 3 */checkArgument(
+          ps == ParcelState.AVAILABLE || ps == ParcelState.ANNOUNCED,
+          PARCEL_PICKUP_STATE_MSG, ps, parcel);
+        /* 4 */checkArgument(cs.vehicleState == VehicleState.IDLE,
+          VEHICLE_AVAILABLE_MSG);
+        /* 5 */checkArgument(roadModel.equalPosition(vehicle, parcel),
+          "vehicle must be at the same location as the parcel it wishes to "
+            + "pickup");
+        final double newSize = cs.contentsSize + parcel.getNeededCapacity();
+        /* 6 */checkArgument(
+          newSize <= cs.capacity,
+          "parcel does not fit in vehicle. Parcel size: %s, current contents "
+            + "size: %s, capacity: %s.",
+          parcel.getNeededCapacity(), cs.contentsSize, cs.capacity);
+
+        checkArgument(
+          timeWindowPolicy.canPickup(parcel.getPickupTimeWindow(),
+            time.getTime(), parcel.getPickupDuration()),
+          "parcel pickup is not allowed according to the time window policy: "
+            + "%s, current time: %s, time window %s.",
+          timeWindowPolicy, time.getTime(), parcel.getPickupTimeWindow());
+
+        checkArgument(parcel.canBePickedUp(vehicle, time.getTime()),
+          "the parcel does not allow pickup now");
+
+        // the parcel is claimed such that no other vehicle can pickup the
+        // parcel concurrently, its state does not change yet
+        /* 3 */checkArgument(
+          parcelState.claim(parcel, vehicle, ParcelState.AVAILABLE,
+            ParcelState.ANNOUNCED),
+          PARCEL_PICKUP_STATE_MSG, parcelState.getState(parcel), parcel);
+
+        dispatchLater(new PDPModelEvent(PDPModelEventType.START_PICKUP,
           self, time.getTime(), parcel, vehicle));
 
-      LOGGER.debug("{} {} starts picking up {}", time, vehicle, parcel);
+        LOGGER.debug("{} {} starts picking up {}", time, vehicle, parcel);
 
-      // remove the parcel such that no other attempts to pickup can be made
-      roadModel.removeObject(parcel);
+        // remove the parcel such that no other attempts to pickup can be made
+        roadModel.removeObject(parcel);
 
-      // in this case we know we cannot finish this action with the
-      // available time. We must continue in the next tick.
-      if (time.getTimeLeft() < parcel.getPickupDuration()) {
-        vehicleState.put(vehicle, VehicleState.PICKING_UP);
-        parcelState.put(ParcelState.PICKING_UP, parcel);
+        // in this case we know we cannot finish this action with the
+        // available time. We must continue in the next tick.
+        if (time.getTimeLeft() < parcel.getPickupDuration()) {
+          cs.vehicleState = VehicleState.PICKING_UP;
+          parcelState.set(parcel, ParcelState.PICKING_UP);
 
-        pendingVehicleActions.put(vehicle, new PickupAction(this, vehicle,
-          parcel, parcel.getPickupDuration() - time.getTimeLeft()));
-        time.consumeAll();
-      } else {
-        time.consume(parcel.getPickupDuration());
-        doPickup(vehicle, parcel, time.getTime());
+          schedule(cs, new PickupAction(this, vehicle, parcel,
+            parcel.getPickupDuration() - time.getTimeLeft()), time);
+          time.consumeAll();
+        } else {
+          time.consume(parcel.getPickupDuration());
+          doPickup(vehicle, parcel, time.getTime());
+        }
       }
+    } finally {
+      dispatchPending(cs);
     }
   }
 
+  // the action is completed in the tick that contains its completion time
+  void schedule(ContainerState cs, VehicleParcelAction action,
+      TimeLapse time) {
+    final Deadline due = new Deadline(time.getEndTime() + action.timeNeeded(),
+      actionSequence.getAndIncrement());
+    cs.pendingAction = action;
+    cs.pendingActionDue = due;
+    pendingActions.put(due, action);
+  }
+
   /**
    * Checks whether the vehicle exists in the RoadModel.
    *
@@ -250,64 +291,72 @@ public final class DefaultPDPModel extends PDPModel {
    * @see #pickup(Vehicle, Parcel, TimeLapse)
    */
   protected void doPickup(Vehicle vehicle, Parcel parcel, long time) {
-    synchronized (this) {
-      containerContents.put(vehicle, parcel);
-      containerContentsSize.put(vehicle, containerContentsSize.get(vehicle)
-        + parcel.getNeededCapacity());
-
-      parcelState.put(ParcelState.IN_CARGO, parcel);
-      LOGGER.info("{} end pickup of {} by {}", time, parcel, vehicle);
-      eventDispatcher.dispatchEvent(new PDPModelEvent(
-        PDPModelEventType.END_PICKUP, self, time, parcel, vehicle));
+    final ContainerState cs = state(vehicle);
+    try {
+      synchronized (cs) {
+        cs.add(parcel);
+        parcelState.set(parcel, ParcelState.IN_CARGO);
+        LOGGER.info("{} end pickup of {} by {}", time, parcel, vehicle);
+        dispatchLater(new PDPModelEvent(
+          PDPModelEventType.END_PICKUP, self, time, parcel, vehicle));
+      }
+    } finally {
+      dispatchPending(cs);
     }
   }
 
   void checkVehicleIdle(Vehicle vehicle) {
-    checkArgument(vehicleState.get(vehicle).equals(VehicleState.IDLE),
-      "Vehicle must be idle but is: %s ", vehicleState.get(vehicle));
+    final VehicleState state = vehicleState(vehicle).vehicleState;
+    checkArgument(state == VehicleState.IDLE,
+      "Vehicle must be idle but is: %s ", state);
   }
 
   void checkVehicleDoesNotContainParcel(Vehicle vehicle, Parcel parcel) {
-    checkArgument(containerContents.get(vehicle).contains(parcel),
+    checkArgument(state(vehicle).contents.contains(parcel),
       "vehicle does not contain parcel");
   }
 
   @Override
   public void deliver(Vehicle vehicle, Parcel parcel, TimeLapse time) {
-    synchronized (this) {
-      /* 1 */checkVehicleInRoadModel(vehicle);
-      /* 2 */checkVehicleIdle(vehicle);
-      /* 3 */checkVehicleDoesNotContainParcel(vehicle, parcel);
-      /* 4 */checkArgument(
-        parcel.getDeliveryLocation().equals(roadModel.getPosition(vehicle)),
-        "parcel must be delivered at its destination, vehicle should move "
-          + "there first");
-
-      checkArgument(
-        timeWindowPolicy.canDeliver(parcel.getDeliveryTimeWindow(),
-          time.getTime(), parcel.getDeliveryDuration()),
-        "parcel delivery is not allowed at this time (%s) according to the "
-          + "time window policy: %s",
-        time.getTime(), timeWindowPolicy);
-
-      checkArgument(parcel.canBeDelivered(vehicle, time.getTime()),
-        "the parcel does not allow a delivery now");
-
-      eventDispatcher.dispatchEvent(new PDPModelEvent(
-        PDPModelEventType.START_DELIVERY, self, time.getTime(), parcel,
-        vehicle));
-
-      LOGGER.debug("{} {} starts delivering {}", time, vehicle, parcel);
-      if (time.getTimeLeft() < parcel.getDeliveryDuration()) {
-        vehicleState.put(vehicle, VehicleState.DELIVERING);
-        parcelState.put(ParcelState.DELIVERING, parcel);
-        pendingVehicleActions.put(vehicle, new DeliverAction(this, vehicle,
-          parcel, parcel.getDeliveryDuration() - time.getTimeLeft()));
-        time.consumeAll();
-      } else {
-        time.consume(parcel.getDeliveryDuration());
-        doDeliver(vehicle, parcel, time.getTime());
+    ParallelTicks.access(parcel, true);
+    /* 1 */checkVehicleInRoadModel(vehicle);
+    final ContainerState cs = vehicleState(vehicle);
+    try {
+      synchronized (cs) {
+        /* 2 */checkVehicleIdle(vehicle);
+        /* 3 */checkVehicleDoesNotContainParcel(vehicle, parcel);
+        /* 4 */checkArgument(
+          parcel.getDeliveryLocation().equals(roadModel.getPosition(vehicle)),
+          "parcel must be delivered at its destination, vehicle should move "
+            + "there first");
+
+        checkArgument(
+          timeWindowPolicy.canDeliver(parcel.getDeliveryTimeWindow(),
+            time.getTime(), parcel.getDeliveryDuration()),
+          "parcel delivery is not allowed at this time (%s) according to the "
+            + "time window policy: %s",
+          time.getTime(), timeWindowPolicy);
+
+        checkArgument(parcel.canBeDelivered(vehicle, time.getTime()),
+          "the parcel does not allow a delivery now");
+
+        dispatchLater(new PDPModelEvent(PDPModelEventType.START_DELIVERY, self,
+          time.getTime(), parcel, vehicle));
+
+        LOGGER.debug("{} {} starts delivering {}", time, vehicle, parcel);
+        if (time.getTimeLeft() < parcel.getDeliveryDuration()) {
+          cs.vehicleState = VehicleState.DELIVERING;
+          parcelState.set(parcel, ParcelState.DELIVERING);
+          schedule(cs, new DeliverAction(this, vehicle, parcel,
+            parcel.getDeliveryDuration() - time.getTimeLeft()), time);
+          time.consumeAll();
+        } else {
+          time.consume(parcel.getDeliveryDuration());
+          doDeliver(vehicle, parcel, time.getTime());
+        }
       }
+    } finally {
+      dispatchPending(cs);
     }
   }
 
@@ -320,38 +369,45 @@ public final class DefaultPDPModel extends PDPModel {
    * @param time The current time.
    */
   protected void doDeliver(Vehicle vehicle, Parcel parcel, long time) {
-    synchronized (this) {
-      containerContents.remove(vehicle, parcel);
-      containerContentsSize.put(vehicle, containerContentsSize.get(vehicle)
-        - parcel.getNeededCapacity());
-
-      parcelState.put(ParcelState.DELIVERED, parcel);
-      LOGGER.info("{} end delivery of {} by {}", time, parcel, vehicle);
-      eventDispatcher.dispatchEvent(new PDPModelEvent(
-        PDPModelEventType.END_DELIVERY, self, time, parcel, vehicle));
+    final ContainerState cs = state(vehicle);
+    try {
+      synchronized (cs) {
+        cs.remove(parcel);
+        parcelState.set(parcel, ParcelState.DELIVERED);
+        LOGGER.info("{} end delivery of {} by {}", time, parcel, vehicle);
+        dispatchLater(new PDPModelEvent(
+          PDPModelEventType.END_DELIVERY, self, time, parcel, vehicle));
+      }
+    } finally {
+      dispatchPending(cs);
     }
   }
 
   @Override
   public void drop(Vehicle vehicle, Parcel parcel, TimeLapse time) {
-    synchronized (this) {
-      /* 1 */checkVehicleInRoadModel(vehicle);
-      /* 2 */checkVehicleIdle(vehicle);
-      /* 3 */checkVehicleDoesNotContainParcel(vehicle, parcel);
-
-      eventDispatcher.dispatchEvent(new PDPModelEvent(
-        PDPModelEventType.START_DELIVERY, self, time.getTime(), parcel,
-        vehicle));
-      if (time.getTimeLeft() < parcel.getDeliveryDuration()) {
-        vehicleState.put(vehicle, VehicleState.DELIVERING);
-        parcelState.put(ParcelState.DELIVERING, parcel);
-        pendingVehicleActions.put(vehicle, new DropAction(this, vehicle,
-          parcel, parcel.getDeliveryDuration() - time.getTimeLeft()));
-        time.consumeAll();
-      } else {
-        time.consume(parcel.getDeliveryDuration());
-        doDrop(vehicle, parcel, time.getTime());
+    ParallelTicks.access(parcel, true);
+    /* 1 */checkVehicleInRoadModel(vehicle);
+    final ContainerState cs = vehicleState(vehicle);
+    try {
+      synchronized (cs) {
+        /* 2 */checkVehicleIdle(vehicle);
+        /* 3 */checkVehicleDoesNotContainParcel(vehicle, parcel);
+
+        dispatchLater(new PDPModelEvent(PDPModelEventType.START_DELIVERY, self,
+          time.getTime(), parcel, vehicle));
+        if (time.getTimeLeft() < parcel.getDeliveryDuration()) {
+          cs.vehicleState = VehicleState.DELIVERING;
+          parcelState.set(parcel, ParcelState.DELIVERING);
+          schedule(cs, new DropAction(this, vehicle, parcel,
+            parcel.getDeliveryDuration() - time.getTimeLeft()), time);
+          time.consumeAll();
+        } else {
+          time.consume(parcel.getDeliveryDuration());
+          doDrop(vehicle, parcel, time.getTime());
+        }
       }
+    } finally {
+      dispatchPending(cs);
     }
   }
 
@@ -364,133 +420,163 @@ public final class DefaultPDPModel extends PDPModel {
    * @param time The current time.
    */
   protected void doDrop(Vehicle vehicle, Parcel parcel, long time) {
-    synchronized (this) {
-      containerContents.remove(vehicle, parcel);
-      containerContentsSize.put(vehicle, containerContentsSize.get(vehicle)
-        - parcel.getNeededCapacity());
-      roadModel.addObjectAtSamePosition(parcel, vehicle);
-      parcelState.put(ParcelState.AVAILABLE, parcel);
-      LOGGER.info("{} dropped {} by {}", time, parcel, vehicle);
-      eventDispatcher.dispatchEvent(new PDPModelEvent(
-        PDPModelEventType.PARCEL_AVAILABLE, self, time, parcel, null));
+    final ContainerState cs = state(vehicle);
+    try {
+      synchronized (cs) {
+        cs.remove(parcel);
+        roadModel.addObjectAtSamePosition(parcel, vehicle);
+        parcelState.set(parcel, ParcelState.AVAILABLE);
+        LOGGER.info("{} dropped {} by {}", time, parcel, vehicle);
+        dispatchLater(new PDPModelEvent(
+          PDPModelEventType.PARCEL_AVAILABLE, self, time, parcel, null));
+      }
+    } finally {
+      dispatchPending(cs);
     }
   }
 
   @Override
   public void addParcelIn(Container container, Parcel parcel) {
-    synchronized (this) {
-      /* 1 */checkArgument(!roadModel.containsObject(parcel),
-        "this parcel is already added to the roadmodel");
-      /* 2 */checkArgument(
-        parcelState.getKeys(parcel) == ParcelState.AVAILABLE,
-        "parcel must be registered and in AVAILABLE state, current state: %s",
-        parcelState.getKeys(parcel));
-      /* 3 */checkArgument(containerCapacities.containsKey(container),
-        "the parcel container is not registered");
+    /* 1 */checkArgument(!roadModel.containsObject(parcel),
+      "this parcel is already added to the roadmodel");
+    /* 2 */checkArgument(
+      parcelState.getState(parcel) == ParcelState.AVAILABLE,
+      PARCEL_AVAILABLE_MSG, parcelState.getState(parcel));
+    final ContainerState cs = containers.get(container);
+    /* 3 */checkArgument(cs != null,
+      "the parcel container is not registered");
+    synchronized (cs) {
       /* 4 */checkArgument(roadModel.containsObject(container),
         "the parcel container is not on the roadmodel");
-      final double newSize = containerContentsSize.get(container)
-        + parcel.getNeededCapacity();
+      final double newSize = cs.contentsSize + parcel.getNeededCapacity();
       /* 5 */checkArgument(
-        newSize <= containerCapacities.get(container),
+        newSize <= cs.capacity,
         "parcel does not fit in container. Capacity is %s, current content "
           + "size is %s, new parcel size is %s",
-        containerCapacities.get(container),
-        containerContentsSize.get(container), parcel.getNeededCapacity());
-
-      containerContents.put(container, parcel);
-      containerContentsSize.put(container, newSize);
-      parcelState.put(ParcelState.IN_CARGO, parcel);
+        cs.capacity, cs.contentsSize, parcel.getNeededCapacity());
+      /* 2 */checkArgument(
+        parcelState.transition(parcel, ParcelState.AVAILABLE,
+          ParcelState.IN_CARGO),
+        PARCEL_AVAILABLE_MSG, parcelState.getState(parcel));
+      cs.add(parcel);
     }
   }
 
   @Override
   public Collection<Parcel> getParcels(ParcelState state) {
-    synchronized (this) {
-      return parcelState.get(state);
-    }
+    return parcelState.view(state);
   }
 
   @Override
   public Collection<Parcel> getParcels(ParcelState... states) {
-    synchronized (this) {
-      return parcelState.getMultiple(states);
-    }
+    return ImmutableSet.copyOf(parcelState.view(states));
+  }
+
+  /**
+   * {@inheritDoc} This query is answered using a spatial index of the parcels
+   * that is created by the first query, its cost depends on the number of
+   * parcels near the position instead of on the total number of parcels.
+   * Parcels with an equal pickup deadline are ordered by the time at which
+   * they entered their state.
+   */
+  @Override
+  public ImmutableList<Parcel> getParcelsWithinRadius(Point position,
+      double radius, ParcelState... states) {
+    checkArgument(radius > 0, "radius should be strictly positive, found %s.",
+      radius);
+    return parcelState.findWithinRadius(position, radius, states);
+  }
+
+  /**
+   * {@inheritDoc} This query is answered using a sorted index of the pickup
+   * deadlines that is created by the first query, its cost depends on the
+   * number of returned parcels.
+   */
+  @Override
+  public ImmutableList<Parcel> getParcelsWithPickupDeadlineBefore(long time,
+      ParcelState... states) {
+    return parcelState.findDeadlineBefore(time, true, states);
+  }
+
+  /**
+   * {@inheritDoc} This query is answered using a sorted index of the delivery
+   * deadlines that is created by the first query, its cost depends on the
+   * number of returned parcels.
+   */
+  @Override
+  public ImmutableList<Parcel> getParcelsWithDeliveryDeadlineBefore(long time,
+      ParcelState... states) {
+    return parcelState.findDeadlineBefore(time, false, states);
   }
 
   @Override
   public Set<Vehicle> getVehicles() {
-    synchronized (this) {
-      return unmodifiableSet(vehicleState.keySet());
-    }
+    return vehicles;
   }
 
   @Override
   public ParcelState getParcelState(Parcel parcel) {
-    synchronized (this) {
-      return parcelState.getKeys(parcel);
-    }
+    ParallelTicks.access(parcel, false);
+    return parcelState.getState(parcel);
   }
 
   @Override
   public VehicleState getVehicleState(Vehicle vehicle) {
-    synchronized (this) {
-      checkArgument(vehicleState.containsKey(vehicle),
-        "vehicle must be registered");
-      return vehicleState.get(vehicle);
-    }
+    return vehicleState(vehicle).vehicleState;
   }
 
   // TODO create a similar method but with a parcel as key
   @Override
   public PDPModel.VehicleParcelActionInfo getVehicleActionInfo(
       Vehicle vehicle) {
-    synchronized (this) {
-      final VehicleState state = vehicleState.get(vehicle);
-      checkArgument(
-        state == VehicleState.DELIVERING || state == VehicleState.PICKING_UP,
-        "the vehicle must be in either DELIVERING or PICKING_UP state, "
-          + "but it is %s.",
-        state);
-      return (PDPModel.VehicleParcelActionInfo) pendingVehicleActions
-        .get(vehicle);
+    final ContainerState cs = containers.get(vehicle);
+    VehicleState state = null;
+    Action action = null;
+    if (cs != null) {
+      synchronized (cs) {
+        state = cs.vehicleState;
+        action = cs.pendingAction;
+      }
     }
+    checkArgument(
+      state == VehicleState.DELIVERING || state == VehicleState.PICKING_UP,
+      "the vehicle must be in either DELIVERING or PICKING_UP state, "
+        + "but it is %s.",
+      state);
+    return (PDPModel.VehicleParcelActionInfo) action;
   }
 
   @Override
   protected boolean doRegister(PDPObject element) {
     LOGGER.info("{} register {}", currentTime, element);
     if (element.getType() == PDPType.PARCEL) {
-      checkArgument(!parcelState.containsValue(element));
       final Parcel p = (Parcel) element;
       final ParcelState state = currentTime < p.getPickupTimeWindow().begin()
         ? ParcelState.ANNOUNCED
         : ParcelState.AVAILABLE;
-      synchronized (this) {
-        parcelState.put(state, (Parcel) element);
-      }
-      eventDispatcher.dispatchEvent(new PDPModelEvent(
+      parcelState.register(p, state);
+      dispatch(new PDPModelEvent(
         PDPModelEventType.NEW_PARCEL, self, currentTime, p, null));
       // if the parcel is immediately available, we send this event as well
       if (state == ParcelState.AVAILABLE) {
-        eventDispatcher.dispatchEvent(new PDPModelEvent(
+        dispatch(new PDPModelEvent(
           PDPModelEventType.PARCEL_AVAILABLE, self, currentTime, p, null));
       }
     } else {
       // it is a vehicle or a depot
       final Container container = (Container) element;
-      synchronized (this) {
-        checkArgument(!containerCapacities.containsKey(container));
-        containerCapacities.put(container, container.getCapacity());
-        containerContentsSize.put(container, 0d);
-        if (element.getType() == PDPType.VEHICLE) {
-          final Vehicle v = (Vehicle) element;
-          vehicleState.put(v, VehicleState.IDLE);
+      final boolean isVehicle = element.getType() == PDPType.VEHICLE;
+      final ContainerState cs =
+        new ContainerState(container.getCapacity(), isVehicle);
+      checkArgument(containers.putIfAbsent(container, cs) == null);
+      if (isVehicle) {
+        synchronized (containers) {
+          vehicles = ImmutableSet.<Vehicle>builder()
+            .addAll(vehicles)
+            .add((Vehicle) element)
+            .build();
         }
-      }
-
-      if (element.getType() == PDPType.VEHICLE) {
-        eventDispatcher.dispatchEvent(new PDPModelEvent(
+        dispatch(new PDPModelEvent(
           PDPModelEventType.NEW_VEHICLE, self, currentTime, null,
           (Vehicle) element));
       }
@@ -502,21 +588,27 @@ public final class DefaultPDPModel extends PDPModel {
 
   @Override
   public boolean unregister(PDPObject element) {
-    synchronized (this) {
-      LOGGER.info("unregister {}", element);
-      if (element instanceof Container) {
-        containerCapacities.remove(element);
-        containerContentsSize.remove(element);
-        containerContents.removeAll(element);
+    LOGGER.info("unregister {}", element);
+    if (element instanceof Container) {
+      final ContainerState cs = containers.remove(element);
+      if (cs != null && cs.pendingActionDue != null) {
+        pendingActions.remove(cs.pendingActionDue);
       }
+    }
 
-      if (element instanceof Parcel) {
-        parcelState.removeValue((Parcel) element);
-      }
+    if (element instanceof Parcel) {
+      parcelState.unregister((Parcel) element);
+    }
 
-      if (element instanceof Vehicle) {
-        vehicleState.remove(element);
-        pendingVehicleActions.remove(element);
+    if (element instanceof Vehicle) {
+      synchronized (containers) {
+        final ImmutableSet.Builder<Vehicle> builder = ImmutableSet.builder();
+        for (final Vehicle v : vehicles) {
+          if (v != element) {
+            builder.add(v);
+          }
+        }
+        vehicles = builder.build();
       }
     }
     return true;
@@ -529,41 +621,44 @@ public final class DefaultPDPModel extends PDPModel {
 
   @Override
   public boolean containerContains(Container container, Parcel parcel) {
-    synchronized (this) {
-      return containerContents.containsEntry(container, parcel);
-    }
+    final ContainerState cs = containers.get(container);
+    return cs != null && cs.contents.contains(parcel);
   }
 
   @Override
   protected void continuePreviousActions(Vehicle vehicle, TimeLapse time) {
-    synchronized (this) {
-      if (pendingVehicleActions.containsKey(vehicle)) {
-        final Action action = pendingVehicleActions.get(vehicle);
-        action.perform(time);
-        if (action.isDone()) {
-          pendingVehicleActions.remove(vehicle);
-          checkState(!pendingVehicleActions.containsKey(vehicle));
-          checkState(vehicleState.get(vehicle) == VehicleState.IDLE);
+    final ContainerState cs = containers.get(vehicle);
+    if (cs == null) {
+      return;
+    }
+    try {
+      synchronized (cs) {
+        final Action action = cs.pendingAction;
+        if (action != null) {
+          action.perform(time);
+          if (action.isDone()) {
+            pendingActions.remove(cs.pendingActionDue);
+            cs.pendingAction = null;
+            cs.pendingActionDue = null;
+            checkState(cs.vehicleState == VehicleState.IDLE);
+          }
         }
       }
+    } finally {
+      dispatchPending(cs);
     }
   }
 
   @Override
   public void tick(TimeLapse timeLapse) {
-    synchronized (this) {
-      // TODO this can be optimized by scheduling events upon registering
-      currentTime = timeLapse.getStartTime();
-      final Collection<Parcel> parcels = parcelState.get(ParcelState.ANNOUNCED);
-      final List<Parcel> newAvailables = newArrayList();
-      for (final Parcel p : parcels) {
-        if (timeLapse.getStartTime() >= p.getPickupTimeWindow().begin()) {
-          newAvailables.add(p);
-        }
-      }
-      for (final Parcel p : newAvailables) {
-        parcelState.put(ParcelState.AVAILABLE, p);
-        eventDispatcher.dispatchEvent(new PDPModelEvent(
+    currentTime = timeLapse.getStartTime();
+    // only the announced parcels of which the pickup time window has begun
+    // are visited
+    for (final Parcel p : parcelState.findAnnouncedUntil(currentTime)) {
+      // a parcel that is claimed by a vehicle is not made available
+      if (parcelState.transition(p, ParcelState.ANNOUNCED,
+        ParcelState.AVAILABLE)) {
+        dispatch(new PDPModelEvent(
           PDPModelEventType.PARCEL_AVAILABLE, self, currentTime, p, null));
       }
     }
@@ -572,6 +667,50 @@ public final class DefaultPDPModel extends PDPModel {
   @Override
   public void afterTick(TimeLapse timeLapse) {}
 
+  // a tick is needed when an announced parcel becomes available or when a
+  // pending action is completed
+  @Override
+  public long getNextEventTime(long time) {
+    long next = parcelState.getNextReleaseTime();
+    final Map.Entry<Deadline, Action> first = pendingActions.firstEntry();
+    if (first != null) {
+      next = Math.min(next, first.getKey().time);
+    }
+    return next;
+  }
+
+  // events are dispatched one at a time such that listeners do not need to be
+  // thread-safe
+  void dispatch(PDPModelEvent event) {
+    synchronized (eventDispatcher) {
+      ParallelTicks.dispatchEvent(eventDispatcher, event);
+    }
+  }
+
+  // is used while the lock of a container is held, a listener that calls the
+  // model from another thread can otherwise cause a deadlock
+  void dispatchLater(PDPModelEvent event) {
+    pendingEvents.get().add(event);
+  }
+
+  // dispatches the events of the current thread as soon as it no longer holds
+  // the lock of the container
+  void dispatchPending(ContainerState cs) {
+    if (Thread.holdsLock(cs)) {
+      return;
+    }
+    final List<PDPModelEvent> events = pendingEvents.get();
+    if (events.isEmpty()) {
+      return;
+    }
+    // listeners may use the model which can add new events to the list
+    final List<PDPModelEvent> toDispatch = new ArrayList<>(events);
+    events.clear();
+    for (final PDPModelEvent event : toDispatch) {
+      dispatch(event);
+    }
+  }
+
   @Override
   public TimeWindowPolicy getTimeWindowPolicy() {
     return timeWindowPolicy;
@@ -589,9 +728,7 @@ public final class DefaultPDPModel extends PDPModel {
   @Override
   @Nonnull
   public <U> U get(Class<U> type) {
-    synchronized (this) {
-      return type.cast(self);
-    }
+    return type.cast(self);
   }
 
   /**
@@ -717,6 +854,49 @@ public final class DefaultPDPModel extends PDPModel {
     }
   }
 
+  // the state of a container, modifications are guarded by the monitor of
+  // this object, the volatile fields can be read without locking
+  static final class ContainerState {
+    final double capacity;
+    volatile ImmutableSet<Parcel> contents;
+    volatile double contentsSize;
+    // null for containers that are not a vehicle
+    @Nullable
+    volatile VehicleState vehicleState;
+    @Nullable
+    volatile Action pendingAction;
+    @Nullable
+    volatile Deadline pendingActionDue;
+
+    ContainerState(double cap, boolean isVehicle) {
+      capacity = cap;
+      contents = ImmutableSet.of();
+      if (isVehicle) {
+        vehicleState = VehicleState.IDLE;
+      }
+    }
+
+    // contents are copied on write, readers receive immutable snapshots
+    void add(Parcel parcel) {
+      contents = ImmutableSet.<Parcel>builder()
+        .addAll(contents)
+        .add(parcel)
+        .build();
+      contentsSize += parcel.getNeededCapacity();
+    }
+
+    void remove(Parcel parcel) {
+      final ImmutableSet.Builder<Parcel> builder = ImmutableSet.builder();
+      for (final Parcel p : contents) {
+        if (p != parcel) {
+          builder.add(p);
+        }
+      }
+      contents = builder.build();
+      contentsSize -= parcel.getNeededCapacity();
+    }
+  }
+
   static class PickupAction extends VehicleParcelAction {
     PickupAction(DefaultPDPModel model, Vehicle v, Parcel p, long pTimeNeeded) {
       super(model, v, p, pTimeNeeded);
@@ -724,7 +904,7 @@ public final class DefaultPDPModel extends PDPModel {
 
     @Override
     public void finish(TimeLapse time) {
-      modelRef.vehicleState.put(vehicle, VehicleState.IDLE);
+      modelRef.state(vehicle).vehicleState = VehicleState.IDLE;
       modelRef.doPickup(vehicle, parcel, time.getTime());
     }
   }
@@ -736,7 +916,7 @@ public final class DefaultPDPModel extends PDPModel {
 
     @Override
     protected void finish(TimeLapse time) {
-      modelRef.vehicleState.put(vehicle, VehicleState.IDLE);
+      modelRef.state(vehicle).vehicleState = VehicleState.IDLE;
       modelRef.doDrop(vehicle, parcel, time.getTime());
     }
 
@@ -750,7 +930,7 @@ public final class DefaultPDPModel extends PDPModel {
 
     @Override
     public void finish(TimeLapse time) {
-      modelRef.vehicleState.put(vehicle, VehicleState.IDLE);
+      modelRef.state(vehicle).vehicleState = VehicleState.IDLE;
       modelRef.doDeliver(vehicle, parcel, time.getTime());
     }
   }
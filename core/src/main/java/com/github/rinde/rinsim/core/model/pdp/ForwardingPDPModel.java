@@ -22,6 +22,8 @@ import javax.annotation.Nonnull;
 
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.event.EventAPI;
+import com.github.rinde.rinsim.geom.Point;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 /**
@@ -109,6 +111,24 @@ public class ForwardingPDPModel extends PDPModel {
     return delegate.getParcels(states);
   }
 
+  @Override
+  public ImmutableList<Parcel> getParcelsWithinRadius(Point position,
+      double radius, ParcelState... states) {
+    return delegate.getParcelsWithinRadius(position, radius, states);
+  }
+
+  @Override
+  public ImmutableList<Parcel> getParcelsWithPickupDeadlineBefore(long time,
+      ParcelState... states) {
+    return delegate.getParcelsWithPickupDeadlineBefore(time, states);
+  }
+
+  @Override
+  public ImmutableList<Parcel> getParcelsWithDeliveryDeadlineBefore(long time,
+      ParcelState... states) {
+    return delegate.getParcelsWithDeliveryDeadlineBefore(time, states);
+  }
+
   @Override
   public Set<Vehicle> getVehicles() {
     return delegate.getVehicles();
@@ -15,9 +15,12 @@
  */
 package com.github.rinde.rinsim.core.model.pdp;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -27,6 +30,8 @@ import com.github.rinde.rinsim.core.model.Model.AbstractModel;
 import com.github.rinde.rinsim.core.model.time.TickListener;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.event.EventAPI;
+import com.github.rinde.rinsim.geom.Point;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 /**
@@ -239,6 +244,71 @@ public abstract class PDPModel extends AbstractModel<PDPObject>
    */
   public abstract Collection<Parcel> getParcels(ParcelState... states);
 
+  /**
+   * Finds the parcels of which the pickup location is within the specified
+   * radius of a position. Objects exactly at the radius are excluded. This
+   * implementation visits all parcels in the specified states, subclasses can
+   * override it to use an index.
+   * @param position The position around which is searched.
+   * @param radius The radius, must be strictly positive.
+   * @param states All returned parcels have one of the specified states.
+   * @return The parcels ordered by the end of their pickup time window, parcels
+   *         with an equal pickup deadline are in the order of
+   *         {@link #getParcels(ParcelState...)}.
+   */
+  public ImmutableList<Parcel> getParcelsWithinRadius(Point position,
+      double radius, ParcelState... states) {
+    checkArgument(radius > 0, "radius should be strictly positive, found %s.",
+      radius);
+    final List<Parcel> found = new ArrayList<>();
+    for (final Parcel p : getParcels(states)) {
+      if (Point.distance(position, p.getPickupLocation()) < radius) {
+        found.add(p);
+      }
+    }
+    return ParcelStateMap.sortByDeadline(found, true);
+  }
+
+  /**
+   * Finds the parcels of which the pickup time window closes before the
+   * specified time. This implementation visits all parcels in the specified
+   * states, subclasses can override it to use an index.
+   * @param time The pickup time window of all returned parcels ends strictly
+   *          before this time.
+   * @param states All returned parcels have one of the specified states.
+   * @return The parcels ordered by the end of their pickup time window.
+   */
+  public ImmutableList<Parcel> getParcelsWithPickupDeadlineBefore(long time,
+      ParcelState... states) {
+    final List<Parcel> found = new ArrayList<>();
+    for (final Parcel p : getParcels(states)) {
+      if (p.getPickupTimeWindow().end() < time) {
+        found.add(p);
+      }
+    }
+    return ParcelStateMap.sortByDeadline(found, true);
+  }
+
+  /**
+   * Finds the parcels of which the delivery time window closes before the
+   * specified time. This implementation visits all parcels in the specified
+   * states, subclasses can override it to use an index.
+   * @param time The delivery time window of all returned parcels ends strictly
+   *          before this time.
+   * @param states All returned parcels have one of the specified states.
+   * @return The parcels ordered by the end of their delivery time window.
+   */
+  public ImmutableList<Parcel> getParcelsWithDeliveryDeadlineBefore(long time,
+      ParcelState... states) {
+    final List<Parcel> found = new ArrayList<>();
+    for (final Parcel p : getParcels(states)) {
+      if (p.getDeliveryTimeWindow().end() < time) {
+        found.add(p);
+      }
+    }
+    return ParcelStateMap.sortByDeadline(found, false);
+  }
+
   /**
    * @return The set of known vehicles.
    */
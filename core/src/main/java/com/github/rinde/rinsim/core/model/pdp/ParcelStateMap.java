@@ -0,0 +1,544 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.pdp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+
+import com.github.rinde.rinsim.core.model.pdp.PDPModel.ParcelState;
+import com.github.rinde.rinsim.core.model.road.GridSpatialRegistry;
+import com.github.rinde.rinsim.geom.Point;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+
+/**
+ * The states of all parcels of a {@link DefaultPDPModel}. The state of each
+ * parcel is an atomic reference, state transitions are compare-and-set
+ * operations such that two threads can not both make the same transition. For
+ * each state the parcels are indexed in the order in which they entered the
+ * state, the index is exposed via non-copying read views. The index is
+ * updated after the state of a parcel has changed, a concurrent reader of a
+ * view may therefore briefly see a parcel in both its old and its new state.
+ * <p>
+ * In addition, announced parcels are indexed by the begin of their pickup
+ * time window. The indexes of the end of the pickup and delivery time windows
+ * and of the pickup locations are only created by the first query that needs
+ * them, until then transitions do not pay for them. Queries on these indexes
+ * verify the state of each result such that they never return a parcel in a
+ * state that was not asked for. This class is thread-safe.
+ * @author Rinde van Lon
+ */
+final class ParcelStateMap {
+  private final ConcurrentMap<Parcel, AtomicReference<Entry>> entries;
+  private final Map<ParcelState, ConcurrentSkipListMap<Long, Parcel>> index;
+  private final Map<ParcelState, AtomicInteger> sizes;
+  // created by the first pickup and delivery deadline query respectively
+  @Nullable
+  private volatile Map<ParcelState,
+      ConcurrentSkipListMap<Deadline, Parcel>> pickupDeadlines;
+  @Nullable
+  private volatile Map<ParcelState,
+      ConcurrentSkipListMap<Deadline, Parcel>> deliveryDeadlines;
+  // announced parcels by the begin of their pickup time window
+  private final ConcurrentSkipListMap<Deadline, Parcel> releaseTimes;
+  private final AtomicLong sequence;
+  // created by the first spatial query
+  @Nullable
+  private volatile Map<ParcelState, GridSpatialRegistry<Parcel>> grids;
+
+  ParcelStateMap() {
+    entries = new ConcurrentHashMap<>();
+    index = new EnumMap<>(ParcelState.class);
+    sizes = new EnumMap<>(ParcelState.class);
+    for (final ParcelState ps : ParcelState.values()) {
+      index.put(ps, new ConcurrentSkipListMap<Long, Parcel>());
+      sizes.put(ps, new AtomicInteger());
+    }
+    releaseTimes = new ConcurrentSkipListMap<>();
+    sequence = new AtomicLong();
+  }
+
+  void register(Parcel parcel, ParcelState state) {
+    final Entry entry = new Entry(state, sequence.getAndIncrement(), null);
+    checkArgument(entries.putIfAbsent(parcel, new AtomicReference<>(entry))
+      == null, "%s is already registered.", parcel);
+    add(parcel, entry);
+  }
+
+  void unregister(Parcel parcel) {
+    final AtomicReference<Entry> ref = entries.remove(parcel);
+    if (ref != null) {
+      remove(parcel, ref.get());
+    }
+  }
+
+  boolean contains(Parcel parcel) {
+    return entries.containsKey(parcel);
+  }
+
+  @Nullable
+  ParcelState getState(Parcel parcel) {
+    final AtomicReference<Entry> ref = entries.get(parcel);
+    if (ref == null) {
+      return null;
+    }
+    return ref.get().state;
+  }
+
+  /**
+   * Claims the parcel for the specified vehicle if it is in one of the
+   * specified states and not yet claimed by another vehicle. The state of the
+   * parcel does not change, the claim is released by the next transition.
+   * @return <code>true</code> if the claim succeeded.
+   */
+  boolean claim(Parcel parcel, Vehicle vehicle, ParcelState... states) {
+    final AtomicReference<Entry> ref = entries.get(parcel);
+    if (ref == null) {
+      return false;
+    }
+    while (true) {
+      final Entry cur = ref.get();
+      if (cur.claimant != null || !isOneOf(cur.state, states)) {
+        return false;
+      }
+      if (ref.compareAndSet(cur, new Entry(cur.state, cur.order, vehicle))) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Sets the state of the parcel if it is currently in the expected state
+   * and not claimed.
+   * @return <code>true</code> if the transition succeeded.
+   */
+  boolean transition(Parcel parcel, ParcelState expected, ParcelState next) {
+    final AtomicReference<Entry> ref = entries.get(parcel);
+    if (ref == null) {
+      return false;
+    }
+    while (true) {
+      final Entry cur = ref.get();
+      if (cur.claimant != null || cur.state != expected) {
+        return false;
+      }
+      if (update(parcel, ref, cur, next)) {
+        return true;
+      }
+    }
+  }
+
+  // unconditionally sets the state and releases a claim
+  void set(Parcel parcel, ParcelState next) {
+    final AtomicReference<Entry> ref = entries.get(parcel);
+    checkArgument(ref != null, "%s is not registered.", parcel);
+    boolean updated = false;
+    while (!updated) {
+      updated = update(parcel, ref, ref.get(), next);
+    }
+  }
+
+  Set<Parcel> view(ParcelState... states) {
+    return new StateView(states);
+  }
+
+  private boolean update(Parcel parcel, AtomicReference<Entry> ref,
+      Entry cur, ParcelState next) {
+    final Entry entry = new Entry(next, sequence.getAndIncrement(), null);
+    if (ref.compareAndSet(cur, entry)) {
+      // the parcel is first added to its new state to avoid that it is
+      // temporarily invisible
+      add(parcel, entry);
+      remove(parcel, cur);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Finds the parcels in one of the specified states of which the pickup
+   * location is within the radius of the position.
+   * @return The parcels ordered by the end of their pickup time window.
+   */
+  ImmutableList<Parcel> findWithinRadius(Point position, double radius,
+      ParcelState... states) {
+    final Map<ParcelState, GridSpatialRegistry<Parcel>> gs = grids(radius);
+    final List<Parcel> found = new ArrayList<>();
+    for (final ParcelState ps : distinct(states)) {
+      for (final Parcel p : gs.get(ps).findObjectsWithinRadius(position,
+        radius)) {
+        if (getState(p) == ps) {
+          found.add(p);
+        }
+      }
+    }
+    return sortByDeadline(found, true);
+  }
+
+  /**
+   * Finds the parcels in one of the specified states of which the pickup
+   * (<code>pickup == true</code>) or delivery time window ends before the
+   * specified time.
+   * @return The parcels ordered by the end of the time window.
+   */
+  ImmutableList<Parcel> findDeadlineBefore(long time, boolean pickup,
+      ParcelState... states) {
+    final Map<ParcelState,
+        ConcurrentSkipListMap<Deadline, Parcel>> deadlines = deadlines(pickup);
+    final ParcelState[] ss = distinct(states);
+    if (ss.length == 1) {
+      return filter(deadlines.get(ss[0]).headMap(new Deadline(time,
+        Long.MIN_VALUE)).entrySet(), ss[0]);
+    }
+    final List<Parcel> found = new ArrayList<>();
+    for (final ParcelState ps : ss) {
+      found.addAll(filter(deadlines.get(ps).headMap(new Deadline(time,
+        Long.MIN_VALUE)).entrySet(), ps));
+    }
+    return sortByDeadline(found, pickup);
+  }
+
+  /**
+   * Finds the announced parcels of which the pickup time window begins at or
+   * before the specified time.
+   * @return The parcels in the order in which they were announced.
+   */
+  ImmutableList<Parcel> findAnnouncedUntil(long time) {
+    final List<Deadline> keys = new ArrayList<>(
+      releaseTimes.headMap(new Deadline(time, Long.MAX_VALUE)).keySet());
+    if (keys.isEmpty()) {
+      return ImmutableList.of();
+    }
+    Collections.sort(keys, new Comparator<Deadline>() {
+      @Override
+      public int compare(Deadline o1, Deadline o2) {
+        return Long.compare(o1.order, o2.order);
+      }
+    });
+    final ImmutableList.Builder<Parcel> builder = ImmutableList.builder();
+    for (final Deadline key : keys) {
+      final Parcel p = releaseTimes.get(key);
+      if (p != null && getState(p) == ParcelState.ANNOUNCED) {
+        builder.add(p);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return The earliest begin of the pickup time window of all announced
+   *         parcels, or {@link Long#MAX_VALUE} if there are no announced
+   *         parcels.
+   */
+  long getNextReleaseTime() {
+    final Map.Entry<Deadline, Parcel> first = releaseTimes.firstEntry();
+    if (first == null) {
+      return Long.MAX_VALUE;
+    }
+    return first.getKey().time;
+  }
+
+  // an entry of a deadline index is only valid if the parcel is still in the
+  // state that it entered at the moment of the entry
+  private ImmutableList<Parcel> filter(
+      Collection<Map.Entry<Deadline, Parcel>> candidates, ParcelState state) {
+    final ImmutableList.Builder<Parcel> builder = ImmutableList.builder();
+    for (final Map.Entry<Deadline, Parcel> candidate : candidates) {
+      final AtomicReference<Entry> ref = entries.get(candidate.getValue());
+      if (ref != null) {
+        final Entry cur = ref.get();
+        if (cur.state == state && cur.order == candidate.getKey().order) {
+          builder.add(candidate.getValue());
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  private Map<ParcelState, ConcurrentSkipListMap<Deadline, Parcel>> deadlines(
+      boolean pickup) {
+    Map<ParcelState, ConcurrentSkipListMap<Deadline, Parcel>> ds =
+      deadlineIndex(pickup);
+    if (ds == null) {
+      synchronized (this) {
+        ds = deadlineIndex(pickup);
+        if (ds == null) {
+          ds = new EnumMap<>(ParcelState.class);
+          for (final ParcelState ps : ParcelState.values()) {
+            ds.put(ps, new ConcurrentSkipListMap<Deadline, Parcel>());
+          }
+          // the index is published before it is filled such that concurrent
+          // transitions are not lost, outdated entries are filtered by the
+          // queries
+          if (pickup) {
+            pickupDeadlines = ds;
+          } else {
+            deliveryDeadlines = ds;
+          }
+          for (final ParcelState ps : ParcelState.values()) {
+            for (final Map.Entry<Long, Parcel> e : index.get(ps).entrySet()) {
+              ds.get(ps).put(deadline(e.getValue(), e.getKey(), pickup),
+                e.getValue());
+            }
+          }
+        }
+      }
+    }
+    return ds;
+  }
+
+  @Nullable
+  private Map<ParcelState,
+      ConcurrentSkipListMap<Deadline, Parcel>> deadlineIndex(boolean pickup) {
+    if (pickup) {
+      return pickupDeadlines;
+    }
+    return deliveryDeadlines;
+  }
+
+  private Map<ParcelState, GridSpatialRegistry<Parcel>> grids(double size) {
+    Map<ParcelState, GridSpatialRegistry<Parcel>> gs = grids;
+    if (gs == null) {
+      synchronized (this) {
+        gs = grids;
+        if (gs == null) {
+          // the radius of the first query is used as the cell size
+          gs = new EnumMap<>(ParcelState.class);
+          for (final ParcelState ps : ParcelState.values()) {
+            gs.put(ps, GridSpatialRegistry.<Parcel>create(size));
+          }
+          // the grids are published before they are filled such that
+          // concurrent transitions are not lost, a parcel that is added to
+          // the grid of an outdated state is filtered by the queries
+          grids = gs;
+          for (final ParcelState ps : ParcelState.values()) {
+            for (final Parcel p : index.get(ps).values()) {
+              gs.get(ps).addAt(p, p.getPickupLocation());
+            }
+          }
+        }
+      }
+    }
+    return gs;
+  }
+
+  private void add(Parcel parcel, Entry entry) {
+    index.get(entry.state).put(entry.order, parcel);
+    sizes.get(entry.state).incrementAndGet();
+    final Map<ParcelState, ConcurrentSkipListMap<Deadline, Parcel>> pds =
+      pickupDeadlines;
+    if (pds != null) {
+      pds.get(entry.state).put(deadline(parcel, entry.order, true), parcel);
+    }
+    final Map<ParcelState, ConcurrentSkipListMap<Deadline, Parcel>> dds =
+      deliveryDeadlines;
+    if (dds != null) {
+      dds.get(entry.state).put(deadline(parcel, entry.order, false), parcel);
+    }
+    if (entry.state == ParcelState.ANNOUNCED) {
+      releaseTimes.put(
+        new Deadline(parcel.getPickupTimeWindow().begin(), entry.order),
+        parcel);
+    }
+    final Map<ParcelState, GridSpatialRegistry<Parcel>> gs = grids;
+    if (gs != null) {
+      gs.get(entry.state).addAt(parcel, parcel.getPickupLocation());
+    }
+  }
+
+  private void remove(Parcel parcel, Entry entry) {
+    if (index.get(entry.state).remove(entry.order) != null) {
+      sizes.get(entry.state).decrementAndGet();
+    }
+    final Map<ParcelState, ConcurrentSkipListMap<Deadline, Parcel>> pds =
+      pickupDeadlines;
+    if (pds != null) {
+      pds.get(entry.state).remove(deadline(parcel, entry.order, true));
+    }
+    final Map<ParcelState, ConcurrentSkipListMap<Deadline, Parcel>> dds =
+      deliveryDeadlines;
+    if (dds != null) {
+      dds.get(entry.state).remove(deadline(parcel, entry.order, false));
+    }
+    if (entry.state == ParcelState.ANNOUNCED) {
+      releaseTimes.remove(
+        new Deadline(parcel.getPickupTimeWindow().begin(), entry.order));
+    }
+    final Map<ParcelState, GridSpatialRegistry<Parcel>> gs = grids;
+    if (gs != null) {
+      gs.get(entry.state).removeObject(parcel);
+    }
+  }
+
+  // the end of the pickup or delivery time window of the parcel
+  static Deadline deadline(Parcel parcel, long order, boolean pickup) {
+    if (pickup) {
+      return new Deadline(parcel.getPickupTimeWindow().end(), order);
+    }
+    return new Deadline(parcel.getDeliveryTimeWindow().end(), order);
+  }
+
+  static ImmutableList<Parcel> sortByDeadline(List<Parcel> parcels,
+      final boolean pickup) {
+    // the sort is stable, parcels with equal deadlines keep their order
+    Collections.sort(parcels, new Comparator<Parcel>() {
+      @Override
+      public int compare(Parcel o1, Parcel o2) {
+        if (pickup) {
+          return Long.compare(o1.getPickupTimeWindow().end(),
+            o2.getPickupTimeWindow().end());
+        }
+        return Long.compare(o1.getDeliveryTimeWindow().end(),
+          o2.getDeliveryTimeWindow().end());
+      }
+    });
+    return ImmutableList.copyOf(parcels);
+  }
+
+  static ParcelState[] distinct(ParcelState... states) {
+    final List<ParcelState> list = new ArrayList<>(states.length);
+    for (final ParcelState ps : states) {
+      if (!list.contains(ps)) {
+        list.add(ps);
+      }
+    }
+    return list.toArray(new ParcelState[list.size()]);
+  }
+
+  static boolean isOneOf(ParcelState state, ParcelState... states) {
+    for (final ParcelState ps : states) {
+      if (ps == state) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static final class Entry {
+    final ParcelState state;
+    // the position of the parcel in the index of its state
+    final long order;
+    @Nullable
+    final Vehicle claimant;
+
+    Entry(ParcelState s, long o, @Nullable Vehicle c) {
+      state = s;
+      order = o;
+      claimant = c;
+    }
+  }
+
+  // a moment in time, such as the end of a time window, the order makes keys
+  // unique
+  static final class Deadline implements Comparable<Deadline> {
+    final long time;
+    final long order;
+
+    Deadline(long t, long o) {
+      time = t;
+      order = o;
+    }
+
+    @Override
+    public int compareTo(Deadline o) {
+      final int cmp = Long.compare(time, o.time);
+      if (cmp != 0) {
+        return cmp;
+      }
+      return Long.compare(order, o.order);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object other) {
+      if (!(other instanceof Deadline)) {
+        return false;
+      }
+      final Deadline o = (Deadline) other;
+      return time == o.time && order == o.order;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(time, order);
+    }
+  }
+
+  // a live and unmodifiable set of the parcels in one or more states, the
+  // parcels are ordered by state and then by the time they entered the state
+  final class StateView extends AbstractSet<Parcel> {
+    private final ParcelState[] states;
+
+    StateView(ParcelState[] ss) {
+      states = distinct(ss);
+    }
+
+    @Override
+    public Iterator<Parcel> iterator() {
+      final List<Iterator<Parcel>> its = new ArrayList<>(states.length);
+      for (final ParcelState ps : states) {
+        its.add(index.get(ps).values().iterator());
+      }
+      return Iterators.unmodifiableIterator(Iterators.concat(its.iterator()));
+    }
+
+    @Override
+    public int size() {
+      int size = 0;
+      for (final ParcelState ps : states) {
+        size += Math.max(0, sizes.get(ps).get());
+      }
+      return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      for (final ParcelState ps : states) {
+        if (!index.get(ps).isEmpty()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+      if (!(o instanceof Parcel)) {
+        return false;
+      }
+      final ParcelState state = getState((Parcel) o);
+      return state != null && isOneOf(state, states);
+    }
+  }
+}
@@ -17,11 +17,11 @@ package com.github.rinde.rinsim.core.model.road;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verifyNotNull;
-import static com.google.common.collect.Lists.newArrayList;
-import static com.google.common.collect.Maps.newLinkedHashMap;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -33,6 +33,7 @@ import javax.measure.quantity.Length;
 import javax.measure.quantity.Velocity;
 import javax.measure.unit.Unit;
 
+import com.github.rinde.rinsim.core.model.time.ParallelTicks;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.event.EventAPI;
 import com.github.rinde.rinsim.geom.GeomHeuristic;
@@ -42,6 +43,8 @@ import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 /**
@@ -72,7 +75,8 @@ public abstract class AbstractRoadModel extends GenericRoadModel {
       Unit<Velocity> speedUnit) {
     super();
     unitConversion = new RoadUnits(distanceUnit, speedUnit);
-    objDestinations = newLinkedHashMap();
+    objDestinations = Collections.synchronizedMap(
+      Maps.<MovingRoadUser, DestinationPath>newLinkedHashMap());
   }
 
   /**
@@ -89,10 +93,14 @@ public abstract class AbstractRoadModel extends GenericRoadModel {
       "Path can not be empty, found empty path for %s.", object);
     checkArgument(time.hasTimeLeft(),
       "Can not follow path when no time is left. For road user %s.", object);
-    final Point dest = newArrayList(path).get(path.size() - 1);
-    objDestinations.put(object, new DestinationPath(dest, path));
+    final Point dest = last(path);
+    final DestinationPath current = objDestinations.get(object);
+    if (current == null || current.path != path
+      || !current.destination.equals(dest)) {
+      objDestinations.put(object, new DestinationPath(dest, path));
+    }
     final MoveProgress mp = doFollowPath(object, path, time);
-    eventDispatcher.dispatchEvent(new MoveEvent(self, object, mp));
+    dispatchMove(object, mp);
     return mp;
   }
 
@@ -117,24 +125,50 @@ public abstract class AbstractRoadModel extends GenericRoadModel {
   @Override
   public MoveProgress moveTo(MovingRoadUser object, Point destination,
       TimeLapse time, GeomHeuristic heuristic) {
+    final DestinationPath current = objDestinations.get(object);
     final Queue<Point> path;
-    if (objDestinations.containsKey(object)
-      && objDestinations.get(object).destination.equals(destination)) {
+    if (current != null && current.destination.equals(destination)) {
       // is valid move? -> assume it is
-      path = objDestinations.get(object).path;
+      path = current.path;
     } else {
-      path = new LinkedList<>(
-        getPathTo(object, destination, time.getTimeUnit(),
-          Measure.valueOf(unitConversion.toExSpeed(object.getSpeed()),
-            unitConversion.getExSpeedUnit()),
-          heuristic).getPath());
-      objDestinations.put(object, new DestinationPath(destination, path));
+      final List<Point> newPath = getPathTo(object, destination,
+        time.getTimeUnit(),
+        Measure.valueOf(unitConversion.toExSpeed(object.getSpeed()),
+          unitConversion.getExSpeedUnit()),
+        heuristic).getPath();
+      // the buffer of the previous path is reused if it is owned by the model
+      final ArrayDeque<Point> buffer;
+      if (current != null && current.ownsPath) {
+        buffer = (ArrayDeque<Point>) current.path;
+        buffer.clear();
+      } else {
+        buffer = new ArrayDeque<>(newPath.size());
+      }
+      buffer.addAll(newPath);
+      path = buffer;
+      objDestinations.put(object,
+        new DestinationPath(destination, buffer, true));
     }
     final MoveProgress mp = doFollowPath(object, path, time);
-    eventDispatcher.dispatchEvent(new MoveEvent(self, object, mp));
+    dispatchMove(object, mp);
     return mp;
   }
 
+  // the event is only created if someone is listening
+  void dispatchMove(MovingRoadUser object, MoveProgress mp) {
+    if (eventDispatcher.hasListenerFor(RoadEventType.MOVE)) {
+      ParallelTicks.dispatchEvent(eventDispatcher,
+        new MoveEvent(self, object, mp));
+    }
+  }
+
+  static Point last(Queue<Point> path) {
+    if (path instanceof Deque) {
+      return ((Deque<Point>) path).getLast();
+    }
+    return Iterables.getLast(path);
+  }
+
   /**
    * Should be overridden by subclasses to define actual
    * {@link RoadModel#followPath(MovingRoadUser, Queue, TimeLapse)} behavior.
@@ -161,7 +195,7 @@ public abstract class AbstractRoadModel extends GenericRoadModel {
     checkArgument(!registry().containsObject(newObj),
       "Object is already added: %s.", newObj);
     registry().addAt(newObj, pos);
-    eventDispatcher.dispatchEvent(new RoadModelEvent(
+    ParallelTicks.dispatchEvent(eventDispatcher, new RoadModelEvent(
       RoadEventType.ADD_ROAD_USER, this, newObj));
   }
 
@@ -172,7 +206,7 @@ public abstract class AbstractRoadModel extends GenericRoadModel {
     checkArgument(registry().containsObject(existingObj),
       "Object %s does not exist.", existingObj);
     registry().addAt(newObj, registry().getPosition(existingObj));
-    eventDispatcher.dispatchEvent(new RoadModelEvent(
+    ParallelTicks.dispatchEvent(eventDispatcher, new RoadModelEvent(
       RoadEventType.ADD_ROAD_USER, this, newObj));
   }
 
@@ -182,7 +216,7 @@ public abstract class AbstractRoadModel extends GenericRoadModel {
       "RoadUser: %s does not exist.", roadUser);
     registry().removeObject(roadUser);
     objDestinations.remove(roadUser);
-    eventDispatcher.dispatchEvent(new RoadModelEvent(
+    ParallelTicks.dispatchEvent(eventDispatcher, new RoadModelEvent(
       RoadEventType.REMOVE_ROAD_USER, this, roadUser));
   }
 
@@ -343,10 +377,18 @@ public abstract class AbstractRoadModel extends GenericRoadModel {
      * The path leading to the destination.
      */
     public final Queue<Point> path;
+    // indicates whether the path was created by the model, in that case it
+    // can be reused for a next path of the same road user
+    final boolean ownsPath;
 
     DestinationPath(Point dest, Queue<Point> p) {
+      this(dest, p, false);
+    }
+
+    DestinationPath(Point dest, Queue<Point> p, boolean owned) {
       destination = dest;
       path = p;
+      ownsPath = owned;
     }
   }
 }
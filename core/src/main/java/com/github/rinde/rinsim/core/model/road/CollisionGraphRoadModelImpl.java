@@ -19,11 +19,8 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verify;
 
 import java.util.Queue;
-import java.util.Set;
 
-import javax.measure.Measure;
 import javax.measure.quantity.Duration;
-import javax.measure.quantity.Length;
 import javax.measure.unit.Unit;
 
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
@@ -34,6 +31,7 @@ import com.github.rinde.rinsim.geom.ListenableGraph;
 import com.github.rinde.rinsim.geom.ListenableGraph.GraphEvent;
 import com.github.rinde.rinsim.geom.Point;
 import com.github.rinde.rinsim.util.CategoryMap;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
@@ -57,6 +55,8 @@ public class CollisionGraphRoadModelImpl
   private final double minConnLength;
   private final double vehicleLength;
   private final double minDistance;
+  // bidirectional index, CategoryMap maintains both the occupant -> nodes and
+  // the node -> occupant mapping, all lookups are constant time
   private final SetMultimap<MovingRoadUser, Point> occupiedNodes;
 
   CollisionGraphRoadModelImpl(ListenableGraph<?> g, double pMinConnLength,
@@ -109,12 +109,10 @@ public class CollisionGraphRoadModelImpl
           registry().addAt(object, conn, relPos - distToTo, DELTA);
           if (mp != null) {
             final double correctedDist =
-              unitConversion.toInDist(mp.distance().getValue().doubleValue())
-                - distToTo;
-            final Measure<Double, Length> distTraveled = unitConversion
-              .toExDistMeasure(correctedDist);
-            mp =
-              MoveProgress.create(distTraveled, mp.time(), mp.travelledNodes());
+              unitConversion.toInDist(mp.getDistanceValue()) - distToTo;
+            mp = MoveProgress.create(unitConversion.toExDist(correctedDist),
+              unitConversion.getExDistUnit(), mp.getTimeValue(),
+              mp.getTimeUnit(), mp.travelledNodes());
           }
         } else if (distToTo > 0) {
           verify(!occupiedNodes.containsValue(conn.to()));
@@ -142,23 +140,16 @@ public class CollisionGraphRoadModelImpl
           : conn.getLength())
           - vehicleLength - minDistance;
       }
-      // check if there is an obstacle on the connection
-      if (registry().hasObjectOn(conn)) {
+      // check if there is an obstacle ahead on the connection
+      final double relPos = registry().getRelativePosition(from);
+      final Optional<Double> obstacle =
+        registry().findNextRelativePosition(conn, relPos);
+      if (obstacle.isPresent()) {
         // if yes, how far is it from 'from'
-        final Set<RoadUser> potentialObstacles =
-          registry().getObjectsOn(conn);
-        for (final RoadUser ru : potentialObstacles) {
-          final Point loc = registry().getPosition(ru);
-
-          if (registry().isOnConnection(loc) && registry()
-            .getRelativePosition(loc) > registry().getRelativePosition(from)) {
-            final double dist = registry().getRelativePosition(loc)
-              - registry().getRelativePosition(from)
-              - vehicleLength - minDistance;
-            if (dist < closestDist) {
-              closestDist = dist;
-            }
-          }
+        final double dist =
+          obstacle.get() - relPos - vehicleLength - minDistance;
+        if (dist < closestDist) {
+          closestDist = dist;
         }
       }
     }
@@ -69,7 +69,7 @@ public class CollisionPlaneRoadModel extends PlaneRoadModel {
       deltaMax, DMAX_RAD_RATIO, objRadius, maxSpeed, getSpeedUnit(),
       c.getTickLength(), c.getTimeUnit());
 
-    blockingRegistry = MapSpatialRegistry.create();
+    blockingRegistry = b.createRegistry();
   }
 
   /**
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.road;
+
+import java.util.List;
+
+import javax.measure.Measure;
+import javax.measure.quantity.Duration;
+import javax.measure.quantity.Velocity;
+import javax.measure.unit.Unit;
+
+import com.github.rinde.rinsim.geom.CompactGraph;
+import com.github.rinde.rinsim.geom.ContractionHierarchy;
+import com.github.rinde.rinsim.geom.GeomHeuristic;
+import com.github.rinde.rinsim.geom.GeomHeuristics;
+import com.github.rinde.rinsim.geom.Graph;
+import com.github.rinde.rinsim.geom.Point;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Special {@link GraphRoadModelImpl} that answers shortest path queries using
+ * {@link ContractionHierarchy}s. A hierarchy is constructed for
+ * {@link GeomHeuristics#euclidean()} and for each heuristic that is specified
+ * in the builder, this is done once when the model is constructed.
+ * {@link #getShortestPathTo(Point, Point)} and the
+ * <code>getPathTo(..)</code> methods (also on the {@link #getSnapshot()}) use
+ * the hierarchy of the requested heuristic and fall back to A* for heuristics
+ * without hierarchy. The graph should not be modified after construction of
+ * the model. Instances can be obtained via
+ * {@link RoadModelBuilders.StaticGraphRMB#withContractionHierarchies(GeomHeuristic[])}
+ * @author Rinde van Lon
+ */
+public class ContractedGraphRoadModel extends GraphRoadModelImpl {
+  private final ImmutableMap<GeomHeuristic, ContractionHierarchy> hierarchies;
+  private final ContractionHierarchy euclidean;
+  private final ContractedGraphRoadModelSnapshot contractedSnapshot;
+
+  ContractedGraphRoadModel(Graph<?> g, RoadModelBuilders.ContractedGraphRMB b) {
+    super(g, b);
+    final GraphRoadModelSnapshot snapshot =
+      (GraphRoadModelSnapshot) super.getSnapshot();
+    // all hierarchies share the same compact graph
+    final CompactGraph<?> compact = CompactGraph.copyOf(snapshot.getGraph());
+    final ImmutableMap.Builder<GeomHeuristic, ContractionHierarchy> builder =
+      ImmutableMap.builder();
+    for (final GeomHeuristic h : b.getHeuristics()) {
+      builder.put(h, ContractionHierarchy.create(compact, h));
+    }
+    hierarchies = builder.build();
+    euclidean = hierarchies.get(GeomHeuristics.euclidean());
+    contractedSnapshot =
+      new ContractedGraphRoadModelSnapshot(snapshot, hierarchies);
+  }
+
+  /**
+   * @return The {@link ContractionHierarchy}s of this model, indexed by their
+   *         heuristic.
+   */
+  public ImmutableMap<GeomHeuristic, ContractionHierarchy> getHierarchies() {
+    return hierarchies;
+  }
+
+  @Override
+  protected List<Point> doGetShortestPathTo(Point from, Point to) {
+    return euclidean.shortestPath(from, to);
+  }
+
+  @Override
+  public RoadPath getPathTo(Point from, Point to, Unit<Duration> timeUnit,
+      Measure<Double, Velocity> speed, GeomHeuristic heuristic) {
+    return contractedSnapshot.getPathTo(from, to, timeUnit, speed, heuristic);
+  }
+
+  @Override
+  public RoadModelSnapshot getSnapshot() {
+    return contractedSnapshot;
+  }
+}
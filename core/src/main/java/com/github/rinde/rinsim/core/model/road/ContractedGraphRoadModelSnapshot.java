@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.road;
+
+import javax.annotation.Nullable;
+import javax.measure.Measure;
+import javax.measure.quantity.Duration;
+import javax.measure.quantity.Length;
+import javax.measure.quantity.Velocity;
+import javax.measure.unit.Unit;
+
+import com.github.rinde.rinsim.geom.ContractionHierarchy;
+import com.github.rinde.rinsim.geom.GeomHeuristic;
+import com.github.rinde.rinsim.geom.Point;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The snapshot for a {@link ContractedGraphRoadModel}. Paths for heuristics
+ * for which a {@link ContractionHierarchy} is available are computed using the
+ * hierarchy, all other paths are computed by the underlying
+ * {@link GraphRoadModelSnapshot}. Since the hierarchies are derived data they
+ * are not taken into account in {@link #equals(Object)}.
+ * @author Rinde van Lon
+ */
+final class ContractedGraphRoadModelSnapshot implements RoadModelSnapshot {
+  private final GraphRoadModelSnapshot delegate;
+  private final ImmutableMap<GeomHeuristic, ContractionHierarchy> hierarchies;
+
+  ContractedGraphRoadModelSnapshot(GraphRoadModelSnapshot snapshot,
+      ImmutableMap<GeomHeuristic, ContractionHierarchy> chs) {
+    delegate = snapshot;
+    hierarchies = chs;
+  }
+
+  GraphRoadModelSnapshot getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public RoadPath getPathTo(Point from, Point to, Unit<Duration> timeUnit,
+      Measure<Double, Velocity> speed, GeomHeuristic heuristic) {
+    final ContractionHierarchy ch = hierarchies.get(heuristic);
+    if (ch == null) {
+      return delegate.getPathTo(from, to, timeUnit, speed, heuristic);
+    }
+    return delegate.toRoadPath(ch.shortestPath(from, to), timeUnit, speed,
+      heuristic);
+  }
+
+  @Override
+  public Measure<Double, Length> getDistanceOfPath(Iterable<Point> path)
+      throws IllegalArgumentException {
+    return delegate.getDistanceOfPath(path);
+  }
+
+  @Override
+  public boolean equals(@Nullable Object other) {
+    return other instanceof ContractedGraphRoadModelSnapshot
+      && Objects.equal(delegate,
+        ((ContractedGraphRoadModelSnapshot) other).delegate);
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "ContractedGraphRoadModelSnapshot{" + delegate + ", heuristics="
+      + hierarchies.keySet() + "}";
+  }
+}
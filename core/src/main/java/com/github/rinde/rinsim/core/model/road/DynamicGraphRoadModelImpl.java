@@ -31,7 +31,6 @@ import com.github.rinde.rinsim.geom.Connection;
 import com.github.rinde.rinsim.geom.ConnectionData;
 import com.github.rinde.rinsim.geom.GeomHeuristic;
 import com.github.rinde.rinsim.geom.Graph;
-import com.github.rinde.rinsim.geom.ImmutableGraph;
 import com.github.rinde.rinsim.geom.ListenableGraph;
 import com.github.rinde.rinsim.geom.ListenableGraph.EventTypes;
 import com.github.rinde.rinsim.geom.ListenableGraph.GraphEvent;
@@ -227,8 +226,8 @@ public class DynamicGraphRoadModelImpl
   }
 
   private void updateSnapshot() {
-    snapshot = Optional.of(GraphRoadModelSnapshot.create(
-      ImmutableGraph.copyOf(getGraph()), getDistanceUnit()));
+    snapshot = Optional.of(
+      GraphRoadModelSnapshot.create(getGraph(), getDistanceUnit()));
   }
 
   private static class GraphModificationChecker implements Listener {
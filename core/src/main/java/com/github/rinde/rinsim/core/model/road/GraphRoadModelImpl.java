@@ -15,7 +15,6 @@
  */
 package com.github.rinde.rinsim.core.model.road;
 
-import static com.github.rinde.rinsim.geom.Graphs.shortestPathEuclideanDistance;
 import static com.github.rinde.rinsim.geom.Graphs.unmodifiableGraph;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -36,11 +35,12 @@ import javax.measure.unit.Unit;
 import org.apache.commons.math3.random.RandomGenerator;
 
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
+import com.github.rinde.rinsim.geom.AStar;
 import com.github.rinde.rinsim.geom.Connection;
 import com.github.rinde.rinsim.geom.ConnectionData;
 import com.github.rinde.rinsim.geom.GeomHeuristic;
+import com.github.rinde.rinsim.geom.GeomHeuristics;
 import com.github.rinde.rinsim.geom.Graph;
-import com.github.rinde.rinsim.geom.ImmutableGraph;
 import com.github.rinde.rinsim.geom.MultiAttributeData;
 import com.github.rinde.rinsim.geom.Point;
 import com.google.common.base.Optional;
@@ -89,8 +89,7 @@ public class GraphRoadModelImpl extends AbstractRoadModel
       RoadModelBuilders.AbstractGraphRMB<?, ?, ?> b) {
     super(b.getDistanceUnit(), b.getSpeedUnit());
     graph = g;
-    snapshot = GraphRoadModelSnapshot.create(
-      ImmutableGraph.copyOf(graph), b.getDistanceUnit());
+    snapshot = GraphRoadModelSnapshot.create(graph, b.getDistanceUnit());
 
     registry =
       GraphSpatialRegistry.create(MapSpatialRegistry.<RoadUser>create());
@@ -407,8 +406,8 @@ public class GraphRoadModelImpl extends AbstractRoadModel
   }
 
   /**
-   * Uses the A* algorithm:
-   * {@link com.github.rinde.rinsim.geom.Graphs#shortestPathEuclideanDistance}.
+   * Uses the A* algorithm as implemented in {@link AStar} with the
+   * {@link GeomHeuristics#euclidean()} heuristic.
    * This method can optionally be overridden by subclasses to define another
    * shortest path algorithm.
    * @param from The start point of the path.
@@ -416,7 +415,7 @@ public class GraphRoadModelImpl extends AbstractRoadModel
    * @return The shortest path.
    */
   protected List<Point> doGetShortestPathTo(Point from, Point to) {
-    return shortestPathEuclideanDistance(graph, from, to);
+    return AStar.shortestPath(graph, from, to, GeomHeuristics.euclidean());
   }
 
   @Override
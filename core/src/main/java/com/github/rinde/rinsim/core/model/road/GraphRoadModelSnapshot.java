@@ -26,9 +26,11 @@ import javax.measure.quantity.Length;
 import javax.measure.quantity.Velocity;
 import javax.measure.unit.Unit;
 
+import com.github.rinde.rinsim.geom.AStar;
+import com.github.rinde.rinsim.geom.CompactGraph;
 import com.github.rinde.rinsim.geom.ConnectionData;
 import com.github.rinde.rinsim.geom.GeomHeuristic;
-import com.github.rinde.rinsim.geom.Graphs;
+import com.github.rinde.rinsim.geom.Graph;
 import com.github.rinde.rinsim.geom.ImmutableGraph;
 import com.github.rinde.rinsim.geom.Point;
 import com.google.auto.value.AutoValue;
@@ -36,7 +38,9 @@ import com.google.auto.value.AutoValue;
 /**
  * The snapshot for a {@link GraphRoadModel}. It can be a snapshot of a
  * {@link DynamicGraphRoadModel} as well, since a snapshot loses its dynamic
- * aspect.
+ * aspect. The graph of a snapshot is either an {@link ImmutableGraph} or a
+ * {@link CompactGraph}, a {@link CompactGraph} is used as is without making a
+ * copy.
  * @author Vincent Van Gestel
  */
 @AutoValue
@@ -45,7 +49,7 @@ abstract class GraphRoadModelSnapshot
 
   GraphRoadModelSnapshot() {}
 
-  public abstract ImmutableGraph<? extends ConnectionData> getGraph();
+  public abstract Graph<? extends ConnectionData> getGraph();
 
   public abstract Unit<Length> getModelDistanceUnit();
 
@@ -53,8 +57,13 @@ abstract class GraphRoadModelSnapshot
   public RoadPath getPathTo(Point from, Point to, Unit<Duration> timeUnit,
       Measure<Double, Velocity> speed, GeomHeuristic heuristic) {
     final List<Point> path =
-      Graphs.shortestPath(getGraph(), from, to, heuristic);
+      AStar.shortestPath(getGraph(), from, to, heuristic);
+    return toRoadPath(path, timeUnit, speed, heuristic);
+  }
 
+  // decorates the path with its cost and travel time
+  RoadPath toRoadPath(List<Point> path, Unit<Duration> timeUnit,
+      Measure<Double, Velocity> speed, GeomHeuristic heuristic) {
     final Iterator<Point> pathIt = path.iterator();
 
     double cost = 0d;
@@ -87,8 +96,14 @@ abstract class GraphRoadModelSnapshot
   }
 
   static GraphRoadModelSnapshot create(
-      ImmutableGraph<ConnectionData> graph, Unit<Length> distanceUnit) {
-    return new AutoValue_GraphRoadModelSnapshot(graph, distanceUnit);
+      Graph<? extends ConnectionData> graph, Unit<Length> distanceUnit) {
+    final Graph<? extends ConnectionData> immutableGraph;
+    if (graph instanceof CompactGraph) {
+      immutableGraph = graph;
+    } else {
+      immutableGraph = ImmutableGraph.copyOf(graph);
+    }
+    return new AutoValue_GraphRoadModelSnapshot(immutableGraph, distanceUnit);
   }
 
 }
@@ -16,6 +16,7 @@
 package com.github.rinde.rinsim.core.model.road;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -26,20 +27,29 @@ import com.github.rinde.rinsim.geom.Connection;
 import com.github.rinde.rinsim.geom.Point;
 import com.google.auto.value.AutoValue;
 import com.google.common.base.Optional;
+import com.google.common.collect.BoundType;
 import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.SetMultimap;
+import com.google.common.collect.SortedMultiset;
+import com.google.common.collect.TreeMultiset;
 
-// adapter that includes graph specific info
+// adapter that includes graph specific info, all methods that read or write
+// the graph specific info are synchronized
 public class GraphSpatialRegistry<T> extends ForwardingSpatialRegistry<T> {
   // contains map: RoadUser -> Point
   final SpatialRegistry<T> delegate;
   final Map<T, ConnLoc> connLocMap;
   final SetMultimap<Point, T> posMap;
   final SetMultimap<Connection<?>, T> connMap;
+  // contains the relative positions of the objects on each connection, sorted
+  // such that the next object on a connection can be found in log time
+  final Map<Connection<?>, SortedMultiset<Double>> connPositions;
 
   GraphSpatialRegistry(SpatialRegistry<T> deleg) {
     delegate = deleg;
     connMap = LinkedHashMultimap.create();
+    connPositions = new HashMap<>();
     posMap = LinkedHashMultimap.create();
     connLocMap = new LinkedHashMap<>();
   }
@@ -50,11 +60,11 @@ public class GraphSpatialRegistry<T> extends ForwardingSpatialRegistry<T> {
   }
 
   @Override
-  public void addAt(T obj, Point position) {
+  public synchronized void addAt(T obj, Point position) {
     addAt(obj, position, null);
   }
 
-  public Point addAt(T obj, Connection<?> conn, double relPos,
+  public synchronized Point addAt(T obj, Connection<?> conn, double relPos,
       double precision) {
     final Point diff = Point.diff(conn.to(), conn.from());
     final double perc = relPos / conn.getLength();
@@ -73,7 +83,7 @@ public class GraphSpatialRegistry<T> extends ForwardingSpatialRegistry<T> {
     return pos;
   }
 
-  void addAt(T obj, Point position, @Nullable ConnLoc connLoc) {
+  synchronized void addAt(T obj, Point position, @Nullable ConnLoc connLoc) {
     @Nullable
     ConnLoc cl = connLoc;
     // if no ConnLoc is provided but the position is known to be on a
@@ -92,11 +102,17 @@ public class GraphSpatialRegistry<T> extends ForwardingSpatialRegistry<T> {
     if (cl != null) {
       connMap.put(cl.connection(), obj);
       connLocMap.put(obj, cl);
+      SortedMultiset<Double> positions = connPositions.get(cl.connection());
+      if (positions == null) {
+        positions = TreeMultiset.create();
+        connPositions.put(cl.connection(), positions);
+      }
+      positions.add(cl.relativePosition());
     }
   }
 
   @Override
-  public void removeObject(T object) {
+  public synchronized void removeObject(T object) {
     final Point pos = getPosition(object);
     delegate.removeObject(object);
     posMap.remove(pos, object);
@@ -105,36 +121,45 @@ public class GraphSpatialRegistry<T> extends ForwardingSpatialRegistry<T> {
       final ConnLoc connLoc = connLocMap.get(object);
       connMap.remove(connLoc.connection(), object);
       connLocMap.remove(object);
+      final SortedMultiset<Double> positions =
+        connPositions.get(connLoc.connection());
+      positions.remove(connLoc.relativePosition());
+      if (positions.isEmpty()) {
+        connPositions.remove(connLoc.connection());
+      }
     }
   }
 
   @Override
-  public void clear() {
+  public synchronized void clear() {
     super.clear();
     connMap.clear();
     posMap.clear();
+    connLocMap.clear();
+    connPositions.clear();
   }
 
   // returns true if it is known that point p is on a connection. this can only
   // the case if a roaduser resides at that location
-  public boolean isOnConnection(Point p) {
+  public synchronized boolean isOnConnection(Point p) {
     return posMap.containsKey(p)
       && isOnConnection(posMap.get(p).iterator().next());
   }
 
-  public boolean isOnConnection(T ru) {
+  public synchronized boolean isOnConnection(T ru) {
     return connLocMap.containsKey(ru);
   }
 
-  public Connection<?> getConnection(Point p) {
+  public synchronized Connection<?> getConnection(Point p) {
     return getConnection(posMap.get(p).iterator().next());
   }
 
-  public Connection<?> getConnection(T ru) {
+  public synchronized Connection<?> getConnection(T ru) {
     return connLocMap.get(ru).connection();
   }
 
-  public Optional<? extends Connection<?>> getOptionalConnection(T ru) {
+  public synchronized Optional<? extends Connection<?>> getOptionalConnection(
+      T ru) {
     final ConnLoc cl = connLocMap.get(ru);
     if (cl == null) {
       return Optional.absent();
@@ -142,14 +167,14 @@ public class GraphSpatialRegistry<T> extends ForwardingSpatialRegistry<T> {
     return Optional.of(cl.connection());
   }
 
-  public double getRelativePosition(Point p) {
+  public synchronized double getRelativePosition(Point p) {
     if (!posMap.containsKey(p)) {
       return 0d;
     }
     return getRelativePosition(posMap.get(p).iterator().next());
   }
 
-  public double getRelativePosition(T ru) {
+  public synchronized double getRelativePosition(T ru) {
     if (!connLocMap.containsKey(ru)) {
       return 0d;
     }
@@ -157,14 +182,39 @@ public class GraphSpatialRegistry<T> extends ForwardingSpatialRegistry<T> {
   }
 
   // excluding from/to
-  public boolean hasObjectOn(Connection<?> conn) {
+  public synchronized boolean hasObjectOn(Connection<?> conn) {
     return connMap.containsKey(conn);
   }
 
-  public boolean hasObjectOn(Point pos) {
+  public synchronized boolean hasObjectOn(Point pos) {
     return posMap.containsKey(pos);
   }
 
+  /**
+   * Finds the smallest relative position of an object on the specified
+   * connection that is strictly greater than the specified relative position,
+   * i.e. the position of the first object ahead on the connection. This
+   * operation takes logarithmic time in the number of objects on the
+   * connection.
+   * @param conn The connection to search.
+   * @param relPos The relative position on the connection.
+   * @return The relative position of the first object ahead or
+   *         {@link Optional#absent()} if there is no such object.
+   */
+  public synchronized Optional<Double> findNextRelativePosition(
+      Connection<?> conn, double relPos) {
+    final SortedMultiset<Double> positions = connPositions.get(conn);
+    if (positions == null) {
+      return Optional.absent();
+    }
+    final Multiset.Entry<Double> next =
+      positions.tailMultiset(relPos, BoundType.OPEN).firstEntry();
+    if (next == null) {
+      return Optional.absent();
+    }
+    return Optional.of(next.getElement());
+  }
+
   public Set<T> getObjectsOn(Connection<?> conn) {
     return Collections.unmodifiableSet(connMap.get(conn));
   }
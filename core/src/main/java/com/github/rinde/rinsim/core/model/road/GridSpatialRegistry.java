@@ -0,0 +1,592 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.road;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import com.github.rinde.rinsim.geom.Point;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A {@link SpatialRegistry} that indexes its objects in a uniform grid of
+ * square cells. The grid is stored in a hash map such that only occupied
+ * cells use memory and the grid is unbounded. Adding, moving and removing an
+ * object are constant time operations, queries only visit the cells that
+ * overlap with the queried area. For the best performance the cell size
+ * should be in the order of magnitude of the radius of the queries that are
+ * used most often.
+ * <p>
+ * The results of all queries are equal to the results of the
+ * {@link MapSpatialRegistry}. The radius and rectangle queries also have the
+ * same order: objects are ordered by the time they were added to the
+ * registry. The objects found by {@link #findNearestObjects(Point, int)} are
+ * ordered by increasing distance, objects at the same distance are ordered by
+ * the time they were added. This class is thread-safe, all methods lock the
+ * registry. Code that queries a registry that does not change from many
+ * threads should query a {@link #snapshot()} instead.
+ * @author Rinde van Lon
+ * @param <T> The type of element in this data structure.
+ */
+public final class GridSpatialRegistry<T> implements SpatialRegistry<T> {
+  private static final int INT_BITS = 32;
+  private static final long INT_MASK = 0xffffffffL;
+  private static final String RADIUS_MSG =
+    "radius should be strictly positive, found %s.";
+  private static final String RECT_MSG =
+    "Invalid rectangle, expected 'min' < 'max', found %s and %s.";
+  private static final String CELL_SIZE_MSG =
+    "cellSize should be strictly positive, found %s.";
+
+  private final double cellSize;
+  // object -> location in insertion order
+  private final Map<T, Location> objLocs;
+  // cell key -> objects in the cell
+  private final Map<Long, Set<T>> cells;
+  // bounding box of all cells that have been occupied since the last clear
+  private int minCellX;
+  private int minCellY;
+  private int maxCellX;
+  private int maxCellY;
+  private long counter;
+
+  private GridSpatialRegistry(double size) {
+    cellSize = size;
+    objLocs = new LinkedHashMap<>();
+    cells = new HashMap<>();
+    resetBounds();
+  }
+
+  /**
+   * @return The size of the cells of the grid.
+   */
+  public double getCellSize() {
+    return cellSize;
+  }
+
+  @Override
+  public synchronized boolean containsObject(T object) {
+    return objLocs.containsKey(object);
+  }
+
+  @Override
+  public synchronized void removeObject(T object) {
+    final Location loc = objLocs.remove(object);
+    if (loc != null) {
+      removeFromCell(object, loc.cell);
+    }
+  }
+
+  @Override
+  public synchronized void clear() {
+    objLocs.clear();
+    cells.clear();
+    resetBounds();
+  }
+
+  @Override
+  public synchronized Point getPosition(T object) {
+    checkArgument(containsObject(object), "RoadUser does not exist: %s.",
+      object);
+    return objLocs.get(object).position;
+  }
+
+  @Override
+  public synchronized void addAt(T object, Point position) {
+    checkNotNull(position);
+    final int cx = cellIndex(position.x);
+    final int cy = cellIndex(position.y);
+    final long cell = key(cx, cy);
+    final Location loc = objLocs.get(object);
+    if (loc == null) {
+      objLocs.put(object, new Location(position, cell, counter++));
+    } else {
+      loc.position = position;
+      if (loc.cell == cell) {
+        return;
+      }
+      removeFromCell(object, loc.cell);
+      loc.cell = cell;
+    }
+    Set<T> objs = cells.get(cell);
+    if (objs == null) {
+      objs = new LinkedHashSet<>();
+      cells.put(cell, objs);
+    }
+    objs.add(object);
+    minCellX = Math.min(minCellX, cx);
+    minCellY = Math.min(minCellY, cy);
+    maxCellX = Math.max(maxCellX, cx);
+    maxCellY = Math.max(maxCellY, cy);
+  }
+
+  @Override
+  public synchronized ImmutableMap<T, Point> getObjectsAndPositions() {
+    final ImmutableMap.Builder<T, Point> builder = ImmutableMap.builder();
+    for (final Entry<T, Location> entry : objLocs.entrySet()) {
+      builder.put(entry.getKey(), entry.getValue().position);
+    }
+    return builder.build();
+  }
+
+  @Override
+  public synchronized ImmutableSet<T> getObjects() {
+    return ImmutableSet.copyOf(objLocs.keySet());
+  }
+
+  // excludes objects on border of radius
+  @Override
+  public synchronized ImmutableSet<T> findObjectsWithinRadius(Point position,
+      double radius) {
+    checkArgument(radius > 0, RADIUS_MSG, radius);
+    final List<T> found = new ArrayList<>();
+    for (final T obj : candidates(
+      new Point(position.x - radius, position.y - radius),
+      new Point(position.x + radius, position.y + radius))) {
+      if (Point.distance(position, objLocs.get(obj).position) < radius) {
+        found.add(obj);
+      }
+    }
+    return inInsertionOrder(found);
+  }
+
+  // include objects on border of rect
+  @Override
+  public synchronized ImmutableSet<T> findObjectsInRect(Point min, Point max) {
+    checkArgument(min.x < max.x && min.y < max.y, RECT_MSG, min, max);
+    final List<T> found = new ArrayList<>();
+    for (final T obj : candidates(min, max)) {
+      if (MapSpatialRegistry.isInRect(min, max, objLocs.get(obj).position)) {
+        found.add(obj);
+      }
+    }
+    return inInsertionOrder(found);
+  }
+
+  // in case multiple objects with the same distance exist, the object that was
+  // added to the registry first is prioritized
+  @Override
+  public synchronized ImmutableSet<T> findNearestObjects(Point position,
+      int n) {
+    checkArgument(n > 0, "n should be strictly positive, found %s.", n);
+    if (objLocs.isEmpty()) {
+      return ImmutableSet.of();
+    } else if (objLocs.size() <= n) {
+      return getObjects();
+    }
+    // the head of the queue is the worst of the n best objects found so far
+    final PriorityQueue<Candidate<T>> queue =
+      new PriorityQueue<>(n, Collections.reverseOrder());
+    // long arithmetic, the cell indices of extreme coordinates are saturated
+    // at the int bounds
+    final long cx = cellIndex(position.x);
+    final long cy = cellIndex(position.y);
+    final long maxRing = Math.max(
+      Math.max(cx - minCellX, maxCellX - cx),
+      Math.max(cy - minCellY, maxCellY - cy));
+    long visited = 0;
+    for (long ring = 0; ring <= maxRing; ring++) {
+      // all objects in this ring and beyond are at least this far away
+      final double ringDist = (ring - 1) * cellSize;
+      if (queue.size() == n && queue.peek().dist < ringDist) {
+        break;
+      }
+      // only the border of the square is visited, cells outside the bounds of
+      // the occupied cells are skipped
+      final long x1 = Math.max(cx - ring, minCellX);
+      final long x2 = Math.min(cx + ring, maxCellX);
+      final long y1 = Math.max(cy - ring, minCellY);
+      final long y2 = Math.min(cy + ring, maxCellY);
+      visited += 2 * (x2 - x1 + 1) + 2 * (y2 - y1 + 1);
+      if (visited > cells.size()) {
+        // the rings visit more cells than there are occupied cells (e.g. when
+        // objects are far apart), it is cheaper to check all objects
+        queue.clear();
+        for (final Entry<T, Location> entry : objLocs.entrySet()) {
+          offer(queue, n, position, entry.getKey(), entry.getValue());
+        }
+        break;
+      }
+      for (long x = x1; x <= x2; x++) {
+        if (x == cx - ring || x == cx + ring) {
+          for (long y = y1; y <= y2; y++) {
+            addCandidates(queue, n, position, x, y);
+          }
+        } else {
+          if (cy - ring >= y1 && cy - ring <= y2) {
+            addCandidates(queue, n, position, x, cy - ring);
+          }
+          if (cy + ring >= y1 && cy + ring <= y2) {
+            addCandidates(queue, n, position, x, cy + ring);
+          }
+        }
+      }
+    }
+    final List<Candidate<T>> nearest = new ArrayList<>(queue);
+    Collections.sort(nearest);
+    final ImmutableSet.Builder<T> builder = ImmutableSet.builder();
+    for (final Candidate<T> c : nearest) {
+      builder.add(c.obj);
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return An immutable copy of the current contents of this registry that
+   *         can be queried concurrently without locking.
+   */
+  public synchronized Snapshot<T> snapshot() {
+    return Snapshot.create(cellSize, getObjectsAndPositions());
+  }
+
+  /**
+   * Create a new empty registry.
+   * @param cellSize The size of the cells of the grid, must be strictly
+   *          positive.
+   * @param <T> The type of element in the registry.
+   * @return A new instance.
+   */
+  public static <T> GridSpatialRegistry<T> create(double cellSize) {
+    checkArgument(cellSize > 0d, CELL_SIZE_MSG, cellSize);
+    return new GridSpatialRegistry<>(cellSize);
+  }
+
+  private void addCandidates(PriorityQueue<Candidate<T>> queue, int n,
+      Point position, long x, long y) {
+    final Set<T> objs = cells.get(key(x, y));
+    if (objs == null) {
+      return;
+    }
+    for (final T obj : objs) {
+      offer(queue, n, position, obj, objLocs.get(obj));
+    }
+  }
+
+  private static <T> void offer(PriorityQueue<Candidate<T>> queue, int n,
+      Point position, T obj, Location loc) {
+    final Candidate<T> c =
+      new Candidate<>(obj, Point.distance(position, loc.position), loc.order);
+    if (queue.size() < n) {
+      queue.add(c);
+    } else if (c.compareTo(queue.peek()) < 0) {
+      queue.remove();
+      queue.add(c);
+    }
+  }
+
+  // all objects in the cells that overlap with the rectangle
+  private List<T> candidates(Point min, Point max) {
+    // the range is clamped to the occupied cells, the loop variables are
+    // longs such that the loops terminate at the int bounds
+    final long x1 = Math.max(cellIndex(min.x), minCellX);
+    final long y1 = Math.max(cellIndex(min.y), minCellY);
+    final long x2 = Math.min(cellIndex(max.x), maxCellX);
+    final long y2 = Math.min(cellIndex(max.y), maxCellY);
+    final List<T> candidates = new ArrayList<>();
+    if (x1 > x2 || y1 > y2) {
+      return candidates;
+    }
+    // in case the rectangle spans more cells than there are occupied cells it
+    // is cheaper to visit the occupied cells
+    if ((x2 - x1 + 1) * (y2 - y1 + 1) > cells.size()) {
+      for (final Set<T> objs : cells.values()) {
+        candidates.addAll(objs);
+      }
+      return candidates;
+    }
+    for (long x = x1; x <= x2; x++) {
+      for (long y = y1; y <= y2; y++) {
+        final Set<T> objs = cells.get(key(x, y));
+        if (objs != null) {
+          candidates.addAll(objs);
+        }
+      }
+    }
+    return candidates;
+  }
+
+  private ImmutableSet<T> inInsertionOrder(List<T> objs) {
+    Collections.sort(objs, new Comparator<T>() {
+      @Override
+      public int compare(T o1, T o2) {
+        return Long.compare(objLocs.get(o1).order, objLocs.get(o2).order);
+      }
+    });
+    return ImmutableSet.copyOf(objs);
+  }
+
+  private void removeFromCell(T object, long cell) {
+    final Set<T> objs = cells.get(cell);
+    objs.remove(object);
+    if (objs.isEmpty()) {
+      cells.remove(cell);
+    }
+  }
+
+  private void resetBounds() {
+    minCellX = Integer.MAX_VALUE;
+    minCellY = Integer.MAX_VALUE;
+    maxCellX = Integer.MIN_VALUE;
+    maxCellY = Integer.MIN_VALUE;
+  }
+
+  private int cellIndex(double coordinate) {
+    return cellIndex(cellSize, coordinate);
+  }
+
+  static int cellIndex(double size, double coordinate) {
+    return (int) Math.floor(coordinate / size);
+  }
+
+  static long key(long x, long y) {
+    return (x << INT_BITS) | (y & INT_MASK);
+  }
+
+  static final class Location {
+    Point position;
+    long cell;
+    final long order;
+
+    Location(Point pos, long c, long o) {
+      position = pos;
+      cell = c;
+      order = o;
+    }
+  }
+
+  static final class Candidate<T> implements Comparable<Candidate<T>> {
+    final T obj;
+    final double dist;
+    final long order;
+
+    Candidate(T o, double d, long ord) {
+      obj = o;
+      dist = d;
+      order = ord;
+    }
+
+    @Override
+    public int compareTo(Candidate<T> other) {
+      final int cmp = Double.compare(dist, other.dist);
+      if (cmp != 0) {
+        return cmp;
+      }
+      return Long.compare(order, other.order);
+    }
+  }
+
+  /**
+   * An immutable grid of objects with the same cells as a
+   * {@link GridSpatialRegistry}. The results of the queries are equal to the
+   * results of the corresponding queries of the registry, including their
+   * order. Since a snapshot never changes it can be queried by many threads
+   * at the same time without locking.
+   * @author Rinde van Lon
+   * @param <T> The type of element in the snapshot.
+   */
+  public static final class Snapshot<T> {
+    // indices in the array of bounds
+    private static final int MIN_X = 0;
+    private static final int MIN_Y = 1;
+    private static final int MAX_X = 2;
+    private static final int MAX_Y = 3;
+    private final double cellSize;
+    // objects in insertion order, an object is identified by its index
+    private final ImmutableList<T> objects;
+    private final Point[] positions;
+    // cell key -> indices of the objects in the cell in ascending order
+    private final Map<Long, int[]> cells;
+    private final int minCellX;
+    private final int minCellY;
+    private final int maxCellX;
+    private final int maxCellY;
+
+    Snapshot(double size, ImmutableList<T> objs, Point[] pos,
+        Map<Long, int[]> cs, int[] bounds) {
+      cellSize = size;
+      objects = objs;
+      positions = pos;
+      cells = cs;
+      minCellX = bounds[MIN_X];
+      minCellY = bounds[MIN_Y];
+      maxCellX = bounds[MAX_X];
+      maxCellY = bounds[MAX_Y];
+    }
+
+    /**
+     * @return The number of objects in the snapshot.
+     */
+    public int size() {
+      return objects.size();
+    }
+
+    /**
+     * Finds all objects within the specified radius, see
+     * {@link GridSpatialRegistry#findObjectsWithinRadius(Point, double)}.
+     * @param position The center of the circle.
+     * @param radius The radius, must be strictly positive.
+     * @return The objects in the order in which they were added.
+     */
+    public ImmutableSet<T> findObjectsWithinRadius(Point position,
+        double radius) {
+      checkArgument(radius > 0, RADIUS_MSG, radius);
+      return find(new Point(position.x - radius, position.y - radius),
+        new Point(position.x + radius, position.y + radius), position, radius);
+    }
+
+    /**
+     * Finds all objects in the specified rectangle, see
+     * {@link GridSpatialRegistry#findObjectsInRect(Point, Point)}.
+     * @param min The corner of the rectangle with the smallest coordinates.
+     * @param max The corner of the rectangle with the largest coordinates.
+     * @return The objects in the order in which they were added.
+     */
+    public ImmutableSet<T> findObjectsInRect(Point min, Point max) {
+      checkArgument(min.x < max.x && min.y < max.y, RECT_MSG, min, max);
+      return find(min, max, null, 0d);
+    }
+
+    // objects in the rectangle, or if a center is specified the objects in
+    // the rectangle that are closer to the center than the radius
+    private ImmutableSet<T> find(Point min, Point max, @Nullable Point center,
+        double radius) {
+      final long x1 = Math.max(cellIndex(cellSize, min.x), minCellX);
+      final long y1 = Math.max(cellIndex(cellSize, min.y), minCellY);
+      final long x2 = Math.min(cellIndex(cellSize, max.x), maxCellX);
+      final long y2 = Math.min(cellIndex(cellSize, max.y), maxCellY);
+      if (x1 > x2 || y1 > y2) {
+        return ImmutableSet.of();
+      }
+      final Hits hits = new Hits();
+      if ((x2 - x1 + 1) * (y2 - y1 + 1) > cells.size()) {
+        for (final int[] cell : cells.values()) {
+          collect(cell, hits, min, max, center, radius);
+        }
+      } else {
+        for (long x = x1; x <= x2; x++) {
+          for (long y = y1; y <= y2; y++) {
+            final int[] cell = cells.get(key(x, y));
+            if (cell != null) {
+              collect(cell, hits, min, max, center, radius);
+            }
+          }
+        }
+      }
+      Arrays.sort(hits.indices, 0, hits.size);
+      final ImmutableSet.Builder<T> builder = ImmutableSet.builder();
+      for (int i = 0; i < hits.size; i++) {
+        builder.add(objects.get(hits.indices[i]));
+      }
+      return builder.build();
+    }
+
+    private void collect(int[] cell, Hits hits, Point min, Point max,
+        @Nullable Point center, double radius) {
+      for (final int index : cell) {
+        final Point p = positions[index];
+        if ((center == null && MapSpatialRegistry.isInRect(min, max, p))
+          || (center != null && Point.distance(center, p) < radius)) {
+          hits.add(index);
+        }
+      }
+    }
+
+    /**
+     * Creates a new snapshot.
+     * @param cellSize The size of the cells of the grid, must be strictly
+     *          positive.
+     * @param objects The objects and their positions, the iteration order of
+     *          the map defines the order of the query results.
+     * @param <T> The type of element in the snapshot.
+     * @return A new snapshot.
+     */
+    public static <T> Snapshot<T> create(double cellSize,
+        Map<T, Point> objects) {
+      checkArgument(cellSize > 0d, CELL_SIZE_MSG, cellSize);
+      final int n = objects.size();
+      final Point[] positions = new Point[n];
+      final long[] keys = new long[n];
+      final int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE,
+        Integer.MIN_VALUE, Integer.MIN_VALUE};
+      // the number of objects per cell
+      final Map<Long, int[]> counts = new HashMap<>();
+      int i = 0;
+      for (final Point p : objects.values()) {
+        final int cx = cellIndex(cellSize, p.x);
+        final int cy = cellIndex(cellSize, p.y);
+        positions[i] = p;
+        keys[i] = key(cx, cy);
+        bounds[MIN_X] = Math.min(bounds[MIN_X], cx);
+        bounds[MIN_Y] = Math.min(bounds[MIN_Y], cy);
+        bounds[MAX_X] = Math.max(bounds[MAX_X], cx);
+        bounds[MAX_Y] = Math.max(bounds[MAX_Y], cy);
+        final int[] count = counts.get(keys[i]);
+        if (count == null) {
+          counts.put(keys[i], new int[] {1});
+        } else {
+          count[0]++;
+        }
+        i++;
+      }
+      final Map<Long, int[]> cells = new HashMap<>();
+      for (final Entry<Long, int[]> entry : counts.entrySet()) {
+        cells.put(entry.getKey(), new int[entry.getValue()[0]]);
+        entry.getValue()[0] = 0;
+      }
+      for (int j = 0; j < n; j++) {
+        final int[] count = counts.get(keys[j]);
+        cells.get(keys[j])[count[0]++] = j;
+      }
+      return new Snapshot<>(cellSize, ImmutableList.copyOf(objects.keySet()),
+        positions, cells, bounds);
+    }
+
+    // the indices of the objects found by a query
+    static final class Hits {
+      private static final int INITIAL_SIZE = 16;
+      int[] indices;
+      int size;
+
+      Hits() {
+        indices = new int[INITIAL_SIZE];
+      }
+
+      void add(int index) {
+        if (size == indices.length) {
+          indices = Arrays.copyOf(indices, 2 * size);
+        }
+        indices[size++] = index;
+      }
+    }
+  }
+}
@@ -18,26 +18,30 @@ package com.github.rinde.rinsim.core.model.road;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
-import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.measure.Measure;
 import javax.measure.quantity.Duration;
 import javax.measure.quantity.Length;
+import javax.measure.unit.Unit;
 
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.geom.Point;
-import com.google.auto.value.AutoValue;
+import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 
 /**
  * Value object representing the distance traveled and time spent of a
- * {@link MovingRoadUser}.
+ * {@link MovingRoadUser}. The distance and time are stored as primitive
+ * values, the {@link Measure} views of {@link #distance()} and {@link #time()}
+ * are only created when they are requested. Consumers that are called for
+ * every move, such as statistics trackers, should prefer
+ * {@link #getDistanceValue()} and {@link #getTimeValue()}.
  * @author Bartosz Michalik
  * @author Rinde van Lon
  * @since 2.0
  */
-@AutoValue
 public abstract class MoveProgress {
 
   MoveProgress() {}
@@ -57,14 +61,69 @@ public abstract class MoveProgress {
    */
   public abstract ImmutableList<Point> travelledNodes();
 
+  /**
+   * @return The distance traveled expressed in {@link #getDistanceUnit()}.
+   */
+  public abstract double getDistanceValue();
+
+  /**
+   * @return The unit of the distance.
+   */
+  public abstract Unit<Length> getDistanceUnit();
+
+  /**
+   * @return The time spent on traveling expressed in {@link #getTimeUnit()}.
+   */
+  public abstract long getTimeValue();
+
+  /**
+   * @return The unit of the time.
+   */
+  public abstract Unit<Duration> getTimeUnit();
+
+  @Override
+  public boolean equals(@Nullable Object other) {
+    if (other == this) {
+      return true;
+    }
+    if (!(other instanceof MoveProgress)) {
+      return false;
+    }
+    final MoveProgress o = (MoveProgress) other;
+    return Double.doubleToLongBits(getDistanceValue()) == Double
+      .doubleToLongBits(o.getDistanceValue())
+      && getDistanceUnit().equals(o.getDistanceUnit())
+      && getTimeValue() == o.getTimeValue()
+      && getTimeUnit().equals(o.getTimeUnit())
+      && travelledNodes().equals(o.travelledNodes());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(getDistanceValue(), getDistanceUnit(),
+      getTimeValue(), getTimeUnit(), travelledNodes());
+  }
+
+  @Override
+  public String toString() {
+    return "MoveProgress{distance=" + distance() + ", time=" + time()
+      + ", travelledNodes=" + travelledNodes() + "}";
+  }
+
   static MoveProgress create(Measure<Double, Length> dist,
       Measure<Long, Duration> pTime, List<Point> pTravelledNodes) {
-    checkArgument(dist.getValue() >= 0d,
+    return create(dist.getValue(), dist.getUnit(), pTime.getValue(),
+      pTime.getUnit(), ImmutableList.copyOf(pTravelledNodes));
+  }
+
+  static MoveProgress create(double dist, Unit<Length> distUnit, long time,
+      Unit<Duration> timeUnit, ImmutableList<Point> travelledNodes) {
+    checkArgument(dist >= 0d,
       "Distance must be greater than or equal to 0.");
-    checkArgument(pTime.getValue() >= 0L,
+    checkArgument(time >= 0L,
       "Time must be greather than or equal to 0.");
-    return new AutoValue_MoveProgress(dist, pTime,
-      ImmutableList.copyOf(pTravelledNodes));
+    return new PrimitiveMoveProgress(dist, distUnit, time, timeUnit,
+      travelledNodes);
   }
 
   /**
@@ -77,6 +136,58 @@ public abstract class MoveProgress {
     return new Builder(ru, timeLapse);
   }
 
+  static final class PrimitiveMoveProgress extends MoveProgress {
+    private final double distance;
+    private final Unit<Length> distanceUnit;
+    private final long time;
+    private final Unit<Duration> timeUnit;
+    private final ImmutableList<Point> nodes;
+
+    PrimitiveMoveProgress(double dist, Unit<Length> distUnit, long t,
+        Unit<Duration> tUnit, ImmutableList<Point> travelledNodes) {
+      distance = dist;
+      distanceUnit = distUnit;
+      time = t;
+      timeUnit = tUnit;
+      nodes = travelledNodes;
+    }
+
+    @Override
+    public Measure<Double, Length> distance() {
+      return Measure.valueOf(distance, distanceUnit);
+    }
+
+    @Override
+    public Measure<Long, Duration> time() {
+      return Measure.valueOf(time, timeUnit);
+    }
+
+    @Override
+    public ImmutableList<Point> travelledNodes() {
+      return nodes;
+    }
+
+    @Override
+    public double getDistanceValue() {
+      return distance;
+    }
+
+    @Override
+    public Unit<Length> getDistanceUnit() {
+      return distanceUnit;
+    }
+
+    @Override
+    public long getTimeValue() {
+      return time;
+    }
+
+    @Override
+    public Unit<Duration> getTimeUnit() {
+      return timeUnit;
+    }
+  }
+
   /**
    * A {@link Builder} for constructing {@link MoveProgress} instances. Per
    * builder instance only one {@link MoveProgress} instance can be created.
@@ -84,9 +195,10 @@ public abstract class MoveProgress {
    */
   public static class Builder {
     private final RoadUnits unitConversion;
-    private final List<Point> traveledNodes;
     private final TimeLapse time;
     private final long startTimeConsumed;
+    @Nullable
+    private ImmutableList.Builder<Point> traveledNodes;
 
     private double travelDistance;
     private boolean used;
@@ -97,7 +209,6 @@ public abstract class MoveProgress {
       startTimeConsumed = time.getTimeConsumed();
       travelDistance = 0;
       used = false;
-      traveledNodes = new ArrayList<>();
     }
 
     /**
@@ -106,6 +217,9 @@ public abstract class MoveProgress {
      * @return This, as per the builder pattern.
      */
     public Builder addNode(Point node) {
+      if (traveledNodes == null) {
+        traveledNodes = ImmutableList.builder();
+      }
       traveledNodes.add(node);
       return this;
     }
@@ -131,11 +245,15 @@ public abstract class MoveProgress {
     public MoveProgress build() {
       checkState(!used, "This method may be called only once.");
       used = true;
-      final Measure<Double, Length> distTraveled = unitConversion
-        .toExDistMeasure(travelDistance);
-      final Measure<Long, Duration> timeConsumed = Measure.valueOf(
-        time.getTimeConsumed() - startTimeConsumed, time.getTimeUnit());
-      return create(distTraveled, timeConsumed, traveledNodes);
+      final ImmutableList<Point> nodes;
+      if (traveledNodes == null) {
+        nodes = ImmutableList.of();
+      } else {
+        nodes = traveledNodes.build();
+      }
+      return create(unitConversion.toExDist(travelDistance),
+        unitConversion.getExDistUnit(),
+        time.getTimeConsumed() - startTimeConsumed, time.getTimeUnit(), nodes);
     }
   }
 }
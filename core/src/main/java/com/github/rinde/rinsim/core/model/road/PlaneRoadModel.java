@@ -21,7 +21,6 @@ import static java.lang.Math.min;
 import static java.util.Arrays.asList;
 
 import java.math.RoundingMode;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Queue;
@@ -99,7 +98,7 @@ public class PlaneRoadModel extends AbstractRoadModel {
     maxSpeed = unitConversion.toInSpeed(b.getMaxSpeed());
     snapshot = PlaneRoadModelSnapshot.create(this);
     planeGraph = new PlaneGraph<>();
-    registry = MapSpatialRegistry.create();
+    registry = b.createRegistry();
   }
 
   @Override
@@ -134,14 +133,12 @@ public class PlaneRoadModel extends AbstractRoadModel {
       maxSpeed);
     if (speed == 0d) {
       // FIXME add test for this case, also check GraphRoadModel
-      final Measure<Double, Length> dist = Measure.valueOf(0d,
-        getDistanceUnit());
-      final Measure<Long, Duration> dur = Measure.valueOf(0L,
-        time.getTimeUnit());
-      return MoveProgress.create(dist, dur, new ArrayList<Point>());
+      return MoveProgress.create(0d, getDistanceUnit(), 0L,
+        time.getTimeUnit(), ImmutableList.<Point>of());
     }
 
-    final List<Point> travelledNodes = new ArrayList<>();
+    // most moves do not reach a node, the builder is created lazily
+    ImmutableList.Builder<Point> travelledNodes = null;
     while (time.hasTimeLeft() && !path.isEmpty()) {
       checkArgument(isPointInBoundary(path.peek()),
         "points in the path must be within the predefined boundary of the "
@@ -161,6 +158,9 @@ public class PlaneRoadModel extends AbstractRoadModel {
 
       if (travelableDistance >= stepLength) {
         loc = path.remove();
+        if (travelledNodes == null) {
+          travelledNodes = ImmutableList.builder();
+        }
         travelledNodes.add(loc);
 
         final long timeSpent = DoubleMath.roundToLong(
@@ -185,11 +185,15 @@ public class PlaneRoadModel extends AbstractRoadModel {
     registry().addAt(object, loc);
 
     // convert to external units
-    final Measure<Double, Length> distTraveled = unitConversion
-      .toExDistMeasure(traveled);
-    final Measure<Long, Duration> timeConsumed = Measure.valueOf(
-      time.getTimeConsumed() - startTimeConsumed, time.getTimeUnit());
-    return MoveProgress.create(distTraveled, timeConsumed, travelledNodes);
+    final ImmutableList<Point> nodes;
+    if (travelledNodes == null) {
+      nodes = ImmutableList.of();
+    } else {
+      nodes = travelledNodes.build();
+    }
+    return MoveProgress.create(unitConversion.toExDist(traveled),
+      unitConversion.getExDistUnit(),
+      time.getTimeConsumed() - startTimeConsumed, time.getTimeUnit(), nodes);
   }
 
   /**
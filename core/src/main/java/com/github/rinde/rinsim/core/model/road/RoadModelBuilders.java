@@ -28,12 +28,15 @@ import com.github.rinde.rinsim.core.model.DependencyProvider;
 import com.github.rinde.rinsim.core.model.ModelBuilder.AbstractModelBuilder;
 import com.github.rinde.rinsim.core.model.time.Clock;
 import com.github.rinde.rinsim.geom.Connection;
+import com.github.rinde.rinsim.geom.GeomHeuristic;
+import com.github.rinde.rinsim.geom.GeomHeuristics;
 import com.github.rinde.rinsim.geom.Graph;
 import com.github.rinde.rinsim.geom.ListenableGraph;
 import com.github.rinde.rinsim.geom.Point;
 import com.google.auto.value.AutoValue;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.primitives.Doubles;
 
 /**
@@ -241,6 +244,7 @@ public final class RoadModelBuilders {
     static final double DEFAULT_MAX_SPEED = 50d;
     static final Point DEFAULT_MIN_POINT = new Point(0, 0);
     static final Point DEFAULT_MAX_POINT = new Point(10, 10);
+    static final double NO_SPATIAL_INDEX = 0d;
     private static final long serialVersionUID = -6317743647129161242L;
 
     abstract Point getMin();
@@ -249,6 +253,8 @@ public final class RoadModelBuilders {
 
     abstract double getMaxSpeed();
 
+    abstract double getSpatialIndexCellSize();
+
     /**
      * Returns a copy of this builder with the specified min point. The min
      * point defines the left top corner of the plane. The default is
@@ -279,11 +285,37 @@ public final class RoadModelBuilders {
     @CheckReturnValue
     public abstract S withMaxSpeed(double maxSpeed);
 
+    /**
+     * Returns a copy of this builder that stores the positions of the objects
+     * in the model in a {@link GridSpatialRegistry} with the specified cell
+     * size. This speeds up neighborhood queries (e.g. the collision checks of
+     * a {@link CollisionPlaneRoadModel}) in models with many objects. By
+     * default, the positions are stored in a {@link MapSpatialRegistry} which
+     * answers these queries by checking all objects.
+     * @param cellSize The size of the cells of the grid, must be strictly
+     *          positive.
+     * @return A new builder instance.
+     */
+    @CheckReturnValue
+    public abstract S withSpatialIndex(double cellSize);
+
     void checkMaxSpeed(double maxSpeed) {
       checkArgument(maxSpeed > 0d,
         "Max speed must be strictly positive but is %s.",
         maxSpeed);
     }
+
+    void checkCellSize(double cellSize) {
+      checkArgument(cellSize > 0d,
+        "Cell size must be strictly positive but is %s.", cellSize);
+    }
+
+    <U> SpatialRegistry<U> createRegistry() {
+      if (getSpatialIndexCellSize() == NO_SPATIAL_INDEX) {
+        return MapSpatialRegistry.create();
+      }
+      return GridSpatialRegistry.create(getSpatialIndexCellSize());
+    }
   }
 
   /**
@@ -304,30 +336,39 @@ public final class RoadModelBuilders {
     @Override
     public PlaneRMB withMinPoint(Point minPoint) {
       return create(getDistanceUnit(), getSpeedUnit(), minPoint, getMax(),
-        getMaxSpeed());
+        getMaxSpeed(), getSpatialIndexCellSize());
     }
 
     @Override
     public PlaneRMB withMaxPoint(Point maxPoint) {
       return create(getDistanceUnit(), getSpeedUnit(), getMin(), maxPoint,
-        getMaxSpeed());
+        getMaxSpeed(), getSpatialIndexCellSize());
     }
 
     @Override
     public PlaneRMB withMaxSpeed(double maxSpeed) {
       checkMaxSpeed(maxSpeed);
       return create(getDistanceUnit(), getSpeedUnit(), getMin(), getMax(),
-        maxSpeed);
+        maxSpeed, getSpatialIndexCellSize());
+    }
+
+    @Override
+    public PlaneRMB withSpatialIndex(double cellSize) {
+      checkCellSize(cellSize);
+      return create(getDistanceUnit(), getSpeedUnit(), getMin(), getMax(),
+        getMaxSpeed(), cellSize);
     }
 
     @Override
     public PlaneRMB withDistanceUnit(Unit<Length> unit) {
-      return create(unit, getSpeedUnit(), getMin(), getMax(), getMaxSpeed());
+      return create(unit, getSpeedUnit(), getMin(), getMax(), getMaxSpeed(),
+        getSpatialIndexCellSize());
     }
 
     @Override
     public PlaneRMB withSpeedUnit(Unit<Velocity> unit) {
-      return create(getDistanceUnit(), unit, getMin(), getMax(), getMaxSpeed());
+      return create(getDistanceUnit(), unit, getMin(), getMax(), getMaxSpeed(),
+        getSpatialIndexCellSize());
     }
 
     /**
@@ -357,13 +398,14 @@ public final class RoadModelBuilders {
 
     static PlaneRMB create() {
       return create(DEFAULT_DISTANCE_UNIT, DEFAULT_SPEED_UNIT,
-        DEFAULT_MIN_POINT, DEFAULT_MAX_POINT, DEFAULT_MAX_SPEED);
+        DEFAULT_MIN_POINT, DEFAULT_MAX_POINT, DEFAULT_MAX_SPEED,
+        NO_SPATIAL_INDEX);
     }
 
     static PlaneRMB create(Unit<Length> distanceUnit, Unit<Velocity> speedUnit,
-        Point min, Point max, double maxSpeed) {
+        Point min, Point max, double maxSpeed, double cellSize) {
       return new AutoValue_RoadModelBuilders_PlaneRMB(distanceUnit, speedUnit,
-        min, max, maxSpeed);
+        min, max, maxSpeed, cellSize);
     }
   }
 
@@ -389,32 +431,44 @@ public final class RoadModelBuilders {
     @Override
     public CollisionPlaneRMB withMinPoint(Point minPoint) {
       return create(getDistanceUnit(), getSpeedUnit(), minPoint, getMax(),
-        getMaxSpeed(), getObjectRadius());
+        getMaxSpeed(), getSpatialIndexCellSize(), getObjectRadius());
     }
 
     @Override
     public CollisionPlaneRMB withMaxPoint(Point maxPoint) {
       return create(getDistanceUnit(), getSpeedUnit(), getMin(), maxPoint,
-        getMaxSpeed(), getObjectRadius());
+        getMaxSpeed(), getSpatialIndexCellSize(), getObjectRadius());
     }
 
     @Override
     public CollisionPlaneRMB withMaxSpeed(double maxSpeed) {
       checkMaxSpeed(maxSpeed);
       return create(getDistanceUnit(), getSpeedUnit(), getMin(), getMax(),
-        maxSpeed, getObjectRadius());
+        maxSpeed, getSpatialIndexCellSize(), getObjectRadius());
+    }
+
+    /**
+     * {@inheritDoc} A cell size of four times the object radius (see
+     * {@link #withObjectRadius(double)}) matches the size of the collision
+     * checks of the model.
+     */
+    @Override
+    public CollisionPlaneRMB withSpatialIndex(double cellSize) {
+      checkCellSize(cellSize);
+      return create(getDistanceUnit(), getSpeedUnit(), getMin(), getMax(),
+        getMaxSpeed(), cellSize, getObjectRadius());
     }
 
     @Override
     public CollisionPlaneRMB withDistanceUnit(Unit<Length> unit) {
       return create(unit, getSpeedUnit(), getMin(), getMax(), getMaxSpeed(),
-        getObjectRadius());
+        getSpatialIndexCellSize(), getObjectRadius());
     }
 
     @Override
     public CollisionPlaneRMB withSpeedUnit(Unit<Velocity> unit) {
       return create(getDistanceUnit(), unit, getMin(), getMax(), getMaxSpeed(),
-        getObjectRadius());
+        getSpatialIndexCellSize(), getObjectRadius());
     }
 
     /**
@@ -426,7 +480,7 @@ public final class RoadModelBuilders {
     public CollisionPlaneRMB withObjectRadius(double radius) {
       checkArgument(radius > 0);
       return create(getDistanceUnit(), getSpeedUnit(), getMin(), getMax(),
-        getMaxSpeed(), radius);
+        getMaxSpeed(), getSpatialIndexCellSize(), radius);
     }
 
     @Override
@@ -439,14 +493,14 @@ public final class RoadModelBuilders {
     static CollisionPlaneRMB create(AbstractPlaneRMB<?, ?> planeRmb) {
       return create(planeRmb.getDistanceUnit(), planeRmb.getSpeedUnit(),
         planeRmb.getMin(), planeRmb.getMax(), planeRmb.getMaxSpeed(),
-        DEFAULT_OBJ_RADIUS);
+        planeRmb.getSpatialIndexCellSize(), DEFAULT_OBJ_RADIUS);
     }
 
     static CollisionPlaneRMB create(Unit<Length> distanceUnit,
-        Unit<Velocity> speedUnit,
-        Point min, Point max, double maxSpeed, double radius) {
+        Unit<Velocity> speedUnit, Point min, Point max, double maxSpeed,
+        double cellSize, double radius) {
       return new AutoValue_RoadModelBuilders_CollisionPlaneRMB(distanceUnit,
-        speedUnit, min, max, maxSpeed, radius);
+        speedUnit, min, max, maxSpeed, cellSize, radius);
     }
   }
 
@@ -488,6 +542,27 @@ public final class RoadModelBuilders {
         getGraphSupplier());
     }
 
+    /**
+     * When this is called it will return a builder that creates
+     * {@link ContractedGraphRoadModel} instead. A contraction hierarchy is
+     * constructed for {@link GeomHeuristics#euclidean()} and for each of the
+     * specified heuristics, shortest path queries for these heuristics are
+     * then answered using the hierarchy instead of A*.
+     * @param heuristics The heuristics (in addition to
+     *          {@link GeomHeuristics#euclidean()}) for which a hierarchy is
+     *          constructed, e.g. {@link GeomHeuristics#time(double)}.
+     * @return A new {@link ContractedGraphRMB} instance.
+     */
+    @CheckReturnValue
+    public ContractedGraphRMB withContractionHierarchies(
+        GeomHeuristic... heuristics) {
+      return ContractedGraphRMB.create(getDistanceUnit(), getSpeedUnit(),
+        getGraphSupplier(), ImmutableSet.<GeomHeuristic>builder()
+          .add(GeomHeuristics.euclidean())
+          .add(heuristics)
+          .build());
+    }
+
     @Override
     public GraphRoadModelImpl build(DependencyProvider dependencyProvider) {
       return new GraphRoadModelImpl(getGraph(), this);
@@ -623,6 +698,63 @@ public final class RoadModelBuilders {
     }
   }
 
+  /**
+   * Builder for {@link ContractedGraphRoadModel} instances. Instances can be
+   * obtained via
+   * {@link StaticGraphRMB#withContractionHierarchies(GeomHeuristic...)}.
+   * @author Rinde van Lon
+   */
+  @AutoValue
+  public abstract static class ContractedGraphRMB
+      extends
+      AbstractGraphRMB<ContractedGraphRoadModel, ContractedGraphRMB, Graph<?>> {
+
+    private static final long serialVersionUID = 4409125316542215627L;
+
+    ContractedGraphRMB() {
+      setProvidingTypes(RoadModel.class, GraphRoadModel.class);
+    }
+
+    @Override
+    protected abstract Supplier<Graph<?>> getGraphSupplier();
+
+    /**
+     * @return The heuristics for which a contraction hierarchy is constructed.
+     */
+    public abstract ImmutableSet<GeomHeuristic> getHeuristics();
+
+    @Override
+    public ContractedGraphRoadModel build(
+        DependencyProvider dependencyProvider) {
+      return new ContractedGraphRoadModel(getGraph(), this);
+    }
+
+    @Override
+    public ContractedGraphRMB withDistanceUnit(Unit<Length> unit) {
+      return create(unit, getSpeedUnit(), getGraphSupplier(), getHeuristics());
+    }
+
+    @Override
+    public ContractedGraphRMB withSpeedUnit(Unit<Velocity> unit) {
+      return create(getDistanceUnit(), unit, getGraphSupplier(),
+        getHeuristics());
+    }
+
+    @Override
+    public String toString() {
+      return RoadModelBuilders.class.getSimpleName()
+        + ".staticGraph().withContractionHierarchies()";
+    }
+
+    @SuppressWarnings("unchecked")
+    static ContractedGraphRMB create(Unit<Length> distanceUnit,
+        Unit<Velocity> speedUnit, Supplier<? extends Graph<?>> graph,
+        ImmutableSet<GeomHeuristic> heuristics) {
+      return new AutoValue_RoadModelBuilders_ContractedGraphRMB(distanceUnit,
+        speedUnit, (Supplier<Graph<?>>) graph, heuristics);
+    }
+  }
+
   /**
    * A builder for constructing {@link CollisionGraphRoadModel} instances.
    * @author Rinde van Lon
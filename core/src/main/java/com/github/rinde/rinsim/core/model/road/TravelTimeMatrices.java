@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.road;
+
+import java.math.RoundingMode;
+import java.util.List;
+
+import javax.measure.Measure;
+import javax.measure.quantity.Duration;
+import javax.measure.quantity.Velocity;
+import javax.measure.unit.Unit;
+
+import com.github.rinde.rinsim.geom.GeomHeuristic;
+import com.github.rinde.rinsim.geom.ManyToManyDijkstra;
+import com.github.rinde.rinsim.geom.Point;
+import com.google.common.math.DoubleMath;
+
+/**
+ * Computes travel time matrices between sets of points on a
+ * {@link RoadModelSnapshot}. For snapshots of graph road models all rows are
+ * computed in parallel using {@link ManyToManyDijkstra}, which requires that
+ * all points are nodes of the graph. For all other snapshots (e.g. of a
+ * {@link PlaneRoadModel}) each cell is computed using the
+ * {@link RoadModelSnapshot#getPathTo(Point, Point, Unit, Measure, GeomHeuristic)}
+ * method of the snapshot. In both cases the travel times are equal to the
+ * travel times of the paths that the snapshot would return.
+ * @author Rinde van Lon
+ */
+public final class TravelTimeMatrices {
+
+  private TravelTimeMatrices() {}
+
+  /**
+   * Computes the travel times between all pairs of points.
+   * @param snapshot The snapshot of the road model.
+   * @param points The points, these are both the rows and the columns of the
+   *          matrix.
+   * @param timeUnit The time unit of the resulting travel times.
+   * @param speed The speed of the traveling object.
+   * @param heuristic The heuristic that is used for computing the paths.
+   * @return A square matrix of travel times.
+   */
+  public static double[][] compute(RoadModelSnapshot snapshot,
+      List<Point> points, Unit<Duration> timeUnit,
+      Measure<Double, Velocity> speed, GeomHeuristic heuristic) {
+    return compute(snapshot, points, points, timeUnit, speed, heuristic);
+  }
+
+  /**
+   * Computes the travel times between all origins and destinations.
+   * @param snapshot The snapshot of the road model.
+   * @param origins The origins, these are the rows of the matrix.
+   * @param destinations The destinations, these are the columns of the
+   *          matrix.
+   * @param timeUnit The time unit of the resulting travel times.
+   * @param speed The speed of the traveling object.
+   * @param heuristic The heuristic that is used for computing the paths.
+   * @return A matrix with <code>origins.size()</code> rows and
+   *         <code>destinations.size()</code> columns.
+   * @throws IllegalArgumentException if the snapshot is of a graph road model
+   *           and not all points are nodes of the graph.
+   */
+  public static double[][] compute(RoadModelSnapshot snapshot,
+      List<Point> origins, List<Point> destinations, Unit<Duration> timeUnit,
+      Measure<Double, Velocity> speed, GeomHeuristic heuristic) {
+    GraphRoadModelSnapshot graphSnapshot = null;
+    if (snapshot instanceof GraphRoadModelSnapshot) {
+      graphSnapshot = (GraphRoadModelSnapshot) snapshot;
+    } else if (snapshot instanceof ContractedGraphRoadModelSnapshot) {
+      graphSnapshot =
+        ((ContractedGraphRoadModelSnapshot) snapshot).getDelegate();
+    }
+    if (graphSnapshot != null) {
+      return ManyToManyDijkstra.travelTimes(graphSnapshot.getGraph(), origins,
+        destinations, heuristic, graphSnapshot.getModelDistanceUnit(), speed,
+        timeUnit);
+    }
+    final double[][] matrix = new double[origins.size()][destinations.size()];
+    for (int i = 0; i < origins.size(); i++) {
+      for (int j = 0; j < destinations.size(); j++) {
+        matrix[i][j] = snapshot.getPathTo(origins.get(i), destinations.get(j),
+          timeUnit, speed, heuristic).getTravelTime();
+      }
+    }
+    return matrix;
+  }
+
+  /**
+   * Rounds all values of the matrix.
+   * @param matrix The matrix to round.
+   * @param mode The rounding mode.
+   * @return A new matrix with the rounded values.
+   * @throws ArithmeticException if a value does not fit in an
+   *           <code>int</code>.
+   */
+  public static int[][] toIntMatrix(double[][] matrix, RoundingMode mode) {
+    final int[][] result = new int[matrix.length][];
+    for (int i = 0; i < matrix.length; i++) {
+      result[i] = new int[matrix[i].length];
+      for (int j = 0; j < matrix[i].length; j++) {
+        result[i][j] = DoubleMath.roundToInt(matrix[i][j], mode);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Rounds all values of the matrix and stores them in a single array in
+   * row-major order, value <code>(i,j)</code> is stored at index
+   * <code>i * columns + j</code>.
+   * @param matrix The matrix to round, all rows should have the same length.
+   * @param mode The rounding mode.
+   * @return A new array with the rounded values.
+   */
+  public static long[] toRowMajorArray(double[][] matrix, RoundingMode mode) {
+    if (matrix.length == 0) {
+      return new long[0];
+    }
+    final int columns = matrix[0].length;
+    final long[] result = new long[matrix.length * columns];
+    for (int i = 0; i < matrix.length; i++) {
+      for (int j = 0; j < columns; j++) {
+        result[i * columns + j] = DoubleMath.roundToLong(matrix[i][j], mode);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.time;
+
+/**
+ * A {@link TickListener} that can declare when it needs to receive its next
+ * tick. When a {@link TimeModel} is constructed with
+ * {@link TimeModel.Builder#withNextEventTimeAdvance()} and <i>all</i> its
+ * listeners implement this interface, the time model skips the ticks in which
+ * none of the listeners has anything to do. As a result time jumps directly
+ * to the tick that contains the earliest time that is declared by any of the
+ * listeners. The ticks that are received always have the regular tick length
+ * and are aligned with the ticks that would have been received without
+ * skipping.
+ * <p>
+ * Note that a single listener that does not implement this interface
+ * prevents all skipping. Custom agents must implement this interface
+ * themselves for the skipping to have effect in a simulation with agents, an
+ * agent that is busy (e.g. a vehicle that is moving) returns the current
+ * time.
+ * @author Rinde van Lon
+ */
+public interface NextEventTickListener extends TickListener {
+
+  /**
+   * Indicates that the listener is idle, it does not need to be ticked until
+   * one of the other listeners needs to be ticked.
+   */
+  long IDLE = Long.MAX_VALUE;
+
+  /**
+   * Is called before each tick in which time may be advanced. Implementations
+   * must be conservative: a tick that contains the returned time is never
+   * skipped, but all ticks before it may be skipped. Returning a time that is
+   * at or before <code>currentTime</code> prevents the next tick from being
+   * skipped.
+   * @param currentTime The start time of the tick that would be next if no
+   *          ticks are skipped.
+   * @return The earliest time at which this listener needs to receive a tick,
+   *         or {@link #IDLE}.
+   */
+  long getNextEventTime(long currentTime);
+}
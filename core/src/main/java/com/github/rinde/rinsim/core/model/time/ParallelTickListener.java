@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.time;
+
+/**
+ * A {@link TickListener} that declares itself partition-safe: its
+ * {@link #tick(TimeLapse)} method may be called concurrently with the
+ * {@link #tick(TimeLapse)} methods of other {@link ParallelTickListener}s.
+ * This only happens when the {@link TimeModel} is constructed with
+ * {@link TimeModel.Builder#withParallelTicks(int)}, otherwise it is treated as
+ * a regular {@link TickListener}.
+ * <p>
+ * Listeners are ticked in registration order, each run of consecutively
+ * registered parallel listeners is ticked concurrently and all of them have
+ * finished their tick before the next regular listener is ticked. The
+ * {@link #afterTick(TimeLapse)} method is always called sequentially, after
+ * the tick of all listeners has finished. Each listener receives its own
+ * {@link TimeLapse} instance.
+ * <p>
+ * Events that the models dispatch from within a concurrent tick (e.g. the
+ * move events of a road model) are not delivered immediately. They are
+ * buffered by {@link ParallelTicks} and, after all listeners of the run have
+ * finished their tick, they are dispatched on the thread of the
+ * {@link TimeModel} in the order in which the listeners were registered.
+ * Listeners of these events are therefore never called concurrently and
+ * receive the events in a deterministic order, but they are notified after
+ * the state of the issuer may have changed again.
+ * <p>
+ * To keep simulations deterministic, an implementation should only modify
+ * state that it owns (e.g. its own position in the road model or its own comm
+ * device) and it should not share random generators with other listeners.
+ * The road models (except the collision avoiding road models) and the
+ * {@link com.github.rinde.rinsim.core.model.pdp.DefaultPDPModel} guard their
+ * state with locks and can be used from concurrent ticks. When listeners of
+ * the same run compete for the same parcel (e.g. two vehicles that want to
+ * pick up the same parcel, or a vehicle that inspects the state of a parcel
+ * that another vehicle picks up) the outcome would depend on the order in
+ * which the ticks happen to run, the
+ * {@link com.github.rinde.rinsim.core.model.pdp.DefaultPDPModel} therefore
+ * rejects such a contention with an {@link IllegalStateException}, regardless
+ * of the order of the ticks. During a tick, a comm device only modifies its
+ * own outbox, the messages are delivered sequentially after all ticks.
+ * @author Rinde van Lon
+ */
+public interface ParallelTickListener extends TickListener {}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.time;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.common.base.Optional;
+
+/**
+ * Ticks {@link TickListener}s where consecutive {@link ParallelTickListener}s
+ * are ticked concurrently on a {@link ForkJoinPool}. The events that models
+ * dispatch via {@link ParallelTicks} during a concurrent tick are dispatched
+ * on the calling thread after the tick, in the order of the listeners.
+ * @author Rinde van Lon
+ */
+final class ParallelTicker {
+  // listeners are split in more tasks than threads to balance the load
+  private static final int TASKS_PER_THREAD = 4;
+  // pools are shared by all tickers with the same parallelism, the worker
+  // threads are daemon threads that terminate when they are idle
+  private static final ConcurrentMap<Integer, ForkJoinPool> POOLS =
+    new ConcurrentHashMap<>();
+
+  private final ForkJoinPool pool;
+  private final List<TickListener> batch;
+  private final List<TimeLapse> timeLapses;
+
+  ParallelTicker(int parallelism) {
+    pool = sharedPool(parallelism);
+    batch = new ArrayList<>();
+    timeLapses = new ArrayList<>();
+  }
+
+  static ForkJoinPool sharedPool(int parallelism) {
+    final ForkJoinPool pool = POOLS.get(parallelism);
+    if (pool != null) {
+      return pool;
+    }
+    final ForkJoinPool newPool = new ForkJoinPool(parallelism);
+    final ForkJoinPool existing = POOLS.putIfAbsent(parallelism, newPool);
+    if (existing == null) {
+      return newPool;
+    }
+    newPool.shutdown();
+    return existing;
+  }
+
+  int getParallelism() {
+    return pool.getParallelism();
+  }
+
+  void tick(Iterable<TickListener> listeners, TimeLapse timeLapse,
+      Optional<TickProfiler> profiler) {
+    try {
+      for (final TickListener t : listeners) {
+        if (t instanceof ParallelTickListener) {
+          batch.add(t);
+        } else {
+          tickBatch(timeLapse, profiler);
+          timeLapse.reset();
+          tick(t, timeLapse, profiler);
+        }
+      }
+      tickBatch(timeLapse, profiler);
+    } finally {
+      batch.clear();
+    }
+  }
+
+  void tickBatch(TimeLapse timeLapse, Optional<TickProfiler> profiler) {
+    if (batch.size() == 1) {
+      timeLapse.reset();
+      tick(batch.get(0), timeLapse, profiler);
+    } else if (batch.size() > 1) {
+      // each listener receives its own time lapse
+      for (int i = 0; i < batch.size(); i++) {
+        if (i == timeLapses.size()) {
+          timeLapses.add(new TimeLapse(timeLapse.getTimeUnit(),
+            timeLapse.getStartTime(), timeLapse.getEndTime()));
+        } else {
+          timeLapses.get(i).set(timeLapse.getStartTime(),
+            timeLapse.getEndTime());
+        }
+      }
+      final int threshold = Math.max(1,
+        batch.size() / (pool.getParallelism() * TASKS_PER_THREAD));
+      final ParallelTicks.Slot[] slots = new ParallelTicks.Slot[batch.size()];
+      final ParallelTicks.Batch accesses = new ParallelTicks.Batch();
+      try {
+        pool.invoke(new TickTask(batch, timeLapses, profiler, accesses, slots,
+          0, batch.size(), threshold));
+      } finally {
+        accesses.close();
+      }
+      for (final ParallelTicks.Slot slot : slots) {
+        if (slot != null) {
+          slot.replay();
+        }
+      }
+    }
+    batch.clear();
+  }
+
+  static void tick(TickListener listener, TimeLapse timeLapse,
+      Optional<TickProfiler> profiler) {
+    if (profiler.isPresent()) {
+      profiler.get().tick(listener, timeLapse);
+    } else {
+      listener.tick(timeLapse);
+    }
+  }
+
+  static final class TickTask extends RecursiveAction {
+    private static final long serialVersionUID = 4413186437526426372L;
+    final transient List<TickListener> listeners;
+    final transient List<TimeLapse> timeLapses;
+    final transient Optional<TickProfiler> profiler;
+    final transient ParallelTicks.Batch accesses;
+    // the events of the listeners in [begin,end) are stored at index begin
+    final transient ParallelTicks.Slot[] slots;
+    final int begin;
+    final int end;
+    final int threshold;
+
+    TickTask(List<TickListener> ls, List<TimeLapse> tls,
+        Optional<TickProfiler> p, ParallelTicks.Batch acc,
+        ParallelTicks.Slot[] sls, int b, int e, int t) {
+      listeners = ls;
+      timeLapses = tls;
+      profiler = p;
+      accesses = acc;
+      slots = sls;
+      begin = b;
+      end = e;
+      threshold = t;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - begin <= threshold) {
+        final ParallelTicks.Slot slot = new ParallelTicks.Slot(accesses);
+        // a worker that waits for a subtask may run a task of another batch
+        final ParallelTicks.Slot previous = slot.activate();
+        try {
+          for (int i = begin; i < end; i++) {
+            slot.listener = i;
+            tick(listeners.get(i), timeLapses.get(i), profiler);
+          }
+        } finally {
+          ParallelTicks.Slot.deactivate(previous);
+        }
+        slots[begin] = slot;
+      } else {
+        final int middle = (begin + end) / 2;
+        invokeAll(
+          new TickTask(listeners, timeLapses, profiler, accesses, slots, begin,
+            middle, threshold),
+          new TickTask(listeners, timeLapses, profiler, accesses, slots, middle,
+            end, threshold));
+      }
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.time;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import com.github.rinde.rinsim.event.Event;
+import com.github.rinde.rinsim.event.EventDispatcher;
+
+/**
+ * Support for models that are used from within the concurrent tick of
+ * {@link ParallelTickListener}s. Outside of a concurrent tick all methods of
+ * this class have the same effect as a regular, sequential, call:
+ * <ul>
+ * <li>{@link #dispatchEvent(EventDispatcher, Event)} buffers events that are
+ * dispatched during a concurrent tick, they are dispatched on the thread of
+ * the {@link TimeModel} after all listeners of the concurrent tick have
+ * finished, in the order in which the listeners were registered.</li>
+ * <li>{@link #access(Object, boolean)} records which listener accesses a
+ * shared object during a concurrent tick and rejects accesses whose outcome
+ * would depend on the order in which the ticks happen to run.</li>
+ * </ul>
+ * @author Rinde van Lon
+ */
+public final class ParallelTicks {
+  private static final ThreadLocal<Slot> CURRENT = new ThreadLocal<>();
+  // number of running concurrent ticks in all time models, allows to skip the
+  // lookup of the thread local when no concurrent tick is running
+  private static final AtomicInteger NUM_BATCHES = new AtomicInteger();
+
+  private ParallelTicks() {}
+
+  /**
+   * Dispatches the specified event using the specified dispatcher. When this
+   * method is called from within the concurrent tick of a
+   * {@link ParallelTickListener} the event is dispatched after all listeners
+   * of the concurrent tick have finished, otherwise it is dispatched
+   * immediately.
+   * @param dispatcher The dispatcher to use.
+   * @param e The event to dispatch.
+   */
+  public static void dispatchEvent(EventDispatcher dispatcher, Event e) {
+    final Slot slot = current();
+    if (slot == null) {
+      dispatcher.dispatchEvent(e);
+    } else {
+      slot.dispatchers.add(dispatcher);
+      slot.events.add(e);
+    }
+  }
+
+  /**
+   * Records an access to a shared object of a model. When this method is
+   * called from within the concurrent tick of a {@link ParallelTickListener}
+   * and the object is accessed by more than one listener of the same
+   * concurrent tick, of which at least one modifies it, the access is
+   * rejected. Since all accesses are recorded, such a contention is always
+   * detected, regardless of the order in which the ticks run. Outside of a
+   * concurrent tick this method does nothing.
+   * @param resource The object that is accessed.
+   * @param modify <code>true</code> if the access modifies the object,
+   *          <code>false</code> if it only reads it.
+   * @throws IllegalStateException if the object is contended.
+   */
+  public static void access(Object resource, boolean modify) {
+    final Slot slot = current();
+    if (slot != null) {
+      slot.batch.access(resource, slot.listener, modify);
+    }
+  }
+
+  @Nullable
+  static Slot current() {
+    if (NUM_BATCHES.get() == 0) {
+      return null;
+    }
+    return CURRENT.get();
+  }
+
+  // all accesses of one concurrent tick
+  static final class Batch {
+    private final ConcurrentMap<Object, Access> accesses;
+
+    Batch() {
+      accesses = new ConcurrentHashMap<>();
+      NUM_BATCHES.incrementAndGet();
+    }
+
+    void access(Object resource, int listener, boolean modify) {
+      Access acc = accesses.get(resource);
+      if (acc == null) {
+        final Access newAcc = new Access();
+        acc = accesses.putIfAbsent(resource, newAcc);
+        if (acc == null) {
+          acc = newAcc;
+        }
+      }
+      acc.add(resource, listener, modify);
+    }
+
+    void close() {
+      accesses.clear();
+      NUM_BATCHES.decrementAndGet();
+    }
+  }
+
+  static final class Access {
+    private int first;
+    private int second;
+    private boolean modified;
+
+    Access() {
+      first = -1;
+      second = -1;
+    }
+
+    synchronized void add(Object resource, int listener, boolean modify) {
+      modified |= modify;
+      if (first == -1 || first == listener) {
+        first = listener;
+      } else if (second == -1) {
+        second = listener;
+      }
+      if (modified && second != -1) {
+        throw new IllegalStateException(String.format(
+          "%s is accessed by the listeners with index %d and %d during the "
+            + "same parallel tick and at least one of them modifies it.",
+          resource, Math.min(first, second), Math.max(first, second)));
+      }
+    }
+  }
+
+  // the events that are dispatched by a consecutive range of listeners
+  static final class Slot {
+    final Batch batch;
+    final List<EventDispatcher> dispatchers;
+    final List<Event> events;
+    int listener;
+
+    Slot(Batch b) {
+      batch = b;
+      dispatchers = new ArrayList<>();
+      events = new ArrayList<>();
+    }
+
+    @Nullable
+    Slot activate() {
+      final Slot previous = CURRENT.get();
+      CURRENT.set(this);
+      return previous;
+    }
+
+    static void deactivate(@Nullable Slot previous) {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+
+    void replay() {
+      for (int i = 0; i < events.size(); i++) {
+        dispatchers.get(i).dispatchEvent(events.get(i));
+      }
+      dispatchers.clear();
+      events.clear();
+    }
+  }
+}
@@ -70,12 +70,23 @@ public final class RealtimeClockLogger extends AbstractModelVoid
   }
 
   /**
-   * @return An immutable list of {@link RealtimeTickInfo} objects.
+   * @return An immutable list of {@link RealtimeTickInfo} objects. It contains
+   *         all ticks, unless the clock is constructed with
+   *         {@link TimeModel.RealtimeBuilder#withTickTelemetryCapacity(int)}
+   *         in which case it only contains the most recent ticks.
    */
   public ImmutableList<RealtimeTickInfo> getTickInfoList() {
     return ((RealtimeModel) clock).getTickInfoList();
   }
 
+  /**
+   * @return The live {@link RealtimeTickTelemetry} of the clock, it can be
+   *         queried without copying the recorded ticks.
+   */
+  public RealtimeTickTelemetry getTickTelemetry() {
+    return ((RealtimeModel) clock).getTickTelemetry();
+  }
+
   /**
    * @return The number of real-time ticks.
    */
@@ -24,7 +24,6 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verifyNotNull;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.Executors;
@@ -47,8 +46,6 @@ import com.github.rinde.rinsim.fsm.StateMachine;
 import com.github.rinde.rinsim.fsm.StateMachine.StateMachineEvent;
 import com.github.rinde.rinsim.fsm.StateMachine.StateTransitionEvent;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
-import com.google.common.collect.PeekingIterator;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableScheduledFuture;
@@ -77,7 +74,8 @@ class RealtimeModel extends TimeModel implements RealtimeClockController {
     final long tickNanos = Measure.valueOf(timeLapse.getTickLength(),
       timeLapse.getTimeUnit()).longValue(SI.NANO(SI.SECOND));
 
-    realtimeState = new Realtime(tickNanos);
+    realtimeState = new Realtime(tickNanos,
+      builder.getTickTelemetryCapacity());
     final SimulatedTime st = new SimulatedTime();
     stateMachine = StateMachine
       .create(
@@ -210,7 +208,11 @@ class RealtimeModel extends TimeModel implements RealtimeClockController {
   }
 
   public ImmutableList<RealtimeTickInfo> getTickInfoList() {
-    return realtimeState.getTickInfoList();
+    return realtimeState.telemetry.getTickInfoList();
+  }
+
+  public RealtimeTickTelemetry getTickTelemetry() {
+    return realtimeState.telemetry;
   }
 
   @Override
@@ -297,6 +299,7 @@ class RealtimeModel extends TimeModel implements RealtimeClockController {
     private static final long THREAD_SLEEP_MS = 50L;
 
     final long tickNanos;
+    final RealtimeTickTelemetry telemetry;
     final List<Throwable> exceptions;
     @Nullable
     Trigger nextTrigger;
@@ -312,23 +315,12 @@ class RealtimeModel extends TimeModel implements RealtimeClockController {
     // keeps time for last real-time request while in RT mode
     long lastRtRequest;
 
-    final List<TimeRunner> timeRunners;
-
-    Realtime(long tickNs) {
+    Realtime(long tickNs, int telemetryCapacity) {
       tickNanos = tickNs;
+      telemetry = new RealtimeTickTelemetry(tickNs, telemetryCapacity);
       taskIsRunning = new AtomicBoolean();
       isShuttingDown = new AtomicBoolean();
       exceptions = new ArrayList<>();
-      timeRunners = new ArrayList<>();
-    }
-
-    public ImmutableList<RealtimeTickInfo> getTickInfoList() {
-      final ImmutableList.Builder<RealtimeTickInfo> infoBuilder =
-        ImmutableList.builder();
-      for (final TimeRunner tr : timeRunners) {
-        infoBuilder.addAll(tr.computeTickInfoList());
-      }
-      return infoBuilder.build();
     }
 
     @Override
@@ -366,10 +358,9 @@ class RealtimeModel extends TimeModel implements RealtimeClockController {
       }
 
       taskIsRunning.set(true);
-      timeRunners.add(new TimeRunner(context));
       schedulerFuture =
         verifyNotNull(executor).scheduleAtFixedRate(
-          timeRunners.get(timeRunners.size() - 1),
+          new TimeRunner(context),
           0,
           tickNanos,
           TimeUnit.NANOSECONDS);
@@ -389,6 +380,7 @@ class RealtimeModel extends TimeModel implements RealtimeClockController {
         public void onSuccess(@Nullable Object result) {}
       });
       awaitTermination(context);
+      telemetry.flushSink();
       LOGGER.trace("end of realtime, next trigger {}", nextTrigger);
       final Trigger t = nextTrigger;
       nextTrigger = null;
@@ -452,34 +444,17 @@ class RealtimeModel extends TimeModel implements RealtimeClockController {
     }
 
     class TimeRunner implements Runnable {
-      final List<Timestamp> timeStamps;
       final RealtimeModel context;
       long counter;
 
       TimeRunner(RealtimeModel rm) {
         context = rm;
-        timeStamps = new ArrayList<>();
-      }
-
-      Iterable<? extends RealtimeTickInfo> computeTickInfoList() {
-        if (timeStamps.size() <= 1) {
-          return Collections.emptySet();
-        }
-        final List<RealtimeTickInfo> deviations = new ArrayList<>();
-        final PeekingIterator<Timestamp> it =
-          Iterators.peekingIterator(timeStamps.iterator());
-
-        Timestamp cur = it.next();
-        while (it.hasNext()) {
-          deviations.add(RealtimeTickInfo.create(cur, it.peek()));
-          cur = it.next();
-        }
-        return deviations;
       }
 
       @Override
       public void run() {
-        timeStamps.add(Timestamp.now(counter));
+        telemetry.record(counter, System.currentTimeMillis(),
+          System.nanoTime());
         context.tickImpl();
         LOGGER.trace("tick {} is done, nextTrigger: {} ", counter, nextTrigger);
         if (nextTrigger != null) {
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.time;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.rinde.rinsim.core.model.time.TickProfiler.Histogram;
+import com.github.rinde.rinsim.core.model.time.TickProfiler.Timings;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Telemetry of the ticks of a real-time clock. By default the
+ * {@link Timestamp}s of all ticks are kept in primitive arrays that grow when
+ * needed. Optionally, see
+ * {@link TimeModel.RealtimeBuilder#withTickTelemetryCapacity(int)}, only the
+ * most recent ticks are kept in a ring buffer with a fixed capacity, older
+ * ticks are then overwritten and the memory usage of the telemetry is
+ * independent of the duration of the simulation. The inter-arrival times of
+ * all ticks and the jitter, the absolute deviation of the inter-arrival time
+ * from the tick length, are aggregated in histograms. Recording a tick takes
+ * amortized constant time and does not allocate objects.
+ * <p>
+ * All ticks can be written to a {@link Sink}, each time a batch of new ticks
+ * has been recorded these ticks are written to the sink followed by a call to
+ * {@link Sink#flush()}. When the ticks are kept in a ring buffer a batch is as
+ * large as the buffer. The sink is called by the thread of the clock, it
+ * should therefore be fast or hand off its work to another thread. An instance
+ * can be obtained via {@link RealtimeClockLogger#getTickTelemetry()}. This
+ * class is thread-safe.
+ * @author Rinde van Lon
+ */
+public final class RealtimeTickTelemetry {
+  /**
+   * The value of the inter-arrival time for the first tick of a real-time
+   * period.
+   */
+  public static final long NO_INTER_ARRIVAL_TIME = -1L;
+
+  /**
+   * The capacity value that indicates that all ticks are kept.
+   */
+  public static final int UNBOUNDED = 0;
+
+  static final Logger LOGGER =
+    LoggerFactory.getLogger(RealtimeTickTelemetry.class);
+  // initial length of the arrays and the batch size of the sink when all
+  // ticks are kept
+  private static final int INITIAL_LENGTH = 1024;
+
+  final long tickNanos;
+  private final int capacity;
+  private final int batchSize;
+  private long[] tickCounts;
+  private long[] millis;
+  private long[] nanos;
+  private long[] interArrivals;
+  private final Histogram interArrivalTimes;
+  private final Histogram jitter;
+  // total number of recorded ticks
+  private long size;
+  // number of recorded ticks that have been written to the sink
+  private long flushed;
+  private long maxOverrun;
+  private long overruns;
+  @Nullable
+  private Sink sink;
+
+  RealtimeTickTelemetry(long tickNs, int cap) {
+    checkArgument(cap >= 0, "Capacity must be positive, found %s.", cap);
+    tickNanos = tickNs;
+    capacity = cap;
+    if (cap == UNBOUNDED) {
+      batchSize = INITIAL_LENGTH;
+    } else {
+      batchSize = cap;
+    }
+    tickCounts = new long[batchSize];
+    millis = new long[batchSize];
+    nanos = new long[batchSize];
+    interArrivals = new long[batchSize];
+    interArrivalTimes = new Histogram();
+    jitter = new Histogram();
+  }
+
+  synchronized void record(long tickCount, long ms, long ns) {
+    long iat = NO_INTER_ARRIVAL_TIME;
+    if (size > 0 && tickCount > 0) {
+      final int prev = index(size - 1);
+      if (tickCounts[prev] + 1 == tickCount) {
+        iat = ns - nanos[prev];
+        interArrivalTimes.record(iat);
+        jitter.record(Math.abs(iat - tickNanos));
+        if (iat > tickNanos) {
+          overruns++;
+          maxOverrun = Math.max(maxOverrun, iat - tickNanos);
+        }
+      }
+    }
+    // the unflushed ticks are written to the sink before they are overwritten
+    if (sink != null && size - flushed == batchSize) {
+      flushSink();
+    }
+    if (capacity == UNBOUNDED && size == tickCounts.length) {
+      final int length = 2 * tickCounts.length;
+      tickCounts = Arrays.copyOf(tickCounts, length);
+      millis = Arrays.copyOf(millis, length);
+      nanos = Arrays.copyOf(nanos, length);
+      interArrivals = Arrays.copyOf(interArrivals, length);
+    }
+    final int i = index(size);
+    tickCounts[i] = tickCount;
+    millis[i] = ms;
+    nanos[i] = ns;
+    interArrivals[i] = iat;
+    size++;
+  }
+
+  /**
+   * @return The maximum number of ticks that is kept in the buffer, or
+   *         {@link #UNBOUNDED} if all ticks are kept.
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return The total number of recorded ticks.
+   */
+  public synchronized long getTickCount() {
+    return size;
+  }
+
+  /**
+   * @return The histogram of the inter-arrival times of the ticks, in
+   *         nanoseconds.
+   */
+  public Timings getInterArrivalTimes() {
+    return interArrivalTimes.snapshot();
+  }
+
+  /**
+   * @return The histogram of the absolute deviations of the inter-arrival
+   *         times from the tick length, in nanoseconds.
+   */
+  public Timings getJitter() {
+    return jitter.snapshot();
+  }
+
+  /**
+   * @return The number of ticks with an inter-arrival time that is longer
+   *         than the tick length.
+   */
+  public synchronized long getOverrunCount() {
+    return overruns;
+  }
+
+  /**
+   * @return The largest amount of nanoseconds by which an inter-arrival time
+   *         exceeded the tick length, or <code>0</code> if this never
+   *         happened.
+   */
+  public synchronized long getMaxOverrunNanos() {
+    return maxOverrun;
+  }
+
+  /**
+   * Calls the consumer for each tick that is kept, from the oldest to the most
+   * recent tick, without copying the buffer. The consumer should not call any
+   * methods of this instance.
+   * @param consumer The consumer.
+   */
+  public synchronized void forEach(TickConsumer consumer) {
+    if (capacity == UNBOUNDED) {
+      visit(consumer, 0);
+    } else {
+      visit(consumer, Math.max(0, size - capacity));
+    }
+  }
+
+  /**
+   * @return A list of {@link RealtimeTickInfo} objects for the consecutive
+   *         ticks that are kept, this is a list of all ticks unless the
+   *         capacity is bounded.
+   */
+  public ImmutableList<RealtimeTickInfo> getTickInfoList() {
+    final ImmutableList.Builder<RealtimeTickInfo> builder =
+      ImmutableList.builder();
+    forEach(new TickConsumer() {
+      @Nullable
+      Timestamp previous;
+
+      @Override
+      public void accept(long tickCount, long ms, long ns,
+          long interArrivalNanos) {
+        final Timestamp cur = Timestamp.create(tickCount, ms, ns);
+        if (previous != null
+          && interArrivalNanos != NO_INTER_ARRIVAL_TIME) {
+          builder.add(RealtimeTickInfo.create(previous, cur));
+        }
+        previous = cur;
+      }
+    });
+    return builder.build();
+  }
+
+  /**
+   * Sets the sink to which all subsequently recorded ticks are written.
+   * @param s The sink, or <code>null</code> to remove the current sink.
+   */
+  public synchronized void setSink(@Nullable Sink s) {
+    sink = s;
+    flushed = size;
+  }
+
+  /**
+   * Writes all ticks that have not yet been written to the sink, if any, and
+   * flushes the sink. This method is called when a real-time period ends.
+   */
+  public synchronized void flushSink() {
+    final Sink s = sink;
+    if (s != null && flushed < size) {
+      visit(s, flushed);
+      flushed = size;
+      s.flush();
+    }
+  }
+
+  @Override
+  public String toString() {
+    final Timings iat = getInterArrivalTimes();
+    final Timings jit = getJitter();
+    return new StringBuilder(RealtimeTickTelemetry.class.getSimpleName())
+      .append("{ticks=").append(getTickCount())
+      .append(", iat p50 (ms)=")
+      .append(TickProfiler.millis(
+        iat.getPercentileNanos(TickProfiler.PERCENTILE_50)))
+      .append(", iat max (ms)=")
+      .append(TickProfiler.millis(iat.getMaxNanos()))
+      .append(", jitter p99 (ms)=")
+      .append(TickProfiler.millis(
+        jit.getPercentileNanos(TickProfiler.PERCENTILE_99)))
+      .append(", overruns=").append(getOverrunCount())
+      .append(", max overrun (ms)=")
+      .append(TickProfiler.millis(getMaxOverrunNanos()))
+      .append('}')
+      .toString();
+  }
+
+  private void visit(TickConsumer consumer, long from) {
+    for (long n = from; n < size; n++) {
+      final int i = index(n);
+      consumer.accept(tickCounts[i], millis[i], nanos[i], interArrivals[i]);
+    }
+  }
+
+  private int index(long n) {
+    if (capacity == UNBOUNDED) {
+      return (int) n;
+    }
+    return (int) (n % capacity);
+  }
+
+  /**
+   * Creates a {@link Sink} that writes the ticks as comma separated values to
+   * the specified writer, one tick per line. The columns are the tick count,
+   * {@link Timestamp#getMillis()}, {@link Timestamp#getNanos()} and the
+   * inter-arrival time in nanoseconds. When writing fails the
+   * {@link IOException} is logged and the sink ignores all subsequent ticks,
+   * the clock is not affected.
+   * @param writer The writer, typically a buffered file writer.
+   * @return A new sink.
+   */
+  public static Sink csvSink(Writer writer) {
+    return new CsvSink(writer);
+  }
+
+  /**
+   * Consumer of the ticks of a {@link RealtimeTickTelemetry}.
+   * @author Rinde van Lon
+   */
+  public interface TickConsumer {
+    /**
+     * Is called for each tick.
+     * @param tickCount The tick count, see {@link Timestamp#getTickCount()}.
+     * @param ms The value of {@link System#currentTimeMillis()} at the start
+     *          of the tick.
+     * @param ns The value of {@link System#nanoTime()} at the start of the
+     *          tick.
+     * @param interArrivalNanos The time between the start of the previous
+     *          tick and this tick in nanoseconds, or
+     *          {@link RealtimeTickTelemetry#NO_INTER_ARRIVAL_TIME} if this is
+     *          the first tick of a real-time period.
+     */
+    void accept(long tickCount, long ms, long ns, long interArrivalNanos);
+  }
+
+  /**
+   * A destination to which all ticks are written in batches.
+   * @author Rinde van Lon
+   */
+  public interface Sink extends TickConsumer {
+    /**
+     * Is called after a batch of ticks has been written.
+     */
+    void flush();
+  }
+
+  static final class CsvSink implements Sink {
+    final Writer writer;
+    boolean failed;
+
+    CsvSink(Writer w) {
+      writer = w;
+    }
+
+    @Override
+    public void accept(long tickCount, long ms, long ns,
+        long interArrivalNanos) {
+      if (failed) {
+        return;
+      }
+      try {
+        writer.append(Long.toString(tickCount)).append(',')
+          .append(Long.toString(ms)).append(',')
+          .append(Long.toString(ns)).append(',')
+          .append(Long.toString(interArrivalNanos))
+          .append(System.lineSeparator());
+      } catch (final IOException e) {
+        disable(e);
+      }
+    }
+
+    @Override
+    public void flush() {
+      if (failed) {
+        return;
+      }
+      try {
+        writer.flush();
+      } catch (final IOException e) {
+        disable(e);
+      }
+    }
+
+    void disable(IOException e) {
+      failed = true;
+      LOGGER.warn("Writing ticks to {} failed, the sink is disabled.", writer,
+        e);
+    }
+  }
+}
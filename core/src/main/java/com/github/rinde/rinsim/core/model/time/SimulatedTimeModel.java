@@ -15,20 +15,29 @@
  */
 package com.github.rinde.rinsim.core.model.time;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * @author Rinde van Lon
  *
  */
 class SimulatedTimeModel extends TimeModel {
+  private static final Logger LOGGER =
+    LoggerFactory.getLogger(SimulatedTimeModel.class);
+
+  final boolean nextEventTimeAdvance;
 
   SimulatedTimeModel(Builder builder) {
-    super(builder);
+    super(builder, builder.getTickParallelism());
+    nextEventTimeAdvance = builder.isNextEventTimeAdvance();
   }
 
   @Override
   void doStart() {
     try {
       while (isTicking()) {
+        skipIdleTicks();
         tickImpl();
       }
     } catch (final RuntimeException e) {
@@ -44,6 +53,24 @@ class SimulatedTimeModel extends TimeModel {
 
   @Override
   public void tick() {
+    skipIdleTicks();
     tickImpl();
   }
+
+  // advances time to the tick that contains the next event, if all listeners
+  // are idle time can not be advanced and no ticks are skipped
+  void skipIdleTicks() {
+    if (!nextEventTimeAdvance) {
+      return;
+    }
+    final long next = getNextEventTime();
+    if (next == NextEventTickListener.IDLE
+      || next < timeLapse.getEndTime()) {
+      return;
+    }
+    final long ticks =
+      (next - timeLapse.getStartTime()) / timeLapse.getTickLength();
+    LOGGER.trace("Skipping {} idle ticks after {}.", ticks, timeLapse);
+    timeLapse.skip(ticks);
+  }
 }
@@ -0,0 +1,468 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.time;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.rinde.rinsim.event.Event;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Measures the time that is spent in the {@link TickListener#tick(TimeLapse)}
+ * and {@link TickListener#afterTick(TimeLapse)} methods of each listener of a
+ * {@link TimeModel}. The durations are aggregated per listener instance and per
+ * listener class in histograms with exponentially growing buckets, recording
+ * a duration takes constant time and does not allocate. A profiler is only
+ * created when the time model is constructed with
+ * {@link TimeModel.AbstractBuilder#withTickProfiling()}, it can be obtained
+ * via {@link TimeModel#getTickProfiler()}. The profiles can be queried while
+ * the simulation is running. When the clock stops, a {@link TickProfileEvent}
+ * with the complete report is dispatched via the {@link Clock#getEventAPI()}
+ * and the report is logged at debug level. The durations of listeners that are
+ * unregistered from the time model are only kept in the profiles of their
+ * class. This class is thread-safe.
+ * @author Rinde van Lon
+ */
+public final class TickProfiler {
+  static final int NUM_BUCKETS = 64;
+  static final double PERCENTILE_50 = .5;
+  static final double PERCENTILE_99 = .99;
+  private static final double NANOS_PER_MILLI = 1000000d;
+
+  private final ConcurrentMap<TickListener, Recorder> recorders;
+  // listeners that are unregistered but whose recorders are not yet retired
+  private final Queue<TickListener> unregistered;
+  // the durations of retired recorders per listener class, guarded by 'this'
+  private final Map<Class<?>, Recorder> retired;
+
+  TickProfiler() {
+    recorders = new ConcurrentHashMap<>();
+    unregistered = new ConcurrentLinkedQueue<>();
+    retired = new LinkedHashMap<>();
+  }
+
+  void tick(TickListener listener, TimeLapse timeLapse) {
+    final long start = System.nanoTime();
+    listener.tick(timeLapse);
+    recorder(listener).tick.record(System.nanoTime() - start);
+  }
+
+  void afterTick(TickListener listener, TimeLapse timeLapse) {
+    final long start = System.nanoTime();
+    listener.afterTick(timeLapse);
+    recorder(listener).afterTick.record(System.nanoTime() - start);
+  }
+
+  void unregister(TickListener listener) {
+    unregistered.add(listener);
+  }
+
+  // Retires the recorders of all unregistered listeners that are not in the
+  // specified set of registered listeners, it is called by the time model
+  // after a tick so that the durations of the last tick of an unregistered
+  // listener are still recorded.
+  void prune(Set<TickListener> registered) {
+    TickListener listener = unregistered.poll();
+    while (listener != null) {
+      if (!registered.contains(listener)) {
+        retire(listener);
+      }
+      listener = unregistered.poll();
+    }
+  }
+
+  void retire(TickListener listener) {
+    final Recorder r = recorders.remove(listener);
+    if (r != null) {
+      synchronized (this) {
+        final Class<?> clazz = listener.getClass();
+        if (!retired.containsKey(clazz)) {
+          retired.put(clazz, new Recorder());
+        }
+        retired.get(clazz).add(r);
+      }
+    }
+  }
+
+  Recorder recorder(TickListener listener) {
+    final Recorder r = recorders.get(listener);
+    if (r != null) {
+      return r;
+    }
+    final Recorder newRecorder = new Recorder();
+    final Recorder existing = recorders.putIfAbsent(listener, newRecorder);
+    if (existing == null) {
+      return newRecorder;
+    }
+    return existing;
+  }
+
+  /**
+   * @return A snapshot of the profiles of all registered listener instances
+   *         that have been ticked since the last {@link #reset()}, in the
+   *         order in which they were first ticked.
+   */
+  public ImmutableMap<TickListener, Profile> getInstanceProfiles() {
+    final ImmutableMap.Builder<TickListener, Profile> builder =
+      ImmutableMap.builder();
+    for (final Entry<TickListener, Recorder> entry : sortedRecorders()) {
+      builder.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return A snapshot of the profiles aggregated per listener class, sorted
+   *         by decreasing total time. The profile of a class includes the
+   *         durations of its instances that are no longer registered.
+   */
+  public ImmutableMap<Class<?>, Profile> getClassProfiles() {
+    final Map<Class<?>, Recorder> perClass = new LinkedHashMap<>();
+    synchronized (this) {
+      for (final Entry<Class<?>, Recorder> entry : retired.entrySet()) {
+        final Recorder r = new Recorder();
+        r.add(entry.getValue());
+        perClass.put(entry.getKey(), r);
+      }
+    }
+    for (final Entry<TickListener, Recorder> entry : sortedRecorders()) {
+      final Class<?> clazz = entry.getKey().getClass();
+      if (!perClass.containsKey(clazz)) {
+        perClass.put(clazz, new Recorder());
+      }
+      perClass.get(clazz).add(entry.getValue());
+    }
+    final List<Entry<Class<?>, Profile>> profiles = new ArrayList<>();
+    for (final Entry<Class<?>, Recorder> entry : perClass.entrySet()) {
+      profiles.add(Maps.<Class<?>, Profile>immutableEntry(entry.getKey(),
+        entry.getValue().snapshot()));
+    }
+    Collections.sort(profiles, new Comparator<Entry<Class<?>, Profile>>() {
+      @Override
+      public int compare(Entry<Class<?>, Profile> o1,
+          Entry<Class<?>, Profile> o2) {
+        return Long.compare(o2.getValue().getTotalNanos(),
+          o1.getValue().getTotalNanos());
+      }
+    });
+    final ImmutableMap.Builder<Class<?>, Profile> builder =
+      ImmutableMap.builder();
+    for (final Entry<Class<?>, Profile> entry : profiles) {
+      builder.put(entry);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Removes all recorded durations.
+   */
+  public void reset() {
+    recorders.clear();
+    synchronized (this) {
+      retired.clear();
+    }
+  }
+
+  /**
+   * @return A human readable report of the profiles per listener class, the
+   *         class that consumes the most time is listed first.
+   */
+  public String getReport() {
+    final StringBuilder sb = new StringBuilder(
+      "class,ticks,tick total (ms),tick p50 (ms),tick p99 (ms),tick max (ms),"
+        + "afterTick total (ms),afterTick max (ms)");
+    for (final Entry<Class<?>, Profile> entry : getClassProfiles()
+      .entrySet()) {
+      final Timings t = entry.getValue().getTick();
+      final Timings at = entry.getValue().getAfterTick();
+      sb.append(System.lineSeparator())
+        .append(entry.getKey().getName()).append(',')
+        .append(t.getCount()).append(',')
+        .append(millis(t.getTotalNanos())).append(',')
+        .append(millis(t.getPercentileNanos(PERCENTILE_50))).append(',')
+        .append(millis(t.getPercentileNanos(PERCENTILE_99))).append(',')
+        .append(millis(t.getMaxNanos())).append(',')
+        .append(millis(at.getTotalNanos())).append(',')
+        .append(millis(at.getMaxNanos()));
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String toString() {
+    return getReport();
+  }
+
+  List<Entry<TickListener, Recorder>> sortedRecorders() {
+    final List<Entry<TickListener, Recorder>> entries =
+      new ArrayList<>(recorders.entrySet());
+    Collections.sort(entries, new Comparator<Entry<TickListener, Recorder>>() {
+      @Override
+      public int compare(Entry<TickListener, Recorder> o1,
+          Entry<TickListener, Recorder> o2) {
+        return Long.compare(o1.getValue().order, o2.getValue().order);
+      }
+    });
+    return entries;
+  }
+
+  static double millis(long nanos) {
+    return nanos / NANOS_PER_MILLI;
+  }
+
+  static int bucket(long nanos) {
+    if (nanos <= 0) {
+      return 0;
+    }
+    return NUM_BUCKETS - 1 - Long.numberOfLeadingZeros(nanos);
+  }
+
+  /**
+   * The type of event that is dispatched by a profiled {@link TimeModel} when
+   * the clock stops. The event class is {@link TickProfileEvent}.
+   * @author Rinde van Lon
+   */
+  public enum TickProfileEventType {
+    /**
+     * Indicates that the clock has stopped, it is dispatched right before
+     * {@link Clock.ClockEventType#STOPPED}.
+     */
+    TICK_PROFILE;
+  }
+
+  /**
+   * Event class for {@link TickProfileEventType#TICK_PROFILE} events. Contains
+   * the profiles at the moment the clock stopped.
+   * @author Rinde van Lon
+   */
+  public static final class TickProfileEvent extends Event {
+    private final long time;
+    private final ImmutableMap<Class<?>, Profile> classProfiles;
+    private final String report;
+
+    TickProfileEvent(Object pIssuer, long t, TickProfiler profiler) {
+      super(TickProfileEventType.TICK_PROFILE, pIssuer);
+      time = t;
+      classProfiles = profiler.getClassProfiles();
+      report = profiler.getReport();
+    }
+
+    /**
+     * @return The time at which the clock stopped.
+     */
+    public long getTime() {
+      return time;
+    }
+
+    /**
+     * @return The profiles per listener class, see
+     *         {@link TickProfiler#getClassProfiles()}.
+     */
+    public ImmutableMap<Class<?>, Profile> getClassProfiles() {
+      return classProfiles;
+    }
+
+    /**
+     * @return The report, see {@link TickProfiler#getReport()}.
+     */
+    public String getReport() {
+      return report;
+    }
+  }
+
+  /**
+   * The profile of a listener or of a listener class.
+   * @author Rinde van Lon
+   */
+  @AutoValue
+  public abstract static class Profile {
+    Profile() {}
+
+    /**
+     * @return The timings of {@link TickListener#tick(TimeLapse)}.
+     */
+    public abstract Timings getTick();
+
+    /**
+     * @return The timings of {@link TickListener#afterTick(TimeLapse)}.
+     */
+    public abstract Timings getAfterTick();
+
+    /**
+     * @return The total time spent in both methods, in nanoseconds.
+     */
+    public long getTotalNanos() {
+      return getTick().getTotalNanos() + getAfterTick().getTotalNanos();
+    }
+
+    static Profile create(Timings tick, Timings afterTick) {
+      return new AutoValue_TickProfiler_Profile(tick, afterTick);
+    }
+  }
+
+  /**
+   * Aggregated durations of calls to a single method.
+   * @author Rinde van Lon
+   */
+  @AutoValue
+  public abstract static class Timings {
+    Timings() {}
+
+    /**
+     * @return The number of calls.
+     */
+    public abstract long getCount();
+
+    /**
+     * @return The total duration of all calls in nanoseconds.
+     */
+    public abstract long getTotalNanos();
+
+    /**
+     * @return The duration of the longest call in nanoseconds.
+     */
+    public abstract long getMaxNanos();
+
+    /**
+     * @return The histogram of durations, the value at index <code>i</code> is
+     *         the number of calls with a duration in the interval
+     *         <code>[2^i, 2^(i+1))</code> nanoseconds, durations shorter than
+     *         one nanosecond are counted at index <code>0</code>.
+     */
+    public abstract ImmutableList<Long> getHistogram();
+
+    /**
+     * @return The mean duration of a call in nanoseconds, or <code>0</code> if
+     *         there were no calls.
+     */
+    public double getMeanNanos() {
+      if (getCount() == 0) {
+        return 0d;
+      }
+      return getTotalNanos() / (double) getCount();
+    }
+
+    /**
+     * Estimates the specified percentile of the durations based on the
+     * histogram, the estimate is the upper bound of the bucket that contains
+     * the percentile capped at {@link #getMaxNanos()}.
+     * @param percentile The percentile, must be in <code>(0,1]</code>.
+     * @return The estimated duration in nanoseconds.
+     */
+    public long getPercentileNanos(double percentile) {
+      checkArgument(percentile > 0 && percentile <= 1,
+        "Percentile must be in (0,1], found %s.", percentile);
+      final double threshold = percentile * getCount();
+      long seen = 0;
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        seen += getHistogram().get(i);
+        if (seen > 0 && seen >= threshold) {
+          if (i == NUM_BUCKETS - 1) {
+            return getMaxNanos();
+          }
+          return Math.min((1L << (i + 1)) - 1, getMaxNanos());
+        }
+      }
+      return getMaxNanos();
+    }
+
+    static Timings create(long count, long total, long max, long[] hist) {
+      final ImmutableList.Builder<Long> builder = ImmutableList.builder();
+      for (final long h : hist) {
+        builder.add(h);
+      }
+      return new AutoValue_TickProfiler_Timings(count, total, max,
+        builder.build());
+    }
+  }
+
+  // the durations of a single method, it is only written by the thread that
+  // calls the method
+  static final class Histogram {
+    final long[] buckets;
+    volatile long count;
+    volatile long total;
+    volatile long max;
+
+    Histogram() {
+      buckets = new long[NUM_BUCKETS];
+    }
+
+    void record(long nanos) {
+      buckets[bucket(nanos)]++;
+      total += nanos;
+      if (nanos > max) {
+        max = nanos;
+      }
+      count++;
+    }
+
+    void add(Histogram other) {
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        buckets[i] += other.buckets[i];
+      }
+      total += other.total;
+      max = Math.max(max, other.max);
+      count += other.count;
+    }
+
+    Timings snapshot() {
+      return Timings.create(count, total, max, buckets.clone());
+    }
+  }
+
+  static final class Recorder {
+    private static long counter;
+    final Histogram tick;
+    final Histogram afterTick;
+    final long order;
+
+    Recorder() {
+      tick = new Histogram();
+      afterTick = new Histogram();
+      order = nextOrder();
+    }
+
+    void add(Recorder other) {
+      tick.add(other.tick);
+      afterTick.add(other.afterTick);
+    }
+
+    Profile snapshot() {
+      return Profile.create(tick.snapshot(), afterTick.snapshot());
+    }
+
+    static synchronized long nextOrder() {
+      return counter++;
+    }
+  }
+}
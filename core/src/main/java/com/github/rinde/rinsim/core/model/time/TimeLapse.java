@@ -58,6 +58,19 @@ public final class TimeLapse {
     reset();
   }
 
+  void set(long start, long end) {
+    startTime = start;
+    endTime = end;
+    reset();
+  }
+
+  void skip(long ticks) {
+    final long length = ticks * getTickLength();
+    startTime += length;
+    endTime += length;
+    reset();
+  }
+
   /**
    * Consumes the specified amount of time, where time must be strictly positive
    * and there must be enough time left as specified by {@link #getTimeLeft()}.
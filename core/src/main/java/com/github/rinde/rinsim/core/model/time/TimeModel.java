@@ -42,6 +42,7 @@ import com.github.rinde.rinsim.event.EventAPI;
 import com.github.rinde.rinsim.event.EventDispatcher;
 import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
 
 /**
@@ -67,13 +68,32 @@ public abstract class TimeModel extends AbstractModel<TickListener>
 
   final TimeLapse timeLapse;
   final EventDispatcher eventDispatcher;
+  final Optional<ParallelTicker> parallelTicker;
+  final Optional<TickProfiler> tickProfiler;
   volatile boolean isTicking;
   private volatile Set<TickListener> tickListeners;
+  private boolean skipBlockerLogged;
 
   TimeModel(AbstractBuilder<?> builder, Enum<?>... additionalEventTypes) {
+    this(builder, 0, additionalEventTypes);
+  }
+
+  TimeModel(AbstractBuilder<?> builder, int tickParallelism,
+      Enum<?>... additionalEventTypes) {
     tickListeners = new CopyOnWriteArraySet<>();
+    if (tickParallelism > 0) {
+      parallelTicker = Optional.of(new ParallelTicker(tickParallelism));
+    } else {
+      parallelTicker = Optional.absent();
+    }
+    if (builder.isTickProfiling()) {
+      tickProfiler = Optional.of(new TickProfiler());
+    } else {
+      tickProfiler = Optional.absent();
+    }
     final Set<Enum<?>> allEventTypes = ImmutableSet.<Enum<?>>builder()
       .add(ClockEventType.values())
+      .add(TickProfiler.TickProfileEventType.values())
       .add(additionalEventTypes)
       .build();
     eventDispatcher = new EventDispatcher(allEventTypes);
@@ -92,6 +112,15 @@ public abstract class TimeModel extends AbstractModel<TickListener>
     isTicking = true;
     eventDispatcher.dispatchEvent(new Event(ClockEventType.STARTED, this));
     doStart();
+    if (tickProfiler.isPresent()) {
+      tickProfiler.get().prune(tickListeners);
+      final TickProfiler.TickProfileEvent event =
+        new TickProfiler.TickProfileEvent(this, getCurrentTime(),
+          tickProfiler.get());
+      LOGGER.debug("Tick profile after {}:{}{}", timeLapse,
+        System.lineSeparator(), event.getReport());
+      eventDispatcher.dispatchEvent(event);
+    }
     eventDispatcher.dispatchEvent(new Event(ClockEventType.STOPPED, this));
   }
 
@@ -130,18 +159,40 @@ public abstract class TimeModel extends AbstractModel<TickListener>
   @OverridingMethodsMustInvokeSuper
   @Override
   public boolean unregister(TickListener element) {
-    return tickListeners.remove(element);
+    final boolean removed = tickListeners.remove(element);
+    if (removed && tickProfiler.isPresent()) {
+      tickProfiler.get().unregister(element);
+    }
+    return removed;
   }
 
   final void tickImpl() {
-    for (final TickListener t : tickListeners) {
-      timeLapse.reset();
-      t.tick(timeLapse);
+    if (parallelTicker.isPresent()) {
+      parallelTicker.get().tick(tickListeners, timeLapse, tickProfiler);
+    } else if (tickProfiler.isPresent()) {
+      for (final TickListener t : tickListeners) {
+        timeLapse.reset();
+        tickProfiler.get().tick(t, timeLapse);
+      }
+    } else {
+      for (final TickListener t : tickListeners) {
+        timeLapse.reset();
+        t.tick(timeLapse);
+      }
     }
     // in the after tick the TimeLapse can no longer be consumed
     timeLapse.consumeAll();
-    for (final TickListener t : tickListeners) {
-      t.afterTick(timeLapse);
+    if (tickProfiler.isPresent()) {
+      for (final TickListener t : tickListeners) {
+        tickProfiler.get().afterTick(t, timeLapse);
+      }
+    } else {
+      for (final TickListener t : tickListeners) {
+        t.afterTick(timeLapse);
+      }
+    }
+    if (tickProfiler.isPresent()) {
+      tickProfiler.get().prune(tickListeners);
     }
     // advance time
     timeLapse.next();
@@ -152,6 +203,29 @@ public abstract class TimeModel extends AbstractModel<TickListener>
     }
   }
 
+  // returns the earliest time at which one of the listeners needs a tick, if
+  // one of the listeners can not be skipped the current time is returned
+  final long getNextEventTime() {
+    final long now = timeLapse.getStartTime();
+    long next = NextEventTickListener.IDLE;
+    for (final TickListener t : tickListeners) {
+      if (!(t instanceof NextEventTickListener)) {
+        if (!skipBlockerLogged) {
+          skipBlockerLogged = true;
+          LOGGER.debug("Ticks are not skipped because {} does not implement "
+            + "NextEventTickListener.", t);
+        }
+        return now;
+      }
+      next = Math.min(next,
+        ((NextEventTickListener) t).getNextEventTime(now));
+      if (next <= now) {
+        return now;
+      }
+    }
+    return next;
+  }
+
   /**
    * @return true if time is ticking, false otherwise.
    */
@@ -190,6 +264,18 @@ public abstract class TimeModel extends AbstractModel<TickListener>
     return eventDispatcher.getPublicEventAPI();
   }
 
+  /**
+   * @return The {@link TickProfiler} of this model, it is only present if the
+   *         model is constructed with
+   *         {@link AbstractBuilder#withTickProfiling()}. In that case a
+   *         {@link TickProfiler.TickProfileEvent} is dispatched via
+   *         {@link #getEventAPI()} each time the clock stops.
+   */
+  @CheckReturnValue
+  public Optional<TickProfiler> getTickProfiler() {
+    return tickProfiler;
+  }
+
   /**
    * @return A new {@link Builder} instance for constructing {@link TimeModel}
    *         instances.
@@ -231,6 +317,12 @@ public abstract class TimeModel extends AbstractModel<TickListener>
      */
     public abstract Unit<Duration> getTimeUnit();
 
+    /**
+     * @return <code>true</code> if the time spent in each listener is
+     *         measured, <code>false</code> otherwise.
+     */
+    public abstract boolean isTickProfiling();
+
     /**
      * Returns a copy of this builder with the specified length of a single
      * tick. The default tick length is {@link #DEFAULT_TIME_STEP}.
@@ -248,6 +340,16 @@ public abstract class TimeModel extends AbstractModel<TickListener>
      */
     @CheckReturnValue
     public abstract T withTimeUnit(Unit<Duration> timeUnit);
+
+    /**
+     * Returns a copy of this builder that creates a time model which measures
+     * the time that is spent in each of its {@link TickListener}s, see
+     * {@link TickProfiler}. By default, no measurements are done and there is
+     * no overhead.
+     * @return A new builder instance.
+     */
+    @CheckReturnValue
+    public abstract T withTickProfiling();
   }
 
   /**
@@ -262,14 +364,87 @@ public abstract class TimeModel extends AbstractModel<TickListener>
       setProvidingTypes(Clock.class, ClockController.class);
     }
 
+    /**
+     * @return <code>true</code> if idle ticks are skipped, <code>false</code>
+     *         otherwise.
+     */
+    public abstract boolean isNextEventTimeAdvance();
+
+    /**
+     * @return The number of threads that are used for ticking
+     *         {@link ParallelTickListener}s, <code>0</code> indicates that all
+     *         listeners are ticked sequentially in the simulation thread.
+     */
+    public abstract int getTickParallelism();
+
     @Override
     public Builder withTickLength(long tickLength) {
-      return create(tickLength, getTimeUnit());
+      return create(tickLength, getTimeUnit(), isTickProfiling(),
+        isNextEventTimeAdvance(), getTickParallelism());
     }
 
     @Override
     public Builder withTimeUnit(Unit<Duration> timeUnit) {
-      return create(getTickLength(), timeUnit);
+      return create(getTickLength(), timeUnit, isTickProfiling(),
+        isNextEventTimeAdvance(), getTickParallelism());
+    }
+
+    /**
+     * Create a time model that ticks {@link ParallelTickListener}s
+     * concurrently using as many threads as there are available processors.
+     * See {@link #withParallelTicks(int)}.
+     * @return A new builder instance.
+     */
+    @CheckReturnValue
+    public Builder withParallelTicks() {
+      return withParallelTicks(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a time model that ticks {@link ParallelTickListener}s
+     * concurrently on a fork-join pool with the specified parallelism. All
+     * other {@link TickListener}s are ticked sequentially as usual, see
+     * {@link ParallelTickListener} for the exact semantics. By default, all
+     * listeners are ticked sequentially. This option has no effect on
+     * real-time models.
+     * @param parallelism The number of threads to use, must be strictly
+     *          positive.
+     * @return A new builder instance.
+     */
+    @CheckReturnValue
+    public Builder withParallelTicks(int parallelism) {
+      checkArgument(parallelism > 0,
+        "Parallelism must be strictly positive, found %s.", parallelism);
+      return create(getTickLength(), getTimeUnit(), isTickProfiling(),
+        isNextEventTimeAdvance(), parallelism);
+    }
+
+    /**
+     * Create a time model that advances time to the next event instead of
+     * ticking through periods in which nothing happens. Ticks are only skipped
+     * when all registered {@link TickListener}s implement
+     * {@link NextEventTickListener}, in that case time jumps to the tick that
+     * contains the earliest declared event time. If at least one listener does
+     * not implement the interface, or if all listeners are
+     * {@link NextEventTickListener#IDLE}, every tick is executed as usual. By
+     * default, every tick is executed. This option has no effect on real-time
+     * models.
+     * <p>
+     * The listeners that are provided by RinSim for simulations in simulated
+     * time implement {@link NextEventTickListener}: the scenario controller,
+     * the simulator, the central solver model, the route following vehicle,
+     * {@link com.github.rinde.rinsim.core.model.pdp.DefaultPDPModel} and
+     * {@link com.github.rinde.rinsim.core.model.comm.CommModel}. The real-time
+     * solver models are not, since they are only used with real-time models. A
+     * simulation with custom agents is only accelerated when these agents
+     * implement the interface as well. The first listener that prevents ticks
+     * from being skipped is logged at debug level.
+     * @return A new builder instance.
+     */
+    @CheckReturnValue
+    public Builder withNextEventTimeAdvance() {
+      return create(getTickLength(), getTimeUnit(), isTickProfiling(), true,
+        getTickParallelism());
     }
 
     /**
@@ -281,7 +456,8 @@ public abstract class TimeModel extends AbstractModel<TickListener>
     @CheckReturnValue
     public RealtimeBuilder withRealTime() {
       return RealtimeBuilder.create(getTickLength(), getTimeUnit(),
-        ClockMode.REAL_TIME);
+        isTickProfiling(), ClockMode.REAL_TIME,
+        RealtimeTickTelemetry.UNBOUNDED);
     }
 
     @CheckReturnValue
@@ -290,8 +466,21 @@ public abstract class TimeModel extends AbstractModel<TickListener>
       return new SimulatedTimeModel(this);
     }
 
+    @Override
+    public Builder withTickProfiling() {
+      return create(getTickLength(), getTimeUnit(), true,
+        isNextEventTimeAdvance(), getTickParallelism());
+    }
+
     static Builder create(long tickLength, Unit<Duration> timeUnit) {
-      return new AutoValue_TimeModel_Builder(tickLength, timeUnit);
+      return create(tickLength, timeUnit, false, false, 0);
+    }
+
+    static Builder create(long tickLength, Unit<Duration> timeUnit,
+        boolean tickProfiling, boolean nextEventTimeAdvance,
+        int tickParallelism) {
+      return new AutoValue_TimeModel_Builder(tickLength, timeUnit,
+        tickProfiling, nextEventTimeAdvance, tickParallelism);
     }
   }
 
@@ -317,6 +506,13 @@ public abstract class TimeModel extends AbstractModel<TickListener>
      */
     public abstract ClockMode getClockMode();
 
+    /**
+     * @return The number of most recent ticks that is kept by the
+     *         {@link RealtimeTickTelemetry}, or
+     *         {@link RealtimeTickTelemetry#UNBOUNDED} if all ticks are kept.
+     */
+    public abstract int getTickTelemetryCapacity();
+
     /**
      * Sets the {@link ClockMode} the model should start with. By default the
      * mode is {@link ClockMode#REAL_TIME}.
@@ -329,17 +525,45 @@ public abstract class TimeModel extends AbstractModel<TickListener>
       checkArgument(mode != ClockMode.STOPPED,
         "Can not use %s as starting mode in %s.", ClockMode.STOPPED,
         toString());
-      return create(getTickLength(), getTimeUnit(), mode);
+      return create(getTickLength(), getTimeUnit(), isTickProfiling(), mode,
+        getTickTelemetryCapacity());
+    }
+
+    /**
+     * Bounds the number of ticks that is kept by the
+     * {@link RealtimeTickTelemetry} of the model to the specified number of
+     * most recent ticks. The telemetry then uses a fixed amount of memory that
+     * is proportional to this capacity, also
+     * {@link RealtimeClockLogger#getTickInfoList()} only contains these ticks.
+     * By default all ticks are kept.
+     * @param capacity The capacity, must be strictly positive.
+     * @return A new builder instance.
+     */
+    @CheckReturnValue
+    public RealtimeBuilder withTickTelemetryCapacity(int capacity) {
+      checkArgument(capacity > 0,
+        "Tick telemetry capacity must be strictly positive, found %s.",
+        capacity);
+      return create(getTickLength(), getTimeUnit(), isTickProfiling(),
+        getClockMode(), capacity);
     }
 
     @Override
     public RealtimeBuilder withTickLength(long tickLength) {
-      return create(tickLength, getTimeUnit(), getClockMode());
+      return create(tickLength, getTimeUnit(), isTickProfiling(),
+        getClockMode(), getTickTelemetryCapacity());
     }
 
     @Override
     public RealtimeBuilder withTimeUnit(Unit<Duration> timeUnit) {
-      return create(getTickLength(), timeUnit, getClockMode());
+      return create(getTickLength(), timeUnit, isTickProfiling(),
+        getClockMode(), getTickTelemetryCapacity());
+    }
+
+    @Override
+    public RealtimeBuilder withTickProfiling() {
+      return create(getTickLength(), getTimeUnit(), true, getClockMode(),
+        getTickTelemetryCapacity());
     }
 
     @Override
@@ -353,8 +577,9 @@ public abstract class TimeModel extends AbstractModel<TickListener>
     }
 
     static RealtimeBuilder create(long length, Unit<Duration> unit,
-        ClockMode mode) {
-      return new AutoValue_TimeModel_RealtimeBuilder(length, unit, mode);
+        boolean profiling, ClockMode mode, int telemetryCapacity) {
+      return new AutoValue_TimeModel_RealtimeBuilder(length, unit, profiling,
+        mode, telemetryCapacity);
     }
   }
 }
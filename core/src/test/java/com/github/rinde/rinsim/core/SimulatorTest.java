@@ -21,7 +21,9 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.annotation.Nullable;
@@ -29,6 +31,7 @@ import javax.measure.unit.NonSI;
 import javax.measure.unit.SI;
 
 import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -37,9 +40,25 @@ import com.github.rinde.rinsim.core.model.Model;
 import com.github.rinde.rinsim.core.model.Model.AbstractModel;
 import com.github.rinde.rinsim.core.model.ModelBuilder;
 import com.github.rinde.rinsim.core.model.ModelBuilder.AbstractModelBuilder;
+import com.github.rinde.rinsim.core.model.pdp.DefaultPDPModel;
+import com.github.rinde.rinsim.core.model.pdp.PDPModel;
+import com.github.rinde.rinsim.core.model.pdp.PDPModel.ParcelState;
+import com.github.rinde.rinsim.core.model.pdp.Parcel;
+import com.github.rinde.rinsim.core.model.pdp.Vehicle;
+import com.github.rinde.rinsim.core.model.pdp.VehicleDTO;
 import com.github.rinde.rinsim.core.model.rand.RandomProvider;
+import com.github.rinde.rinsim.core.model.road.MovingRoadUser;
+import com.github.rinde.rinsim.core.model.road.RoadModel;
+import com.github.rinde.rinsim.core.model.road.RoadModelBuilders;
+import com.github.rinde.rinsim.core.model.road.RoadUser;
+import com.github.rinde.rinsim.core.model.time.ParallelTickListener;
 import com.github.rinde.rinsim.core.model.time.TickListener;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
+import com.github.rinde.rinsim.core.model.time.TimeModel;
+import com.github.rinde.rinsim.geom.Graph;
+import com.github.rinde.rinsim.geom.LengthData;
+import com.github.rinde.rinsim.geom.Point;
+import com.github.rinde.rinsim.geom.TableGraph;
 import com.google.common.collect.ImmutableClassToInstanceMap;
 import com.google.common.collect.ImmutableSet;
 
@@ -579,6 +598,168 @@ public class SimulatorTest {
     }
   }
 
+  /**
+   * Tests that ticking partition-safe agents concurrently gives the same
+   * results as ticking them sequentially.
+   */
+  @Test
+  public void testParallelTicksDeterministic() {
+    final Graph<LengthData> graph = new TableGraph<>();
+    for (int i = 0; i < 10; i++) {
+      for (int j = 0; j < 10; j++) {
+        final Point p = new Point(i, j);
+        if (i > 0) {
+          graph.addConnection(p, new Point(i - 1, j));
+          graph.addConnection(new Point(i - 1, j), p);
+        }
+        if (j > 0) {
+          graph.addConnection(p, new Point(i, j - 1));
+          graph.addConnection(new Point(i, j - 1), p);
+        }
+      }
+    }
+    final ImmutableSet<ModelBuilder<? extends RoadModel, ? extends RoadUser>> rms =
+      ImmutableSet.<ModelBuilder<? extends RoadModel, ? extends RoadUser>>of(
+        RoadModelBuilders.plane(),
+        RoadModelBuilders.plane().withSpatialIndex(1d),
+        RoadModelBuilders.staticGraph(graph));
+    for (final ModelBuilder<? extends RoadModel, ? extends RoadUser> rm : rms) {
+      assertThat(runRandomWalkers(rm, TimeModel.builder()))
+        .isEqualTo(runRandomWalkers(rm, TimeModel.builder()
+          .withParallelTicks(4)));
+    }
+  }
+
+  static List<Point> runRandomWalkers(
+      ModelBuilder<? extends RoadModel, ? extends RoadUser> roadModel,
+      TimeModel.Builder timeModel) {
+    final Simulator sim = Simulator.builder()
+      .addModel(timeModel.withTickLength(100L).withTimeUnit(SI.SECOND))
+      .addModel(roadModel)
+      .build();
+    final RoadModel rm = sim.getModelProvider().getModel(RoadModel.class);
+    final RandomGenerator rng = new MersenneTwister(123L);
+    final List<RandomWalker> walkers = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      walkers.add(new RandomWalker(rm.getRandomPosition(rng), i));
+      sim.register(walkers.get(i));
+    }
+    for (int i = 0; i < 50; i++) {
+      sim.tick();
+    }
+    final List<Point> positions = new ArrayList<>();
+    for (final RandomWalker w : walkers) {
+      positions.add(rm.getPosition(w));
+    }
+    return positions;
+  }
+
+  /**
+   * Tests that two partition-safe vehicles that race for the same parcel are
+   * always rejected, regardless of the order in which their ticks run, while
+   * vehicles that pick up their own parcel are not.
+   */
+  @Test
+  public void testParallelTicksContendedPickup() {
+    for (int i = 0; i < 20; i++) {
+      final Simulator sim = pickupSimulator();
+      final Parcel parcel = Parcel.builder(new Point(0, 0), new Point(1, 1))
+        .build();
+      sim.register(parcel);
+      sim.register(new PickupVehicle(parcel));
+      sim.register(new PickupVehicle(parcel));
+      boolean fail = false;
+      try {
+        sim.tick();
+      } catch (final IllegalStateException e) {
+        fail = true;
+      }
+      assertThat(fail).isTrue();
+    }
+
+    final Simulator sim = pickupSimulator();
+    final PDPModel pm = sim.getModelProvider().getModel(PDPModel.class);
+    final List<Parcel> parcels = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      parcels.add(Parcel.builder(new Point(0, 0), new Point(1, 1)).build());
+      sim.register(parcels.get(i));
+      sim.register(new PickupVehicle(parcels.get(i)));
+    }
+    sim.tick();
+    for (final Parcel p : parcels) {
+      assertThat(pm.getParcelState(p)).isEqualTo(ParcelState.IN_CARGO);
+    }
+  }
+
+  static Simulator pickupSimulator() {
+    return Simulator.builder()
+      .addModel(TimeModel.builder().withParallelTicks(2))
+      .addModel(RoadModelBuilders.plane())
+      .addModel(DefaultPDPModel.builder())
+      .build();
+  }
+
+  static class RandomWalker implements MovingRoadUser, ParallelTickListener {
+    final RandomGenerator rng;
+    final Point start;
+    @Nullable
+    RoadModel roadModel;
+    @Nullable
+    Point destination;
+
+    RandomWalker(Point p, long seed) {
+      start = p;
+      rng = new MersenneTwister(seed);
+    }
+
+    @Override
+    public void initRoadUser(RoadModel model) {
+      roadModel = model;
+      model.addObjectAt(this, start);
+    }
+
+    @Override
+    public double getSpeed() {
+      return 0.01;
+    }
+
+    @Override
+    public void tick(TimeLapse timeLapse) {
+      final RoadModel rm = roadModel;
+      assertNotNull(rm);
+      if (destination == null
+        || rm.getPosition(this).equals(destination)) {
+        destination = rm.getRandomPosition(rng);
+      }
+      rm.moveTo(this, destination, timeLapse);
+    }
+
+    @Override
+    public void afterTick(TimeLapse timeLapse) {}
+
+    @Override
+    public String toString() {
+      return "RandomWalker" + start;
+    }
+  }
+
+  static class PickupVehicle extends Vehicle implements ParallelTickListener {
+    final Parcel target;
+
+    PickupVehicle(Parcel p) {
+      super(VehicleDTO.builder().startPosition(new Point(0, 0)).build());
+      target = p;
+    }
+
+    @Override
+    protected void tickImpl(TimeLapse time) {
+      final PDPModel pm = getPDPModel();
+      if (pm.getParcelState(target) == ParcelState.AVAILABLE) {
+        pm.pickup(this, target, time);
+      }
+    }
+  }
+
   class LimitingTickListener implements TickListener {
     private final int limit;
     private int tickCount;
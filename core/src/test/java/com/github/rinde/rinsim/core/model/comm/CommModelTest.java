@@ -23,6 +23,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.Nullable;
@@ -35,6 +36,7 @@ import org.junit.rules.ExpectedException;
 import com.github.rinde.rinsim.core.model.DependencyProvider;
 import com.github.rinde.rinsim.core.model.FakeDependencyProvider;
 import com.github.rinde.rinsim.core.model.comm.CommModel.CommModelEvent;
+import com.github.rinde.rinsim.core.model.comm.CommModel.CommTrafficEvent;
 import com.github.rinde.rinsim.core.model.comm.CommModel.EventTypes;
 import com.github.rinde.rinsim.core.model.rand.RandomModel;
 import com.github.rinde.rinsim.core.model.time.TimeLapseFactory;
@@ -96,6 +98,19 @@ public class CommModelTest {
     HELLO_WORLD, YO
   }
 
+  static class SizedContents implements SizedMessageContents {
+    final int size;
+
+    SizedContents(int s) {
+      size = s;
+    }
+
+    @Override
+    public int getEstimatedSize() {
+      return size;
+    }
+  }
+
   /**
    * Test registration of object.
    */
@@ -483,6 +498,196 @@ public class CommModelTest {
     assertTrue(agent5.device().getUnreadMessages().isEmpty());
   }
 
+  /**
+   * Tests that ranged broadcasts are delivered to exactly the users within
+   * range, in registration order, also after users have moved or have been
+   * unregistered.
+   */
+  @Test
+  public void testRangedBroadcastManyUsers() {
+    final List<Agent> agents = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      for (int j = 0; j < 20; j++) {
+        final Agent a = new RangedAgent(new Point(i * .7, j * 1.3), 2.5);
+        model.register(a);
+        agents.add(a);
+      }
+    }
+    for (int round = 0; round < 3; round++) {
+      final Agent sender = agents.get(round * 71);
+      sender.device().broadcast(Contents.YO);
+      sender.device().broadcast(Contents.HELLO_WORLD, 1.5);
+      model.afterTick(TimeLapseFactory.create(0, 100));
+
+      for (final Agent a : agents) {
+        final List<Message> msgs = a.device().getUnreadMessages();
+        final double dist = Point.distance(sender.getPosition().get(),
+          a.getPosition().get());
+        final List<Contents> expected = new ArrayList<>();
+        if (a != sender && dist <= 2.5) {
+          expected.add(Contents.YO);
+        }
+        if (a != sender && dist <= 1.5) {
+          expected.add(Contents.HELLO_WORLD);
+        }
+        final List<MessageContents> contents = new ArrayList<>();
+        for (final Message m : msgs) {
+          contents.add(m.getContents());
+        }
+        assertThat(contents).containsExactlyElementsIn(expected).inOrder();
+      }
+      // the index should be refreshed in the next tick
+      agents.get(round).setPosition(sender.getPosition().get());
+      model.unregister(agents.get(agents.size() - 1 - round));
+      agents.remove(agents.size() - 1 - round);
+    }
+
+    // messages from multiple senders are received in registration order
+    agents.get(151).device().broadcast(Contents.YO, 2);
+    agents.get(111).device().broadcast(Contents.YO);
+    agents.get(130).device().broadcast(Contents.YO, 2);
+    model.afterTick(TimeLapseFactory.create(0, 100));
+    final List<CommUser> senders = new ArrayList<>();
+    for (final Message m : agents.get(131).device().getUnreadMessages()) {
+      senders.add(m.getSender());
+    }
+    assertThat(senders).containsExactly(agents.get(111), agents.get(130),
+      agents.get(151)).inOrder();
+  }
+
+  /**
+   * Tests that parallel delivery results in the same inboxes as sequential
+   * delivery when all devices are reliable, and that it is reproducible when
+   * devices are unreliable.
+   */
+  @Test
+  public void testParallelDelivery() {
+    assertThat(deliver(CommModel.builder().withParallelDelivery(4), 1d))
+      .isEqualTo(deliver(CommModel.builder(), 1d));
+    final List<List<String>> unreliable =
+      deliver(CommModel.builder().withParallelDelivery(1), .7);
+    assertThat(deliver(CommModel.builder().withParallelDelivery(3), .7))
+      .isEqualTo(unreliable);
+    assertThat(deliver(CommModel.builder().withParallelDelivery(4), .7))
+      .isEqualTo(unreliable);
+  }
+
+  /**
+   * Parallelism must be positive.
+   */
+  @Test
+  public void testParallelDeliveryInvalidParallelism() {
+    thrown.expect(IllegalArgumentException.class);
+    @SuppressWarnings("unused")
+    final CommModel.Builder b = CommModel.builder().withParallelDelivery(0);
+  }
+
+  // returns the received messages of each agent as 'sender:contents' strings
+  static List<List<String>> deliver(CommModel.Builder builder,
+      double reliability) {
+    final CommModel cm = builder.build(fakeDependencies());
+    final List<Agent> agents = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      final Point p = new Point(i % 10, i / 10);
+      final Agent a;
+      if (i % 3 == 0) {
+        a = new RangedAgent(p, 4);
+      } else {
+        a = new Agent(p, reliability);
+      }
+      cm.register(a);
+      agents.add(a);
+    }
+    final List<List<String>> received = new ArrayList<>();
+    for (int i = 0; i < agents.size(); i++) {
+      received.add(new ArrayList<String>());
+    }
+    for (int tick = 0; tick < 3; tick++) {
+      for (int i = 0; i < agents.size(); i++) {
+        final CommDevice dev = agents.get(i).device();
+        if ((i + tick) % 2 == 0) {
+          dev.broadcast(Contents.YO);
+        }
+        if ((i + tick) % 5 == 0) {
+          dev.broadcast(Contents.HELLO_WORLD, 2.5);
+        }
+        dev.send(Contents.HELLO_WORLD, agents.get((i + tick + 1) % 100));
+      }
+      cm.afterTick(TimeLapseFactory.create(0, 100));
+      for (int i = 0; i < agents.size(); i++) {
+        for (final Message m : agents.get(i).device().getUnreadMessages()) {
+          received.get(i).add(
+            agents.indexOf(m.getSender()) + ":" + m.getContents());
+        }
+      }
+    }
+    return received;
+  }
+
+  /**
+   * Tests the traffic statistics.
+   */
+  @Test
+  public void testTraffic() {
+    final Agent ranged = new RangedAgent(new Point(0, 5), 5);
+    final Agent unreliable = new Agent(new Point(5, 5), 0);
+    model.register(ranged);
+    model.register(unreliable);
+    final ListenerEventHistory history = new ListenerEventHistory();
+    model.getEventAPI().addListener(history, EventTypes.TICK_TRAFFIC);
+
+    ranged.device().broadcast(new SizedContents(10));
+    agent1.device().send(Contents.YO, agent2);
+    agent1.device().send(Contents.YO, unreliable);
+    model.afterTick(TimeLapseFactory.create(0, 100));
+
+    final CommTraffic first =
+      ((CommTrafficEvent) history.getHistory().get(0)).getTraffic();
+    assertThat(((CommTrafficEvent) history.getHistory().get(0)).getTime())
+      .isEqualTo(100L);
+    assertThat(first.getSentCount()).isEqualTo(3L);
+    assertThat(first.getBroadcastCount()).isEqualTo(1L);
+    assertThat(first.getDeliveredCount()).isEqualTo(4L);
+    assertThat(first.getBroadcastDeliveredCount()).isEqualTo(3L);
+    assertThat(first.getDroppedCount()).isEqualTo(2L);
+    assertThat(first.getRangeRejectionCount()).isEqualTo(2L);
+    assertThat(first.getSentBytes()).isEqualTo(10L);
+    assertThat(first.getDeliveredBytes()).isEqualTo(30L);
+    assertThat(first.getMaxUnreadCount()).isEqualTo(2L);
+    assertThat(first.getFanOutHistogram().get(2)).isEqualTo(1L);
+    assertThat(first.getFanOutHistogram()).hasSize(CommTraffic.FAN_OUT_BUCKETS);
+
+    agent3.device().broadcast(Contents.YO);
+    model.afterTick(TimeLapseFactory.create(100, 200));
+
+    final CommTraffic second =
+      ((CommTrafficEvent) history.getHistory().get(1)).getTraffic();
+    assertThat(second.getSentCount()).isEqualTo(1L);
+    assertThat(second.getDeliveredCount()).isEqualTo(5L);
+    assertThat(second.getDroppedCount()).isEqualTo(1L);
+    assertThat(second.getRangeRejectionCount()).isEqualTo(0L);
+    assertThat(second.getMaxUnreadCount()).isEqualTo(3L);
+
+    final CommTraffic total = model.getTraffic();
+    assertThat(total).isEqualTo(first.plus(second));
+    assertThat(total.getSentCount()).isEqualTo(4L);
+    assertThat(total.getDeliveredCount()).isEqualTo(9L);
+    assertThat(total.getMaxUnreadCount()).isEqualTo(3L);
+    assertThat(total.getMeanFanOut()).isWithin(0d).of(4d);
+    assertThat(agent2.device().getMaxUnreadCount()).isEqualTo(3);
+    assertThat(agent2.device().getUnreadMessages()).hasSize(3);
+    assertThat(agent2.device().getMaxUnreadCount()).isEqualTo(3);
+    assertThat(CommTraffic.empty().getMeanFanOut()).isWithin(0d).of(0d);
+
+    // without listener the traffic is still counted
+    model.getEventAPI().removeListener(history, EventTypes.TICK_TRAFFIC);
+    agent1.device().send(Contents.YO, agent2);
+    model.afterTick(TimeLapseFactory.create(200, 300));
+    assertThat(history.getHistory()).hasSize(2);
+    assertThat(model.getTraffic().getSentCount()).isEqualTo(5L);
+    assertThat(model.getTraffic().getDeliveredCount()).isEqualTo(10L);
+  }
+
   /**
    * Tests that comm users should create a device.
    */
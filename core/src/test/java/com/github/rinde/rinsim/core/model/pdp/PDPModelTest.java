@@ -23,11 +23,21 @@ import static junit.framework.Assert.assertSame;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
 import javax.measure.unit.SI;
@@ -47,11 +57,13 @@ import com.github.rinde.rinsim.core.model.pdp.PDPModel.ParcelState;
 import com.github.rinde.rinsim.core.model.pdp.PDPModel.VehicleState;
 import com.github.rinde.rinsim.core.model.road.RoadModel;
 import com.github.rinde.rinsim.core.model.road.RoadModelBuilders;
+import com.github.rinde.rinsim.core.model.time.NextEventTickListener;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.core.model.time.TimeLapseFactory;
 import com.github.rinde.rinsim.event.Event;
 import com.github.rinde.rinsim.event.Listener;
 import com.github.rinde.rinsim.geom.Point;
+import com.github.rinde.rinsim.util.TimeWindow;
 
 /**
  * @author Rinde van Lon
@@ -689,6 +701,260 @@ public class PDPModelTest {
     model.addParcelIn(d, p1);
   }
 
+  /**
+   * Tests that a parcel is picked up by exactly one vehicle when several
+   * vehicles attempt to pick it up concurrently, and that the parcel views are
+   * live.
+   * @throws InterruptedException if interrupted.
+   */
+  @Test
+  public void testConcurrentPickup() throws InterruptedException {
+    final int numVehicles = 8;
+    final Parcel pack = Parcel.builder(new Point(1, 1), new Point(2, 2))
+      .neededCapacity(1d)
+      .build();
+    model.register(pack);
+    rm.register(pack);
+    final Collection<Parcel> inCargo = model.getParcels(ParcelState.IN_CARGO);
+    assertThat(inCargo).isEmpty();
+
+    final List<Vehicle> vehicles = new ArrayList<>();
+    for (int i = 0; i < numVehicles; i++) {
+      final Vehicle v = new TestVehicle(VehicleDTO.builder()
+        .startPosition(new Point(1, 1))
+        .capacity(1)
+        .build());
+      model.register(v);
+      rm.register(v);
+      vehicles.add(v);
+    }
+
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicInteger successes = new AtomicInteger();
+    final ExecutorService executor = Executors.newFixedThreadPool(numVehicles);
+    for (final Vehicle v : vehicles) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            model.pickup(v, pack, TimeLapseFactory.create(0, 1));
+            successes.incrementAndGet();
+          } catch (final IllegalArgumentException e) {
+            // another vehicle was faster
+          } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+    start.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+    assertThat(successes.get()).isEqualTo(1);
+    assertEquals(ParcelState.IN_CARGO, model.getParcelState(pack));
+    assertThat(inCargo).containsExactly(pack);
+    int containing = 0;
+    for (final Vehicle v : vehicles) {
+      if (model.containerContains(v, pack)) {
+        containing++;
+      }
+      assertEquals(VehicleState.IDLE, model.getVehicleState(v));
+    }
+    assertThat(containing).isEqualTo(1);
+  }
+
+  /**
+   * Tests that listeners are notified after the lock of the vehicle is
+   * released, a listener that waits for another thread that uses the vehicle
+   * would otherwise cause a deadlock.
+   */
+  @Test(timeout = 10000L)
+  public void testListenerWaitsForOtherThread() {
+    final Parcel pack = Parcel.builder(new Point(1, 1), new Point(2, 2))
+      .serviceDuration(10L)
+      .build();
+    final Vehicle truck = new TestVehicle(VehicleDTO.builder()
+      .startPosition(new Point(1, 1))
+      .build());
+    model.register(pack);
+    model.register(truck);
+    rm.register(pack);
+    rm.register(truck);
+
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    final List<Enum<?>> types = new ArrayList<>();
+    model.getEventAPI().addListener(new Listener() {
+      @Override
+      public void handleEvent(Event event) {
+        try {
+          executor.submit(new Runnable() {
+            @Override
+            public void run() {
+              // locks the state of the vehicle
+              try {
+                model.getVehicleActionInfo(truck);
+              } catch (final IllegalArgumentException e) {
+                // the vehicle is idle after the pickup
+              }
+            }
+          }).get();
+        } catch (final InterruptedException | ExecutionException e) {
+          throw new IllegalStateException(e);
+        }
+        types.add(event.getEventType());
+      }
+    }, PDPModelEventType.START_PICKUP, PDPModelEventType.END_PICKUP);
+
+    model.pickup(truck, pack, TimeLapseFactory.create(0, 1));
+    model.continuePreviousActions(truck, TimeLapseFactory.create(1, 20));
+    executor.shutdown();
+    assertThat(types).containsExactly(PDPModelEventType.START_PICKUP,
+      PDPModelEventType.END_PICKUP).inOrder();
+    assertTrue(model.containerContains(truck, pack));
+  }
+
+  /**
+   * Tests the spatial and deadline queries.
+   */
+  @Test
+  public void testParcelQueries() {
+    final Parcel p1 = Parcel.builder(new Point(1, 1), new Point(5, 5))
+      .pickupTimeWindow(TimeWindow.create(0, 300))
+      .deliveryTimeWindow(TimeWindow.create(0, 1000))
+      .build();
+    final Parcel p2 = Parcel.builder(new Point(2, 1), new Point(5, 5))
+      .pickupTimeWindow(TimeWindow.create(0, 100))
+      .deliveryTimeWindow(TimeWindow.create(0, 2000))
+      .build();
+    final Parcel p3 = Parcel.builder(new Point(8, 8), new Point(5, 5))
+      .pickupTimeWindow(TimeWindow.create(0, 50))
+      .deliveryTimeWindow(TimeWindow.create(0, 500))
+      .build();
+    final Parcel p4 = Parcel.builder(new Point(1, 2), new Point(5, 5))
+      .pickupTimeWindow(TimeWindow.create(500, 600))
+      .deliveryTimeWindow(TimeWindow.create(500, 700))
+      .build();
+    for (final Parcel p : asList(p1, p2, p3, p4)) {
+      model.register(p);
+      rm.register(p);
+    }
+    assertEquals(ParcelState.ANNOUNCED, model.getParcelState(p4));
+
+    final Point pos = new Point(1, 1);
+    assertThat(model.getParcelsWithinRadius(pos, 2, ParcelState.AVAILABLE))
+      .containsExactly(p2, p1).inOrder();
+    assertThat(model.getParcelsWithinRadius(pos, 2, ParcelState.AVAILABLE,
+      ParcelState.ANNOUNCED)).containsExactly(p2, p1, p4).inOrder();
+    assertThat(model.getParcelsWithinRadius(pos, 1, ParcelState.AVAILABLE))
+      .containsExactly(p1);
+
+    assertThat(model.getParcelsWithPickupDeadlineBefore(301,
+      ParcelState.AVAILABLE)).containsExactly(p3, p2, p1).inOrder();
+    assertThat(model.getParcelsWithPickupDeadlineBefore(300,
+      ParcelState.AVAILABLE)).containsExactly(p3, p2).inOrder();
+    assertThat(model.getParcelsWithDeliveryDeadlineBefore(1001,
+      ParcelState.AVAILABLE, ParcelState.ANNOUNCED))
+        .containsExactly(p3, p4, p1).inOrder();
+
+    // the indexes follow the state transitions
+    final Vehicle truck = new TestVehicle(VehicleDTO.builder()
+      .startPosition(new Point(2, 1))
+      .capacity(10)
+      .build());
+    model.register(truck);
+    rm.register(truck);
+    model.pickup(truck, p2, TimeLapseFactory.create(0, 1));
+    assertThat(model.getParcelsWithinRadius(pos, 2, ParcelState.AVAILABLE))
+      .containsExactly(p1);
+    assertThat(model.getParcelsWithinRadius(pos, 2, ParcelState.IN_CARGO))
+      .containsExactly(p2);
+    assertThat(model.getParcelsWithPickupDeadlineBefore(301,
+      ParcelState.AVAILABLE)).containsExactly(p3, p1).inOrder();
+    assertThat(model.getParcelsWithDeliveryDeadlineBefore(Long.MAX_VALUE,
+      ParcelState.IN_CARGO)).containsExactly(p2);
+
+    // the implementations of PDPModel visit all parcels and give equal
+    // results
+    final ParcelState[] states = {ParcelState.AVAILABLE, ParcelState.ANNOUNCED};
+    final PDPModel scanning = mock(PDPModel.class, CALLS_REAL_METHODS);
+    doReturn(model.getParcels(states)).when(scanning).getParcels(states);
+    assertThat(scanning.getParcelsWithinRadius(pos, 2, states))
+      .containsExactlyElementsIn(model.getParcelsWithinRadius(pos, 2, states))
+      .inOrder();
+    assertThat(scanning.getParcelsWithPickupDeadlineBefore(601, states))
+      .containsExactlyElementsIn(
+        model.getParcelsWithPickupDeadlineBefore(601, states))
+      .inOrder();
+    assertThat(scanning.getParcelsWithDeliveryDeadlineBefore(1001, states))
+      .containsExactlyElementsIn(
+        model.getParcelsWithDeliveryDeadlineBefore(1001, states))
+      .inOrder();
+    assertThat(scanning.getParcelsWithDeliveryDeadlineBefore(1001, states))
+      .containsExactly(p3, p4, p1).inOrder();
+  }
+
+  /**
+   * Tests that announced parcels become available in the tick in which their
+   * pickup time window begins and that the next event time reflects the
+   * announcements and the pending actions.
+   */
+  @Test
+  public void testNextEventTime() {
+    final DependencyProvider dp = mock(DependencyProvider.class);
+    when(dp.get(RoadModel.class)).thenReturn(rm);
+    final DefaultPDPModel dm = DefaultPDPModel.builder().build(dp);
+    assertThat(dm.getNextEventTime(0)).isEqualTo(NextEventTickListener.IDLE);
+
+    final Parcel late = Parcel.builder(new Point(1, 1), new Point(2, 2))
+      .pickupTimeWindow(TimeWindow.create(550, 1000))
+      .pickupDuration(250)
+      .build();
+    final Parcel early = Parcel.builder(new Point(1, 1), new Point(2, 2))
+      .pickupTimeWindow(TimeWindow.create(450, 1000))
+      .build();
+    dm.register(late);
+    dm.register(early);
+    rm.register(late);
+    assertThat(dm.getNextEventTime(0)).isEqualTo(450L);
+
+    dm.tick(TimeLapseFactory.create(400, 500));
+    assertEquals(ParcelState.ANNOUNCED, dm.getParcelState(early));
+    dm.tick(TimeLapseFactory.create(500, 600));
+    assertEquals(ParcelState.AVAILABLE, dm.getParcelState(early));
+    assertEquals(ParcelState.ANNOUNCED, dm.getParcelState(late));
+    assertThat(dm.getNextEventTime(600)).isEqualTo(550L);
+    dm.tick(TimeLapseFactory.create(600, 700));
+    assertEquals(ParcelState.AVAILABLE, dm.getParcelState(late));
+    assertThat(dm.getNextEventTime(700)).isEqualTo(NextEventTickListener.IDLE);
+
+    final Vehicle truck = new TestVehicle(VehicleDTO.builder()
+      .startPosition(new Point(1, 1))
+      .capacity(10)
+      .build());
+    dm.register(truck);
+    rm.register(truck);
+    dm.pickup(truck, late, TimeLapseFactory.create(700, 800));
+    // 100 of the 250 time units are spent in this tick
+    assertThat(dm.getNextEventTime(800)).isEqualTo(950L);
+    dm.continuePreviousActions(truck, TimeLapseFactory.create(800, 900));
+    assertEquals(VehicleState.PICKING_UP, dm.getVehicleState(truck));
+    dm.continuePreviousActions(truck, TimeLapseFactory.create(900, 1000));
+    assertEquals(VehicleState.IDLE, dm.getVehicleState(truck));
+    assertEquals(ParcelState.IN_CARGO, dm.getParcelState(late));
+    assertThat(dm.getNextEventTime(1000))
+      .isEqualTo(NextEventTickListener.IDLE);
+  }
+
+  /**
+   * The radius of a spatial query must be positive.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testParcelQueryInvalidRadius() {
+    model.getParcelsWithinRadius(new Point(0, 0), 0, ParcelState.AVAILABLE);
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void addPackageInFail5() {
     final Depot d = new TestDepot(10);
@@ -221,6 +221,34 @@ public abstract class AbstractRoadModelTest<T extends GenericRoadModel> {
       .of(mp.distance().doubleValue(model.getDistanceUnit()));
   }
 
+  /**
+   * The primitive values of a move progress are consistent with its measures
+   * and a path is reused when the destination changes.
+   */
+  @Test
+  public void testMoveProgressPrimitives() {
+    final TestRoadUser testRoadUser = new TestRoadUser();
+    model.addObjectAt(testRoadUser, SW);
+    final MoveProgress mp = model.moveTo(testRoadUser, NW, timeLength(3));
+    assertThat(mp.getDistanceValue()).isEqualTo(mp.distance().getValue());
+    assertThat(mp.getDistanceUnit()).isEqualTo(mp.distance().getUnit());
+    assertThat(mp.getTimeValue()).isEqualTo(mp.time().getValue());
+    assertThat(mp.getTimeUnit()).isEqualTo(mp.time().getUnit());
+    assertThat(mp).isEqualTo(MoveProgress.create(mp.distance(), mp.time(),
+      mp.travelledNodes()));
+    assertThat(mp.hashCode()).isEqualTo(MoveProgress.create(mp.distance(),
+      mp.time(), mp.travelledNodes()).hashCode());
+    assertThat(mp.toString()).startsWith("MoveProgress{distance=");
+
+    if (model instanceof AbstractRoadModel) {
+      final AbstractRoadModel arm = (AbstractRoadModel) model;
+      final Queue<Point> path = arm.objDestinations.get(testRoadUser).path;
+      model.moveTo(testRoadUser, SE, timeLength(1));
+      assertThat(model.getDestination(testRoadUser)).isEqualTo(SE);
+      assertThat(arm.objDestinations.get(testRoadUser).path).isSameAs(path);
+    }
+  }
+
   @Test
   public void testClear() {
     final RoadUser agent1 = new TestRoadUser();
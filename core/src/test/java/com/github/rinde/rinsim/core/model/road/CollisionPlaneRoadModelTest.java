@@ -18,6 +18,8 @@ package com.github.rinde.rinsim.core.model.road;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assert_;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import javax.annotation.Nullable;
@@ -26,6 +28,9 @@ import javax.measure.unit.SI;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
 
 import com.github.rinde.rinsim.core.Simulator;
 import com.github.rinde.rinsim.core.model.FakeDependencyProvider;
@@ -41,6 +46,7 @@ import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
+@RunWith(Parameterized.class)
 public class CollisionPlaneRoadModelTest {
 
   final TrivialRoadUser ru1 = new TrivialRoadUser();
@@ -51,6 +57,16 @@ public class CollisionPlaneRoadModelTest {
 
   private static final long tickLength = 250;
   CollisionPlaneRoadModel model;
+  final boolean spatialIndex;
+
+  public CollisionPlaneRoadModelTest(boolean index) {
+    spatialIndex = index;
+  }
+
+  @Parameters
+  public static Collection<Object[]> configs() {
+    return Arrays.asList(new Object[][] {{false}, {true}});
+  }
 
   static TimeLapse tick() {
     return TimeLapseFactory.create(0, tickLength);
@@ -58,8 +74,12 @@ public class CollisionPlaneRoadModelTest {
 
   @Before
   public void setUp() {
-    model = RoadModelBuilders.plane()
-      .withCollisionAvoidance()
+    RoadModelBuilders.CollisionPlaneRMB builder =
+      RoadModelBuilders.plane().withCollisionAvoidance();
+    if (spatialIndex) {
+      builder = builder.withSpatialIndex(2d);
+    }
+    model = builder
       .withMinPoint(new Point(0, 0))
       .withMaxPoint(new Point(100, 100))
       .withDistanceUnit(SI.METER)
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.road;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+
+import javax.measure.Measure;
+import javax.measure.unit.NonSI;
+import javax.measure.unit.SI;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.rinde.rinsim.core.model.DependencyProvider;
+import com.github.rinde.rinsim.core.model.time.TimeLapseFactory;
+import com.github.rinde.rinsim.geom.CompactGraph;
+import com.github.rinde.rinsim.geom.GeomHeuristics;
+import com.github.rinde.rinsim.geom.Graph;
+import com.github.rinde.rinsim.geom.Graphs;
+import com.github.rinde.rinsim.geom.LengthData;
+import com.github.rinde.rinsim.geom.Point;
+import com.github.rinde.rinsim.geom.TableGraph;
+
+/**
+ * Tests the use of a {@link CompactGraph} in a {@link GraphRoadModelImpl}.
+ * @author Rinde van Lon
+ */
+public class CompactGraphRoadModelTest {
+  static final Point A = new Point(0, 0);
+  static final Point B = new Point(10, 0);
+  static final Point C = new Point(10, 10);
+  static final Point D = new Point(0, 10);
+
+  CompactGraph<LengthData> graph;
+  GraphRoadModelImpl model;
+
+  /**
+   * Set up a square graph.
+   */
+  @Before
+  public void setUp() {
+    final Graph<LengthData> g = new TableGraph<>();
+    Graphs.addBiPath(g, A, B, C, D, A);
+    graph = CompactGraph.copyOf(g);
+    model = RoadModelBuilders.staticGraph(graph)
+      .build(mock(DependencyProvider.class));
+  }
+
+  /**
+   * The snapshot should use the compact graph without copying it.
+   */
+  @Test
+  public void testSnapshot() {
+    final RoadModelSnapshot snapshot = model.getSnapshot();
+    assertThat(snapshot).isInstanceOf(GraphRoadModelSnapshot.class);
+    assertThat(((GraphRoadModelSnapshot) snapshot).getGraph())
+      .isSameAs(graph);
+
+    final RoadPath path = snapshot.getPathTo(A, C, SI.SECOND,
+      Measure.valueOf(1d, NonSI.KILOMETERS_PER_HOUR),
+      GeomHeuristics.euclidean());
+    assertThat(path.getPath()).hasSize(3);
+    assertThat(path.getValue()).isWithin(0.0001).of(20d);
+    assertThat(snapshot.getDistanceOfPath(path.getPath()).getValue())
+      .isWithin(0.0001).of(20d);
+  }
+
+  /**
+   * Objects should be able to move over a compact graph.
+   */
+  @Test
+  public void testMove() {
+    final MovingRoadUser user = new SpeedyRoadUser(10d);
+    model.addObjectAt(user, A);
+    assertThat(model.getShortestPathTo(A, C)).containsExactly(A, B, C)
+      .inOrder();
+
+    // 10 km/h for one hour
+    model.moveTo(user, C, TimeLapseFactory.create(0, 60 * 60 * 1000));
+    assertThat(model.getPosition(user)).isEqualTo(B);
+    model.moveTo(user, C, TimeLapseFactory.create(0, 60 * 60 * 1000));
+    assertThat(model.getPosition(user)).isEqualTo(C);
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.road;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+
+import javax.measure.Measure;
+import javax.measure.quantity.Velocity;
+import javax.measure.unit.NonSI;
+import javax.measure.unit.SI;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.rinde.rinsim.core.model.DependencyProvider;
+import com.github.rinde.rinsim.core.model.time.TimeLapseFactory;
+import com.github.rinde.rinsim.geom.GeomHeuristic;
+import com.github.rinde.rinsim.geom.GeomHeuristics;
+import com.github.rinde.rinsim.geom.Graph;
+import com.github.rinde.rinsim.geom.Graphs;
+import com.github.rinde.rinsim.geom.MultiAttributeData;
+import com.github.rinde.rinsim.geom.Point;
+import com.github.rinde.rinsim.geom.TableGraph;
+
+/**
+ * Tests for {@link ContractedGraphRoadModel}.
+ * @author Rinde van Lon
+ */
+public class ContractedGraphRoadModelTest {
+  static final int SIZE = 10;
+  static final double DEFAULT_SPEED = 50d;
+  static final double DELTA = 0.0001;
+  static final long DAY = 24 * 60 * 60 * 1000L;
+  static final Measure<Double, Velocity> SPEED =
+    Measure.valueOf(DEFAULT_SPEED, NonSI.KILOMETERS_PER_HOUR);
+
+  Graph<MultiAttributeData> graph;
+  GraphRoadModelImpl reference;
+  ContractedGraphRoadModel model;
+
+  /**
+   * Creates a grid graph with random speed limits.
+   */
+  @Before
+  public void setUp() {
+    final RandomGenerator rng = new MersenneTwister(123L);
+    graph = new TableGraph<>();
+    for (int i = 0; i < SIZE; i++) {
+      for (int j = 0; j < SIZE; j++) {
+        final Point p = new Point(i, j);
+        if (i > 0) {
+          connect(graph, rng, p, new Point(i - 1, j));
+        }
+        if (j > 0) {
+          connect(graph, rng, p, new Point(i, j - 1));
+        }
+      }
+    }
+    reference = RoadModelBuilders.staticGraph(graph)
+      .build(mock(DependencyProvider.class));
+    model = RoadModelBuilders.staticGraph(graph)
+      .withContractionHierarchies(GeomHeuristics.time(DEFAULT_SPEED))
+      .build(mock(DependencyProvider.class));
+  }
+
+  static void connect(Graph<MultiAttributeData> graph, RandomGenerator rng,
+      Point p1, Point p2) {
+    graph.addConnection(p1, p2, data(rng, p1, p2));
+    graph.addConnection(p2, p1, data(rng, p1, p2));
+  }
+
+  static MultiAttributeData data(RandomGenerator rng, Point p1, Point p2) {
+    return MultiAttributeData.builder()
+      .setLength(Point.distance(p1, p2))
+      .setMaxSpeed(1 + rng.nextInt((int) DEFAULT_SPEED))
+      .build();
+  }
+
+  /**
+   * Hierarchies are constructed for the euclidean and the specified
+   * heuristic.
+   */
+  @Test
+  public void testHierarchies() {
+    assertThat(model.getHierarchies().keySet()).containsExactly(
+      GeomHeuristics.euclidean(), GeomHeuristics.time(DEFAULT_SPEED));
+    assertThat(model.getSnapshot())
+      .isInstanceOf(ContractedGraphRoadModelSnapshot.class);
+    // hierarchies are not part of the equality of snapshots
+    assertThat(model.getSnapshot()).isEqualTo(
+      RoadModelBuilders.staticGraph(graph)
+        .withContractionHierarchies()
+        .build(mock(DependencyProvider.class))
+        .getSnapshot());
+  }
+
+  /**
+   * The paths should have the same value as the paths computed using A*, both
+   * for heuristics with and without hierarchy.
+   */
+  @Test
+  public void testPathTo() {
+    final Point from = new Point(0, 0);
+    final Point to = new Point(SIZE - 1, SIZE - 1);
+    for (final GeomHeuristic h : new GeomHeuristic[] {
+      GeomHeuristics.euclidean(),
+      GeomHeuristics.time(DEFAULT_SPEED),
+      GeomHeuristics.theoreticalTime(DEFAULT_SPEED)}) {
+      final RoadPath expected =
+        reference.getPathTo(from, to, SI.SECOND, SPEED, h);
+      final RoadPath actual = model.getPathTo(from, to, SI.SECOND, SPEED, h);
+      assertThat(actual.getValue()).isWithin(DELTA).of(expected.getValue());
+      final RoadPath snapshotPath =
+        model.getSnapshot().getPathTo(from, to, SI.SECOND, SPEED, h);
+      assertThat(snapshotPath.getPath()).isEqualTo(actual.getPath());
+      assertThat(snapshotPath.getTravelTime())
+        .isWithin(DELTA).of(actual.getTravelTime());
+    }
+    assertThat(Graphs.pathLength(model.getShortestPathTo(from, to)))
+      .isWithin(DELTA)
+      .of(Graphs.pathLength(reference.getShortestPathTo(from, to)));
+  }
+
+  /**
+   * Objects should be able to move using the paths of the hierarchy.
+   */
+  @Test
+  public void testMove() {
+    final MovingRoadUser user = new SpeedyRoadUser(DEFAULT_SPEED);
+    final Point to = new Point(SIZE - 1, SIZE - 1);
+    model.addObjectAt(user, new Point(0, 0));
+    // long enough, even at the lowest speed limit
+    model.moveTo(user, to, TimeLapseFactory.create(0, DAY));
+    assertThat(model.getPosition(user)).isEqualTo(to);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.road;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.rinde.rinsim.geom.Connection;
+import com.github.rinde.rinsim.geom.Point;
+import com.google.common.base.Optional;
+
+/**
+ * Tests for {@link GraphSpatialRegistry}.
+ * @author Rinde van Lon
+ */
+public class GraphSpatialRegistryTest {
+  static final double PRECISION = 0.0001;
+
+  GraphSpatialRegistry<String> registry;
+  Connection<?> conn;
+  Connection<?> other;
+
+  /**
+   * Sets up an empty registry and two connections.
+   */
+  @Before
+  public void setUp() {
+    registry = GraphSpatialRegistry.create(MapSpatialRegistry.<String>create());
+    conn = Connection.create(new Point(0, 0), new Point(10, 0));
+    other = Connection.create(new Point(10, 0), new Point(0, 0));
+  }
+
+  /**
+   * Tests that the next relative position is found and updated when objects
+   * move and are removed.
+   */
+  @Test
+  public void testFindNextRelativePosition() {
+    assertThat(registry.findNextRelativePosition(conn, 0d).isPresent())
+      .isFalse();
+
+    registry.addAt("a", conn, 5d, PRECISION);
+    registry.addAt("b", conn, 3d, PRECISION);
+    registry.addAt("c", conn, 3d, PRECISION);
+    registry.addAt("d", other, 1d, PRECISION);
+
+    assertThat(registry.findNextRelativePosition(conn, 0d))
+      .isEqualTo(Optional.of(3d));
+    // strictly ahead
+    assertThat(registry.findNextRelativePosition(conn, 3d))
+      .isEqualTo(Optional.of(5d));
+    assertThat(registry.findNextRelativePosition(conn, 5d).isPresent())
+      .isFalse();
+    assertThat(registry.findNextRelativePosition(other, 0d))
+      .isEqualTo(Optional.of(1d));
+
+    // one of the two objects at 3 is removed, the other remains
+    registry.removeObject("b");
+    assertThat(registry.findNextRelativePosition(conn, 0d))
+      .isEqualTo(Optional.of(3d));
+
+    // moving an object along the connection updates the index
+    registry.addAt("c", conn, 7d, PRECISION);
+    assertThat(registry.findNextRelativePosition(conn, 0d))
+      .isEqualTo(Optional.of(5d));
+    assertThat(registry.findNextRelativePosition(conn, 5d))
+      .isEqualTo(Optional.of(7d));
+
+    // an object at the end of the connection is on a node
+    registry.addAt("a", conn, 10d, PRECISION);
+    registry.addAt("c", conn, 10d, PRECISION);
+    assertThat(registry.findNextRelativePosition(conn, 0d).isPresent())
+      .isFalse();
+
+    registry.clear();
+    assertThat(registry.findNextRelativePosition(other, 0d).isPresent())
+      .isFalse();
+  }
+}
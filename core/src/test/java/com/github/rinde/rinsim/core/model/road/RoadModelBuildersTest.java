@@ -35,9 +35,11 @@ import org.junit.Test;
 import com.github.rinde.rinsim.core.model.DependencyProvider;
 import com.github.rinde.rinsim.core.model.road.RoadModelBuilders.CachedGraphRMB;
 import com.github.rinde.rinsim.core.model.road.RoadModelBuilders.CollisionGraphRMB;
+import com.github.rinde.rinsim.core.model.road.RoadModelBuilders.ContractedGraphRMB;
 import com.github.rinde.rinsim.core.model.road.RoadModelBuilders.DynamicGraphRMB;
 import com.github.rinde.rinsim.core.model.road.RoadModelBuilders.PlaneRMB;
 import com.github.rinde.rinsim.core.model.road.RoadModelBuilders.StaticGraphRMB;
+import com.github.rinde.rinsim.geom.GeomHeuristics;
 import com.github.rinde.rinsim.geom.ListenableGraph;
 import com.github.rinde.rinsim.geom.MultimapGraph;
 import com.github.rinde.rinsim.geom.Point;
@@ -81,6 +83,31 @@ public class RoadModelBuildersTest {
     final PlaneRoadModel prm = b.build(mock(DependencyProvider.class));
     assertThat(prm.min).isEqualTo(b.getMin());
     assertThat(prm.max).isEqualTo(b.getMax());
+    assertThat(prm.registry()).isInstanceOf(MapSpatialRegistry.class);
+  }
+
+  /**
+   * Tests that the spatial index is used by the model and is kept when
+   * collision avoidance is enabled.
+   */
+  @Test
+  public void testPlaneRMBSpatialIndex() {
+    final PlaneRMB b = RoadModelBuilders.plane().withSpatialIndex(2d);
+    assertThat(b).isNotEqualTo(RoadModelBuilders.plane());
+    final PlaneRoadModel prm = b.build(mock(DependencyProvider.class));
+    assertThat(prm.registry()).isInstanceOf(GridSpatialRegistry.class);
+    assertThat(((GridSpatialRegistry<?>) prm.registry()).getCellSize())
+      .isEqualTo(2d);
+    assertThat(b.withCollisionAvoidance().getSpatialIndexCellSize())
+      .isEqualTo(2d);
+
+    boolean fail = false;
+    try {
+      b.withSpatialIndex(0d);
+    } catch (final IllegalArgumentException e) {
+      fail = true;
+    }
+    assertThat(fail).isTrue();
   }
 
   /**
@@ -125,8 +152,10 @@ public class RoadModelBuildersTest {
         .withCollisionAvoidance();
     final CachedGraphRMB cach = staticGraph(new TableGraph<>())
       .withCache();
+    final ContractedGraphRMB contr = staticGraph(new TableGraph<>())
+      .withContractionHierarchies();
 
-    final List<?> list = asList(plane, stat, dynamic, coll, cach);
+    final List<?> list = asList(plane, stat, dynamic, coll, cach, contr);
     final Set<Object> set = new LinkedHashSet<>();
     for (final Object one : list) {
       for (final Object another : list) {
@@ -160,7 +189,12 @@ public class RoadModelBuildersTest {
         .withCollisionAvoidance()
         .withDistanceUnit(NonSI.YARD));
 
+    assertThat(contr).isEqualTo(staticGraph(new MultimapGraph<>())
+      .withContractionHierarchies(GeomHeuristics.euclidean()));
+    assertThat(contr).isNotEqualTo(staticGraph(new TableGraph<>())
+      .withContractionHierarchies(GeomHeuristics.time(50d)));
+
     assertThat(set).containsExactly(plane, stat, dynamic, coll,
-      cach);
+      cach, contr);
   }
 }
@@ -17,11 +17,21 @@ package com.github.rinde.rinsim.core.model.road;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
 
 import com.github.rinde.rinsim.geom.Point;
+import com.google.common.base.Supplier;
 
+@RunWith(Parameterized.class)
 public class SpatialRegistryTest {
 
   String A = "A";
@@ -32,10 +42,39 @@ public class SpatialRegistryTest {
   String E = "E";
 
   SpatialRegistry<String> reg;
+  final Supplier<SpatialRegistry<String>> supplier;
+
+  public SpatialRegistryTest(Supplier<SpatialRegistry<String>> sup) {
+    supplier = sup;
+  }
+
+  @Parameters
+  public static Collection<Object[]> configs() {
+    return Arrays.asList(new Object[][] {
+      {new Supplier<SpatialRegistry<String>>() {
+        @Override
+        public SpatialRegistry<String> get() {
+          return MapSpatialRegistry.create();
+        }
+      }},
+      {new Supplier<SpatialRegistry<String>>() {
+        @Override
+        public SpatialRegistry<String> get() {
+          return GridSpatialRegistry.create(1d);
+        }
+      }},
+      {new Supplier<SpatialRegistry<String>>() {
+        @Override
+        public SpatialRegistry<String> get() {
+          return GridSpatialRegistry.create(.3);
+        }
+      }}
+    });
+  }
 
   @Before
   public void setUp() {
-    reg = MapSpatialRegistry.create();
+    reg = supplier.get();
   }
 
   @Test
@@ -96,4 +135,73 @@ public class SpatialRegistryTest {
       .containsExactly(A, B, C, D, E);
 
   }
+
+  /**
+   * Queries with extreme coordinates should terminate.
+   */
+  @Test(timeout = 5000L)
+  public void extremeCoordinatesTest() {
+    // the cell indices of these coordinates exceed the int range
+    final double far = 1e150;
+    reg.addAt(A, new Point(far, 0));
+    reg.addAt(B, new Point(-2 * far, 0));
+    reg.addAt(C, new Point(0, 0));
+    assertThat(reg.findObjectsWithinRadius(new Point(0, 0), 3 * far))
+      .containsExactly(A, B, C);
+    assertThat(reg.findObjectsInRect(new Point(-3 * far, -1),
+      new Point(3 * far, 1))).containsExactly(A, B, C);
+    assertThat(reg.findNearestObjects(new Point(1, 0), 2))
+      .containsExactly(C, A);
+  }
+
+  /**
+   * All queries, also those of a snapshot, should give the same results as the
+   * {@link MapSpatialRegistry} while objects are moved around.
+   */
+  @Test
+  public void compareWithMapSpatialRegistry() {
+    final RandomGenerator rng = new MersenneTwister(123L);
+    final SpatialRegistry<String> expected = MapSpatialRegistry.create();
+    for (int i = 0; i < 1000; i++) {
+      final String obj = Integer.toString(rng.nextInt(200));
+      final int action = rng.nextInt(10);
+      if (action == 0) {
+        reg.removeObject(obj);
+        expected.removeObject(obj);
+      } else {
+        final Point p = new Point(rng.nextDouble() * 10, rng.nextDouble() * 10);
+        reg.addAt(obj, p);
+        expected.addAt(obj, p);
+      }
+      final Point pos =
+        new Point(rng.nextDouble() * 12 - 1, rng.nextDouble() * 12 - 1);
+      final double radius = .1 + rng.nextDouble() * 3;
+      assertThat(reg.getObjectsAndPositions())
+        .containsExactlyEntriesIn(expected.getObjectsAndPositions())
+        .inOrder();
+      assertThat(reg.findObjectsWithinRadius(pos, radius))
+        .containsExactlyElementsIn(
+          expected.findObjectsWithinRadius(pos, radius))
+        .inOrder();
+      final Point max = new Point(pos.x + radius, pos.y + radius);
+      assertThat(reg.findObjectsInRect(pos, max))
+        .containsExactlyElementsIn(expected.findObjectsInRect(pos, max))
+        .inOrder();
+      final GridSpatialRegistry.Snapshot<String> snapshot =
+        GridSpatialRegistry.Snapshot.create(.7,
+          expected.getObjectsAndPositions());
+      assertThat(snapshot.findObjectsWithinRadius(pos, radius))
+        .containsExactlyElementsIn(
+          expected.findObjectsWithinRadius(pos, radius))
+        .inOrder();
+      assertThat(snapshot.findObjectsInRect(pos, max))
+        .containsExactlyElementsIn(expected.findObjectsInRect(pos, max))
+        .inOrder();
+      final int n = 1 + rng.nextInt(5);
+      assertThat(reg.findNearestObjects(pos, n))
+        .containsExactlyElementsIn(expected.findNearestObjects(pos, n));
+    }
+    reg.clear();
+    assertThat(reg.getObjects()).isEmpty();
+  }
 }
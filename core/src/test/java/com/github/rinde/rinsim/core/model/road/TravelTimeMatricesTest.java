@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.road;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.mockito.Mockito.mock;
+
+import java.math.RoundingMode;
+import java.util.List;
+
+import javax.measure.Measure;
+import javax.measure.quantity.Velocity;
+import javax.measure.unit.NonSI;
+import javax.measure.unit.SI;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Test;
+
+import com.github.rinde.rinsim.core.model.DependencyProvider;
+import com.github.rinde.rinsim.geom.GeomHeuristic;
+import com.github.rinde.rinsim.geom.GeomHeuristics;
+import com.github.rinde.rinsim.geom.Graph;
+import com.github.rinde.rinsim.geom.MultiAttributeData;
+import com.github.rinde.rinsim.geom.Point;
+import com.github.rinde.rinsim.geom.TableGraph;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests for {@link TravelTimeMatrices}.
+ * @author Rinde van Lon
+ */
+public class TravelTimeMatricesTest {
+  static final int SIZE = 8;
+  static final double DEFAULT_SPEED = 50d;
+  static final double DELTA = 0.0001;
+  static final Measure<Double, Velocity> SPEED =
+    Measure.valueOf(DEFAULT_SPEED, NonSI.KILOMETERS_PER_HOUR);
+
+  /**
+   * The matrices of graph snapshots, with and without hierarchies, should be
+   * equal to the travel times of the paths of the snapshot.
+   */
+  @Test
+  public void testGraphSnapshots() {
+    final RandomGenerator rng = new MersenneTwister(123L);
+    final Graph<MultiAttributeData> graph = new TableGraph<>();
+    for (int i = 0; i < SIZE; i++) {
+      for (int j = 0; j < SIZE; j++) {
+        final Point p = new Point(i, j);
+        if (i > 0) {
+          ContractedGraphRoadModelTest.connect(graph, rng, p,
+            new Point(i - 1, j));
+        }
+        if (j > 0) {
+          ContractedGraphRoadModelTest.connect(graph, rng, p,
+            new Point(i, j - 1));
+        }
+      }
+    }
+    final List<Point> points = ImmutableList.of(new Point(0, 0),
+      new Point(SIZE - 1, 0), new Point(2, 2), new Point(SIZE - 1, SIZE - 1));
+    final GeomHeuristic h = GeomHeuristics.time(DEFAULT_SPEED);
+    final RoadModelSnapshot plain = RoadModelBuilders.staticGraph(graph)
+      .build(mock(DependencyProvider.class)).getSnapshot();
+    final RoadModelSnapshot contracted = RoadModelBuilders.staticGraph(graph)
+      .withContractionHierarchies(h)
+      .build(mock(DependencyProvider.class)).getSnapshot();
+
+    for (final RoadModelSnapshot snapshot : ImmutableList.of(plain,
+      contracted)) {
+      final double[][] matrix =
+        TravelTimeMatrices.compute(snapshot, points, SI.SECOND, SPEED, h);
+      assertMatrix(snapshot, points, points, matrix, h);
+    }
+  }
+
+  /**
+   * Other snapshots are computed cell by cell.
+   */
+  @Test
+  public void testPlaneSnapshot() {
+    final PlaneRoadModel model = RoadModelBuilders.plane()
+      .withMinPoint(new Point(0, 0))
+      .withMaxPoint(new Point(10, 10))
+      .withMaxSpeed(DEFAULT_SPEED)
+      .build(mock(DependencyProvider.class));
+    final List<Point> origins = ImmutableList.of(new Point(1, 1));
+    final List<Point> destinations =
+      ImmutableList.of(new Point(1, 1), new Point(5, 5), new Point(9, 2));
+    final GeomHeuristic h = GeomHeuristics.euclidean();
+    final double[][] matrix = TravelTimeMatrices.compute(model.getSnapshot(),
+      origins, destinations, SI.SECOND, SPEED, h);
+    assertMatrix(model.getSnapshot(), origins, destinations, matrix, h);
+  }
+
+  /**
+   * Tests the rounding of matrices.
+   */
+  @Test
+  public void testRounding() {
+    final double[][] matrix = {{0d, 1.2}, {2.5, 0d}};
+    assertArrayEquals(new int[][] {{0, 2}, {3, 0}},
+      TravelTimeMatrices.toIntMatrix(matrix, RoundingMode.CEILING));
+    assertArrayEquals(new long[] {0, 1, 2, 0},
+      TravelTimeMatrices.toRowMajorArray(matrix, RoundingMode.FLOOR));
+    assertThat(TravelTimeMatrices.toRowMajorArray(new double[0][0],
+      RoundingMode.FLOOR)).isEmpty();
+  }
+
+  static void assertMatrix(RoadModelSnapshot snapshot, List<Point> origins,
+      List<Point> destinations, double[][] matrix, GeomHeuristic h) {
+    assertThat(matrix.length).isEqualTo(origins.size());
+    for (int i = 0; i < origins.size(); i++) {
+      for (int j = 0; j < destinations.size(); j++) {
+        assertThat(matrix[i][j]).isWithin(DELTA).of(
+          snapshot.getPathTo(origins.get(i), destinations.get(j), SI.SECOND,
+            SPEED, h).getTravelTime());
+      }
+    }
+  }
+}
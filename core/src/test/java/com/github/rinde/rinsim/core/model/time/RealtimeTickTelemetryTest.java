@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.time;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.rinde.rinsim.core.model.time.RealtimeTickTelemetry.Sink;
+import com.github.rinde.rinsim.core.model.time.RealtimeTickTelemetry.TickConsumer;
+import com.github.rinde.rinsim.core.model.time.TickProfiler.Timings;
+import com.github.rinde.rinsim.core.model.time.TimeModel.RealtimeBuilder;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests for {@link RealtimeTickTelemetry}.
+ * @author Rinde van Lon
+ */
+public class RealtimeTickTelemetryTest {
+  static final long TICK = 100L;
+
+  /**
+   * Tests that the buffer only keeps the most recent ticks while the
+   * histograms contain all ticks.
+   */
+  @Test
+  public void testRingBuffer() {
+    final RealtimeTickTelemetry telemetry = new RealtimeTickTelemetry(TICK, 3);
+    telemetry.record(0, 0, 1000);
+    telemetry.record(1, 0, 1100);
+    telemetry.record(2, 0, 1250);
+    telemetry.record(3, 0, 1340);
+    // a new real-time period
+    telemetry.record(0, 0, 5000);
+    telemetry.record(1, 0, 5100);
+
+    assertThat(telemetry.getTickCount()).isEqualTo(6L);
+    final List<Long> ticks = new ArrayList<>();
+    final List<Long> iats = new ArrayList<>();
+    telemetry.forEach(new TickConsumer() {
+      @Override
+      public void accept(long tickCount, long ms, long ns,
+          long interArrivalNanos) {
+        ticks.add(tickCount);
+        iats.add(interArrivalNanos);
+      }
+    });
+    assertThat(ticks).containsExactly(3L, 0L, 1L).inOrder();
+    assertThat(iats).containsExactly(90L,
+      RealtimeTickTelemetry.NO_INTER_ARRIVAL_TIME, 100L).inOrder();
+
+    final Timings iat = telemetry.getInterArrivalTimes();
+    assertThat(iat.getCount()).isEqualTo(4L);
+    assertThat(iat.getTotalNanos()).isEqualTo(100L + 150L + 90L + 100L);
+    assertThat(iat.getMaxNanos()).isEqualTo(150L);
+    final Timings jitter = telemetry.getJitter();
+    assertThat(jitter.getTotalNanos()).isEqualTo(50L + 10L);
+    assertThat(jitter.getMaxNanos()).isEqualTo(50L);
+    assertThat(telemetry.getOverrunCount()).isEqualTo(1L);
+    assertThat(telemetry.getMaxOverrunNanos()).isEqualTo(50L);
+
+    final ImmutableList<RealtimeTickInfo> infos = telemetry.getTickInfoList();
+    assertThat(infos).hasSize(1);
+    assertThat(infos.get(0).getInterArrivalTime()).isEqualTo(100L);
+    assertThat(telemetry.toString()).contains("overruns=1");
+  }
+
+  /**
+   * Tests that all ticks are kept by default.
+   */
+  @Test
+  public void testUnbounded() {
+    assertThat(TimeModel.builder().withRealTime().getTickTelemetryCapacity())
+      .isEqualTo(RealtimeTickTelemetry.UNBOUNDED);
+    final RealtimeTickTelemetry telemetry =
+      new RealtimeTickTelemetry(TICK, RealtimeTickTelemetry.UNBOUNDED);
+    final RecordingSink sink = new RecordingSink();
+    telemetry.setSink(sink);
+    final int n = 5000;
+    for (int i = 0; i < n; i++) {
+      telemetry.record(i, i, i * TICK);
+    }
+    assertThat(telemetry.getTickInfoList()).hasSize(n - 1);
+    assertThat(telemetry.getTickInfoList().get(0).getInterArrivalTime())
+      .isEqualTo(TICK);
+    // the sink receives the ticks in batches
+    assertThat(sink.flushes).isEqualTo(4);
+    telemetry.flushSink();
+    assertThat(sink.ticks).hasSize(n);
+    assertThat(sink.ticks.get(n - 1)).isEqualTo(n - 1L);
+  }
+
+  /**
+   * Tests that all ticks are written to the sink in batches.
+   */
+  @Test
+  public void testSink() {
+    final RealtimeTickTelemetry telemetry = new RealtimeTickTelemetry(TICK, 2);
+    telemetry.record(0, 0, 0);
+    final RecordingSink sink = new RecordingSink();
+    telemetry.setSink(sink);
+    for (int i = 1; i < 6; i++) {
+      telemetry.record(i, i, i * TICK);
+    }
+    // the last tick is still in the buffer
+    assertThat(sink.ticks).containsExactly(1L, 2L, 3L, 4L).inOrder();
+    assertThat(sink.flushes).isEqualTo(2);
+
+    telemetry.flushSink();
+    assertThat(sink.ticks).containsExactly(1L, 2L, 3L, 4L, 5L).inOrder();
+    assertThat(sink.flushes).isEqualTo(3);
+    telemetry.flushSink();
+    assertThat(sink.flushes).isEqualTo(3);
+
+    telemetry.setSink(null);
+    telemetry.record(6, 6, 6 * TICK);
+    telemetry.flushSink();
+    assertThat(sink.ticks).hasSize(5);
+  }
+
+  /**
+   * Tests the CSV sink.
+   */
+  @Test
+  public void testCsvSink() {
+    final RealtimeTickTelemetry telemetry = new RealtimeTickTelemetry(TICK, 4);
+    final StringWriter writer = new StringWriter();
+    telemetry.setSink(RealtimeTickTelemetry.csvSink(writer));
+    telemetry.record(0, 10, 1000);
+    telemetry.record(1, 11, 1105);
+    telemetry.flushSink();
+    assertThat(writer.toString()).isEqualTo("0,10,1000,-1"
+      + System.lineSeparator() + "1,11,1105,105" + System.lineSeparator());
+  }
+
+  /**
+   * Tests that a failing CSV sink does not affect the clock.
+   */
+  @Test
+  public void testCsvSinkFailure() {
+    final RealtimeTickTelemetry telemetry = new RealtimeTickTelemetry(TICK, 1);
+    final FailingWriter writer = new FailingWriter();
+    telemetry.setSink(RealtimeTickTelemetry.csvSink(writer));
+    telemetry.record(0, 0, 0);
+    telemetry.record(1, 1, TICK);
+    telemetry.record(2, 2, 2 * TICK);
+    telemetry.flushSink();
+    assertThat(writer.writes).isEqualTo(1);
+    assertThat(telemetry.getTickCount()).isEqualTo(3L);
+  }
+
+  /**
+   * Capacity must be positive.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    @SuppressWarnings("unused")
+    final RealtimeBuilder b =
+      TimeModel.builder().withRealTime().withTickTelemetryCapacity(0);
+  }
+
+  static class FailingWriter extends Writer {
+    int writes;
+
+    FailingWriter() {}
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      writes++;
+      throw new IOException("Disk is full.");
+    }
+
+    @Override
+    public void flush() throws IOException {
+      writes++;
+      throw new IOException("Disk is full.");
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  static class RecordingSink implements Sink {
+    final List<Long> ticks = new ArrayList<>();
+    int flushes;
+
+    @Override
+    public void accept(long tickCount, long ms, long ns,
+        long interArrivalNanos) {
+      ticks.add(tickCount);
+    }
+
+    @Override
+    public void flush() {
+      flushes++;
+    }
+  }
+}
@@ -19,7 +19,12 @@ import static com.google.common.truth.Truth.assertThat;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
@@ -29,7 +34,11 @@ import org.junit.Test;
 import org.junit.runners.Parameterized.Parameters;
 
 import com.github.rinde.rinsim.core.model.time.Clock.ClockEventType;
+import com.github.rinde.rinsim.core.model.FakeDependencyProvider;
 import com.github.rinde.rinsim.core.model.time.TimeModel.Builder;
+import com.github.rinde.rinsim.event.Event;
+import com.github.rinde.rinsim.event.EventDispatcher;
+import com.github.rinde.rinsim.event.Listener;
 import com.github.rinde.rinsim.event.ListenerEventHistory;
 
 /**
@@ -52,7 +61,9 @@ public class SimulatedTimeModelTest extends TimeModelTest<SimulatedTimeModel> {
   public static Collection<Object[]> data() {
     return asList(new Object[][] {
       {TimeModel.builder()},
-      {TimeModel.builder().withTickLength(333L).withTimeUnit(NonSI.HOUR)}
+      {TimeModel.builder().withTickLength(333L).withTimeUnit(NonSI.HOUR)},
+      {TimeModel.builder().withNextEventTimeAdvance().withTickLength(333L)},
+      {TimeModel.builder().withParallelTicks(2)}
     });
   }
 
@@ -133,4 +144,214 @@ public class SimulatedTimeModelTest extends TimeModelTest<SimulatedTimeModel> {
     // computed in the period before the interrupt is received
     assertThat(getModel().getCurrentTime()).isGreaterThan(0L);
   }
+
+  /**
+   * Tests that idle ticks are skipped when all listeners declare their next
+   * event time.
+   */
+  @Test
+  public void testNextEventTimeAdvance() {
+    final SimulatedTimeModel tm = (SimulatedTimeModel) TimeModel.builder()
+      .withNextEventTimeAdvance()
+      .withTickLength(100L)
+      .build(FakeDependencyProvider.empty());
+    final EventTimesListener l1 = new EventTimesListener(550L, 5000L);
+    final EventTimesListener l2 = new EventTimesListener(1200L, 1300L);
+    tm.register(l1);
+    tm.register(l2);
+
+    // the first tick is never skipped because the events are not yet known
+    tm.tick();
+    assertThat(l1.ticks).containsExactly(0L);
+    for (int i = 0; i < 4; i++) {
+      tm.tick();
+    }
+    // ticks are aligned with the regular ticks, the tick that contains an
+    // event is never skipped
+    assertThat(l1.ticks)
+      .containsExactly(0L, 500L, 1200L, 1300L, 5000L)
+      .inOrder();
+    assertThat(l2.ticks).isEqualTo(l1.ticks);
+    assertThat(tm.getCurrentTime()).isEqualTo(5100L);
+
+    // all listeners are idle, time advances normally
+    tm.tick();
+    assertThat(l1.ticks).hasSize(6);
+    assertThat(tm.getCurrentTime()).isEqualTo(5200L);
+
+    // a listener that does not declare its events prevents skipping
+    final EventTimesListener l3 = new EventTimesListener(10000L);
+    tm.register(l3);
+    tm.register(new TickListenerChecker(100L, tm.getTimeUnit()));
+    tm.tick();
+    assertThat(l3.ticks).containsExactly(5200L);
+    tm.tick();
+    assertThat(l3.ticks).containsExactly(5200L, 5300L).inOrder();
+  }
+
+  /**
+   * Tests that consecutive parallel listeners are ticked concurrently and that
+   * regular listeners act as a barrier.
+   */
+  @Test
+  public void testParallelTicks() {
+    final SimulatedTimeModel tm = (SimulatedTimeModel) TimeModel.builder()
+      .withParallelTicks(4)
+      .build(FakeDependencyProvider.empty());
+    assertThat(tm.parallelTicker.get().getParallelism()).isEqualTo(4);
+
+    final AtomicInteger counter = new AtomicInteger();
+    final List<CountingListener> listeners = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      listeners.add(new CountingListener(counter));
+    }
+    final List<Integer> observed = new ArrayList<>();
+    final TickListener barrier = new TickListener() {
+      @Override
+      public void tick(TimeLapse timeLapse) {
+        observed.add(counter.get());
+      }
+
+      @Override
+      public void afterTick(TimeLapse timeLapse) {
+        observed.add(counter.get());
+      }
+    };
+    for (int i = 0; i < 50; i++) {
+      tm.register(listeners.get(i));
+    }
+    tm.register(barrier);
+    for (int i = 50; i < 100; i++) {
+      tm.register(listeners.get(i));
+    }
+
+    tm.tick();
+    tm.tick();
+    assertThat(observed).containsExactly(50, 100, 150, 200).inOrder();
+    for (final CountingListener l : listeners) {
+      assertThat(l.startTimes).containsExactly(0L, 1000L).inOrder();
+      assertThat(l.timeLeft).containsExactly(1000L, 1000L);
+    }
+  }
+
+  /**
+   * Tests that events that are dispatched during parallel ticks are delivered
+   * on the thread of the time model in the order of the listeners.
+   */
+  @Test
+  public void testParallelTickEvents() {
+    final SimulatedTimeModel tm = (SimulatedTimeModel) TimeModel.builder()
+      .withParallelTicks(4)
+      .build(FakeDependencyProvider.empty());
+    final EventDispatcher dispatcher = new EventDispatcher(TestEvent.values());
+    final List<Object> issuers = new ArrayList<>();
+    final Set<Thread> threads = new HashSet<>();
+    dispatcher.addListener(new Listener() {
+      @Override
+      public void handleEvent(Event e) {
+        issuers.add(e.getIssuer());
+        threads.add(Thread.currentThread());
+      }
+    }, TestEvent.TICKED);
+
+    final List<CountingListener> listeners = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      final CountingListener l = new CountingListener(new AtomicInteger()) {
+        @Override
+        public void tick(TimeLapse timeLapse) {
+          super.tick(timeLapse);
+          ParallelTicks.dispatchEvent(dispatcher,
+            new Event(TestEvent.TICKED, this));
+        }
+      };
+      listeners.add(l);
+      tm.register(l);
+    }
+    tm.tick();
+    tm.tick();
+
+    final List<Object> expected = new ArrayList<>();
+    expected.addAll(listeners);
+    expected.addAll(listeners);
+    assertThat(issuers).containsExactlyElementsIn(expected).inOrder();
+    assertThat(threads).containsExactly(Thread.currentThread());
+  }
+
+  /**
+   * Tests that an exception in a parallel tick is propagated.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testParallelTickException() {
+    final SimulatedTimeModel tm = (SimulatedTimeModel) TimeModel.builder()
+      .withParallelTicks(2)
+      .build(FakeDependencyProvider.empty());
+    tm.register(new CountingListener(new AtomicInteger()));
+    tm.register(new CountingListener(new AtomicInteger()) {
+      @Override
+      public void tick(TimeLapse timeLapse) {
+        throw new IllegalStateException("Failure in tick.");
+      }
+    });
+    tm.tick();
+  }
+
+  enum TestEvent {
+    TICKED
+  }
+
+  static class CountingListener implements ParallelTickListener {
+    final AtomicInteger counter;
+    final List<Long> startTimes;
+    final List<Long> timeLeft;
+
+    CountingListener(AtomicInteger c) {
+      counter = c;
+      startTimes = new ArrayList<>();
+      timeLeft = new ArrayList<>();
+    }
+
+    @Override
+    public void tick(TimeLapse timeLapse) {
+      startTimes.add(timeLapse.getStartTime());
+      timeLeft.add(timeLapse.getTimeLeft());
+      // each listener consumes part of its own time lapse
+      timeLapse.consume(timeLapse.getTickLength() / 2);
+      counter.incrementAndGet();
+    }
+
+    @Override
+    public void afterTick(TimeLapse timeLapse) {}
+  }
+
+  static class EventTimesListener implements NextEventTickListener {
+    final List<Long> events;
+    final List<Long> ticks;
+
+    EventTimesListener(Long... times) {
+      events = new ArrayList<>(asList(times));
+      ticks = new ArrayList<>();
+    }
+
+    @Override
+    public void tick(TimeLapse timeLapse) {
+      ticks.add(timeLapse.getStartTime());
+      while (!events.isEmpty() && timeLapse.getEndTime() > events.get(0)) {
+        events.remove(0);
+      }
+    }
+
+    @Override
+    public void afterTick(TimeLapse timeLapse) {}
+
+    @Override
+    public long getNextEventTime(long currentTime) {
+      if (ticks.isEmpty()) {
+        return currentTime;
+      }
+      if (events.isEmpty()) {
+        return IDLE;
+      }
+      return events.get(0);
+    }
+  }
 }
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.core.model.time;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.rinde.rinsim.core.model.FakeDependencyProvider;
+import com.github.rinde.rinsim.core.model.time.Clock.ClockEventType;
+import com.github.rinde.rinsim.core.model.time.TickProfiler.Profile;
+import com.github.rinde.rinsim.core.model.time.TickProfiler.TickProfileEvent;
+import com.github.rinde.rinsim.core.model.time.TickProfiler.TickProfileEventType;
+import com.github.rinde.rinsim.core.model.time.TickProfiler.Timings;
+import com.github.rinde.rinsim.event.Event;
+import com.github.rinde.rinsim.event.Listener;
+
+/**
+ * Tests for {@link TickProfiler}.
+ * @author Rinde van Lon
+ */
+public class TickProfilerTest {
+
+  /**
+   * Profiling is disabled by default.
+   */
+  @Test
+  public void testDisabledByDefault() {
+    assertThat(TimeModel.builder().build(FakeDependencyProvider.empty())
+      .getTickProfiler().isPresent()).isFalse();
+    assertThat(TimeModel.builder().withRealTime().isTickProfiling()).isFalse();
+    assertThat(TimeModel.builder().withTickProfiling().withRealTime()
+      .isTickProfiling()).isTrue();
+  }
+
+  /**
+   * Tests that the time of each listener is measured and aggregated per
+   * class.
+   */
+  @Test
+  public void testProfiles() {
+    final TimeModel tm = TimeModel.builder()
+      .withTickProfiling()
+      .build(FakeDependencyProvider.empty());
+    final SlowListener slow1 = new SlowListener();
+    final SlowListener slow2 = new SlowListener();
+    final TickListenerChecker fast =
+      new TickListenerChecker(tm.getTickLength(), tm.getTimeUnit());
+    tm.register(fast);
+    tm.register(slow1);
+    tm.register(slow2);
+    for (int i = 0; i < 3; i++) {
+      tm.tick();
+    }
+    final TickProfiler profiler = tm.getTickProfiler().get();
+
+    assertThat(profiler.getInstanceProfiles().keySet())
+      .containsExactly(fast, slow1, slow2).inOrder();
+    final Timings slowTick = profiler.getInstanceProfiles().get(slow1)
+      .getTick();
+    assertThat(slowTick.getCount()).isEqualTo(3L);
+    assertThat(slowTick.getTotalNanos())
+      .isAtLeast(3 * SlowListener.SLEEP_NANOS);
+    assertThat(slowTick.getMaxNanos()).isAtLeast(SlowListener.SLEEP_NANOS);
+    assertThat(slowTick.getPercentileNanos(1d))
+      .isEqualTo(slowTick.getMaxNanos());
+    assertThat(slowTick.getPercentileNanos(.5))
+      .isAtLeast(SlowListener.SLEEP_NANOS);
+    long histogramCount = 0;
+    for (final long count : slowTick.getHistogram()) {
+      histogramCount += count;
+    }
+    assertThat(histogramCount).isEqualTo(3L);
+
+    // the classes are sorted by decreasing total time, the slow class
+    // contains both instances
+    assertThat(profiler.getClassProfiles().keySet())
+      .containsExactly(SlowListener.class, TickListenerChecker.class);
+    final List<Profile> classProfiles =
+      profiler.getClassProfiles().values().asList();
+    assertThat(classProfiles.get(0).getTotalNanos())
+      .isAtLeast(classProfiles.get(1).getTotalNanos());
+    final Profile slowClass =
+      profiler.getClassProfiles().get(SlowListener.class);
+    assertThat(slowClass.getTick().getCount()).isEqualTo(6L);
+    assertThat(slowClass.getAfterTick().getCount()).isEqualTo(6L);
+    assertThat(profiler.getReport()).contains(SlowListener.class.getName());
+
+    profiler.reset();
+    assertThat(profiler.getInstanceProfiles()).isEmpty();
+  }
+
+  /**
+   * Tests that listeners that are ticked in parallel are measured as well.
+   */
+  @Test
+  public void testParallelProfiles() {
+    final TimeModel tm = TimeModel.builder()
+      .withTickProfiling()
+      .withParallelTicks(2)
+      .build(FakeDependencyProvider.empty());
+    for (int i = 0; i < 10; i++) {
+      tm.register(new ParallelListener());
+    }
+    tm.tick();
+    tm.tick();
+    final TickProfiler profiler = tm.getTickProfiler().get();
+    assertThat(profiler.getInstanceProfiles()).hasSize(10);
+    assertThat(profiler.getClassProfiles().get(ParallelListener.class)
+      .getTick().getCount()).isEqualTo(20L);
+  }
+
+  /**
+   * Tests that the recorders of unregistered listeners are removed and that
+   * their durations are kept in the profile of their class.
+   */
+  @Test
+  public void testUnregister() {
+    final TimeModel tm = TimeModel.builder()
+      .withTickProfiling()
+      .build(FakeDependencyProvider.empty());
+    final ParallelListener l1 = new ParallelListener();
+    final ParallelListener l2 = new ParallelListener() {
+      @Override
+      public void tick(TimeLapse timeLapse) {
+        tm.unregister(this);
+      }
+    };
+    tm.register(l1);
+    tm.register(l2);
+    tm.tick();
+    tm.tick();
+    final TickProfiler profiler = tm.getTickProfiler().get();
+    assertThat(profiler.getInstanceProfiles().keySet()).containsExactly(l1);
+    final Profile classProfile =
+      profiler.getClassProfiles().get(ParallelListener.class);
+    assertThat(classProfile.getTick().getCount()).isEqualTo(2L);
+    assertThat(profiler.getClassProfiles().get(l2.getClass()).getTick()
+      .getCount()).isEqualTo(1L);
+    // an unregistered listener does not receive the afterTick
+    assertThat(profiler.getClassProfiles().get(l2.getClass()).getAfterTick()
+      .getCount()).isEqualTo(0L);
+
+    profiler.reset();
+    assertThat(profiler.getClassProfiles()).isEmpty();
+  }
+
+  /**
+   * Tests that a profile event is dispatched when the clock stops.
+   */
+  @Test
+  public void testProfileEvent() {
+    final TimeModel tm = TimeModel.builder()
+      .withTickProfiling()
+      .build(FakeDependencyProvider.empty());
+    final List<Event> events = new ArrayList<>();
+    tm.getEventAPI().addListener(new Listener() {
+      @Override
+      public void handleEvent(Event e) {
+        events.add(e);
+      }
+    }, TickProfileEventType.TICK_PROFILE, ClockEventType.STOPPED);
+    tm.register(new ParallelListener() {
+      @Override
+      public void tick(TimeLapse timeLapse) {
+        if (timeLapse.getStartTime() == 2 * timeLapse.getTickLength()) {
+          tm.stop();
+        }
+      }
+    });
+    tm.start();
+
+    assertThat(events).hasSize(2);
+    assertThat(events.get(1).getEventType())
+      .isEqualTo(ClockEventType.STOPPED);
+    final TickProfileEvent event = (TickProfileEvent) events.get(0);
+    assertThat(event.getIssuer()).isSameAs(tm);
+    assertThat(event.getTime()).isEqualTo(tm.getCurrentTime());
+    assertThat(event.getClassProfiles().values().asList().get(0).getTick()
+      .getCount()).isEqualTo(3L);
+    assertThat(event.getReport())
+      .isEqualTo(tm.getTickProfiler().get().getReport());
+  }
+
+  /**
+   * Tests the bucket of a duration.
+   */
+  @Test
+  public void testBucket() {
+    assertThat(TickProfiler.bucket(0L)).isEqualTo(0);
+    assertThat(TickProfiler.bucket(1L)).isEqualTo(0);
+    assertThat(TickProfiler.bucket(2L)).isEqualTo(1);
+    assertThat(TickProfiler.bucket(1023L)).isEqualTo(9);
+    assertThat(TickProfiler.bucket(1024L)).isEqualTo(10);
+    assertThat(TickProfiler.bucket(Long.MAX_VALUE)).isEqualTo(62);
+  }
+
+  static class SlowListener implements TickListener {
+    static final long SLEEP_NANOS = 1000000L;
+
+    @Override
+    public void tick(TimeLapse timeLapse) {
+      try {
+        Thread.sleep(1);
+      } catch (final InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public void afterTick(TimeLapse timeLapse) {}
+  }
+
+  static class ParallelListener implements ParallelTickListener {
+    @Override
+    public void tick(TimeLapse timeLapse) {}
+
+    @Override
+    public void afterTick(TimeLapse timeLapse) {}
+  }
+}
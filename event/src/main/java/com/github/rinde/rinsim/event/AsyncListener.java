@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.event;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Listener} that delivers events to an observer on a separate
+ * thread. It can be registered at any {@link EventAPI} in place of the
+ * observer:
+ *
+ * <pre>
+ * eventAPI.addListener(AsyncListener.create(observer, 1024,
+ *   Backpressure.DROP), types);
+ * </pre>
+ *
+ * Each event that is dispatched to this listener is stored in a bounded ring
+ * buffer, the buffer is drained in batches by a dedicated daemon thread that
+ * calls {@link Listener#handleEvent(Event)} of the observer. Dispatching an
+ * event therefore only costs a write to the buffer, regardless of the amount
+ * of work the observer does. What happens when the buffer is full is
+ * determined by the {@link Backpressure} policy.
+ * <p>
+ * The observer receives the events in the order in which they were
+ * dispatched, except for events that are coalesced. Since the events are
+ * handled at a later moment the observer should be free of side effects on
+ * the simulation and should not rely on the state of the issuer of an event at
+ * the time it is handled, the events themselves should not be modified after
+ * they have been dispatched. Use {@link #flush()} to wait until all events
+ * have been delivered, for example before reading the results of an observer
+ * at the end of a simulation, and {@link #close()} to stop the delivery
+ * thread. This class is thread-safe.
+ * @author Rinde van Lon
+ */
+public final class AsyncListener implements Listener {
+  /**
+   * The default maximum number of events that is delivered in one batch.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 256;
+  // time a blocked producer or a flushing thread sleeps
+  private static final long WAIT_PARK_NANOS = 10000L;
+
+  final Listener delegate;
+  final Backpressure backpressure;
+  final int batchSize;
+  private final Event[] buffer;
+  // position of the next event to deliver
+  private final AtomicLong head;
+  // position of the next event to store
+  private final AtomicLong tail;
+  // events that are accepted but not yet delivered
+  private final AtomicLong pending;
+  private final AtomicLong dropped;
+  private final AtomicLong coalesced;
+  // coalesced events in order of dispatch, guarded by producerLock
+  private final Map<Enum<?>, Event> overflow;
+  private final Object producerLock;
+  private final Thread thread;
+  // indicates whether overflow is not empty
+  private volatile boolean hasOverflow;
+  private volatile boolean idle;
+  // is only set while holding producerLock
+  private volatile boolean closed;
+  @Nullable
+  private volatile RuntimeException failure;
+
+  AsyncListener(Listener l, int capacity, Backpressure bp, int batch) {
+    delegate = l;
+    backpressure = bp;
+    batchSize = batch;
+    buffer = new Event[capacity];
+    head = new AtomicLong();
+    tail = new AtomicLong();
+    pending = new AtomicLong();
+    dropped = new AtomicLong();
+    coalesced = new AtomicLong();
+    overflow = new LinkedHashMap<>();
+    producerLock = new Object();
+    thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        deliverLoop();
+      }
+    }, AsyncListener.class.getSimpleName() + "-"
+      + l.getClass().getSimpleName());
+    thread.setDaemon(true);
+  }
+
+  @Override
+  public void handleEvent(Event e) {
+    synchronized (producerLock) {
+      checkState(!closed, "%s is closed.", this);
+      final long t = tail.get();
+      if (backpressure == Backpressure.COALESCE && !overflow.isEmpty()) {
+        // as long as there are coalesced events all new events are coalesced
+        // as well, this prevents that newer events overtake older events
+        coalesce(e);
+        return;
+      }
+      while (t - head.get() >= buffer.length) {
+        if (backpressure == Backpressure.DROP) {
+          dropped.incrementAndGet();
+          return;
+        } else if (backpressure == Backpressure.COALESCE) {
+          coalesce(e);
+          return;
+        }
+        checkFailure();
+        wakeUp();
+        LockSupport.parkNanos(WAIT_PARK_NANOS);
+      }
+      pending.incrementAndGet();
+      buffer[index(t)] = e;
+      // a volatile write is needed, the delivery thread may be about to park
+      tail.set(t + 1);
+    }
+    wakeUp();
+  }
+
+  /**
+   * Waits until all events that have been dispatched to this listener have
+   * been delivered to the observer.
+   * @throws IllegalStateException if the observer threw an exception, the
+   *           exception is the cause.
+   */
+  public void flush() {
+    while (pending.get() > 0) {
+      checkFailure();
+      wakeUp();
+      LockSupport.parkNanos(WAIT_PARK_NANOS);
+    }
+    checkFailure();
+  }
+
+  /**
+   * Delivers all remaining events and stops the delivery thread. Afterwards no
+   * new events can be dispatched to this listener, it should therefore be
+   * removed from the {@link EventAPI} before it is closed.
+   * @throws IllegalStateException if the observer threw an exception, the
+   *           exception is the cause.
+   */
+  public void close() {
+    synchronized (producerLock) {
+      if (closed) {
+        return;
+      }
+      // no events are accepted after this point, therefore the flush below
+      // can not miss an event
+      closed = true;
+    }
+    try {
+      flush();
+    } finally {
+      LockSupport.unpark(thread);
+      try {
+        thread.join();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * @return The observer to which events are delivered.
+   */
+  public Listener getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * @return The backpressure policy.
+   */
+  public Backpressure getBackpressure() {
+    return backpressure;
+  }
+
+  /**
+   * @return The maximum number of events that can be buffered.
+   */
+  public int getCapacity() {
+    return buffer.length;
+  }
+
+  /**
+   * @return The number of events that were not delivered because the buffer
+   *         was full, only applies to {@link Backpressure#DROP}.
+   */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * @return The number of events that were replaced by a more recent event of
+   *         the same type, only applies to {@link Backpressure#COALESCE}.
+   */
+  public long getCoalescedCount() {
+    return coalesced.get();
+  }
+
+  @Override
+  public String toString() {
+    return new StringBuilder(AsyncListener.class.getSimpleName())
+      .append('{').append(delegate).append(',').append(backpressure)
+      .append('}').toString();
+  }
+
+  // must be called while holding producerLock
+  void coalesce(Event e) {
+    // the replaced event is removed such that the new event is delivered
+    // after all events that were dispatched before it
+    if (overflow.remove(e.getEventType()) == null) {
+      pending.incrementAndGet();
+    } else {
+      coalesced.incrementAndGet();
+    }
+    overflow.put(e.getEventType(), e);
+    hasOverflow = true;
+    wakeUp();
+  }
+
+  List<Event> drainOverflow() {
+    synchronized (producerLock) {
+      final List<Event> events = new ArrayList<>(overflow.values());
+      overflow.clear();
+      hasOverflow = false;
+      return events;
+    }
+  }
+
+  void deliverLoop() {
+    while (true) {
+      final long h = head.get();
+      final long end = Math.min(tail.get(), h + batchSize);
+      for (long i = h; i < end; i++) {
+        final int index = index(i);
+        final Event e = buffer[index];
+        buffer[index] = null;
+        head.lazySet(i + 1);
+        deliver(e);
+      }
+      if (end == h) {
+        if (hasOverflow) {
+          for (final Event e : drainOverflow()) {
+            deliver(e);
+          }
+        } else if (closed) {
+          // the positions are read again since an event may have been stored
+          // right before the listener was closed
+          if (head.get() == tail.get() && !hasOverflow) {
+            return;
+          }
+        } else {
+          idle = true;
+          if (head.get() == tail.get() && !hasOverflow && !closed) {
+            // is woken up by a producer or by close()
+            LockSupport.park(this);
+          }
+          idle = false;
+        }
+      }
+    }
+  }
+
+  void deliver(Event e) {
+    try {
+      if (failure == null) {
+        delegate.handleEvent(e);
+      }
+    } catch (final RuntimeException ex) {
+      failure = ex;
+    } finally {
+      pending.decrementAndGet();
+    }
+  }
+
+  void checkFailure() {
+    final RuntimeException ex = failure;
+    if (ex != null) {
+      throw new IllegalStateException(
+        "The observer of " + this + " failed.", ex);
+    }
+  }
+
+  void wakeUp() {
+    if (idle) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  private int index(long position) {
+    return (int) (position % buffer.length);
+  }
+
+  /**
+   * Creates a new {@link AsyncListener} that delivers events in batches of at
+   * most {@link #DEFAULT_BATCH_SIZE} events.
+   * @param observer The listener to which the events are delivered.
+   * @param capacity The maximum number of events that can be buffered, must be
+   *          strictly positive.
+   * @param backpressure Determines what happens when the buffer is full.
+   * @return A new listener, its delivery thread is started.
+   */
+  public static AsyncListener create(Listener observer, int capacity,
+      Backpressure backpressure) {
+    return create(observer, capacity, backpressure, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Creates a new {@link AsyncListener}.
+   * @param observer The listener to which the events are delivered.
+   * @param capacity The maximum number of events that can be buffered, must be
+   *          strictly positive.
+   * @param backpressure Determines what happens when the buffer is full.
+   * @param batchSize The maximum number of events that is delivered before
+   *          the buffer positions are re-read, must be strictly positive.
+   * @return A new listener, its delivery thread is started.
+   */
+  public static AsyncListener create(Listener observer, int capacity,
+      Backpressure backpressure, int batchSize) {
+    checkNotNull(observer);
+    checkNotNull(backpressure);
+    checkArgument(capacity > 0, "Capacity must be strictly positive, found %s.",
+      capacity);
+    checkArgument(batchSize > 0,
+      "Batch size must be strictly positive, found %s.", batchSize);
+    final AsyncListener l =
+      new AsyncListener(observer, capacity, backpressure, batchSize);
+    l.thread.start();
+    return l;
+  }
+
+  /**
+   * Defines what happens with an event that is dispatched to an
+   * {@link AsyncListener} with a full buffer.
+   * @author Rinde van Lon
+   */
+  public enum Backpressure {
+    /**
+     * The dispatching thread waits until there is space in the buffer, no
+     * events are lost.
+     */
+    BLOCK,
+
+    /**
+     * The event is discarded.
+     */
+    DROP,
+
+    /**
+     * The event is kept aside until the buffer has been drained, of all events
+     * of the same type that are kept aside only the most recent one is
+     * delivered. Use this policy for observers that are only interested in the
+     * latest event of each type.
+     */
+    COALESCE;
+  }
+}
@@ -23,7 +23,9 @@ import java.util.HashSet;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedHashMultimap;
@@ -34,12 +36,28 @@ import com.google.common.collect.SetMultimap;
  * Basic event dispatcher for easily dispatching {@link Event}s to
  * {@link Listener}s. It provides methods for dispatching events and removing
  * and adding of listeners.
+ * <p>
+ * Listeners that are added or removed while an event is being dispatched are
+ * only added or removed when all dispatches have finished, including nested
+ * dispatches. Until then, {@link #containsListener(Listener, Enum)} and
+ * {@link #hasListenerFor(Enum)} do not reflect these changes and nested
+ * dispatches do not notify the added listeners.
+ * <p>
+ * For each supported event type the dispatcher keeps an immutable array of
+ * listeners that is replaced by a new array each time the listeners for that
+ * type change, such that the listeners of a type can be looked up without
+ * locking. Dispatches via {@link #dispatchEvent(Event)} are serialized: when
+ * several threads dispatch events, the listeners are notified of one event at
+ * a time. Dispatches via {@link #safeDispatchEvent(Event)} notify the
+ * listeners without holding a lock.
  * @author Rinde van Lon
  */
 public final class EventDispatcher implements EventAPI {
+  private static final Listener[] NO_LISTENERS = new Listener[0];
 
   /**
-   * A map of event types to registered {@link Listener}s.
+   * A map of event types to registered {@link Listener}s, all modifications
+   * are done while holding its lock.
    */
   final SetMultimap<Enum<?>, Listener> listeners;
 
@@ -55,9 +73,18 @@ public final class EventDispatcher implements EventAPI {
    */
   final PublicEventAPI publicAPI;
 
+  // event type -> index in table
+  private final ImmutableMap<Enum<?>, Integer> typeIndices;
+  // index -> listeners of the type in order of registration, the arrays are
+  // never modified after they are published
+  private final AtomicReferenceArray<Listener[]> table;
+  // number of dispatches in progress
   private final AtomicInteger dispatching;
+  // changes that are applied when no dispatch is in progress, guarded by the
+  // lock of listeners
   private final SetMultimap<Enum<?>, Listener> toRemove;
   private final SetMultimap<Enum<?>, Listener> toAdd;
+  private volatile boolean hasPendingChanges;
 
   /**
    * Creates a new {@link EventDispatcher} instance which is capable of
@@ -73,6 +100,17 @@ public final class EventDispatcher implements EventAPI {
       LinkedHashMultimap.<Enum<?>, Listener>create());
     supportedTypes = ImmutableSet.copyOf(supportedEventTypes);
     publicAPI = new PublicEventAPI(this);
+    final ImmutableMap.Builder<Enum<?>, Integer> indices =
+      ImmutableMap.builder();
+    int i = 0;
+    for (final Enum<?> type : supportedTypes) {
+      indices.put(type, i++);
+    }
+    typeIndices = indices.build();
+    table = new AtomicReferenceArray<>(supportedTypes.size());
+    for (int j = 0; j < supportedTypes.size(); j++) {
+      table.set(j, NO_LISTENERS);
+    }
     dispatching = new AtomicInteger(0);
     toRemove = LinkedHashMultimap.create();
     toAdd = LinkedHashMultimap.create();
@@ -96,58 +134,86 @@ public final class EventDispatcher implements EventAPI {
    *          be dispatched.
    */
   public void dispatchEvent(Event e) {
-
+    final int index = index(e.getEventType());
     synchronized (listeners) {
-      dispatching.incrementAndGet();
-      checkCanDispatchEventType(e.getEventType());
-      for (final Listener l : listeners.get(e.getEventType())) {
+      notifyListeners(index, e);
+    }
+    update();
+  }
+
+  /**
+   * Dispatch an event in the same way as {@link #dispatchEvent(Event)}, except
+   * that no lock is held while the listeners are notified. The listeners are
+   * notified of the event in the order of registration, when several threads
+   * call this method at the same time the listeners may be notified
+   * concurrently.
+   * @param e The event to be dispatched, only events with a supported type can
+   *          be dispatched.
+   */
+  public void safeDispatchEvent(Event e) {
+    final int index = index(e.getEventType());
+    notifyListeners(index, e);
+    update();
+  }
+
+  void notifyListeners(int index, Event e) {
+    dispatching.incrementAndGet();
+    try {
+      for (final Listener l : table.get(index)) {
         l.handleEvent(e);
       }
+    } finally {
       dispatching.decrementAndGet();
     }
-
-    update();
   }
 
+  // applies the deferred changes if no dispatch is in progress
   void update() {
-    if (dispatching.get() == 0) {
-      if (!toRemove.isEmpty()) {
-        for (final Entry<Enum<?>, Listener> entry : toRemove.entries()) {
-          removeListener(entry.getValue(), entry.getKey());
-        }
-        toRemove.clear();
+    if (hasPendingChanges && dispatching.get() == 0) {
+      synchronized (listeners) {
+        applyPendingChanges();
       }
-      if (!toAdd.isEmpty()) {
-        for (final Entry<Enum<?>, Listener> entry : toAdd.entries()) {
-          add(entry.getValue(),
-            ImmutableSet.<Enum<?>>of(entry.getKey()), false);
-        }
-        toAdd.clear();
+    }
+  }
+
+  // must be called while holding the lock of listeners
+  void applyPendingChanges() {
+    if (!hasPendingChanges || dispatching.get() > 0) {
+      return;
+    }
+    for (final Entry<Enum<?>, Listener> entry : toRemove.entries()) {
+      if (listeners.remove(entry.getKey(), entry.getValue())) {
+        publish(entry.getKey());
+      }
+    }
+    toRemove.clear();
+    for (final Entry<Enum<?>, Listener> entry : toAdd.entries()) {
+      if (listeners.put(entry.getKey(), entry.getValue())) {
+        publish(entry.getKey());
       }
     }
+    toAdd.clear();
+    hasPendingChanges = false;
   }
 
-  void checkCanDispatchEventType(Enum<?> eventType) {
-    checkArgument(
-      supportedTypes.contains(eventType),
+  int index(Enum<?> eventType) {
+    final Integer index = typeIndices.get(eventType);
+    checkArgument(index != null,
       "Cannot dispatch an event of type %s since it was not registered at "
         + "this dispatcher.",
       eventType);
+    return index;
   }
 
-  public void safeDispatchEvent(Event e) {
-    dispatching.incrementAndGet();
-    final Set<Listener> targetListeners;
-    synchronized (listeners) {
-      checkCanDispatchEventType(e.getEventType());
-      targetListeners = ImmutableSet.copyOf(listeners.get(e.getEventType()));
-    }
-
-    for (final Listener l : targetListeners) {
-      l.handleEvent(e);
+  // must be called while holding the lock of listeners
+  void publish(Enum<?> eventType) {
+    final Set<Listener> ls = listeners.get(eventType);
+    if (ls.isEmpty()) {
+      table.set(typeIndices.get(eventType), NO_LISTENERS);
+    } else {
+      table.set(typeIndices.get(eventType),
+        ls.toArray(new Listener[ls.size()]));
     }
-    dispatching.decrementAndGet();
-    update();
   }
 
   /**
@@ -190,12 +256,15 @@ public final class EventDispatcher implements EventAPI {
         checkArgument(supportedTypes.contains(eventType),
           "A listener for type %s is not allowed.", eventType);
 
-        if (dispatching.get() == 0) {
-          listeners.put(eventType, listener);
-        } else {
+        if (dispatching.get() > 0) {
           toAdd.put(eventType, listener);
+          hasPendingChanges = true;
+        } else if (listeners.put(eventType, listener)) {
+          publish(eventType);
         }
       }
+      // the dispatch may have finished before the changes were deferred
+      applyPendingChanges();
     }
   }
 
@@ -232,13 +301,16 @@ public final class EventDispatcher implements EventAPI {
               + "does not exist.",
             listener, eventType);
 
-          if (dispatching.get() == 0) {
-            listeners.remove(eventType, listener);
-          } else {
+          if (dispatching.get() > 0) {
             toRemove.put(eventType, listener);
+            hasPendingChanges = true;
+          } else {
+            listeners.remove(eventType, listener);
+            publish(eventType);
           }
         }
       }
+      applyPendingChanges();
     }
   }
 
@@ -257,7 +329,8 @@ public final class EventDispatcher implements EventAPI {
    *         <code>false</code> otherwise.
    */
   public boolean hasListenerFor(Enum<?> eventType) {
-    return listeners.containsKey(eventType);
+    final Integer index = typeIndices.get(eventType);
+    return index != null && table.get(index).length > 0;
   }
 
   /**
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.event;
+
+import static com.github.rinde.rinsim.event.EventDispatcherTest.EventTypes.EVENT1;
+import static com.github.rinde.rinsim.event.EventDispatcherTest.EventTypes.EVENT2;
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.github.rinde.rinsim.event.AsyncListener.Backpressure;
+
+/**
+ * Tests for {@link AsyncListener}.
+ * @author Rinde van Lon
+ */
+public class AsyncListenerTest {
+  static final int NUM_EVENTS = 1000;
+
+  final List<AsyncListener> listeners = new ArrayList<>();
+
+  /**
+   * Stops all delivery threads.
+   */
+  @After
+  public void tearDown() {
+    for (final AsyncListener l : listeners) {
+      try {
+        l.close();
+      } catch (final IllegalStateException e) {
+        // the failure is tested elsewhere
+      }
+    }
+  }
+
+  /**
+   * Tests that all events are delivered in order when the dispatching thread
+   * is blocked on a full buffer.
+   */
+  @Test
+  public void testBlock() {
+    final ListenerEventHistory history = new ListenerEventHistory();
+    final AsyncListener async = create(history, 4, Backpressure.BLOCK);
+    final EventDispatcher dispatcher = new EventDispatcher(EVENT1, EVENT2);
+    dispatcher.addListener(async, EVENT1, EVENT2);
+
+    final List<Event> events = new ArrayList<>();
+    for (int i = 0; i < NUM_EVENTS; i++) {
+      final Event e = new Event(i % 2 == 0 ? EVENT1 : EVENT2, i);
+      events.add(e);
+      dispatcher.dispatchEvent(e);
+    }
+    async.flush();
+    assertThat(history.getHistory()).containsExactlyElementsIn(events)
+      .inOrder();
+    assertThat(async.getDroppedCount()).isEqualTo(0L);
+    assertThat(async.getDelegate()).isSameAs(history);
+    assertThat(async.getCapacity()).isEqualTo(4);
+  }
+
+  /**
+   * Tests that events are discarded when the buffer is full.
+   * @throws InterruptedException if interrupted.
+   */
+  @Test
+  public void testDrop() throws InterruptedException {
+    final BlockingListener observer = new BlockingListener();
+    final AsyncListener async = create(observer, 2, Backpressure.DROP);
+    async.handleEvent(new Event(EVENT1, 0));
+    observer.started.await();
+    // the first event is being handled, the next two fit in the buffer
+    for (int i = 1; i < 6; i++) {
+      async.handleEvent(new Event(EVENT1, i));
+    }
+    assertThat(async.getDroppedCount()).isEqualTo(3L);
+    observer.release.countDown();
+    async.flush();
+    assertThat(observer.issuers).containsExactly(0, 1, 2).inOrder();
+  }
+
+  /**
+   * Tests that only the most recent event of each type is delivered when the
+   * buffer is full.
+   * @throws InterruptedException if interrupted.
+   */
+  @Test
+  public void testCoalesce() throws InterruptedException {
+    final BlockingListener observer = new BlockingListener();
+    final AsyncListener async = create(observer, 1, Backpressure.COALESCE);
+    async.handleEvent(new Event(EVENT1, 0));
+    observer.started.await();
+    async.handleEvent(new Event(EVENT1, 1));
+    async.handleEvent(new Event(EVENT1, 2));
+    async.handleEvent(new Event(EVENT1, 3));
+    async.handleEvent(new Event(EVENT1, 4));
+    observer.release.countDown();
+    async.flush();
+    assertThat(observer.issuers).containsExactly(0, 1, 4).inOrder();
+    assertThat(async.getCoalescedCount()).isEqualTo(2L);
+    assertThat(async.getDroppedCount()).isEqualTo(0L);
+  }
+
+  /**
+   * Tests that coalesced events of different types are delivered in the order
+   * in which their most recent event was dispatched.
+   */
+  @Test
+  public void testCoalesceOrder() throws InterruptedException {
+    final BlockingListener observer = new BlockingListener();
+    final AsyncListener async = create(observer, 1, Backpressure.COALESCE);
+    async.handleEvent(new Event(EVENT1, 0));
+    observer.started.await();
+    async.handleEvent(new Event(EVENT1, 1));
+    async.handleEvent(new Event(EVENT1, 2));
+    async.handleEvent(new Event(EVENT2, 3));
+    async.handleEvent(new Event(EVENT1, 4));
+    observer.release.countDown();
+    async.flush();
+    assertThat(observer.issuers).containsExactly(0, 1, 3, 4).inOrder();
+    assertThat(async.getCoalescedCount()).isEqualTo(1L);
+  }
+
+  /**
+   * Tests that an idle listener delivers events that arrive after a long
+   * period without events and that it can be closed while idle.
+   */
+  @Test
+  public void testIdle() throws InterruptedException {
+    final ListenerEventHistory observer = new ListenerEventHistory();
+    final AsyncListener async = create(observer, 4, Backpressure.BLOCK);
+    Thread.sleep(20);
+    async.handleEvent(new Event(EVENT1));
+    async.flush();
+    assertThat(observer.getEventTypeHistory()).containsExactly(EVENT1);
+    async.close();
+    async.close();
+  }
+
+  /**
+   * Tests that an exception of the observer is rethrown.
+   */
+  @Test
+  public void testObserverFailure() {
+    final AsyncListener async = create(new Listener() {
+      @Override
+      public void handleEvent(Event e) {
+        throw new IllegalArgumentException("observer failure");
+      }
+    }, 2, Backpressure.BLOCK);
+    async.handleEvent(new Event(EVENT1, 0));
+    boolean fail = false;
+    try {
+      async.flush();
+    } catch (final IllegalStateException e) {
+      fail = true;
+      assertThat(e.getCause()).hasMessageThat().isEqualTo("observer failure");
+    }
+    assertThat(fail).isTrue();
+  }
+
+  /**
+   * Tests that no events can be dispatched to a closed listener.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testClosed() {
+    final AsyncListener async =
+      create(new ListenerEventHistory(), 2, Backpressure.DROP);
+    async.close();
+    async.close();
+    async.handleEvent(new Event(EVENT1, 0));
+  }
+
+  /**
+   * Capacity must be positive.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    AsyncListener.create(new ListenerEventHistory(), 0, Backpressure.DROP);
+  }
+
+  AsyncListener create(Listener l, int capacity, Backpressure bp) {
+    final AsyncListener async = AsyncListener.create(l, capacity, bp);
+    listeners.add(async);
+    return async;
+  }
+
+  static class BlockingListener implements Listener {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Object> issuers = new ArrayList<>();
+
+    @Override
+    public void handleEvent(Event e) {
+      issuers.add(e.getIssuer());
+      started.countDown();
+      try {
+        release.await();
+      } catch (final InterruptedException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+  }
+}
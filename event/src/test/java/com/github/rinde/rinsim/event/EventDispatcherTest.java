@@ -25,9 +25,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -37,6 +40,7 @@ import org.junit.Test;
  *
  */
 public class EventDispatcherTest {
+  static final long JOIN_TIMEOUT = 10000L;
 
   enum EventTypes {
     EVENT1, EVENT2, EVENT3
@@ -227,6 +231,112 @@ public class EventDispatcherTest {
 
   }
 
+  /**
+   * Listeners that are added or removed during a dispatch are only added or
+   * removed when the outermost dispatch has finished.
+   */
+  @Test
+  public void modifyDuringDispatch() {
+    final List<Boolean> observed = new ArrayList<>();
+    dispatcher.addListener(new Listener() {
+      @Override
+      public void handleEvent(Event e) {
+        if (dispatcher.containsListener(l1, EVENT1)) {
+          dispatcher.removeListener(l1, EVENT1);
+          dispatcher.addListener(l2, EVENT1, EVENT2);
+          observed.add(dispatcher.containsListener(l1, EVENT1));
+          observed.add(dispatcher.containsListener(l2, EVENT1));
+          observed.add(dispatcher.hasListenerFor(EVENT2));
+          // a nested dispatch does not notify the added listener
+          dispatcher.dispatchEvent(new Event(EVENT2));
+          observed.add(dispatcher.hasListenerFor(EVENT2));
+        }
+      }
+    }, EVENT1);
+    dispatcher.addListener(l1, EVENT1);
+
+    dispatcher.dispatchEvent(new Event(EVENT1));
+    assertThat(observed).containsExactly(true, false, false, false).inOrder();
+    assertEquals(asList(EVENT1), l1.getEventTypeHistory());
+    assertEquals(asList(), l2.getEventTypeHistory());
+    assertFalse(dispatcher.containsListener(l1, EVENT1));
+    assertTrue(dispatcher.containsListener(l2, EVENT1));
+    assertTrue(dispatcher.hasListenerFor(EVENT2));
+
+    dispatcher.safeDispatchEvent(new Event(EVENT1));
+    assertEquals(asList(EVENT1), l1.getEventTypeHistory());
+    assertEquals(asList(EVENT1), l2.getEventTypeHistory());
+  }
+
+  /**
+   * Tests that dispatches via dispatchEvent are serialized.
+   */
+  @Test
+  public void dispatchIsSerialized() throws InterruptedException {
+    final AtomicInteger active = new AtomicInteger();
+    final AtomicInteger maxActive = new AtomicInteger();
+    dispatcher.addListener(new Listener() {
+      @Override
+      public void handleEvent(Event e) {
+        final int n = active.incrementAndGet();
+        if (n > maxActive.get()) {
+          maxActive.set(n);
+        }
+        Thread.yield();
+        active.decrementAndGet();
+      }
+    }, EVENT1);
+    final List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 1000; j++) {
+            dispatcher.dispatchEvent(new Event(EVENT1));
+          }
+        }
+      });
+    }
+    for (final Thread t : threads) {
+      t.start();
+    }
+    for (final Thread t : threads) {
+      t.join();
+    }
+    assertThat(maxActive.get()).isEqualTo(1);
+  }
+
+  /**
+   * Tests that a listener that is notified via safeDispatchEvent can wait for
+   * another thread that dispatches an event via safeDispatchEvent.
+   */
+  @Test
+  public void safeDispatchHoldsNoLock() throws InterruptedException {
+    final AtomicInteger dispatched = new AtomicInteger();
+    dispatcher.addListener(l2, EVENT2);
+    dispatcher.addListener(new Listener() {
+      @Override
+      public void handleEvent(Event e) {
+        final Thread t = new Thread() {
+          @Override
+          public void run() {
+            dispatcher.safeDispatchEvent(new Event(EVENT2));
+            dispatched.incrementAndGet();
+          }
+        };
+        t.start();
+        try {
+          t.join(JOIN_TIMEOUT);
+        } catch (final InterruptedException ex) {
+          throw new IllegalStateException(ex);
+        }
+      }
+    }, EVENT1);
+    dispatcher.safeDispatchEvent(new Event(EVENT1));
+    assertThat(dispatched.get()).isEqualTo(1);
+    assertEquals(asList(EVENT2), l2.getEventTypeHistory());
+  }
+
   @Test
   public void removeFail() {
     final EventDispatcher disp = new EventDispatcher(EventTypes.values());
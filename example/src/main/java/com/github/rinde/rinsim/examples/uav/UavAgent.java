@@ -86,7 +86,7 @@ public final class UavAgent
       || stuckTickCount >= MAX_STUCK_TICK_COUNT) {
       nextDestination();
       stuckTickCount = 0;
-    } else if (mp.distance().getValue().doubleValue() == 0d) {
+    } else if (mp.getDistanceValue() == 0d) {
       stuckTickCount++;
     } else {
       stuckTickCount = 0;
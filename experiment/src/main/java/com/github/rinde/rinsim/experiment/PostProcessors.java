@@ -18,6 +18,8 @@ package com.github.rinde.rinsim.experiment;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.github.rinde.rinsim.core.Simulator;
+import com.github.rinde.rinsim.core.model.comm.CommModel;
+import com.github.rinde.rinsim.core.model.comm.CommTraffic;
 import com.github.rinde.rinsim.experiment.Experiment.SimArgs;
 import com.github.rinde.rinsim.experiment.PostProcessor.FailureStrategy;
 import com.github.rinde.rinsim.pdptw.common.ObjectiveFunction;
@@ -47,6 +49,31 @@ public final class PostProcessors {
     return new StatisticsPostProcessor(objectiveFunction, failureStrategy);
   }
 
+  /**
+   * Creates a {@link PostProcessor} that collects the message traffic of the
+   * {@link CommModel} of a simulation, see {@link CommModel#getTraffic()}.
+   * @return The post-processor.
+   */
+  public static PostProcessor<CommTraffic> commTrafficPostProcessor() {
+    return CommTrafficPostProcessor.INSTANCE;
+  }
+
+  /**
+   * Decorates the specified {@link PostProcessor} such that the message
+   * traffic of the {@link CommModel} of a simulation is collected next to the
+   * results of the decorated post-processor. This allows to collect the
+   * traffic together with, for example, the results of
+   * {@link #statisticsPostProcessor(ObjectiveFunction)}. Failures are handled
+   * by the decorated post-processor.
+   * @param delegate The post-processor to decorate.
+   * @param <T> The type of the results of the decorated post-processor.
+   * @return The decorating post-processor.
+   */
+  public static <T> PostProcessor<TrafficResult<T>> withCommTraffic(
+      PostProcessor<T> delegate) {
+    return new WithCommTrafficPostProcessor<>(delegate);
+  }
+
   static class StatisticsPostProcessor implements PostProcessor<StatisticsDTO> {
     final ObjectiveFunction objectiveFunction;
     final FailureStrategy failureStrategy;
@@ -86,6 +113,55 @@ public final class PostProcessors {
     }
   }
 
+  enum CommTrafficPostProcessor implements PostProcessor<CommTraffic> {
+    INSTANCE {
+      @Override
+      public CommTraffic collectResults(Simulator sim, SimArgs args) {
+        return sim.getModelProvider().getModel(CommModel.class).getTraffic();
+      }
+
+      @Override
+      public FailureStrategy handleFailure(Exception e, Simulator sim,
+          SimArgs args) {
+        return FailureStrategy.ABORT_EXPERIMENT_RUN;
+      }
+
+      @Override
+      public String toString() {
+        return PostProcessors.class.getSimpleName()
+          + ".commTrafficPostProcessor()";
+      }
+    };
+  }
+
+  static class WithCommTrafficPostProcessor<T>
+      implements PostProcessor<TrafficResult<T>> {
+    final PostProcessor<T> delegate;
+
+    WithCommTrafficPostProcessor(PostProcessor<T> deleg) {
+      delegate = deleg;
+    }
+
+    @Override
+    public TrafficResult<T> collectResults(Simulator sim, SimArgs args) {
+      final T result = delegate.collectResults(sim, args);
+      return TrafficResult.create(result,
+        CommTrafficPostProcessor.INSTANCE.collectResults(sim, args));
+    }
+
+    @Override
+    public FailureStrategy handleFailure(Exception e, Simulator sim,
+        SimArgs args) {
+      return delegate.handleFailure(e, sim, args);
+    }
+
+    @Override
+    public String toString() {
+      return PostProcessors.class.getSimpleName() + ".withCommTraffic("
+        + delegate + ")";
+    }
+  }
+
   enum Default implements PostProcessor<Object> {
     INSTANCE {
       @Override
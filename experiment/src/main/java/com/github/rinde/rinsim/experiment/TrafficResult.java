@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.experiment;
+
+import java.io.Serializable;
+
+import com.github.rinde.rinsim.core.model.comm.CommModel;
+import com.github.rinde.rinsim.core.model.comm.CommTraffic;
+import com.google.auto.value.AutoValue;
+
+/**
+ * The result of a simulation together with the message traffic of its
+ * {@link CommModel}, see {@link PostProcessors#withCommTraffic(PostProcessor)}.
+ * @author Rinde van Lon
+ * @param <T> The type of the result.
+ */
+@AutoValue
+public abstract class TrafficResult<T> implements Serializable {
+  private static final long serialVersionUID = 6105739527438125034L;
+
+  TrafficResult() {}
+
+  /**
+   * @return The result of the decorated post-processor.
+   */
+  public abstract T getResult();
+
+  /**
+   * @return The message traffic of the simulation.
+   */
+  public abstract CommTraffic getTraffic();
+
+  static <T> TrafficResult<T> create(T result, CommTraffic traffic) {
+    return new AutoValue_TrafficResult<>(result, traffic);
+  }
+}
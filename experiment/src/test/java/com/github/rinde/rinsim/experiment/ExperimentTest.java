@@ -29,10 +29,13 @@ import com.github.rinde.rinsim.core.model.DependencyProvider;
 import com.github.rinde.rinsim.core.model.Model.AbstractModelVoid;
 import com.github.rinde.rinsim.core.model.ModelBuilder;
 import com.github.rinde.rinsim.core.model.ModelBuilder.AbstractModelBuilder;
+import com.github.rinde.rinsim.core.model.comm.CommModel;
+import com.github.rinde.rinsim.core.model.comm.CommTraffic;
 import com.github.rinde.rinsim.core.model.time.TickListener;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.experiment.Experiment.SimulationResult;
 import com.github.rinde.rinsim.geom.Point;
+import com.github.rinde.rinsim.pdptw.common.AddVehicleEvent;
 import com.github.rinde.rinsim.pdptw.common.ScenarioTestUtil;
 import com.github.rinde.rinsim.pdptw.common.StatsTracker;
 import com.github.rinde.rinsim.scenario.Scenario;
@@ -69,6 +72,33 @@ public class ExperimentTest {
     assertEquals(10, positions.size());
   }
 
+  /**
+   * Tests that the message traffic is collected next to the results of
+   * another post-processor.
+   */
+  @Test
+  public void testWithCommTrafficPostProcessor() {
+    final Scenario scenario = ScenarioTestUtil.createRandomScenario(123L,
+      StatsTracker.builder());
+    final Experiment.Builder builder = Experiment.builder()
+      .addScenario(scenario)
+      .addConfiguration(MASConfiguration.pdptwBuilder()
+        .setName("comm")
+        .addEventHandler(AddVehicleEvent.class,
+          ExperimentTestUtil.randomVehicle())
+        .addModel(CommModel.builder())
+        .build())
+      .usePostProcessor(PostProcessors.withCommTraffic(
+        ExperimentTestUtil.testPostProcessor()))
+      .withRandomSeed(123);
+
+    final ExperimentResults er = builder.perform();
+    final TrafficResult<?> result =
+      (TrafficResult<?>) er.getResults().asList().get(0).getResultObject();
+    assertThat((List<?>) result.getResult()).hasSize(10);
+    assertThat(result.getTraffic()).isEqualTo(CommTraffic.empty());
+  }
+
   /**
    * Tests default processor.
    */
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.geom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Implementation of the
+ * <a href="http://en.wikipedia.org/wiki/A*_search_algorithm">A* algorithm</a>
+ * that uses an indexed binary heap (with decrease-key) as open set and stores
+ * all scores in primitive arrays. The memory that is needed for a search is
+ * kept in a workspace that is reused by all searches that are executed on the
+ * same thread, as a result a search on a warm thread hardly allocates anything
+ * besides the resulting path. This class is thread-safe.
+ * @author Rinde van Lon
+ * @see Graphs#shortestPath(Graph, Point, Point, GeomHeuristic)
+ */
+public final class AStar {
+  private static final ThreadLocal<SearchWorkspace> WORKSPACE =
+    new ThreadLocal<SearchWorkspace>() {
+      @Override
+      protected SearchWorkspace initialValue() {
+        return new SearchWorkspace();
+      }
+    };
+
+  private AStar() {}
+
+  /**
+   * Computes the shortest path from <code>from</code> to <code>to</code> using
+   * the specified {@link GeomHeuristic}. The costs of connections are computed
+   * using {@link GeomHeuristic#calculateCost(Graph, Point, Point)}, the
+   * remaining cost of a path is estimated using
+   * {@link GeomHeuristic#estimateCost(Graph, Point, Point)}. In case there are
+   * multiple shortest paths, the path that is returned is deterministic.
+   * @param graph The {@link Graph} which contains <code>from</code> and
+   *          <code>to</code>.
+   * @param from The start position.
+   * @param to The end position.
+   * @param h The {@link GeomHeuristic} used to guide the search.
+   * @param <E> The type of connection data.
+   * @return The shortest path from <code>from</code> to <code>to</code>, the
+   *         first element of the path is <code>from</code> the last element is
+   *         <code>to</code>.
+   * @throws IllegalArgumentException if <code>from</code> is not a node in the
+   *           graph.
+   * @throws PathNotFoundException if a path does not exist between
+   *           <code>from</code> and <code>to</code>.
+   */
+  public static <E extends ConnectionData> List<Point> shortestPath(
+      Graph<E> graph, @Nullable Point from, Point to, GeomHeuristic h) {
+    if (from == null || !graph.containsNode(from)) {
+      throw new IllegalArgumentException("from should be valid node. " + from);
+    }
+    SearchWorkspace ws = WORKSPACE.get();
+    if (ws.inUse) {
+      // re-entrant call (e.g. from a heuristic), can not share the workspace
+      ws = new SearchWorkspace();
+    }
+    ws.inUse = true;
+    try {
+      if (graph instanceof CompactGraph) {
+        return search(ws, (CompactGraph<?>) graph, from, to, h);
+      }
+      return search(ws, graph, from, to, h);
+    } finally {
+      // releases references to points of the graph
+      ws.reset();
+      ws.inUse = false;
+    }
+  }
+
+  static List<Point> search(SearchWorkspace ws, Graph<?> graph, Point from,
+      Point to, GeomHeuristic h) {
+    final IndexedMinHeap open = ws.heap;
+
+    final int start = ws.add(from);
+    ws.gScore[start] = 0d;
+    ws.hScore[start] = h.estimateCost(graph, from, to);
+    ws.parent[start] = SearchWorkspace.NO_NODE;
+    open.insert(start, ws.hScore[start]);
+
+    while (!open.isEmpty()) {
+      final int current = open.poll();
+      final Point currentPoint = ws.nodes[current];
+      if (currentPoint.equals(to)) {
+        return reconstructPath(ws, current);
+      }
+      ws.closed[current] = true;
+
+      for (final Point outgoingPoint : graph
+        .getOutgoingConnections(currentPoint)) {
+        int next = ws.indexOf(outgoingPoint);
+        if (next != SearchWorkspace.NO_NODE && ws.closed[next]) {
+          continue;
+        }
+        final double tgScore = ws.gScore[current]
+          + h.calculateCost(graph, currentPoint, outgoingPoint);
+
+        if (next == SearchWorkspace.NO_NODE) {
+          next = ws.add(outgoingPoint);
+          ws.hScore[next] = h.estimateCost(graph, outgoingPoint, to);
+          ws.gScore[next] = tgScore;
+          ws.parent[next] = current;
+          open.insert(next, tgScore + ws.hScore[next]);
+        } else if (tgScore < ws.gScore[next]) {
+          ws.gScore[next] = tgScore;
+          ws.parent[next] = current;
+          open.decreaseKey(next, tgScore + ws.hScore[next]);
+        }
+      }
+    }
+    throw notFound(from, to);
+  }
+
+  // same algorithm as above, but the neighbors are traversed using the edge
+  // ids of the graph and the workspace is indexed by node id
+  static List<Point> search(SearchWorkspace ws, CompactGraph<?> graph,
+      Point from, Point to, GeomHeuristic h) {
+    final IndexedMinHeap open = ws.heap;
+    final GeomHeuristic costHeuristic = costHeuristic(h);
+    final double timeSpeed = timeSpeed(costHeuristic);
+    final int toId = graph.indexOf(to);
+    ws.prepareNodeIds(graph.getNumberOfNodes());
+
+    final int start = ws.add(from, graph.indexOf(from));
+    ws.gScore[start] = 0d;
+    ws.hScore[start] = h.estimateCost(graph, from, to);
+    ws.parent[start] = SearchWorkspace.NO_NODE;
+    open.insert(start, ws.hScore[start]);
+
+    while (!open.isEmpty()) {
+      final int current = open.poll();
+      final int currentId = ws.graphIds[current];
+      if (currentId == toId) {
+        return reconstructPath(ws, current);
+      }
+      ws.closed[current] = true;
+
+      final int end = graph.endOutgoingEdge(currentId);
+      for (int e = graph.firstOutgoingEdge(currentId); e < end; e++) {
+        final int outgoingId = graph.edgeTarget(e);
+        int next = ws.indexOfNodeId(outgoingId);
+        if (next != SearchWorkspace.NO_NODE && ws.closed[next]) {
+          continue;
+        }
+        final double tgScore = ws.gScore[current]
+          + edgeCost(graph, e, costHeuristic, timeSpeed);
+
+        if (next == SearchWorkspace.NO_NODE) {
+          final Point outgoingPoint = graph.node(outgoingId);
+          next = ws.add(outgoingPoint, outgoingId);
+          ws.hScore[next] = h.estimateCost(graph, outgoingPoint, to);
+          ws.gScore[next] = tgScore;
+          ws.parent[next] = current;
+          open.insert(next, tgScore + ws.hScore[next]);
+        } else if (tgScore < ws.gScore[next]) {
+          ws.gScore[next] = tgScore;
+          ws.parent[next] = current;
+          open.decreaseKey(next, tgScore + ws.hScore[next]);
+        }
+      }
+    }
+    throw notFound(from, to);
+  }
+
+  // the heuristic that defines the connection costs
+  static GeomHeuristic costHeuristic(GeomHeuristic h) {
+    if (h instanceof LandmarkHeuristic) {
+      return costHeuristic(((LandmarkHeuristic) h).getBaseHeuristic());
+    }
+    return h;
+  }
+
+  // the default speed of a GeomHeuristics.time(..) heuristic, or NaN if the
+  // heuristic is of a different type
+  static double timeSpeed(GeomHeuristic h) {
+    if (h.getClass() == GeomHeuristics.TimeGraphHeuristic.class) {
+      return ((GeomHeuristics.TimeGraphHeuristic) h).getDefaultMaxSpeed();
+    }
+    return Double.NaN;
+  }
+
+  // computes the cost of an edge from the edge arrays of the graph for the
+  // euclidean and time heuristics, other heuristics are asked to compute the
+  // cost via their point based API
+  static double edgeCost(CompactGraph<?> graph, int edge, GeomHeuristic h,
+      double timeSpeed) {
+    if (h == GeomHeuristics.euclidean()) {
+      return graph.edgeLength(edge);
+    }
+    if (!Double.isNaN(timeSpeed)) {
+      final double maxSpeed = graph.edgeMaxSpeed(edge);
+      if (Double.isNaN(maxSpeed)) {
+        return graph.edgeLength(edge) / timeSpeed;
+      }
+      return graph.edgeLength(edge) / maxSpeed;
+    }
+    return h.calculateCost(graph, graph.node(graph.edgeSource(edge)),
+      graph.node(graph.edgeTarget(edge)));
+  }
+
+  static PathNotFoundException notFound(Point from, Point to) {
+    return new PathNotFoundException("Cannot reach " + to + " from " + from);
+  }
+
+  static List<Point> reconstructPath(SearchWorkspace ws, int end) {
+    final List<Point> path = new ArrayList<>();
+    int cur = end;
+    while (cur != SearchWorkspace.NO_NODE) {
+      path.add(ws.nodes[cur]);
+      cur = ws.parent[cur];
+    }
+    Collections.reverse(path);
+    return path;
+  }
+}
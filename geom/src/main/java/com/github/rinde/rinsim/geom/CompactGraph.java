@@ -0,0 +1,638 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.geom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * An immutable graph that stores its adjacency structure in compressed sparse
+ * row (CSR) format. Every node is assigned a dense <code>int</code> id in the
+ * range <code>[0, getNumberOfNodes())</code> and every connection a dense
+ * <code>int</code> edge id in the range
+ * <code>[0, getNumberOfConnections())</code>. The outgoing connections of a
+ * node occupy a contiguous range of edge ids, the targets, lengths and maximum
+ * speeds of the connections are stored in parallel primitive arrays. Compared
+ * to {@link TableGraph} and {@link ImmutableGraph} this representation uses an
+ * order of magnitude less memory per connection and allows routing code to
+ * traverse the graph without hashing points and without allocating, see
+ * {@link #firstOutgoingEdge(int)}, {@link #endOutgoingEdge(int)} and
+ * {@link #edgeTarget(int)}.
+ * <p>
+ * The id of a node is its position in the iteration order of the source
+ * graph's nodes, the outgoing connections of a node keep the iteration order
+ * of the source graph as well. Note that instances can only be truly immutable
+ * if {@link ConnectionData} is immutable (as it should be).
+ * @author Rinde van Lon
+ * @param <E> The type of {@link ConnectionData} that is used.
+ * @see CompactGraph#copyOf(Graph)
+ */
+public final class CompactGraph<E extends ConnectionData>
+    extends AbstractGraph<E> {
+  /**
+   * Value returned by {@link #indexOf(Point)} for points that are not a node
+   * in the graph.
+   */
+  public static final int NO_NODE = -1;
+
+  /**
+   * Value returned by {@link #edgeId(int, int)} for connections that do not
+   * exist in the graph.
+   */
+  public static final int NO_EDGE = -1;
+
+  private final Point[] nodes;
+  // hash table of node ids + 1, 0 indicates an empty slot
+  private final int[] nodeTable;
+
+  // CSR structure of outgoing connections, the connections of node n are
+  // stored at [outOffsets[n], outOffsets[n+1])
+  private final int[] outOffsets;
+  private final int[] edgeSources;
+  private final int[] edgeTargets;
+  private final double[] edgeLengths;
+  private final double[] edgeMaxSpeeds;
+  @Nullable
+  private final Object[] edgeData;
+
+  // CSR structure of incoming connections, contains edge ids
+  private final int[] inOffsets;
+  private final int[] inEdges;
+
+  CompactGraph(Iterable<Point> nodeOrder,
+      Iterable<? extends Connection<? extends E>> connections) {
+    final SearchWorkspace index = new SearchWorkspace();
+    for (final Point p : nodeOrder) {
+      if (index.indexOf(p) == SearchWorkspace.NO_NODE) {
+        index.add(p);
+      }
+    }
+    final List<Connection<? extends E>> conns =
+      ImmutableList.copyOf(connections);
+    for (final Connection<? extends E> conn : conns) {
+      if (index.indexOf(conn.from()) == SearchWorkspace.NO_NODE) {
+        index.add(conn.from());
+      }
+      if (index.indexOf(conn.to()) == SearchWorkspace.NO_NODE) {
+        index.add(conn.to());
+      }
+    }
+    final int numNodes = index.size();
+    final int numEdges = conns.size();
+    nodes = Arrays.copyOf(index.nodes, numNodes);
+    nodeTable = new int[tableSize(numNodes)];
+    for (int i = 0; i < numNodes; i++) {
+      final int mask = nodeTable.length - 1;
+      int slot = SearchWorkspace.mix(nodes[i].hashCode()) & mask;
+      while (nodeTable[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      nodeTable[slot] = i + 1;
+    }
+
+    // counting sort of the connections on their source, this is stable and
+    // therefore preserves the iteration order of the source graph
+    final int[] sources = new int[numEdges];
+    final int[] targets = new int[numEdges];
+    outOffsets = new int[numNodes + 1];
+    inOffsets = new int[numNodes + 1];
+    for (int i = 0; i < numEdges; i++) {
+      final Connection<? extends E> conn = conns.get(i);
+      sources[i] = index.indexOf(conn.from());
+      targets[i] = index.indexOf(conn.to());
+      checkArgument(sources[i] != targets[i],
+        "A connection cannot be circular: %s -> %s ", conn.from(), conn.to());
+      outOffsets[sources[i] + 1]++;
+      inOffsets[targets[i] + 1]++;
+    }
+    for (int i = 0; i < numNodes; i++) {
+      outOffsets[i + 1] += outOffsets[i];
+      inOffsets[i + 1] += inOffsets[i];
+    }
+
+    edgeSources = new int[numEdges];
+    edgeTargets = new int[numEdges];
+    edgeLengths = new double[numEdges];
+    edgeMaxSpeeds = new double[numEdges];
+    final Object[] data = new Object[numEdges];
+    boolean hasData = false;
+    final int[] outFill = Arrays.copyOf(outOffsets, numNodes);
+    for (int i = 0; i < numEdges; i++) {
+      final Connection<? extends E> conn = conns.get(i);
+      final int edge = outFill[sources[i]]++;
+      edgeSources[edge] = sources[i];
+      edgeTargets[edge] = targets[i];
+      edgeLengths[edge] = conn.getLength();
+      edgeMaxSpeeds[edge] = Double.NaN;
+      if (conn.data().isPresent()) {
+        hasData = true;
+        data[edge] = conn.data().get();
+        if (conn.data().get() instanceof MultiAttributeData) {
+          final Optional<Double> speed =
+            ((MultiAttributeData) conn.data().get()).getMaxSpeed();
+          if (speed.isPresent()) {
+            edgeMaxSpeeds[edge] = speed.get();
+          }
+        }
+      }
+    }
+    if (hasData) {
+      edgeData = data;
+    } else {
+      edgeData = null;
+    }
+
+    inEdges = new int[numEdges];
+    final int[] inFill = Arrays.copyOf(inOffsets, numNodes);
+    for (int edge = 0; edge < numEdges; edge++) {
+      inEdges[inFill[edgeTargets[edge]]++] = edge;
+    }
+
+    for (int n = 0; n < numNodes; n++) {
+      for (int e = outOffsets[n]; e < outOffsets[n + 1]; e++) {
+        for (int other = outOffsets[n]; other < e; other++) {
+          checkArgument(edgeTargets[other] != edgeTargets[e],
+            "Connection already exists: %s -> %s ", nodes[n],
+            nodes[edgeTargets[e]]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Looks up the id of a node.
+   * @param node The node.
+   * @return The id of the node or {@link #NO_NODE} if the point is not a node
+   *         in this graph.
+   */
+  public int indexOf(@Nullable Point node) {
+    if (node == null || nodes.length == 0) {
+      return NO_NODE;
+    }
+    final int mask = nodeTable.length - 1;
+    int slot = SearchWorkspace.mix(node.hashCode()) & mask;
+    while (nodeTable[slot] != 0) {
+      final int id = nodeTable[slot] - 1;
+      if (nodes[id].equals(node)) {
+        return id;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return NO_NODE;
+  }
+
+  /**
+   * @param id A node id.
+   * @return The node with the specified id.
+   */
+  public Point node(int id) {
+    return nodes[id];
+  }
+
+  /**
+   * @param node A node id.
+   * @return The first edge id of the outgoing connections of the node.
+   */
+  public int firstOutgoingEdge(int node) {
+    return outOffsets[node];
+  }
+
+  /**
+   * @param node A node id.
+   * @return The edge id that follows the last outgoing connection of the node
+   *         (exclusive end).
+   */
+  public int endOutgoingEdge(int node) {
+    return outOffsets[node + 1];
+  }
+
+  /**
+   * @param node A node id.
+   * @return The number of outgoing connections of the node.
+   */
+  public int outDegree(int node) {
+    return outOffsets[node + 1] - outOffsets[node];
+  }
+
+  /**
+   * @param node A node id.
+   * @return The number of incoming connections of the node.
+   */
+  public int inDegree(int node) {
+    return inOffsets[node + 1] - inOffsets[node];
+  }
+
+  /**
+   * Gives access to the incoming connections of a node. The incoming
+   * connections of <code>node</code> are found by calling this method for all
+   * <code>i</code> in the range <code>[0, inDegree(node))</code>.
+   * @param node A node id.
+   * @param i The index of the incoming connection.
+   * @return The edge id of the incoming connection.
+   */
+  public int incomingEdge(int node, int i) {
+    return inEdges[inOffsets[node] + i];
+  }
+
+  /**
+   * @param edge An edge id.
+   * @return The id of the node where the connection starts.
+   */
+  public int edgeSource(int edge) {
+    return edgeSources[edge];
+  }
+
+  /**
+   * @param edge An edge id.
+   * @return The id of the node where the connection ends.
+   */
+  public int edgeTarget(int edge) {
+    return edgeTargets[edge];
+  }
+
+  /**
+   * @param edge An edge id.
+   * @return The length of the connection, see {@link Connection#getLength()}.
+   */
+  public double edgeLength(int edge) {
+    return edgeLengths[edge];
+  }
+
+  /**
+   * @param edge An edge id.
+   * @return The maximum speed of the connection as defined by
+   *         {@link MultiAttributeData#getMaxSpeed()} or {@link Double#NaN} if
+   *         the connection has no maximum speed.
+   */
+  public double edgeMaxSpeed(int edge) {
+    return edgeMaxSpeeds[edge];
+  }
+
+  /**
+   * Looks up the edge id of the connection between two nodes.
+   * @param from The id of the start node.
+   * @param to The id of the end node.
+   * @return The edge id or {@link #NO_EDGE} if the connection does not exist.
+   */
+  public int edgeId(int from, int to) {
+    for (int e = outOffsets[from]; e < outOffsets[from + 1]; e++) {
+      if (edgeTargets[e] == to) {
+        return e;
+      }
+    }
+    return NO_EDGE;
+  }
+
+  /**
+   * @param edge An edge id.
+   * @return The connection with the specified id.
+   */
+  public Connection<E> edge(int edge) {
+    return Connection.create(nodes[edgeSources[edge]],
+      nodes[edgeTargets[edge]], edgeData(edge));
+  }
+
+  @SuppressWarnings("unchecked")
+  Optional<E> edgeData(int edge) {
+    if (edgeData == null) {
+      return Optional.absent();
+    }
+    return Optional.fromNullable((E) edgeData[edge]);
+  }
+
+  int edgeId(Point from, Point to) {
+    final int fromId = indexOf(from);
+    if (fromId == NO_NODE) {
+      return NO_EDGE;
+    }
+    final int toId = indexOf(to);
+    if (toId == NO_NODE) {
+      return NO_EDGE;
+    }
+    return edgeId(fromId, toId);
+  }
+
+  @Override
+  public boolean containsNode(Point node) {
+    return indexOf(node) != NO_NODE;
+  }
+
+  @Override
+  public List<Point> getOutgoingConnections(Point node) {
+    final int id = indexOf(node);
+    if (id == NO_NODE) {
+      return ImmutableList.of();
+    }
+    return new NodeList(edgeTargets, outOffsets[id], outOffsets[id + 1]);
+  }
+
+  @Override
+  public List<Point> getIncomingConnections(Point node) {
+    final int id = indexOf(node);
+    if (id == NO_NODE) {
+      return ImmutableList.of();
+    }
+    final int[] sources = new int[inDegree(id)];
+    for (int i = 0; i < sources.length; i++) {
+      sources[i] = edgeSources[incomingEdge(id, i)];
+    }
+    return new NodeList(sources, 0, sources.length);
+  }
+
+  @Override
+  public boolean hasConnection(Point from, Point to) {
+    return edgeId(from, to) != NO_EDGE;
+  }
+
+  @Override
+  public <T extends ConnectionData> boolean hasConnection(
+      Connection<T> connection) {
+    final int edge = edgeId(connection.from(), connection.to());
+    return edge != NO_EDGE && edge(edge).equals(connection);
+  }
+
+  @Override
+  public Connection<E> getConnection(Point from, Point to) {
+    final int edge = edgeId(from, to);
+    checkArgument(edge != NO_EDGE, "%s -> %s is not a connection", from, to);
+    return edge(edge);
+  }
+
+  @Override
+  public Optional<E> connectionData(Point from, Point to) {
+    final int edge = edgeId(from, to);
+    if (edge == NO_EDGE) {
+      return Optional.absent();
+    }
+    return edgeData(edge);
+  }
+
+  @Override
+  public double connectionLength(Point from, Point to) {
+    final int edge = edgeId(from, to);
+    checkArgument(edge != NO_EDGE,
+      "Can not get connection length from a non-existing connection.");
+    return edgeLengths[edge];
+  }
+
+  @Override
+  public int getNumberOfConnections() {
+    return edgeTargets.length;
+  }
+
+  @Override
+  public ImmutableSet<Connection<E>> getConnections() {
+    final ImmutableSet.Builder<Connection<E>> builder = ImmutableSet.builder();
+    for (int e = 0; e < edgeTargets.length; e++) {
+      builder.add(edge(e));
+    }
+    return builder.build();
+  }
+
+  @Override
+  public int getNumberOfNodes() {
+    return nodes.length;
+  }
+
+  @Override
+  public Set<Point> getNodes() {
+    return new NodeSet();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return nodes.length == 0;
+  }
+
+  @Override
+  public Point getRandomNode(RandomGenerator generator) {
+    checkState(!isEmpty(), "Can not find a random node in an empty graph.");
+    return nodes[generator.nextInt(nodes.length)];
+  }
+
+  @Override
+  public Connection<E> getRandomConnection(RandomGenerator generator) {
+    checkState(edgeTargets.length > 0,
+      "Can not find a random connection in an empty graph.");
+    return edge(generator.nextInt(edgeTargets.length));
+  }
+
+  /**
+   * @throws UnsupportedOperationException always.
+   * @deprecated Unsupported operation.
+   */
+  @Deprecated
+  @Override
+  public void removeNode(Point node) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @throws UnsupportedOperationException always.
+   * @deprecated Unsupported operation.
+   */
+  @Deprecated
+  @Override
+  public void removeConnection(Point from, Point to) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @throws UnsupportedOperationException always.
+   * @deprecated Unsupported operation.
+   */
+  @Deprecated
+  @Override
+  protected void addConnection(Point from, Point to, Optional<E> connData) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @throws UnsupportedOperationException always.
+   * @deprecated Unsupported operation.
+   */
+  @Deprecated
+  @Override
+  public void merge(Graph<E> other) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @throws UnsupportedOperationException always.
+   * @deprecated Unsupported operation.
+   */
+  @Deprecated
+  @Override
+  public Optional<E> setConnectionData(Point from, Point to, E connData) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @throws UnsupportedOperationException always.
+   * @deprecated Unsupported operation.
+   */
+  @Deprecated
+  @Override
+  public Optional<E> removeConnectionData(Point from, Point to) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @throws UnsupportedOperationException always.
+   * @deprecated Unsupported operation.
+   */
+  @Deprecated
+  @Override
+  protected void doAddConnection(Point from, Point to, Optional<E> connData) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * @throws UnsupportedOperationException always.
+   * @deprecated Unsupported operation.
+   */
+  @Deprecated
+  @Override
+  protected Optional<E> doChangeConnectionData(Point from, Point to,
+      Optional<E> connData) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int hashCode() {
+    return getConnections().hashCode();
+  }
+
+  @Override
+  public boolean equals(@Nullable Object other) {
+    return Graphs.equal(this, other);
+  }
+
+  /**
+   * Creates a compact copy of the specified {@link Graph}. This method
+   * recognizes when the supplied graph is an instance of {@link CompactGraph},
+   * and will avoid making a copy in this case.
+   * @param graph A graph.
+   * @param <E> The type of connection data.
+   * @return A compact copy of the graph.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E extends ConnectionData> CompactGraph<E> copyOf(
+      Graph<? extends E> graph) {
+    if (graph instanceof CompactGraph) {
+      return (CompactGraph<E>) graph;
+    }
+    return new CompactGraph<>(graph.getNodes(), graph.getConnections());
+  }
+
+  /**
+   * Creates a compact graph based on the specified connections. Duplicate
+   * connections are not allowed and will cause this method to fail.
+   * @param connections The connections to use for creating a graph.
+   * @param <E> The type of connection data.
+   * @return A new instance of a compact graph.
+   */
+  public static <E extends ConnectionData> CompactGraph<E> copyOf(
+      Iterable<? extends Connection<? extends E>> connections) {
+    return new CompactGraph<>(ImmutableList.<Point>of(), connections);
+  }
+
+  static int tableSize(int numNodes) {
+    // power of two that keeps the load factor at most 0.5
+    return Integer.highestOneBit(Math.max(1, numNodes) * 2 - 1) * 2;
+  }
+
+  final class NodeList extends AbstractList<Point> {
+    private final int[] ids;
+    private final int start;
+    private final int end;
+
+    NodeList(int[] nodeIds, int from, int to) {
+      ids = nodeIds;
+      start = from;
+      end = to;
+    }
+
+    @Override
+    public Point get(int index) {
+      checkIndex(index);
+      return nodes[ids[start + index]];
+    }
+
+    @Override
+    public int size() {
+      return end - start;
+    }
+
+    void checkIndex(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException(
+          "Index: " + index + ", size: " + size());
+      }
+    }
+  }
+
+  final class NodeSet extends AbstractSet<Point> {
+    NodeSet() {}
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+      return o instanceof Point && indexOf((Point) o) != NO_NODE;
+    }
+
+    @Override
+    public Iterator<Point> iterator() {
+      return new UnmodifiableIterator<Point>() {
+        int index;
+
+        @Override
+        public boolean hasNext() {
+          return index < nodes.length;
+        }
+
+        @Override
+        public Point next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          return nodes[index++];
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return nodes.length;
+    }
+  }
+}
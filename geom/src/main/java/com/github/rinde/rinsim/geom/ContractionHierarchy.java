@@ -0,0 +1,619 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.geom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * A <a href="https://en.wikipedia.org/wiki/Contraction_hierarchies">
+ * contraction hierarchy</a> of a static {@link Graph}. During construction
+ * all nodes are ordered by importance and contracted one by one, shortcut
+ * connections are added between the neighbors of a contracted node whenever
+ * the node is part of the only shortest path between them. Queries are
+ * answered using a bidirectional Dijkstra search that only moves upwards in
+ * the hierarchy, which typically settles only a few hundred nodes even on
+ * large road networks. The shortcuts are unpacked such that the returned path
+ * consists of nodes and connections of the original graph.
+ * <p>
+ * The cost of a connection is defined by the {@link GeomHeuristic} that is
+ * used to construct the hierarchy (see
+ * {@link GeomHeuristic#calculateCost(Graph, Point, Point)}), a hierarchy can
+ * therefore only answer queries for that heuristic. Construction is expensive
+ * and the graph is assumed to not change afterwards, the hierarchy is
+ * immutable and queries are thread-safe.
+ * @author Rinde van Lon
+ */
+public final class ContractionHierarchy {
+  // the middle node of a connection that is not a shortcut
+  static final int NO_MIDDLE = -1;
+  // bounds the work of a single witness search, a witness search that stops
+  // too early only results in a superfluous shortcut
+  static final int WITNESS_SETTLED_LIMIT = 500;
+  // number of ints of a connection on the unpack stack: from, to, middle
+  static final int TRIPLE = 3;
+
+  private static final ThreadLocal<QueryWorkspace> WORKSPACE =
+    new ThreadLocal<QueryWorkspace>() {
+      @Override
+      protected QueryWorkspace initialValue() {
+        return new QueryWorkspace();
+      }
+    };
+
+  private final CompactGraph<?> graph;
+  private final GeomHeuristic heuristic;
+  private final int[] rank;
+  private final int numberOfShortcuts;
+
+  // connections to higher ranked nodes, indexed by source
+  private final int[] upOffsets;
+  private final int[] upTargets;
+  private final double[] upCosts;
+  private final int[] upMiddles;
+
+  // connections from higher ranked nodes, indexed by target
+  private final int[] downOffsets;
+  private final int[] downSources;
+  private final double[] downCosts;
+  private final int[] downMiddles;
+
+  private ContractionHierarchy(CompactGraph<?> g, GeomHeuristic h) {
+    graph = g;
+    heuristic = h;
+    final Contractor contractor = new Contractor(g, h);
+    contractor.contract();
+    rank = contractor.rank;
+    numberOfShortcuts = contractor.shortcuts;
+
+    final int n = g.getNumberOfNodes();
+    upOffsets = new int[n + 1];
+    downOffsets = new int[n + 1];
+    for (int u = 0; u < n; u++) {
+      final EdgeList out = contractor.out[u];
+      for (int i = 0; i < out.size; i++) {
+        final int w = out.nodes[i];
+        if (rank[w] > rank[u]) {
+          upOffsets[u + 1]++;
+        } else {
+          downOffsets[w + 1]++;
+        }
+      }
+    }
+    for (int u = 0; u < n; u++) {
+      upOffsets[u + 1] += upOffsets[u];
+      downOffsets[u + 1] += downOffsets[u];
+    }
+    upTargets = new int[upOffsets[n]];
+    upCosts = new double[upOffsets[n]];
+    upMiddles = new int[upOffsets[n]];
+    downSources = new int[downOffsets[n]];
+    downCosts = new double[downOffsets[n]];
+    downMiddles = new int[downOffsets[n]];
+
+    final int[] upFill = Arrays.copyOf(upOffsets, n);
+    final int[] downFill = Arrays.copyOf(downOffsets, n);
+    for (int u = 0; u < n; u++) {
+      final EdgeList out = contractor.out[u];
+      for (int i = 0; i < out.size; i++) {
+        final int w = out.nodes[i];
+        if (rank[w] > rank[u]) {
+          final int e = upFill[u]++;
+          upTargets[e] = w;
+          upCosts[e] = out.costs[i];
+          upMiddles[e] = out.middles[i];
+        } else {
+          final int e = downFill[w]++;
+          downSources[e] = u;
+          downCosts[e] = out.costs[i];
+          downMiddles[e] = out.middles[i];
+        }
+      }
+    }
+  }
+
+  /**
+   * Constructs the contraction hierarchy of the specified graph. The cost of a
+   * connection is computed using
+   * {@link GeomHeuristic#calculateCost(Graph, Point, Point)} of the specified
+   * heuristic and must be non-negative.
+   * @param graph The graph, it should not be modified afterwards. If the graph
+   *          is not a {@link CompactGraph} a compact copy is made.
+   * @param heuristic The heuristic that defines the cost of connections.
+   * @return A new hierarchy.
+   * @throws IllegalArgumentException if the cost of a connection is negative
+   *           or not a number.
+   */
+  public static ContractionHierarchy create(Graph<?> graph,
+      GeomHeuristic heuristic) {
+    return new ContractionHierarchy(CompactGraph.copyOf(graph), heuristic);
+  }
+
+  /**
+   * @return The graph of this hierarchy.
+   */
+  public Graph<?> getGraph() {
+    return graph;
+  }
+
+  /**
+   * @return The heuristic that defines the cost of connections.
+   */
+  public GeomHeuristic getHeuristic() {
+    return heuristic;
+  }
+
+  /**
+   * @return The number of shortcuts that were added during construction.
+   */
+  public int getNumberOfShortcuts() {
+    return numberOfShortcuts;
+  }
+
+  /**
+   * Computes the shortest path from <code>from</code> to <code>to</code>. The
+   * result has the same cost as the path that is found by
+   * {@link Graphs#shortestPath(Graph, Point, Point, GeomHeuristic)} using the
+   * heuristic of this hierarchy, in case there are multiple shortest paths the
+   * paths may differ.
+   * @param from The start position.
+   * @param to The end position.
+   * @return The shortest path from <code>from</code> to <code>to</code>, the
+   *         first element of the path is <code>from</code> the last element is
+   *         <code>to</code>.
+   * @throws IllegalArgumentException if <code>from</code> is not a node in the
+   *           graph.
+   * @throws PathNotFoundException if a path does not exist between
+   *           <code>from</code> and <code>to</code>.
+   */
+  public List<Point> shortestPath(@Nullable Point from, Point to) {
+    final int source;
+    if (from == null) {
+      source = CompactGraph.NO_NODE;
+    } else {
+      source = graph.indexOf(from);
+    }
+    if (source == CompactGraph.NO_NODE) {
+      throw new IllegalArgumentException("from should be valid node. " + from);
+    }
+    final int target = graph.indexOf(to);
+    if (target == CompactGraph.NO_NODE) {
+      throw AStar.notFound(from, to);
+    }
+    final List<Point> path = new ArrayList<>();
+    path.add(from);
+    if (source == target) {
+      return path;
+    }
+    QueryWorkspace ws = WORKSPACE.get();
+    if (ws.inUse) {
+      ws = new QueryWorkspace();
+    }
+    ws.inUse = true;
+    try {
+      ws.reset(graph.getNumberOfNodes());
+      final int meet = search(ws, source, target);
+      if (meet == CompactGraph.NO_NODE) {
+        throw AStar.notFound(from, to);
+      }
+      unpackPath(ws, meet, path);
+      return path;
+    } finally {
+      ws.inUse = false;
+    }
+  }
+
+  // returns the node with the lowest rank on the shortest path
+  private int search(QueryWorkspace ws, int source, int target) {
+    final IndexedMinHeap fwd = ws.forward.heap;
+    final IndexedMinHeap bwd = ws.backward.heap;
+    ws.forward.reach(source, 0d, CompactGraph.NO_NODE, NO_MIDDLE);
+    fwd.insert(source, 0d);
+    ws.backward.reach(target, 0d, CompactGraph.NO_NODE, NO_MIDDLE);
+    bwd.insert(target, 0d);
+
+    double best = Double.POSITIVE_INFINITY;
+    int meet = CompactGraph.NO_NODE;
+    while (true) {
+      final boolean fwdDone = fwd.isEmpty() || fwd.peekKey() >= best;
+      final boolean bwdDone = bwd.isEmpty() || bwd.peekKey() >= best;
+      if (fwdDone && bwdDone) {
+        return meet;
+      }
+      if (!fwdDone && (bwdDone || fwd.peekKey() <= bwd.peekKey())) {
+        final int u = fwd.poll();
+        final double du = ws.forward.dist(u);
+        final double candidate = du + ws.backward.dist(u);
+        if (candidate < best) {
+          best = candidate;
+          meet = u;
+        }
+        for (int e = upOffsets[u]; e < upOffsets[u + 1]; e++) {
+          ws.forward.relax(upTargets[e], du + upCosts[e], u, upMiddles[e]);
+        }
+      } else {
+        final int u = bwd.poll();
+        final double du = ws.backward.dist(u);
+        final double candidate = du + ws.forward.dist(u);
+        if (candidate < best) {
+          best = candidate;
+          meet = u;
+        }
+        for (int e = downOffsets[u]; e < downOffsets[u + 1]; e++) {
+          ws.backward.relax(downSources[e], du + downCosts[e], u,
+            downMiddles[e]);
+        }
+      }
+    }
+  }
+
+  private void unpackPath(QueryWorkspace ws, int meet, List<Point> path) {
+    // forward half, the parents point towards the source
+    final List<Integer> upward = new ArrayList<>();
+    int cur = meet;
+    while (ws.forward.parent[cur] != CompactGraph.NO_NODE) {
+      upward.add(cur);
+      cur = ws.forward.parent[cur];
+    }
+    Collections.reverse(upward);
+    for (final int node : upward) {
+      final int prev = ws.forward.parent[node];
+      unpack(ws, prev, node, ws.forward.middle[node], path);
+    }
+    // backward half, the parents point towards the target
+    cur = meet;
+    while (ws.backward.parent[cur] != CompactGraph.NO_NODE) {
+      final int next = ws.backward.parent[cur];
+      unpack(ws, cur, next, ws.backward.middle[cur], path);
+      cur = next;
+    }
+  }
+
+  // appends all nodes of the connection (excluding 'from') to the path
+  private void unpack(QueryWorkspace ws, int from, int to, int middle,
+      List<Point> path) {
+    ws.push(from, to, middle);
+    while (ws.stackSize > 0) {
+      ws.stackSize -= TRIPLE;
+      final int a = ws.stack[ws.stackSize];
+      final int b = ws.stack[ws.stackSize + 1];
+      final int m = ws.stack[ws.stackSize + 2];
+      if (m == NO_MIDDLE) {
+        path.add(graph.node(b));
+      } else {
+        // the middle node is lower ranked than both a and b, the second half
+        // is pushed first such that the first half is handled first
+        ws.push(m, b, upMiddle(m, b));
+        ws.push(a, m, downMiddle(m, a));
+      }
+    }
+  }
+
+  private int upMiddle(int from, int to) {
+    for (int e = upOffsets[from]; e < upOffsets[from + 1]; e++) {
+      if (upTargets[e] == to) {
+        return upMiddles[e];
+      }
+    }
+    throw new IllegalStateException();
+  }
+
+  private int downMiddle(int to, int from) {
+    for (int e = downOffsets[to]; e < downOffsets[to + 1]; e++) {
+      if (downSources[e] == from) {
+        return downMiddles[e];
+      }
+    }
+    throw new IllegalStateException();
+  }
+
+  // growable adjacency list that is used during contraction
+  static final class EdgeList {
+    int[] nodes;
+    double[] costs;
+    int[] middles;
+    int size;
+
+    EdgeList() {
+      nodes = new int[2];
+      costs = new double[2];
+      middles = new int[2];
+    }
+
+    void add(int node, double cost, int middle) {
+      if (size == nodes.length) {
+        nodes = Arrays.copyOf(nodes, size * 2);
+        costs = Arrays.copyOf(costs, size * 2);
+        middles = Arrays.copyOf(middles, size * 2);
+      }
+      nodes[size] = node;
+      costs[size] = cost;
+      middles[size] = middle;
+      size++;
+    }
+
+    int indexOf(int node) {
+      for (int i = 0; i < size; i++) {
+        if (nodes[i] == node) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  // Dijkstra state of a single search direction, reset in constant time
+  static final class SearchState {
+    final IndexedMinHeap heap;
+    double[] dist;
+    int[] parent;
+    int[] middle;
+    int[] stamps;
+    int stamp;
+
+    SearchState() {
+      heap = new IndexedMinHeap(0);
+      dist = new double[0];
+      parent = new int[0];
+      middle = new int[0];
+      stamps = new int[0];
+    }
+
+    void reset(int capacity) {
+      heap.clear();
+      heap.ensureCapacity(capacity);
+      if (stamps.length < capacity) {
+        dist = new double[capacity];
+        parent = new int[capacity];
+        middle = new int[capacity];
+        stamps = new int[capacity];
+        stamp = 0;
+      }
+      stamp++;
+      if (stamp == 0) {
+        // overflow, all stamps need to be invalidated
+        Arrays.fill(stamps, 0);
+        stamp = 1;
+      }
+    }
+
+    double dist(int node) {
+      if (stamps[node] == stamp) {
+        return dist[node];
+      }
+      return Double.POSITIVE_INFINITY;
+    }
+
+    void reach(int node, double d, int par, int mid) {
+      stamps[node] = stamp;
+      dist[node] = d;
+      parent[node] = par;
+      middle[node] = mid;
+    }
+
+    void relax(int node, double d, int par, int mid) {
+      if (d < dist(node)) {
+        reach(node, d, par, mid);
+        if (heap.contains(node)) {
+          heap.decreaseKey(node, d);
+        } else {
+          heap.insert(node, d);
+        }
+      }
+    }
+  }
+
+  static final class QueryWorkspace {
+    final SearchState forward;
+    final SearchState backward;
+    int[] stack;
+    int stackSize;
+    boolean inUse;
+
+    QueryWorkspace() {
+      forward = new SearchState();
+      backward = new SearchState();
+      stack = new int[TRIPLE];
+    }
+
+    void reset(int capacity) {
+      forward.reset(capacity);
+      backward.reset(capacity);
+      stackSize = 0;
+    }
+
+    void push(int a, int b, int m) {
+      if (stackSize + TRIPLE > stack.length) {
+        stack = Arrays.copyOf(stack, stack.length * 2);
+      }
+      stack[stackSize] = a;
+      stack[stackSize + 1] = b;
+      stack[stackSize + 2] = m;
+      stackSize += TRIPLE;
+    }
+  }
+
+  // performs the node ordering and the shortcut generation
+  static final class Contractor {
+    final CompactGraph<?> graph;
+    final EdgeList[] out;
+    final EdgeList[] in;
+    final boolean[] contracted;
+    final int[] deletedNeighbors;
+    final int[] rank;
+    final SearchState witness;
+    // shortcuts of the last simulated contraction: (from, to) pairs + costs
+    final EdgeList shortcutSources;
+    final EdgeList shortcutTargets;
+    int shortcuts;
+
+    Contractor(CompactGraph<?> g, GeomHeuristic h) {
+      graph = g;
+      final int n = g.getNumberOfNodes();
+      out = new EdgeList[n];
+      in = new EdgeList[n];
+      for (int i = 0; i < n; i++) {
+        out[i] = new EdgeList();
+        in[i] = new EdgeList();
+      }
+      contracted = new boolean[n];
+      deletedNeighbors = new int[n];
+      rank = new int[n];
+      witness = new SearchState();
+      shortcutSources = new EdgeList();
+      shortcutTargets = new EdgeList();
+
+      for (int e = 0; e < g.getNumberOfConnections(); e++) {
+        final int from = g.edgeSource(e);
+        final int to = g.edgeTarget(e);
+        final double cost = h.calculateCost(g, g.node(from), g.node(to));
+        checkArgument(cost >= 0d,
+          "The cost of a connection must be non-negative, found %s for %s.",
+          cost, g.edge(e));
+        out[from].add(to, cost, NO_MIDDLE);
+        in[to].add(from, cost, NO_MIDDLE);
+      }
+    }
+
+    void contract() {
+      final int n = graph.getNumberOfNodes();
+      final IndexedMinHeap queue = new IndexedMinHeap(n);
+      for (int v = 0; v < n; v++) {
+        queue.insert(v, priority(v));
+      }
+      int nextRank = 0;
+      while (!queue.isEmpty()) {
+        final int v = queue.poll();
+        // lazy update: the priority may have changed since it was inserted
+        final double priority = priority(v);
+        if (!queue.isEmpty() && priority > queue.peekKey()) {
+          queue.insert(v, priority);
+          continue;
+        }
+        for (int i = 0; i < shortcutSources.size; i++) {
+          addShortcut(shortcutSources.nodes[i], shortcutTargets.nodes[i],
+            shortcutSources.costs[i], v);
+        }
+        contracted[v] = true;
+        rank[v] = nextRank++;
+        for (int i = 0; i < out[v].size; i++) {
+          deletedNeighbors[out[v].nodes[i]]++;
+        }
+        for (int i = 0; i < in[v].size; i++) {
+          deletedNeighbors[in[v].nodes[i]]++;
+        }
+      }
+    }
+
+    // simulates the contraction of v, the required shortcuts are stored
+    double priority(int v) {
+      findShortcuts(v);
+      int degree = 0;
+      for (int i = 0; i < out[v].size; i++) {
+        if (!contracted[out[v].nodes[i]]) {
+          degree++;
+        }
+      }
+      for (int i = 0; i < in[v].size; i++) {
+        if (!contracted[in[v].nodes[i]]) {
+          degree++;
+        }
+      }
+      // edge difference
+      return shortcutSources.size - degree + deletedNeighbors[v];
+    }
+
+    void findShortcuts(int v) {
+      shortcutSources.size = 0;
+      shortcutTargets.size = 0;
+      final EdgeList outV = out[v];
+      final EdgeList inV = in[v];
+      for (int i = 0; i < inV.size; i++) {
+        final int u = inV.nodes[i];
+        if (contracted[u]) {
+          continue;
+        }
+        final double costUv = inV.costs[i];
+        double maxCost = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < outV.size; j++) {
+          final int w = outV.nodes[j];
+          if (!contracted[w] && w != u) {
+            maxCost = Math.max(maxCost, costUv + outV.costs[j]);
+          }
+        }
+        if (maxCost == Double.NEGATIVE_INFINITY) {
+          continue;
+        }
+        witnessSearch(u, v, maxCost);
+        for (int j = 0; j < outV.size; j++) {
+          final int w = outV.nodes[j];
+          final double via = costUv + outV.costs[j];
+          if (!contracted[w] && w != u && witness.dist(w) > via) {
+            shortcutSources.add(u, via, NO_MIDDLE);
+            shortcutTargets.add(w, via, NO_MIDDLE);
+          }
+        }
+      }
+    }
+
+    // Dijkstra from source that ignores v and all contracted nodes
+    void witnessSearch(int source, int v, double maxCost) {
+      witness.reset(graph.getNumberOfNodes());
+      final IndexedMinHeap heap = witness.heap;
+      witness.reach(source, 0d, CompactGraph.NO_NODE, NO_MIDDLE);
+      heap.insert(source, 0d);
+      int settled = 0;
+      while (!heap.isEmpty() && heap.peekKey() <= maxCost
+        && settled < WITNESS_SETTLED_LIMIT) {
+        final int u = heap.poll();
+        settled++;
+        final double du = witness.dist(u);
+        final EdgeList outU = out[u];
+        for (int i = 0; i < outU.size; i++) {
+          final int w = outU.nodes[i];
+          if (w != v && !contracted[w]) {
+            witness.relax(w, du + outU.costs[i], u, NO_MIDDLE);
+          }
+        }
+      }
+    }
+
+    void addShortcut(int from, int to, double cost, int middle) {
+      final int index = out[from].indexOf(to);
+      if (index == -1) {
+        out[from].add(to, cost, middle);
+        in[to].add(from, cost, middle);
+        shortcuts++;
+      } else if (cost < out[from].costs[index]) {
+        if (out[from].middles[index] == NO_MIDDLE) {
+          // replaces an original connection
+          shortcuts++;
+        }
+        out[from].costs[index] = cost;
+        out[from].middles[index] = middle;
+        final int reverse = in[to].indexOf(from);
+        in[to].costs[reverse] = cost;
+        in[to].middles[reverse] = middle;
+      }
+    }
+  }
+}
@@ -25,6 +25,7 @@ import javax.measure.quantity.Velocity;
 import javax.measure.unit.SI;
 import javax.measure.unit.Unit;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 
 /**
@@ -61,6 +62,20 @@ public final class GeomHeuristics {
     return new TheoreticalTimeGraphHeuristic(defaultMaxSpeed);
   }
 
+  /**
+   * Creates a heuristic that estimates the remaining cost using precomputed
+   * costs from and to a number of landmarks, see {@link LandmarkHeuristic}.
+   * @param graph The graph for which the costs are precomputed.
+   * @param base The heuristic that defines the costs of connections, e.g.
+   *          {@link #time(double)}.
+   * @param numberOfLandmarks The number of landmarks.
+   * @return A new {@link LandmarkHeuristic}.
+   */
+  public static LandmarkHeuristic landmarks(Graph<?> graph, GeomHeuristic base,
+      int numberOfLandmarks) {
+    return LandmarkHeuristic.create(graph, base, numberOfLandmarks);
+  }
+
   enum StaticHeuristics implements GeomHeuristic {
 
     EUCLIDEAN {
@@ -173,6 +188,10 @@ public final class GeomHeuristics {
       defaultMaxSpeed = defaultMxSpeed;
     }
 
+    double getDefaultMaxSpeed() {
+      return defaultMaxSpeed;
+    }
+
     @Override
     double getSpeed(Graph<?> graph, Point from, Point to) {
       final MultiAttributeData data = getData(graph, from, to);
@@ -185,6 +204,18 @@ public final class GeomHeuristics {
       return defaultMaxSpeed;
     }
 
+    @Override
+    public boolean equals(@Nullable Object other) {
+      return other != null && other.getClass() == getClass()
+        && Double.compare(defaultMaxSpeed,
+          ((TimeGraphHeuristic) other).defaultMaxSpeed) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(getClass(), defaultMaxSpeed);
+    }
+
     @Override
     public String toString() {
       return GeomHeuristics.class.getSimpleName() + ".time(" + defaultMaxSpeed
@@ -212,6 +243,18 @@ public final class GeomHeuristics {
       return defaultMaxSpeed;
     }
 
+    @Override
+    public boolean equals(@Nullable Object other) {
+      return other != null && other.getClass() == getClass()
+        && Double.compare(defaultMaxSpeed,
+          ((TheoreticalTimeGraphHeuristic) other).defaultMaxSpeed) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(getClass(), defaultMaxSpeed);
+    }
+
     @Override
     public String toString() {
       return GeomHeuristics.class.getSimpleName() + ".theoreticalTime("
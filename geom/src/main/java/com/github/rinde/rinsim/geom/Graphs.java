@@ -25,14 +25,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 import javax.annotation.Nullable;
 
@@ -166,7 +160,7 @@ public final class Graphs {
   /**
    * A standard implementation of the
    * <a href="http://en.wikipedia.org/wiki/A*_search_algorithm">A* algorithm</a>
-   * .
+   * . The search is delegated to {@link AStar}.
    * @author Rutger Claes
    * @author Rinde van Lon
    * @param graph The {@link Graph} which contains <code>from</code> and
@@ -182,71 +176,7 @@ public final class Graphs {
    */
   public static <E extends ConnectionData> List<Point> shortestPath(
       Graph<E> graph, final Point from, final Point to, GeomHeuristic h) {
-    if (!graph.containsNode(from)) {
-      throw new IllegalArgumentException("from should be valid node. " + from);
-    }
-
-    // The set of nodes already evaluated.
-    final Set<Point> closedSet = new LinkedHashSet<>();
-
-    // Distance from start along optimal path.
-    final Map<Point, Double> gScore = new LinkedHashMap<>();
-    gScore.put(from, 0d);
-
-    // heuristic estimates
-    final Map<Point, Double> hScore = new LinkedHashMap<>();
-    hScore.put(from, h.estimateCost(graph, from, to));
-
-    // Estimated total distance from start to goal through y
-    final SortedMap<Double, Point> fScore = new TreeMap<>();
-    fScore.put(h.estimateCost(graph, from, to), from);
-
-    // The map of navigated nodes.
-    final Map<Point, Point> cameFrom = new LinkedHashMap<>();
-
-    while (!fScore.isEmpty()) {
-      final Point current = fScore.remove(fScore.firstKey());
-      if (current.equals(to)) {
-        final List<Point> result = new ArrayList<>();
-        result.add(from);
-        result.addAll(Graphs.reconstructPath(cameFrom, to));
-        return result;
-      }
-      closedSet.add(current);
-      for (final Point outgoingPoint : graph.getOutgoingConnections(current)) {
-        if (closedSet.contains(outgoingPoint)) {
-          continue;
-        }
-
-        // tentative_g_score := g_score[x] + dist_between(x,y)
-        final double tgScore = gScore.get(current)
-          + h.calculateCost(graph, current, outgoingPoint);
-        boolean tIsBetter = false;
-
-        if (!fScore.values().contains(outgoingPoint)) {
-          hScore.put(outgoingPoint,
-            h.estimateCost(graph, outgoingPoint, to));
-          tIsBetter = true;
-        } else if (tgScore < gScore.get(outgoingPoint)) {
-          tIsBetter = true;
-        }
-
-        if (tIsBetter) {
-          cameFrom.put(outgoingPoint, current);
-          gScore.put(outgoingPoint, tgScore);
-
-          double fScoreValue = gScore.get(outgoingPoint)
-            + hScore.get(outgoingPoint);
-          while (fScore.containsKey(fScoreValue)) {
-            fScoreValue = Double.longBitsToDouble(Double
-              .doubleToLongBits(fScoreValue) + 1);
-          }
-          fScore.put(fScoreValue, outgoingPoint);
-        }
-      }
-    }
-
-    throw new PathNotFoundException("Cannot reach " + to + " from " + from);
+    return AStar.shortestPath(graph, from, to, h);
   }
 
   /**
@@ -346,17 +276,6 @@ public final class Graphs {
     return ImmutableList.of(new Point(minX, minY), new Point(maxX, maxY));
   }
 
-  static List<Point> reconstructPath(final Map<Point, Point> cameFrom,
-      final Point end) {
-    if (cameFrom.containsKey(end)) {
-      final List<Point> path = reconstructPath(cameFrom, cameFrom.get(end));
-      path.add(end);
-      return path;
-    }
-
-    return new LinkedList<>();
-  }
-
   // Equals is not consistent with compareTo!
   private static final class ObjectWithDistance<T> implements
       Comparable<ObjectWithDistance<T>> {
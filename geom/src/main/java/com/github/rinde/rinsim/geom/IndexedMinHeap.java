@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.geom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of <code>int</code> elements with <code>double</code> keys
+ * that supports decrease-key in logarithmic time. Elements are dense ids in
+ * the range <code>[0, capacity)</code>, the position of each element in the
+ * heap is tracked in a parallel array such that membership tests are constant
+ * time. Ties between equal keys are broken in FIFO order of the last insert or
+ * decrease-key operation, which makes searches built on this heap
+ * deterministic.
+ * @author Rinde van Lon
+ */
+final class IndexedMinHeap {
+  private static final int ABSENT = -1;
+  // messages are constants to avoid boxing on the hot path
+  private static final String NOT_IN_HEAP = "Element is not in the heap.";
+
+  // heap index -> element
+  private int[] heap;
+  // element -> heap index, or ABSENT
+  private int[] position;
+  // element -> key
+  private double[] keys;
+  // element -> insertion order, used for breaking ties
+  private long[] order;
+  private int size;
+  private long counter;
+
+  /**
+   * Create a new empty heap.
+   * @param capacity The initial number of element ids that can be stored.
+   */
+  IndexedMinHeap(int capacity) {
+    heap = new int[capacity];
+    position = new int[capacity];
+    keys = new double[capacity];
+    order = new long[capacity];
+    Arrays.fill(position, ABSENT);
+  }
+
+  /**
+   * Makes sure that element ids in the range <code>[0, capacity)</code> can be
+   * stored in this heap.
+   * @param capacity The minimum capacity.
+   */
+  void ensureCapacity(int capacity) {
+    final int oldCapacity = position.length;
+    if (capacity > oldCapacity) {
+      final int newCapacity = Math.max(capacity, oldCapacity * 2);
+      heap = Arrays.copyOf(heap, newCapacity);
+      position = Arrays.copyOf(position, newCapacity);
+      keys = Arrays.copyOf(keys, newCapacity);
+      order = Arrays.copyOf(order, newCapacity);
+      Arrays.fill(position, oldCapacity, newCapacity, ABSENT);
+    }
+  }
+
+  /**
+   * Removes all elements, the cost is proportional to the current size.
+   */
+  void clear() {
+    for (int i = 0; i < size; i++) {
+      position[heap[i]] = ABSENT;
+    }
+    size = 0;
+    counter = 0;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean contains(int element) {
+    return position[element] != ABSENT;
+  }
+
+  /**
+   * @param element An element that is in the heap.
+   * @return The key of the element.
+   */
+  double key(int element) {
+    checkArgument(contains(element), NOT_IN_HEAP);
+    return keys[element];
+  }
+
+  /**
+   * Adds the element to the heap.
+   * @param element An element that is not yet in the heap.
+   * @param key The key of the element.
+   */
+  void insert(int element, double key) {
+    checkArgument(!contains(element), "Element is already in the heap.");
+    keys[element] = key;
+    order[element] = counter++;
+    heap[size] = element;
+    position[element] = size;
+    size++;
+    siftUp(position[element]);
+  }
+
+  /**
+   * Lowers the key of an element in the heap.
+   * @param element An element that is in the heap.
+   * @param key The new key, must not be greater than the current key.
+   */
+  void decreaseKey(int element, double key) {
+    checkArgument(contains(element), NOT_IN_HEAP);
+    checkArgument(key <= keys[element],
+      "The new key must not be greater than the current key.");
+    keys[element] = key;
+    order[element] = counter++;
+    siftUp(position[element]);
+  }
+
+  /**
+   * @return The element with the smallest key.
+   * @throws IllegalStateException if the heap is empty.
+   */
+  int peek() {
+    checkState(!isEmpty(), "The heap is empty.");
+    return heap[0];
+  }
+
+  /**
+   * @return The smallest key in the heap.
+   * @throws IllegalStateException if the heap is empty.
+   */
+  double peekKey() {
+    return keys[peek()];
+  }
+
+  /**
+   * Removes the element with the smallest key.
+   * @return The removed element.
+   * @throws IllegalStateException if the heap is empty.
+   */
+  int poll() {
+    final int top = peek();
+    size--;
+    position[top] = ABSENT;
+    if (size > 0) {
+      final int last = heap[size];
+      heap[0] = last;
+      position[last] = 0;
+      siftDown(0);
+    }
+    return top;
+  }
+
+  private boolean less(int e1, int e2) {
+    return keys[e1] < keys[e2] || keys[e1] == keys[e2] && order[e1] < order[e2];
+  }
+
+  private void siftUp(int index) {
+    final int element = heap[index];
+    int i = index;
+    while (i > 0) {
+      final int parentIndex = (i - 1) >>> 1;
+      final int parent = heap[parentIndex];
+      if (!less(element, parent)) {
+        break;
+      }
+      heap[i] = parent;
+      position[parent] = i;
+      i = parentIndex;
+    }
+    heap[i] = element;
+    position[element] = i;
+  }
+
+  private void siftDown(int index) {
+    final int element = heap[index];
+    int i = index;
+    final int half = size >>> 1;
+    while (i < half) {
+      int child = 2 * i + 1;
+      final int right = child + 1;
+      if (right < size && less(heap[right], heap[child])) {
+        child = right;
+      }
+      if (!less(heap[child], element)) {
+        break;
+      }
+      heap[i] = heap[child];
+      position[heap[i]] = i;
+      i = child;
+    }
+    heap[i] = element;
+    position[element] = i;
+  }
+}
@@ -0,0 +1,480 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.geom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.measure.Measure;
+import javax.measure.quantity.Duration;
+import javax.measure.quantity.Length;
+import javax.measure.quantity.Velocity;
+import javax.measure.unit.Unit;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * A {@link GeomHeuristic} that estimates the remaining cost using landmarks
+ * and the triangle inequality (also known as ALT: A*, landmarks and triangle
+ * inequality). For a small number of landmarks the exact cost from each
+ * landmark to all nodes and from all nodes to each landmark is precomputed, for
+ * any landmark <code>L</code> the cost of the shortest path from
+ * <code>s</code> to <code>t</code> is at least
+ * <code>d(L, t) - d(L, s)</code> and at least <code>d(s, L) - d(t, L)</code>.
+ * The resulting estimate is admissible and typically much tighter than a
+ * straight line estimate, especially on networks with varying speed limits.
+ * <p>
+ * The costs of connections and travel times are defined by a base heuristic
+ * (e.g. {@link GeomHeuristics#time(double)}), all calls to
+ * {@link #calculateCost(Graph, Point, Point)} and
+ * {@link #calculateTravelTime(Graph, Point, Point, Unit, Measure, Unit)} are
+ * delegated to it. The precomputed costs are only valid for the graph that was
+ * used to construct this heuristic, this graph should not be modified
+ * afterwards. Precomputation is done in parallel, the costs can be stored and
+ * reloaded using {@link #writeTo(OutputStream)} and
+ * {@link #readFrom(InputStream, Graph, GeomHeuristic)}, see also
+ * {@link com.github.rinde.rinsim.geom.io.DotGraphIO}. Instances are immutable
+ * and thread-safe if the base heuristic is.
+ * @author Rinde van Lon
+ */
+public final class LandmarkHeuristic implements GeomHeuristic {
+  // "ALT" followed by the format version
+  private static final int MAGIC = 0x414C5402;
+  private static final double TWO_PI = 2 * Math.PI;
+
+  private final CompactGraph<?> graph;
+  private final GeomHeuristic base;
+  private final int[] landmarks;
+  // node major: [node * landmarks.length + landmark]
+  private final double[] fromLandmark;
+  private final double[] toLandmark;
+
+  private LandmarkHeuristic(CompactGraph<?> g, GeomHeuristic h, int[] lms,
+      double[] from, double[] to) {
+    graph = g;
+    base = h;
+    landmarks = lms;
+    fromLandmark = from;
+    toLandmark = to;
+  }
+
+  /**
+   * Constructs a new landmark heuristic. The landmarks are chosen such that
+   * they are spread around the border of the graph, this is where landmarks
+   * are most effective. The cost from and to each landmark is computed in
+   * parallel.
+   * @param graph The graph, it should not be modified afterwards. If the graph
+   *          is not a {@link CompactGraph} a compact copy is made.
+   * @param base The heuristic that defines the costs of connections, its
+   *          {@link GeomHeuristic#calculateCost(Graph, Point, Point)} must be
+   *          non-negative.
+   * @param numberOfLandmarks The number of landmarks to use, must be positive.
+   *          If the graph has less nodes, all nodes are used as landmark.
+   * @return A new instance.
+   */
+  public static LandmarkHeuristic create(Graph<?> graph, GeomHeuristic base,
+      int numberOfLandmarks) {
+    checkArgument(numberOfLandmarks > 0,
+      "The number of landmarks must be positive, found %s.",
+      numberOfLandmarks);
+    checkArgument(!graph.isEmpty(), "The graph must not be empty.");
+    final CompactGraph<?> g = CompactGraph.copyOf(graph);
+    final int[] lms = selectLandmarks(g,
+      Math.min(numberOfLandmarks, g.getNumberOfNodes()));
+    final int n = g.getNumberOfNodes();
+    final int k = lms.length;
+
+    // the costs are computed once, such that the base heuristic is never
+    // accessed concurrently
+    final double[] costs = computeCosts(g, base);
+
+    final double[] from = new double[n * k];
+    final double[] to = new double[n * k];
+    final List<Callable<Void>> tasks = new ArrayList<>();
+    for (int l = 0; l < k; l++) {
+      tasks.add(new DijkstraTask(g, costs, lms[l], l, k, true, from));
+      tasks.add(new DijkstraTask(g, costs, lms[l], l, k, false, to));
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(
+      Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+    try {
+      for (final Future<Void> f : executor.invokeAll(tasks)) {
+        f.get();
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (final ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return new LandmarkHeuristic(g, base, lms, from, to);
+  }
+
+  /**
+   * Reads a landmark heuristic that was written using
+   * {@link #writeTo(OutputStream)}. The stream is not closed.
+   * @param in The stream to read from.
+   * @param graph The graph, it must contain the same nodes and connections as
+   *          the graph of the heuristic that was written.
+   * @param base The base heuristic, its {@link Object#toString()} must be
+   *          equal to the base heuristic of the heuristic that was written and
+   *          it must compute the same connection costs. The costs are verified
+   *          using a hash of all connections and their costs.
+   * @return A new instance.
+   * @throws IOException if reading from the stream fails, e.g. because the
+   *           stream is truncated.
+   * @throws IllegalArgumentException if the stream does not contain a landmark
+   *           heuristic or if it does not match the graph or base heuristic.
+   */
+  public static LandmarkHeuristic readFrom(InputStream in, Graph<?> graph,
+      GeomHeuristic base) throws IOException {
+    final DataInputStream data =
+      new DataInputStream(new BufferedInputStream(in));
+    checkArgument(data.readInt() == MAGIC,
+      "The stream does not contain landmarks.");
+    final String heuristic = data.readUTF();
+    checkArgument(heuristic.equals(base.toString()),
+      "The landmarks were computed for %s, not for %s.", heuristic, base);
+
+    final CompactGraph<?> g = CompactGraph.copyOf(graph);
+    final int n = data.readInt();
+    final int k = data.readInt();
+    checkArgument(n == g.getNumberOfNodes(),
+      "The landmarks were computed for a graph with %s nodes, found %s.", n,
+      g.getNumberOfNodes());
+    checkArgument(k > 0 && k <= n, "Invalid number of landmarks: %s.", k);
+    // maps the node ids of the stream to node ids of the graph
+    final int[] ids = new int[n];
+    final boolean[] seen = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      final Point p = new Point(data.readDouble(), data.readDouble());
+      ids[i] = g.indexOf(p);
+      checkArgument(ids[i] != CompactGraph.NO_NODE && !seen[ids[i]],
+        "The landmarks were computed for a graph with node %s.", p);
+      seen[ids[i]] = true;
+    }
+    final int m = data.readInt();
+    final long hash = data.readLong();
+    checkArgument(m == g.getNumberOfConnections()
+      && hash == connectionHash(g, computeCosts(g, base)),
+      "The landmarks were computed for a graph with different connections or "
+        + "connection costs.");
+    final int[] lms = new int[k];
+    for (int l = 0; l < k; l++) {
+      final int lm = data.readInt();
+      checkArgument(lm >= 0 && lm < n, "Invalid landmark: %s.", lm);
+      lms[l] = ids[lm];
+    }
+    final double[] from = new double[n * k];
+    final double[] to = new double[n * k];
+    readCosts(data, ids, k, from);
+    readCosts(data, ids, k, to);
+    return new LandmarkHeuristic(g, base, lms, from, to);
+  }
+
+  /**
+   * Writes the precomputed costs of this heuristic to the specified stream,
+   * the stream is flushed but not closed.
+   * @param out The stream to write to.
+   * @throws IOException if writing to the stream fails.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    final DataOutputStream data =
+      new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MAGIC);
+    data.writeUTF(base.toString());
+    final int n = graph.getNumberOfNodes();
+    data.writeInt(n);
+    data.writeInt(landmarks.length);
+    for (int i = 0; i < n; i++) {
+      data.writeDouble(graph.node(i).x);
+      data.writeDouble(graph.node(i).y);
+    }
+    data.writeInt(graph.getNumberOfConnections());
+    data.writeLong(connectionHash(graph, computeCosts(graph, base)));
+    for (final int lm : landmarks) {
+      data.writeInt(lm);
+    }
+    for (final double d : fromLandmark) {
+      data.writeDouble(d);
+    }
+    for (final double d : toLandmark) {
+      data.writeDouble(d);
+    }
+    data.flush();
+  }
+
+  /**
+   * @return The graph for which the costs are precomputed.
+   */
+  public Graph<?> getGraph() {
+    return graph;
+  }
+
+  /**
+   * @return The heuristic that defines the costs of connections.
+   */
+  public GeomHeuristic getBaseHeuristic() {
+    return base;
+  }
+
+  /**
+   * @return The landmarks.
+   */
+  public ImmutableList<Point> getLandmarks() {
+    final ImmutableList.Builder<Point> builder = ImmutableList.builder();
+    for (final int lm : landmarks) {
+      builder.add(graph.node(lm));
+    }
+    return builder.build();
+  }
+
+  /**
+   * {@inheritDoc} The estimate is computed using the precomputed costs, the
+   * specified graph is ignored. The estimate is <code>0</code> for points that
+   * are not a node of the graph of this heuristic.
+   */
+  @Override
+  public double estimateCost(Graph<?> g, Point from, Point to) {
+    final int s = graph.indexOf(from);
+    final int t = graph.indexOf(to);
+    if (s == CompactGraph.NO_NODE || t == CompactGraph.NO_NODE) {
+      return 0d;
+    }
+    final int k = landmarks.length;
+    final int sOffset = s * k;
+    final int tOffset = t * k;
+    double estimate = 0d;
+    for (int l = 0; l < k; l++) {
+      // infinite costs (unreachable) provide no information, the comparisons
+      // below are false for NaN
+      final double forward = fromLandmark[tOffset + l]
+        - fromLandmark[sOffset + l];
+      if (forward > estimate && !Double.isInfinite(forward)) {
+        estimate = forward;
+      }
+      final double backward = toLandmark[sOffset + l]
+        - toLandmark[tOffset + l];
+      if (backward > estimate && !Double.isInfinite(backward)) {
+        estimate = backward;
+      }
+    }
+    return estimate;
+  }
+
+  @Override
+  public double calculateCost(Graph<?> g, Point from, Point to) {
+    return base.calculateCost(g, from, to);
+  }
+
+  @Override
+  public double calculateTravelTime(Graph<?> g, Point from, Point to,
+      Unit<Length> distanceUnit, Measure<Double, Velocity> speed,
+      Unit<Duration> outputTimeUnit) {
+    return base.calculateTravelTime(g, from, to, distanceUnit, speed,
+      outputTimeUnit);
+  }
+
+  @Override
+  public String toString() {
+    return LandmarkHeuristic.class.getSimpleName() + "{base=" + base
+      + ", landmarks=" + landmarks.length + "}";
+  }
+
+  static double[] computeCosts(CompactGraph<?> g, GeomHeuristic base) {
+    final double[] costs = new double[g.getNumberOfConnections()];
+    for (int e = 0; e < costs.length; e++) {
+      costs[e] = base.calculateCost(g, g.node(g.edgeSource(e)),
+        g.node(g.edgeTarget(e)));
+      checkArgument(costs[e] >= 0d,
+        "The cost of a connection must be non-negative, found %s for %s.",
+        costs[e], g.edge(e));
+    }
+    return costs;
+  }
+
+  // a hash of all connections and their costs that does not depend on the
+  // order of the node ids, the hashes of the connections are summed
+  static long connectionHash(CompactGraph<?> g, double[] costs) {
+    final HashFunction function = Hashing.murmur3_128();
+    long hash = 0L;
+    for (int e = 0; e < costs.length; e++) {
+      final Point from = g.node(g.edgeSource(e));
+      final Point to = g.node(g.edgeTarget(e));
+      hash += function.newHasher()
+        .putDouble(from.x)
+        .putDouble(from.y)
+        .putDouble(to.x)
+        .putDouble(to.y)
+        .putDouble(costs[e])
+        .hash()
+        .asLong();
+    }
+    return hash;
+  }
+
+  static void readCosts(DataInputStream data, int[] ids, int k,
+      double[] costs) throws IOException {
+    for (int i = 0; i < ids.length; i++) {
+      for (int l = 0; l < k; l++) {
+        costs[ids[i] * k + l] = data.readDouble();
+      }
+    }
+  }
+
+  // divides the plane around the center of the graph in k sectors and selects
+  // the node that is furthest away from the center in each sector
+  static int[] selectLandmarks(CompactGraph<?> graph, int k) {
+    final int n = graph.getNumberOfNodes();
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < n; i++) {
+      final Point p = graph.node(i);
+      minX = Math.min(minX, p.x);
+      minY = Math.min(minY, p.y);
+      maxX = Math.max(maxX, p.x);
+      maxY = Math.max(maxY, p.y);
+    }
+    final Point center = new Point((minX + maxX) / 2d, (minY + maxY) / 2d);
+
+    final int[] best = new int[k];
+    final double[] bestDist = new double[k];
+    Arrays.fill(best, CompactGraph.NO_NODE);
+    Arrays.fill(bestDist, -1d);
+    for (int i = 0; i < n; i++) {
+      final Point p = graph.node(i);
+      final double angle = Math.atan2(p.y - center.y, p.x - center.x);
+      final int sector =
+        Math.min(k - 1, (int) ((angle + Math.PI) / TWO_PI * k));
+      final double dist = Point.distance(center, p);
+      if (dist > bestDist[sector]) {
+        bestDist[sector] = dist;
+        best[sector] = i;
+      }
+    }
+
+    // empty sectors are filled with the remaining nodes that are furthest
+    // away from the center
+    final boolean[] selected = new boolean[n];
+    for (final int lm : best) {
+      if (lm != CompactGraph.NO_NODE) {
+        selected[lm] = true;
+      }
+    }
+    for (int l = 0; l < k; l++) {
+      if (best[l] == CompactGraph.NO_NODE) {
+        int furthest = CompactGraph.NO_NODE;
+        double furthestDist = -1d;
+        for (int i = 0; i < n; i++) {
+          final double dist = Point.distance(center, graph.node(i));
+          if (!selected[i] && dist > furthestDist) {
+            furthestDist = dist;
+            furthest = i;
+          }
+        }
+        best[l] = furthest;
+        selected[furthest] = true;
+      }
+    }
+    return best;
+  }
+
+  // computes the cost from (forward) or to (backward) a landmark
+  static final class DijkstraTask implements Callable<Void> {
+    final CompactGraph<?> graph;
+    final double[] costs;
+    final int landmark;
+    final int landmarkIndex;
+    final int numberOfLandmarks;
+    final boolean forward;
+    final double[] result;
+
+    DijkstraTask(CompactGraph<?> g, double[] c, int lm, int index, int k,
+        boolean fwd, double[] res) {
+      graph = g;
+      costs = c;
+      landmark = lm;
+      landmarkIndex = index;
+      numberOfLandmarks = k;
+      forward = fwd;
+      result = res;
+    }
+
+    @Override
+    public Void call() {
+      final int n = graph.getNumberOfNodes();
+      final double[] dist = new double[n];
+      Arrays.fill(dist, Double.POSITIVE_INFINITY);
+      final IndexedMinHeap heap = new IndexedMinHeap(n);
+      dist[landmark] = 0d;
+      heap.insert(landmark, 0d);
+      while (!heap.isEmpty()) {
+        final int u = heap.poll();
+        if (forward) {
+          final int end = graph.endOutgoingEdge(u);
+          for (int e = graph.firstOutgoingEdge(u); e < end; e++) {
+            relax(heap, dist, graph.edgeTarget(e), dist[u] + costs[e]);
+          }
+        } else {
+          final int degree = graph.inDegree(u);
+          for (int i = 0; i < degree; i++) {
+            final int e = graph.incomingEdge(u, i);
+            relax(heap, dist, graph.edgeSource(e), dist[u] + costs[e]);
+          }
+        }
+      }
+      for (int v = 0; v < n; v++) {
+        result[v * numberOfLandmarks + landmarkIndex] = dist[v];
+      }
+      return null;
+    }
+
+    static void relax(IndexedMinHeap heap, double[] dist, int node,
+        double d) {
+      if (d < dist[node]) {
+        if (heap.contains(node)) {
+          heap.decreaseKey(node, d);
+        } else {
+          heap.insert(node, d);
+        }
+        dist[node] = d;
+      }
+    }
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.geom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.measure.Measure;
+import javax.measure.quantity.Duration;
+import javax.measure.quantity.Length;
+import javax.measure.quantity.Velocity;
+import javax.measure.unit.Unit;
+
+/**
+ * Computes many-to-many travel time matrices on a {@link Graph} using one
+ * Dijkstra search per origin. Each search stops as soon as all destinations
+ * are settled. The searches of different origins are independent and are
+ * executed in parallel on a {@link ForkJoinPool}. The shortest paths are
+ * determined using {@link GeomHeuristic#calculateCost(Graph, Point, Point)}
+ * while the values in the matrix are the sum of
+ * {@link GeomHeuristic#calculateTravelTime(Graph, Point, Point, Unit, Measure, Unit)}
+ * over the connections of these paths, this is consistent with the travel
+ * times of the paths that are computed using {@link AStar}. This class is
+ * thread-safe.
+ * @author Rinde van Lon
+ */
+public final class ManyToManyDijkstra {
+  private static final ForkJoinPool DEFAULT_POOL = new ForkJoinPool();
+  // rows are split in more tasks than threads to balance the load
+  private static final int TASKS_PER_THREAD = 4;
+
+  private ManyToManyDijkstra() {}
+
+  /**
+   * Computes the travel times between all origins and destinations using a
+   * shared {@link ForkJoinPool} with a parallelism equal to the number of
+   * available processors.
+   * @param graph The graph that contains all origins and destinations.
+   * @param origins The origins, these are the rows of the matrix.
+   * @param destinations The destinations, these are the columns of the
+   *          matrix.
+   * @param heuristic The heuristic that defines the cost and travel time of
+   *          connections.
+   * @param distanceUnit The distance unit of the graph.
+   * @param speed The speed of the traveling object.
+   * @param timeUnit The time unit of the resulting travel times.
+   * @return A matrix with <code>origins.size()</code> rows and
+   *         <code>destinations.size()</code> columns.
+   * @throws IllegalArgumentException if any of the origins or destinations is
+   *           not a node in the graph.
+   * @throws PathNotFoundException if a destination can not be reached from
+   *           an origin.
+   */
+  public static double[][] travelTimes(Graph<?> graph, List<Point> origins,
+      List<Point> destinations, GeomHeuristic heuristic,
+      Unit<Length> distanceUnit, Measure<Double, Velocity> speed,
+      Unit<Duration> timeUnit) {
+    return travelTimes(graph, origins, destinations, heuristic, distanceUnit,
+      speed, timeUnit, DEFAULT_POOL);
+  }
+
+  /**
+   * Computes the travel times between all origins and destinations using the
+   * specified {@link ForkJoinPool}.
+   * @param graph The graph that contains all origins and destinations.
+   * @param origins The origins, these are the rows of the matrix.
+   * @param destinations The destinations, these are the columns of the
+   *          matrix.
+   * @param heuristic The heuristic that defines the cost and travel time of
+   *          connections.
+   * @param distanceUnit The distance unit of the graph.
+   * @param speed The speed of the traveling object.
+   * @param timeUnit The time unit of the resulting travel times.
+   * @param pool The pool in which the searches are executed.
+   * @return A matrix with <code>origins.size()</code> rows and
+   *         <code>destinations.size()</code> columns.
+   * @throws IllegalArgumentException if any of the origins or destinations is
+   *           not a node in the graph.
+   * @throws PathNotFoundException if a destination can not be reached from
+   *           an origin.
+   */
+  public static double[][] travelTimes(Graph<?> graph, List<Point> origins,
+      List<Point> destinations, GeomHeuristic heuristic,
+      Unit<Length> distanceUnit, Measure<Double, Velocity> speed,
+      Unit<Duration> timeUnit, ForkJoinPool pool) {
+    final CompactGraph<?> g;
+    if (graph instanceof CompactGraph) {
+      g = (CompactGraph<?>) graph;
+    } else {
+      g = CompactGraph.copyOf(graph);
+    }
+    final int[] from = ids(g, origins);
+    final int[] to = ids(g, destinations);
+    final boolean[] isTarget = new boolean[g.getNumberOfNodes()];
+    int numTargets = 0;
+    for (final int t : to) {
+      if (!isTarget[t]) {
+        isTarget[t] = true;
+        numTargets++;
+      }
+    }
+
+    // heuristics are not required to be thread-safe, therefore all
+    // connection values are computed before the searches start
+    final int numEdges = g.getNumberOfConnections();
+    final double[] costs = new double[numEdges];
+    final double[] times = new double[numEdges];
+    for (int e = 0; e < numEdges; e++) {
+      final Point p1 = g.node(g.edgeSource(e));
+      final Point p2 = g.node(g.edgeTarget(e));
+      costs[e] = heuristic.calculateCost(g, p1, p2);
+      times[e] = heuristic.calculateTravelTime(g, p1, p2, distanceUnit, speed,
+        timeUnit);
+    }
+
+    final double[][] result = new double[from.length][to.length];
+    if (from.length > 0 && to.length > 0) {
+      final Matrix m =
+        new Matrix(g, costs, times, from, to, isTarget, numTargets, result);
+      final int threshold = Math.max(1,
+        from.length / (pool.getParallelism() * TASKS_PER_THREAD));
+      pool.invoke(new RowsTask(m, 0, from.length, threshold));
+    }
+    return result;
+  }
+
+  static int[] ids(CompactGraph<?> graph, List<Point> points) {
+    final int[] ids = new int[points.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = graph.indexOf(points.get(i));
+      checkArgument(ids[i] != CompactGraph.NO_NODE,
+        "%s is not a node in the graph.", points.get(i));
+    }
+    return ids;
+  }
+
+  // the read-only input of the searches and the matrix that is written to,
+  // each row is written by exactly one task
+  static final class Matrix {
+    final CompactGraph<?> graph;
+    final double[] costs;
+    final double[] times;
+    final int[] origins;
+    final int[] destinations;
+    final boolean[] isTarget;
+    final int numTargets;
+    final double[][] result;
+
+    Matrix(CompactGraph<?> g, double[] c, double[] t, int[] o, int[] d,
+        boolean[] targets, int num, double[][] res) {
+      graph = g;
+      costs = c;
+      times = t;
+      origins = o;
+      destinations = d;
+      isTarget = targets;
+      numTargets = num;
+      result = res;
+    }
+  }
+
+  static final class RowsTask extends RecursiveAction {
+    private static final long serialVersionUID = -3305431390219925553L;
+    final transient Matrix matrix;
+    final int begin;
+    final int end;
+    final int threshold;
+
+    RowsTask(Matrix m, int b, int e, int t) {
+      matrix = m;
+      begin = b;
+      end = e;
+      threshold = t;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - begin <= threshold) {
+        final Search search = new Search(matrix);
+        for (int i = begin; i < end; i++) {
+          search.row(i);
+        }
+      } else {
+        final int middle = (begin + end) / 2;
+        invokeAll(new RowsTask(matrix, begin, middle, threshold),
+          new RowsTask(matrix, middle, end, threshold));
+      }
+    }
+  }
+
+  // memory of a single search, it is reused for all rows of a task
+  static final class Search {
+    final Matrix matrix;
+    final double[] dist;
+    final double[] time;
+    final int[] stamp;
+    final IndexedMinHeap heap;
+    int current;
+
+    Search(Matrix m) {
+      matrix = m;
+      final int n = m.graph.getNumberOfNodes();
+      dist = new double[n];
+      time = new double[n];
+      stamp = new int[n];
+      heap = new IndexedMinHeap(n);
+    }
+
+    void row(int i) {
+      current++;
+      heap.clear();
+      final CompactGraph<?> g = matrix.graph;
+      final int origin = matrix.origins[i];
+      reach(origin, 0d, 0d);
+      int remaining = matrix.numTargets;
+      while (!heap.isEmpty() && remaining > 0) {
+        final int u = heap.poll();
+        if (matrix.isTarget[u]) {
+          remaining--;
+        }
+        final int end = g.endOutgoingEdge(u);
+        for (int e = g.firstOutgoingEdge(u); e < end; e++) {
+          final int v = g.edgeTarget(e);
+          final double d = dist[u] + matrix.costs[e];
+          if (stamp[v] != current) {
+            reach(v, d, time[u] + matrix.times[e]);
+          } else if (d < dist[v] && heap.contains(v)) {
+            dist[v] = d;
+            time[v] = time[u] + matrix.times[e];
+            heap.decreaseKey(v, d);
+          }
+        }
+      }
+      final double[] row = matrix.result[i];
+      for (int j = 0; j < row.length; j++) {
+        final int target = matrix.destinations[j];
+        if (stamp[target] != current) {
+          throw AStar.notFound(g.node(origin), g.node(target));
+        }
+        row[j] = time[target];
+      }
+    }
+
+    void reach(int node, double d, double t) {
+      stamp[node] = current;
+      dist[node] = d;
+      time[node] = t;
+      heap.insert(node, d);
+    }
+  }
+}
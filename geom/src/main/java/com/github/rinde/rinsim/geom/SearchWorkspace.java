@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.geom;
+
+import java.util.Arrays;
+
+/**
+ * Reusable scratch memory for graph searches. Nodes that are encountered
+ * during a search are assigned dense local ids, all per-node state (scores,
+ * parents, closed flags) is stored in primitive arrays indexed by these ids.
+ * The {@link Point} to id mapping is an open addressing hash table that is
+ * invalidated in constant time using a stamp, this makes {@link #reset()}
+ * cheap even after a search that visited a large part of a graph. Searches on
+ * a {@link CompactGraph} bypass the hash table, they map the node ids of the
+ * graph directly to local ids using stamped arrays. Instances
+ * are not thread-safe, they are meant to be confined to a single thread.
+ * @author Rinde van Lon
+ */
+final class SearchWorkspace {
+  static final int NO_NODE = -1;
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int HASH_MULTIPLIER = 0x9E3779B9;
+  private static final int HALF_INT_BITS = 16;
+
+  final IndexedMinHeap heap;
+  Point[] nodes;
+  double[] gScore;
+  double[] hScore;
+  int[] parent;
+  // ids of the nodes in the searched graph, only used for CompactGraph
+  int[] graphIds;
+  boolean[] closed;
+  boolean inUse;
+
+  private int size;
+  private Point[] table;
+  private int[] tableIds;
+  private int[] tableStamps;
+  private int stamp;
+  // local ids by node id of the searched CompactGraph
+  private int[] nodeIdSlots;
+  private int[] nodeIdStamps;
+  private int nodeIdStamp;
+
+  SearchWorkspace() {
+    heap = new IndexedMinHeap(INITIAL_CAPACITY);
+    nodes = new Point[INITIAL_CAPACITY];
+    gScore = new double[INITIAL_CAPACITY];
+    hScore = new double[INITIAL_CAPACITY];
+    parent = new int[INITIAL_CAPACITY];
+    graphIds = new int[INITIAL_CAPACITY];
+    closed = new boolean[INITIAL_CAPACITY];
+    table = new Point[2 * INITIAL_CAPACITY];
+    tableIds = new int[2 * INITIAL_CAPACITY];
+    tableStamps = new int[2 * INITIAL_CAPACITY];
+    stamp = 1;
+    nodeIdSlots = new int[0];
+    nodeIdStamps = new int[0];
+    nodeIdStamp = 1;
+  }
+
+  /**
+   * Forgets all nodes of the previous search.
+   */
+  void reset() {
+    heap.clear();
+    Arrays.fill(nodes, 0, size, null);
+    Arrays.fill(closed, 0, size, false);
+    size = 0;
+    stamp++;
+    if (stamp == 0) {
+      // stamp overflow, all stale entries must be erased explicitly
+      Arrays.fill(tableStamps, 0);
+      stamp = 1;
+    }
+    nodeIdStamp++;
+    if (nodeIdStamp == 0) {
+      Arrays.fill(nodeIdStamps, 0);
+      nodeIdStamp = 1;
+    }
+  }
+
+  /**
+   * Prepares the workspace for a search that uses node ids, see
+   * {@link #indexOfNodeId(int)} and {@link #add(Point, int)}.
+   * @param numNodes The number of nodes of the graph that is searched.
+   */
+  void prepareNodeIds(int numNodes) {
+    if (nodeIdSlots.length < numNodes) {
+      nodeIdSlots = new int[numNodes];
+      nodeIdStamps = new int[numNodes];
+      nodeIdStamp = 1;
+    }
+  }
+
+  /**
+   * @param nodeId The id of a node in the searched graph.
+   * @return The local id of the node or {@link #NO_NODE} if the node has not
+   *         been assigned a local id.
+   */
+  int indexOfNodeId(int nodeId) {
+    if (nodeIdStamps[nodeId] == nodeIdStamp) {
+      return nodeIdSlots[nodeId];
+    }
+    return NO_NODE;
+  }
+
+  /**
+   * Assigns a new id to the specified node of the searched graph, the node
+   * must not yet have an id. Unlike {@link #add(Point)} the point is not
+   * added to the hash table.
+   * @param p The point of the node.
+   * @param nodeId The id of the node in the searched graph.
+   * @return The new id.
+   */
+  int add(Point p, int nodeId) {
+    if (size == nodes.length) {
+      grow();
+    }
+    final int id = size++;
+    nodes[id] = p;
+    graphIds[id] = nodeId;
+    nodeIdSlots[nodeId] = id;
+    nodeIdStamps[nodeId] = nodeIdStamp;
+    return id;
+  }
+
+  /**
+   * @return The number of nodes that have been assigned an id.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @param p The point to look up.
+   * @return The id of the point or {@link #NO_NODE} if the point has not been
+   *         assigned an id.
+   */
+  int indexOf(Point p) {
+    final int mask = table.length - 1;
+    int slot = mix(p.hashCode()) & mask;
+    while (tableStamps[slot] == stamp) {
+      if (table[slot].equals(p)) {
+        return tableIds[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return NO_NODE;
+  }
+
+  /**
+   * Assigns a new id to the specified point, the point must not yet have an
+   * id.
+   * @param p The point to add.
+   * @return The new id.
+   */
+  int add(Point p) {
+    if (size == nodes.length) {
+      grow();
+    }
+    final int id = size++;
+    nodes[id] = p;
+    insertInTable(p, id);
+    return id;
+  }
+
+  private void insertInTable(Point p, int id) {
+    final int mask = table.length - 1;
+    int slot = mix(p.hashCode()) & mask;
+    while (tableStamps[slot] == stamp) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = p;
+    tableIds[slot] = id;
+    tableStamps[slot] = stamp;
+  }
+
+  private void grow() {
+    final int newCapacity = nodes.length * 2;
+    nodes = Arrays.copyOf(nodes, newCapacity);
+    gScore = Arrays.copyOf(gScore, newCapacity);
+    hScore = Arrays.copyOf(hScore, newCapacity);
+    parent = Arrays.copyOf(parent, newCapacity);
+    graphIds = Arrays.copyOf(graphIds, newCapacity);
+    closed = Arrays.copyOf(closed, newCapacity);
+    heap.ensureCapacity(newCapacity);
+
+    // the table is kept at a load factor of at most 0.5
+    table = new Point[2 * newCapacity];
+    tableIds = new int[2 * newCapacity];
+    tableStamps = new int[2 * newCapacity];
+    stamp = 1;
+    for (int i = 0; i < size; i++) {
+      insertInTable(nodes[i], i);
+    }
+  }
+
+  // spreads the bits of the hash code, Point hash codes of grid based graphs
+  // tend to be clustered
+  static int mix(int hash) {
+    final int h = hash * HASH_MULTIPLIER;
+    return h ^ h >>> HALF_INT_BITS;
+  }
+}
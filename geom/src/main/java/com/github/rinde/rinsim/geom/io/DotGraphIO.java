@@ -20,8 +20,11 @@ import static com.google.common.base.Preconditions.checkArgument;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -31,7 +34,9 @@ import java.util.Map.Entry;
 
 import com.github.rinde.rinsim.geom.Connection;
 import com.github.rinde.rinsim.geom.ConnectionData;
+import com.github.rinde.rinsim.geom.GeomHeuristic;
 import com.github.rinde.rinsim.geom.Graph;
+import com.github.rinde.rinsim.geom.LandmarkHeuristic;
 import com.github.rinde.rinsim.geom.LengthData;
 import com.github.rinde.rinsim.geom.MultiAttributeData;
 import com.github.rinde.rinsim.geom.MultiAttributeData.Builder;
@@ -73,6 +78,7 @@ public class DotGraphIO<E extends ConnectionData> extends
   static final String QUOTE = "\"";
   static final String SPACE = " ";
   static final String R_BRACE = ")";
+  static final String LANDMARKS_EXTENSION = ".landmarks";
 
   static final Splitter KEY_VAL_SPLITTER = Splitter.on(KEY_VAL_SEPARATOR)
     .trimResults();
@@ -262,6 +268,88 @@ public class DotGraphIO<E extends ConnectionData> extends
     return new DotGraphIO<>(MultiAttributeDataIO.INSTANCE, filter);
   }
 
+  /**
+   * Returns the path of the file that contains the landmarks of the graph at
+   * the specified path. The landmarks file is stored next to the graph file,
+   * its name is the name of the graph file followed by
+   * <code>.landmarks</code>.
+   * @param graphPath The path of the graph file.
+   * @return The path of the landmarks file.
+   */
+  public static Path getLandmarksPath(Path graphPath) {
+    return graphPath
+      .resolveSibling(graphPath.getFileName() + LANDMARKS_EXTENSION);
+  }
+
+  /**
+   * Writes the precomputed costs of the specified {@link LandmarkHeuristic}
+   * next to the graph file, see {@link #getLandmarksPath(Path)}.
+   * @param heuristic The heuristic to write.
+   * @param graphPath The path of the graph file.
+   * @throws IOException if writing fails.
+   */
+  public static void writeLandmarks(LandmarkHeuristic heuristic,
+      Path graphPath) throws IOException {
+    try (OutputStream out =
+      Files.newOutputStream(getLandmarksPath(graphPath))) {
+      heuristic.writeTo(out);
+    }
+  }
+
+  /**
+   * Reads a {@link LandmarkHeuristic} that was written next to the graph file
+   * using {@link #writeLandmarks(LandmarkHeuristic, Path)}.
+   * @param graphPath The path of the graph file.
+   * @param graph The graph as read from the graph file.
+   * @param base The base heuristic of the landmark heuristic.
+   * @return The landmark heuristic.
+   * @throws IOException if reading fails.
+   * @throws IllegalArgumentException if the landmarks do not match the graph
+   *           or base heuristic.
+   */
+  public static LandmarkHeuristic readLandmarks(Path graphPath,
+      Graph<?> graph, GeomHeuristic base) throws IOException {
+    try (InputStream in = Files.newInputStream(getLandmarksPath(graphPath))) {
+      return LandmarkHeuristic.readFrom(in, graph, base);
+    }
+  }
+
+  /**
+   * Obtains a {@link LandmarkHeuristic} for the graph at the specified path.
+   * If landmarks for the graph and base heuristic are stored next to the
+   * graph file they are reloaded. If they are missing, do not match the graph
+   * or base heuristic or can not be read, they are computed using
+   * {@link LandmarkHeuristic#create(Graph, GeomHeuristic, int)} and written
+   * next to the graph file for later use.
+   * @param graphPath The path of the graph file.
+   * @param graph The graph as read from the graph file.
+   * @param base The base heuristic of the landmark heuristic.
+   * @param numberOfLandmarks The number of landmarks.
+   * @return The landmark heuristic.
+   * @throws IOException if reading or writing fails.
+   */
+  public static LandmarkHeuristic getLandmarkHeuristic(Path graphPath,
+      Graph<?> graph, GeomHeuristic base, int numberOfLandmarks)
+      throws IOException {
+    if (Files.exists(getLandmarksPath(graphPath))) {
+      try {
+        final LandmarkHeuristic heuristic =
+          readLandmarks(graphPath, graph, base);
+        if (heuristic.getLandmarks().size() == Math.min(numberOfLandmarks,
+          graph.getNumberOfNodes())) {
+          return heuristic;
+        }
+      } catch (final IOException | RuntimeException e) {
+        // the stored landmarks are outdated or corrupt, they are recomputed
+        // below
+      }
+    }
+    final LandmarkHeuristic heuristic =
+      LandmarkHeuristic.create(graph, base, numberOfLandmarks);
+    writeLandmarks(heuristic, graphPath);
+    return heuristic;
+  }
+
   static Map<String, String> parseDataAsMap(String line) {
     final List<String> parts = LIST_SPLITTER.trimResults().splitToList(line);
     final Map<String, String> map = new LinkedHashMap<>();
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.geom;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.measure.Measure;
+import javax.measure.quantity.Duration;
+import javax.measure.quantity.Length;
+import javax.measure.quantity.Velocity;
+import javax.measure.unit.Unit;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests for {@link AStar}.
+ * @author Rinde van Lon
+ */
+public class AStarTest {
+  static final double DELTA = 0.0001;
+
+  /**
+   * Tests that the cost of a path found by A* equals the cost found by a naive
+   * Dijkstra implementation on random graphs.
+   */
+  @Test
+  public void compareWithDijkstra() {
+    final RandomGenerator rng = new MersenneTwister(123L);
+    for (int i = 0; i < 10; i++) {
+      final Graph<LengthData> graph = randomGraph(rng, 200, 600);
+      for (int j = 0; j < 20; j++) {
+        final Point from = graph.getRandomNode(rng);
+        final Point to = graph.getRandomNode(rng);
+        final double expected = dijkstra(graph, from, to);
+        if (Double.isInfinite(expected)) {
+          try {
+            AStar.shortestPath(graph, from, to, GeomHeuristics.euclidean());
+            fail();
+          } catch (final PathNotFoundException e) {
+            assertThat(e.getMessage()).contains("Cannot reach");
+          }
+        } else {
+          final List<Point> path =
+            AStar.shortestPath(graph, from, to, GeomHeuristics.euclidean());
+          assertThat(path.get(0)).isEqualTo(from);
+          assertThat(path.get(path.size() - 1)).isEqualTo(to);
+          assertEquals(expected, cost(graph, path), DELTA);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that a node that is first reached via an expensive connection is
+   * updated (decrease-key) when a cheaper route is found.
+   */
+  @Test
+  public void decreaseKey() {
+    final Graph<LengthData> graph = new TableGraph<>();
+    final Point a = new Point(0, 0);
+    final Point b = new Point(1, 0);
+    final Point c = new Point(2, 0);
+    final Point d = new Point(1, 1);
+    graph.addConnection(a, b, LengthData.create(10));
+    graph.addConnection(b, c, LengthData.create(1));
+    graph.addConnection(a, d, LengthData.create(1.5));
+    graph.addConnection(d, b, LengthData.create(1.5));
+
+    assertThat(AStar.shortestPath(graph, a, c, GeomHeuristics.euclidean()))
+      .containsExactly(a, d, b, c).inOrder();
+  }
+
+  /**
+   * Path to itself.
+   */
+  @Test
+  public void sameStartAndEnd() {
+    final Graph<LengthData> graph = new TableGraph<>();
+    final Point a = new Point(0, 0);
+    final Point b = new Point(1, 0);
+    Graphs.addBiPath(graph, a, b);
+    assertThat(AStar.shortestPath(graph, a, a, GeomHeuristics.euclidean()))
+      .containsExactly(a);
+  }
+
+  /**
+   * The start point must be part of the graph.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidStart() {
+    final Graph<LengthData> graph = new TableGraph<>();
+    Graphs.addBiPath(graph, new Point(0, 0), new Point(1, 0));
+    AStar.shortestPath(graph, new Point(5, 5), new Point(0, 0),
+      GeomHeuristics.euclidean());
+  }
+
+  /**
+   * Tests that a heuristic that performs a search itself does not corrupt the
+   * state of the outer search.
+   */
+  @Test
+  public void reentrantSearch() {
+    final Graph<LengthData> graph = new TableGraph<>();
+    final Point a = new Point(0, 0);
+    final Point b = new Point(1, 0);
+    final Point c = new Point(2, 0);
+    final Point d = new Point(3, 0);
+    Graphs.addBiPath(graph, a, b, c, d);
+
+    final GeomHeuristic euclidean = GeomHeuristics.euclidean();
+    final GeomHeuristic nested = new GeomHeuristic() {
+      @Override
+      public double estimateCost(Graph<?> g, Point from, Point to) {
+        return euclidean.estimateCost(g, from, to);
+      }
+
+      @Override
+      public double calculateCost(Graph<?> g, Point from, Point to) {
+        final List<Point> p =
+          AStar.shortestPath(graph, to, from, GeomHeuristics.euclidean());
+        return Graphs.pathLength(p);
+      }
+
+      @Override
+      public double calculateTravelTime(Graph<?> g, Point from, Point to,
+          Unit<Length> distanceUnit, Measure<Double, Velocity> speed,
+          Unit<Duration> outputTimeUnit) {
+        throw new UnsupportedOperationException();
+      }
+    };
+    assertThat(AStar.shortestPath(graph, a, d, nested))
+      .containsExactly(a, b, c, d).inOrder();
+    assertThat(AStar.shortestPath(graph, d, a, euclidean))
+      .containsExactly(d, c, b, a).inOrder();
+  }
+
+  static Graph<LengthData> randomGraph(RandomGenerator rng, int nodes,
+      int connections) {
+    final ImmutableList.Builder<Point> builder = ImmutableList.builder();
+    for (int i = 0; i < nodes; i++) {
+      builder.add(new Point(rng.nextInt(1000), rng.nextInt(1000)));
+    }
+    final List<Point> points = builder.build();
+    final Graph<LengthData> graph = new TableGraph<>();
+    while (graph.getNumberOfConnections() < connections) {
+      final Point from = points.get(rng.nextInt(points.size()));
+      final Point to = points.get(rng.nextInt(points.size()));
+      if (!from.equals(to) && !graph.hasConnection(from, to)) {
+        // lengths are never shorter than the euclidean distance to keep the
+        // heuristic admissible
+        graph.addConnection(from, to, LengthData.create(
+          Point.distance(from, to) * (1 + rng.nextDouble())));
+      }
+    }
+    return graph;
+  }
+
+  static double cost(Graph<?> graph, List<Point> path) {
+    double sum = 0d;
+    for (int i = 1; i < path.size(); i++) {
+      sum += graph.connectionLength(path.get(i - 1), path.get(i));
+    }
+    return sum;
+  }
+
+  static double dijkstra(Graph<?> graph, Point from, Point to) {
+    final Map<Point, Double> dist = new HashMap<>();
+    final Set<Point> done = new HashSet<>();
+    dist.put(from, 0d);
+    while (true) {
+      Point best = null;
+      for (final Map.Entry<Point, Double> entry : dist.entrySet()) {
+        if (!done.contains(entry.getKey()) && (best == null
+          || entry.getValue() < dist.get(best))) {
+          best = entry.getKey();
+        }
+      }
+      if (best == null) {
+        return Double.POSITIVE_INFINITY;
+      }
+      if (best.equals(to)) {
+        return dist.get(best);
+      }
+      done.add(best);
+      for (final Point next : graph.getOutgoingConnections(best)) {
+        final double d = dist.get(best) + graph.connectionLength(best, next);
+        if (!dist.containsKey(next) || d < dist.get(next)) {
+          dist.put(next, d);
+        }
+      }
+    }
+  }
+}
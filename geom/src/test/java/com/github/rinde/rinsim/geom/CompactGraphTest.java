@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.geom;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests for {@link CompactGraph}.
+ * @author Rinde van Lon
+ */
+public class CompactGraphTest {
+  static final double DELTA = 0.0001;
+  static final Point A = new Point(0, 0);
+  static final Point B = new Point(10, 0);
+  static final Point C = new Point(10, 10);
+  static final Point D = new Point(0, 10);
+
+  Graph<MultiAttributeData> source;
+  CompactGraph<MultiAttributeData> graph;
+
+  /**
+   * Creates a small graph with connection data.
+   */
+  @Before
+  public void setUp() {
+    source = new TableGraph<>();
+    source.addConnection(A, B,
+      MultiAttributeData.builder().setLength(12).setMaxSpeed(3).build());
+    source.addConnection(B, C,
+      MultiAttributeData.builder().setLength(10).build());
+    source.addConnection(C, D,
+      MultiAttributeData.builder().setMaxSpeed(5).build());
+    source.addConnection(D, A,
+      MultiAttributeData.builder().setLength(10).build());
+    source.addConnection(B, A,
+      MultiAttributeData.builder().setLength(10).build());
+    graph = CompactGraph.copyOf(source);
+  }
+
+  /**
+   * The copy should be equal to the source graph.
+   */
+  @Test
+  public void testCopyOf() {
+    assertThat(graph).isEqualTo(source);
+    assertThat(source).isEqualTo(graph);
+    assertThat(graph.getNodes()).isEqualTo(source.getNodes());
+    assertThat(graph.getConnections()).isEqualTo(source.getConnections());
+    assertThat(graph.getNumberOfNodes()).isEqualTo(4);
+    assertThat(graph.getNumberOfConnections()).isEqualTo(5);
+    assertThat(graph.isEmpty()).isFalse();
+    assertThat(CompactGraph.copyOf(graph)).isSameAs(graph);
+    assertThat(CompactGraph.copyOf(source.getConnections()))
+      .isEqualTo(graph);
+    assertThat(graph.hashCode())
+      .isEqualTo(CompactGraph.copyOf(source).hashCode());
+
+    for (final Point p : source.getNodes()) {
+      assertThat(graph.containsNode(p)).isTrue();
+      assertThat(graph.getOutgoingConnections(p))
+        .containsExactlyElementsIn(source.getOutgoingConnections(p))
+        .inOrder();
+      assertThat(graph.getIncomingConnections(p))
+        .containsExactlyElementsIn(source.getIncomingConnections(p));
+    }
+    for (final Connection<MultiAttributeData> conn : source.getConnections()) {
+      assertThat(graph.hasConnection(conn)).isTrue();
+      assertThat(graph.hasConnection(conn.from(), conn.to())).isTrue();
+      assertThat(graph.getConnection(conn.from(), conn.to())).isEqualTo(conn);
+      assertThat(graph.connectionData(conn.from(), conn.to()))
+        .isEqualTo(conn.data());
+      assertEquals(source.connectionLength(conn.from(), conn.to()),
+        graph.connectionLength(conn.from(), conn.to()), DELTA);
+    }
+    assertThat(graph.containsNode(new Point(5, 5))).isFalse();
+    assertThat(graph.hasConnection(A, C)).isFalse();
+    assertThat(graph.connectionData(A, C).isPresent()).isFalse();
+    assertThat(graph.getOutgoingConnections(new Point(5, 5))).isEmpty();
+  }
+
+  /**
+   * Tests the id based adjacency API.
+   */
+  @Test
+  public void testIdBasedAccess() {
+    final int a = graph.indexOf(A);
+    final int b = graph.indexOf(B);
+    final int c = graph.indexOf(C);
+    assertThat(graph.indexOf(new Point(5, 5))).isEqualTo(CompactGraph.NO_NODE);
+    assertThat(graph.node(a)).isEqualTo(A);
+
+    assertThat(graph.outDegree(b)).isEqualTo(2);
+    assertThat(graph.inDegree(a)).isEqualTo(2);
+    final int ab = graph.edgeId(a, b);
+    assertThat(ab).isAtLeast(graph.firstOutgoingEdge(a));
+    assertThat(ab).isLessThan(graph.endOutgoingEdge(a));
+    assertThat(graph.edgeSource(ab)).isEqualTo(a);
+    assertThat(graph.edgeTarget(ab)).isEqualTo(b);
+    assertEquals(12d, graph.edgeLength(ab), DELTA);
+    assertEquals(3d, graph.edgeMaxSpeed(ab), DELTA);
+    assertThat(graph.edge(ab)).isEqualTo(source.getConnection(A, B));
+    assertThat(Double.isNaN(graph.edgeMaxSpeed(graph.edgeId(b, c)))).isTrue();
+    assertThat(graph.edgeId(a, c)).isEqualTo(CompactGraph.NO_EDGE);
+
+    for (int i = 0; i < graph.inDegree(a); i++) {
+      assertThat(graph.edgeTarget(graph.incomingEdge(a, i))).isEqualTo(a);
+    }
+  }
+
+  /**
+   * Connections without data have the Euclidean length.
+   */
+  @Test
+  public void testNoData() {
+    final Graph<LengthData> g = new TableGraph<>();
+    Graphs.addBiPath(g, A, B, C);
+    final CompactGraph<LengthData> compact = CompactGraph.copyOf(g);
+    assertThat(compact).isEqualTo(g);
+    assertEquals(10d, compact.connectionLength(B, C), DELTA);
+    assertThat(compact.connectionData(B, C).isPresent()).isFalse();
+  }
+
+  /**
+   * Shortest paths should have the same cost as on the source graph.
+   */
+  @Test
+  public void testShortestPath() {
+    final RandomGenerator rng = new MersenneTwister(456L);
+    final Graph<LengthData> g = AStarTest.randomGraph(rng, 300, 900);
+    final CompactGraph<LengthData> compact = CompactGraph.copyOf(g);
+    for (int i = 0; i < 50; i++) {
+      final Point from = g.getRandomNode(rng);
+      final Point to = g.getRandomNode(rng);
+      final double expected = AStarTest.dijkstra(g, from, to);
+      if (!Double.isInfinite(expected)) {
+        final List<Point> path = Graphs.shortestPath(compact, from, to,
+          GeomHeuristics.euclidean());
+        assertEquals(expected, AStarTest.cost(compact, path), DELTA);
+        assertThat(path)
+          .isEqualTo(Graphs.shortestPath(g, from, to,
+            GeomHeuristics.euclidean()));
+      }
+    }
+  }
+
+  /**
+   * Shortest paths using travel time costs should be equal to the paths on the
+   * source graph, the costs are computed from the edge arrays.
+   */
+  @Test
+  public void testShortestPathTime() {
+    final RandomGenerator rng = new MersenneTwister(789L);
+    final Graph<LengthData> lengths = AStarTest.randomGraph(rng, 300, 900);
+    final Graph<MultiAttributeData> g = new TableGraph<>();
+    for (final Connection<LengthData> conn : lengths.getConnections()) {
+      final MultiAttributeData.Builder data = MultiAttributeData.builder()
+        .setLength(conn.getLength());
+      if (rng.nextBoolean()) {
+        data.setMaxSpeed(1 + rng.nextInt(10));
+      }
+      g.addConnection(conn.from(), conn.to(), data.build());
+    }
+    final CompactGraph<MultiAttributeData> compact = CompactGraph.copyOf(g);
+    final GeomHeuristic time = GeomHeuristics.time(5d);
+    for (int i = 0; i < 50; i++) {
+      final Point from = g.getRandomNode(rng);
+      final Point to = g.getRandomNode(rng);
+      if (!Double.isInfinite(AStarTest.dijkstra(g, from, to))) {
+        assertThat(Graphs.shortestPath(compact, from, to, time))
+          .isEqualTo(Graphs.shortestPath(g, from, to, time));
+      }
+    }
+  }
+
+  /**
+   * Random nodes and connections.
+   */
+  @Test
+  public void testRandom() {
+    final RandomGenerator rng = new MersenneTwister(123L);
+    for (int i = 0; i < 10; i++) {
+      assertThat(graph.containsNode(graph.getRandomNode(rng))).isTrue();
+      assertThat(graph.hasConnection(graph.getRandomConnection(rng)))
+        .isTrue();
+    }
+  }
+
+  /**
+   * Duplicate connections are not allowed.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateConnection() {
+    final Connection<LengthData> conn = Connection.create(A, B);
+    CompactGraph.copyOf(ImmutableList.of(conn, conn));
+  }
+
+  /**
+   * The graph is immutable.
+   */
+  @SuppressWarnings("deprecation")
+  @Test(expected = UnsupportedOperationException.class)
+  public void testUnmodifiable() {
+    graph.addConnection(A, C);
+  }
+}
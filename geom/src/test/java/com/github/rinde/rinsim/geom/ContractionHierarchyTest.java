@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.geom;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ContractionHierarchy}.
+ * @author Rinde van Lon
+ */
+public class ContractionHierarchyTest {
+  static final double DELTA = 0.0001;
+
+  /**
+   * The paths found using the hierarchy should have the same length as the
+   * paths found by Dijkstra.
+   */
+  @Test
+  public void compareWithDijkstra() {
+    final RandomGenerator rng = new MersenneTwister(123L);
+    for (int i = 0; i < 5; i++) {
+      final Graph<LengthData> graph = AStarTest.randomGraph(rng, 300, 900);
+      final ContractionHierarchy ch =
+        ContractionHierarchy.create(graph, GeomHeuristics.euclidean());
+      for (int j = 0; j < 50; j++) {
+        final Point from = graph.getRandomNode(rng);
+        final Point to = graph.getRandomNode(rng);
+        final double expected = AStarTest.dijkstra(graph, from, to);
+        if (Double.isInfinite(expected)) {
+          try {
+            ch.shortestPath(from, to);
+            fail();
+          } catch (final PathNotFoundException e) {
+            assertThat(e.getMessage()).contains("Cannot reach");
+          }
+        } else {
+          final List<Point> path = ch.shortestPath(from, to);
+          assertThat(path.get(0)).isEqualTo(from);
+          assertThat(path.get(path.size() - 1)).isEqualTo(to);
+          for (int k = 1; k < path.size(); k++) {
+            assertThat(graph.hasConnection(path.get(k - 1), path.get(k)))
+              .isTrue();
+          }
+          assertEquals(expected, AStarTest.cost(graph, path), DELTA);
+        }
+      }
+    }
+  }
+
+  /**
+   * The hierarchy should use the costs as defined by the time heuristic.
+   */
+  @Test
+  public void timeHeuristic() {
+    final RandomGenerator rng = new MersenneTwister(456L);
+    final Graph<LengthData> lengthGraph = AStarTest.randomGraph(rng, 200, 700);
+    final Graph<MultiAttributeData> graph = new TableGraph<>();
+    for (final Connection<LengthData> conn : lengthGraph.getConnections()) {
+      final MultiAttributeData.Builder b = MultiAttributeData.builder()
+        .setLength(lengthGraph.connectionLength(conn.from(), conn.to()));
+      if (rng.nextBoolean()) {
+        // never faster than the default speed to keep A* admissible
+        b.setMaxSpeed(1 + rng.nextInt(5));
+      }
+      graph.addConnection(conn.from(), conn.to(), b.build());
+    }
+    final GeomHeuristic time = GeomHeuristics.time(5d);
+    final ContractionHierarchy ch = ContractionHierarchy.create(graph, time);
+    assertThat(ch.getHeuristic()).isEqualTo(time);
+    assertThat(ch.getGraph()).isEqualTo(graph);
+
+    for (int j = 0; j < 50; j++) {
+      final Point from = graph.getRandomNode(rng);
+      final Point to = graph.getRandomNode(rng);
+      List<Point> expected;
+      try {
+        expected = Graphs.shortestPath(graph, from, to, time);
+      } catch (final PathNotFoundException e) {
+        continue;
+      }
+      assertEquals(cost(graph, expected, time),
+        cost(graph, ch.shortestPath(from, to), time), DELTA);
+    }
+  }
+
+  /**
+   * A shortcut replaces the middle node of a path.
+   */
+  @Test
+  public void shortcuts() {
+    final Graph<LengthData> graph = new TableGraph<>();
+    final Point a = new Point(0, 0);
+    final Point b = new Point(1, 0);
+    final Point c = new Point(2, 0);
+    final Point d = new Point(3, 0);
+    final Point e = new Point(4, 0);
+    Graphs.addBiPath(graph, a, b, c, d, e);
+    final ContractionHierarchy ch =
+      ContractionHierarchy.create(graph, GeomHeuristics.euclidean());
+    assertThat(ch.getNumberOfShortcuts()).isGreaterThan(0);
+    assertThat(ch.shortestPath(a, e)).containsExactly(a, b, c, d, e)
+      .inOrder();
+    assertThat(ch.shortestPath(e, a)).containsExactly(e, d, c, b, a)
+      .inOrder();
+    assertThat(ch.shortestPath(c, c)).containsExactly(c);
+  }
+
+  /**
+   * The start point must be part of the graph.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidStart() {
+    final Graph<LengthData> graph = new TableGraph<>();
+    Graphs.addBiPath(graph, new Point(0, 0), new Point(1, 0));
+    ContractionHierarchy.create(graph, GeomHeuristics.euclidean())
+      .shortestPath(new Point(5, 5), new Point(0, 0));
+  }
+
+  /**
+   * Unknown end points can not be reached.
+   */
+  @Test(expected = PathNotFoundException.class)
+  public void invalidEnd() {
+    final Graph<LengthData> graph = new TableGraph<>();
+    Graphs.addBiPath(graph, new Point(0, 0), new Point(1, 0));
+    ContractionHierarchy.create(graph, GeomHeuristics.euclidean())
+      .shortestPath(new Point(0, 0), new Point(5, 5));
+  }
+
+  static double cost(Graph<?> graph, List<Point> path, GeomHeuristic h) {
+    double sum = 0d;
+    for (int i = 1; i < path.size(); i++) {
+      sum += h.calculateCost(graph, path.get(i - 1), path.get(i));
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.geom;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests for {@link LandmarkHeuristic}.
+ * @author Rinde van Lon
+ */
+public class LandmarkHeuristicTest {
+  static final double DELTA = 0.0001;
+  static final double DEFAULT_SPEED = 10d;
+
+  RandomGenerator rng;
+  Graph<MultiAttributeData> graph;
+  GeomHeuristic time;
+  LandmarkHeuristic landmarks;
+  ContractionHierarchy ch;
+
+  /**
+   * Creates a random graph with speed limits.
+   */
+  @Before
+  public void setUp() {
+    rng = new MersenneTwister(123L);
+    final Graph<LengthData> lengthGraph = AStarTest.randomGraph(rng, 300, 1200);
+    graph = new TableGraph<>();
+    for (final Connection<LengthData> conn : lengthGraph.getConnections()) {
+      graph.addConnection(conn.from(), conn.to(), MultiAttributeData.builder()
+        .setLength(lengthGraph.connectionLength(conn.from(), conn.to()))
+        .setMaxSpeed(1 + rng.nextInt((int) DEFAULT_SPEED))
+        .build());
+    }
+    time = GeomHeuristics.time(DEFAULT_SPEED);
+    landmarks = GeomHeuristics.landmarks(graph, time, 8);
+    ch = ContractionHierarchy.create(graph, time);
+  }
+
+  /**
+   * The estimates may never exceed the actual cost and the paths found with
+   * the heuristic should be optimal.
+   */
+  @Test
+  public void testAdmissible() {
+    assertThat(landmarks.getLandmarks()).hasSize(8);
+    assertThat(landmarks.getBaseHeuristic()).isSameAs(time);
+    for (int i = 0; i < 50; i++) {
+      final Point from = graph.getRandomNode(rng);
+      final Point to = graph.getRandomNode(rng);
+      final double cost = cost(from, to);
+      if (Double.isInfinite(cost)) {
+        continue;
+      }
+      assertThat(landmarks.estimateCost(graph, from, to))
+        .isAtMost(cost + DELTA);
+      final List<Point> path =
+        Graphs.shortestPath(graph, from, to, landmarks);
+      assertEquals(cost, ContractionHierarchyTest.cost(graph, path, time),
+        DELTA);
+    }
+    assertThat(landmarks.estimateCost(graph, new Point(-1, -1),
+      graph.getRandomNode(rng))).isEqualTo(0d);
+  }
+
+  /**
+   * The precomputed costs can be written and read.
+   * @throws IOException when IO fails.
+   */
+  @Test
+  public void testReadWrite() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    landmarks.writeTo(out);
+    // a copy with a different node order
+    final Graph<MultiAttributeData> copy = new TableGraph<>();
+    copy.addConnections(
+      ImmutableList.copyOf(graph.getConnections()).reverse());
+    final LandmarkHeuristic read = LandmarkHeuristic.readFrom(
+      new ByteArrayInputStream(out.toByteArray()), copy, time);
+    assertThat(read.getLandmarks()).isEqualTo(landmarks.getLandmarks());
+    for (int i = 0; i < 100; i++) {
+      final Point from = graph.getRandomNode(rng);
+      final Point to = graph.getRandomNode(rng);
+      assertEquals(landmarks.estimateCost(graph, from, to),
+        read.estimateCost(copy, from, to), DELTA);
+    }
+  }
+
+  /**
+   * The base heuristic should be the same as the one that was written.
+   * @throws IOException when IO fails.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testReadWrongBase() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    landmarks.writeTo(out);
+    LandmarkHeuristic.readFrom(new ByteArrayInputStream(out.toByteArray()),
+      graph, GeomHeuristics.euclidean());
+  }
+
+  /**
+   * Landmarks of a graph of which the connection costs have changed may not
+   * be read.
+   * @throws IOException when IO fails.
+   */
+  @Test
+  public void testReadChangedCosts() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    landmarks.writeTo(out);
+    final Connection<MultiAttributeData> conn =
+      graph.getRandomConnection(rng);
+    graph.setConnectionData(conn.from(), conn.to(),
+      MultiAttributeData.builder()
+        .setLength(conn.getLength())
+        .setMaxSpeed(DEFAULT_SPEED * 2)
+        .build());
+    try {
+      LandmarkHeuristic.readFrom(new ByteArrayInputStream(out.toByteArray()),
+        graph, time);
+      fail();
+    } catch (final IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("different connections");
+    }
+  }
+
+  /**
+   * A truncated stream results in an {@link IOException}.
+   * @throws IOException when IO fails.
+   */
+  @Test(expected = EOFException.class)
+  public void testReadTruncated() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    landmarks.writeTo(out);
+    final byte[] bytes = out.toByteArray();
+    LandmarkHeuristic.readFrom(
+      new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length / 2)),
+      graph, time);
+  }
+
+  double cost(Point from, Point to) {
+    try {
+      return ContractionHierarchyTest.cost(graph, ch.shortestPath(from, to),
+        time);
+    } catch (final PathNotFoundException e) {
+      return Double.POSITIVE_INFINITY;
+    }
+  }
+}
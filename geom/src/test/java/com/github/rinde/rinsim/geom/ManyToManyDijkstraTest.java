@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2011-2018 Rinde R.S. van Lon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.rinde.rinsim.geom;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.measure.Measure;
+import javax.measure.quantity.Velocity;
+import javax.measure.unit.NonSI;
+import javax.measure.unit.SI;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests for {@link ManyToManyDijkstra}.
+ * @author Rinde van Lon
+ */
+public class ManyToManyDijkstraTest {
+  static final int SIZE = 15;
+  static final double DEFAULT_SPEED = 50d;
+  static final double DELTA = 0.0001;
+  static final Measure<Double, Velocity> SPEED =
+    Measure.valueOf(DEFAULT_SPEED, NonSI.KILOMETERS_PER_HOUR);
+
+  RandomGenerator rng;
+  Graph<MultiAttributeData> graph;
+
+  /**
+   * Creates a grid graph with random lengths and speed limits.
+   */
+  @Before
+  public void setUp() {
+    rng = new MersenneTwister(123L);
+    graph = new TableGraph<>();
+    for (int i = 0; i < SIZE; i++) {
+      for (int j = 0; j < SIZE; j++) {
+        final Point p = new Point(i, j);
+        if (i > 0) {
+          connect(p, new Point(i - 1, j));
+        }
+        if (j > 0) {
+          connect(p, new Point(i, j - 1));
+        }
+      }
+    }
+  }
+
+  void connect(Point p1, Point p2) {
+    graph.addConnection(p1, p2, data(p1, p2));
+    graph.addConnection(p2, p1, data(p1, p2));
+  }
+
+  MultiAttributeData data(Point p1, Point p2) {
+    return MultiAttributeData.builder()
+      .setLength(Point.distance(p1, p2) * (1 + rng.nextDouble()))
+      .setMaxSpeed(1 + rng.nextInt((int) DEFAULT_SPEED))
+      .build();
+  }
+
+  /**
+   * The travel times in the matrix should be equal to the travel times of the
+   * exact shortest paths, these are computed using a contraction hierarchy
+   * since the estimates of the time heuristic are not always admissible.
+   */
+  @Test
+  public void testCompareWithShortestPaths() {
+    final List<Point> origins = randomNodes(20);
+    final List<Point> destinations = randomNodes(30);
+    final ForkJoinPool pool = new ForkJoinPool(2);
+    for (final GeomHeuristic h : new GeomHeuristic[] {
+      GeomHeuristics.euclidean(), GeomHeuristics.time(DEFAULT_SPEED)}) {
+      final ContractionHierarchy ch = ContractionHierarchy.create(graph, h);
+      final double[][] matrix = ManyToManyDijkstra.travelTimes(graph, origins,
+        destinations, h, SI.KILOMETER, SPEED, SI.SECOND, pool);
+      assertThat(matrix.length).isEqualTo(origins.size());
+      for (int i = 0; i < origins.size(); i++) {
+        assertThat(matrix[i].length).isEqualTo(destinations.size());
+        for (int j = 0; j < destinations.size(); j++) {
+          final List<Point> path =
+            ch.shortestPath(origins.get(i), destinations.get(j));
+          assertEquals(travelTime(path, h), matrix[i][j], DELTA);
+        }
+      }
+    }
+    pool.shutdown();
+  }
+
+  /**
+   * Points that are not in the graph are not allowed.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidNode() {
+    ManyToManyDijkstra.travelTimes(graph, ImmutableList.of(new Point(0, 0)),
+      ImmutableList.of(new Point(-1, -1)), GeomHeuristics.euclidean(),
+      SI.KILOMETER, SPEED, SI.SECOND);
+  }
+
+  /**
+   * Unreachable destinations result in an exception.
+   */
+  @Test(expected = PathNotFoundException.class)
+  public void testUnreachable() {
+    final Point island = new Point(-1, -1);
+    graph.addConnection(island, new Point(0, 0));
+    ManyToManyDijkstra.travelTimes(graph, ImmutableList.of(new Point(0, 0)),
+      ImmutableList.of(new Point(1, 1), island), GeomHeuristics.euclidean(),
+      SI.KILOMETER, SPEED, SI.SECOND);
+  }
+
+  List<Point> randomNodes(int num) {
+    final ImmutableList.Builder<Point> builder = ImmutableList.builder();
+    for (int i = 0; i < num; i++) {
+      builder.add(graph.getRandomNode(rng));
+    }
+    return builder.build();
+  }
+
+  double travelTime(List<Point> path, GeomHeuristic h) {
+    double sum = 0d;
+    for (int i = 1; i < path.size(); i++) {
+      sum += h.calculateTravelTime(graph, path.get(i - 1), path.get(i),
+        SI.KILOMETER, SPEED, SI.SECOND);
+    }
+    return sum;
+  }
+}
@@ -27,16 +27,21 @@ import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 
 import org.hamcrest.CoreMatchers;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 import com.github.rinde.rinsim.geom.Connection;
+import com.github.rinde.rinsim.geom.GeomHeuristic;
+import com.github.rinde.rinsim.geom.GeomHeuristics;
 import com.github.rinde.rinsim.geom.Graph;
 import com.github.rinde.rinsim.geom.Graphs;
+import com.github.rinde.rinsim.geom.LandmarkHeuristic;
 import com.github.rinde.rinsim.geom.LengthData;
 import com.github.rinde.rinsim.geom.MultiAttributeData;
 import com.github.rinde.rinsim.geom.Point;
@@ -61,6 +66,12 @@ public class DotGraphIOTest {
   @Rule
   public ExpectedException exception = ExpectedException.none();
 
+  /**
+   * For creating temporary files.
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
   @SuppressWarnings("null")
   private Graph<LengthData> simpleLDGraph;
   @SuppressWarnings("null")
@@ -311,4 +322,51 @@ public class DotGraphIOTest {
     assertThat(simpleMAGraph).isEqualTo(sup.get());
     Files.delete(p);
   }
+
+  /**
+   * Landmarks are stored next to the graph file and reloaded.
+   * @throws IOException when IO fails.
+   */
+  @Test
+  public void landmarksTest() throws IOException {
+    final Path p = tempFolder.newFile("graph.dot").toPath();
+    DotGraphIO.getMultiAttributeGraphIO().write(simpleMAGraph,
+      new FileWriter(p.toFile()));
+    final Graph<MultiAttributeData> g =
+      DotGraphIO.getMultiAttributeGraphIO().read(p);
+    final GeomHeuristic time = GeomHeuristics.time(50d);
+
+    final Path lmPath = DotGraphIO.getLandmarksPath(p);
+    assertThat(lmPath.getFileName().toString())
+      .isEqualTo("graph.dot.landmarks");
+    assertFalse(Files.exists(lmPath));
+    final LandmarkHeuristic created =
+      DotGraphIO.getLandmarkHeuristic(p, g, time, 2);
+    assertTrue(Files.exists(lmPath));
+
+    final LandmarkHeuristic reloaded = DotGraphIO.readLandmarks(p, g, time);
+    assertThat(reloaded.getLandmarks()).isEqualTo(created.getLandmarks());
+    for (final Point from : g.getNodes()) {
+      for (final Point to : g.getNodes()) {
+        assertEquals(created.estimateCost(g, from, to),
+          reloaded.estimateCost(g, from, to), 0.0001);
+      }
+    }
+    assertThat(DotGraphIO.getLandmarkHeuristic(p, g, time, 2).getLandmarks())
+      .isEqualTo(created.getLandmarks());
+
+    // different base heuristic, landmarks are recomputed
+    final LandmarkHeuristic other =
+      DotGraphIO.getLandmarkHeuristic(p, g, GeomHeuristics.euclidean(), 1);
+    assertThat(other.getBaseHeuristic()).isEqualTo(GeomHeuristics.euclidean());
+    assertThat(DotGraphIO.readLandmarks(p, g, GeomHeuristics.euclidean())
+      .getLandmarks()).hasSize(1);
+
+    // corrupt landmarks are recomputed
+    Files.write(lmPath, Arrays.copyOf(Files.readAllBytes(lmPath), 10));
+    assertThat(DotGraphIO.getLandmarkHeuristic(p, g, time, 2).getLandmarks())
+      .isEqualTo(created.getLandmarks());
+    assertThat(DotGraphIO.readLandmarks(p, g, time).getLandmarks())
+      .isEqualTo(created.getLandmarks());
+  }
 }
@@ -36,11 +36,13 @@ import com.github.rinde.rinsim.core.model.pdp.Vehicle;
 import com.github.rinde.rinsim.core.model.road.AbstractRoadModel;
 import com.github.rinde.rinsim.core.model.road.ForwardingRoadModel;
 import com.github.rinde.rinsim.core.model.road.GenericRoadModel;
+import com.github.rinde.rinsim.core.model.road.GraphRoadModel;
 import com.github.rinde.rinsim.core.model.road.MoveProgress;
 import com.github.rinde.rinsim.core.model.road.MovingRoadUser;
 import com.github.rinde.rinsim.core.model.road.RoadModel;
 import com.github.rinde.rinsim.core.model.road.RoadUser;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
+import com.github.rinde.rinsim.geom.Connection;
 import com.github.rinde.rinsim.geom.GeomHeuristic;
 import com.github.rinde.rinsim.geom.GeomHeuristics;
 import com.github.rinde.rinsim.geom.Point;
@@ -101,6 +103,22 @@ public class PDPRoadModel extends ForwardingRoadModel<GenericRoadModel>
     return allowDiversion;
   }
 
+  /**
+   * Retrieves the connection which the specified {@link RoadUser} is at. This
+   * is only possible when the decorated model is a {@link GraphRoadModel}.
+   * @param obj The object which position is checked.
+   * @return A {@link Connection} if the decorated model is a
+   *         {@link GraphRoadModel} and <code>obj</code> is on a connection,
+   *         {@link Optional#absent()} otherwise.
+   * @see GraphRoadModel#getConnection(RoadUser)
+   */
+  public Optional<? extends Connection<?>> getConnection(RoadUser obj) {
+    if (delegate() instanceof GraphRoadModel) {
+      return ((GraphRoadModel) delegate()).getConnection(obj);
+    }
+    return Optional.absent();
+  }
+
   private void checkType(RoadUser ru) {
     checkArgument(ru instanceof Vehicle
       || ru instanceof Depot
@@ -46,6 +46,7 @@ import com.github.rinde.rinsim.core.model.pdp.Parcel;
 import com.github.rinde.rinsim.core.model.pdp.Vehicle;
 import com.github.rinde.rinsim.core.model.pdp.VehicleDTO;
 import com.github.rinde.rinsim.core.model.road.RoadModel;
+import com.github.rinde.rinsim.core.model.time.NextEventTickListener;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.event.Event;
 import com.github.rinde.rinsim.event.Listener;
@@ -81,9 +82,16 @@ import com.google.common.math.DoubleMath;
  * <b>Extension</b> The behavior of this vehicle can be altered by modifying the
  * state machine that is used internally. This can be done by overriding
  * {@link #createStateMachine()}.
+ * <p>
+ * <b>Skipping ticks</b> The vehicle declares via
+ * {@link #getNextEventTime(long)} that it does not need to be ticked while it
+ * waits without a route, until it has to return to the depot. Subclasses that
+ * act in {@link #preTick(TimeLapse)} or that change the end of day behavior
+ * should override {@link #getNextEventTime(long)} accordingly.
  * @author Rinde van Lon
  */
-public class RouteFollowingVehicle extends Vehicle {
+public class RouteFollowingVehicle extends Vehicle
+    implements NextEventTickListener {
 
   static final Logger LOGGER =
     LoggerFactory.getLogger(RouteFollowingVehicle.class);
@@ -376,6 +384,29 @@ public class RouteFollowingVehicle extends Vehicle {
     stateMachine.handle(this);
   }
 
+  /**
+   * The vehicle needs a tick as long as it is busy with its route. When it is
+   * waiting without a route it is idle if it is at the depot, otherwise it
+   * needs a tick when it has to leave to return to the depot at the end of the
+   * day (see {@link #isEndOfDay(TimeLapse)}). A new route is handled in the
+   * first tick after {@link #setRoute(Iterable)} is called.
+   * @param time The current time.
+   * @return The next time at which the vehicle needs a tick.
+   */
+  @Override
+  public long getNextEventTime(long time) {
+    if (!currentTime.isPresent() || !route.isEmpty() || newRoute.isPresent()
+      || !stateMachine.stateIs(waitState)) {
+      return time;
+    }
+    final Point depotPosition = getRoadModel().getPosition(depot.get());
+    if (getRoadModel().getPosition(this).equals(depotPosition)) {
+      return IDLE;
+    }
+    return getAvailabilityTimeWindow().end()
+      - computeTravelTimeTo(depotPosition, currentTime.get().getTimeUnit());
+  }
+
   /**
    * Check if leaving in the specified {@link TimeLapse} to the specified
    * {@link Parcel} would mean a too early arrival time. When this method
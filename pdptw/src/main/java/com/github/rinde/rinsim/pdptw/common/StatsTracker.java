@@ -199,18 +199,16 @@ public final class StatsTracker extends AbstractModelVoid implements
       } else if (e.getEventType() == RoadEventType.MOVE) {
         verify(e instanceof MoveEvent);
         final MoveEvent me = (MoveEvent) e;
-        increment((MovingRoadUser) me.roadUser, me.pathProgress.distance()
-          .getValue()
-          .doubleValue());
-        totalDistance += me.pathProgress.distance().getValue().doubleValue();
-        totalTime += me.pathProgress.time().getValue();
+        final double distance = me.pathProgress.getDistanceValue();
+        increment((MovingRoadUser) me.roadUser, distance);
+        totalDistance += distance;
+        totalTime += me.pathProgress.getTimeValue();
         // if we are closer than 10 cm to the depot, we say we are 'at'
         // the depot
         if (Point.distance(me.roadModel.getPosition(me.roadUser),
           ((Vehicle) me.roadUser).getStartPosition()) < MOVE_THRESHOLD) {
           // only override time if the vehicle did actually move
-          if (me.pathProgress.distance().getValue()
-            .doubleValue() > MOVE_THRESHOLD) {
+          if (distance > MOVE_THRESHOLD) {
             lastArrivalTimeAtDepot.put((MovingRoadUser) me.roadUser,
               clock.getCurrentTime());
             if (totalVehicles == lastArrivalTimeAtDepot.size()) {
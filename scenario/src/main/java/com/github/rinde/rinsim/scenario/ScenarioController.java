@@ -42,8 +42,8 @@ import com.github.rinde.rinsim.core.model.ModelBuilder;
 import com.github.rinde.rinsim.core.model.ModelBuilder.AbstractModelBuilder;
 import com.github.rinde.rinsim.core.model.time.Clock;
 import com.github.rinde.rinsim.core.model.time.ClockController;
+import com.github.rinde.rinsim.core.model.time.NextEventTickListener;
 import com.github.rinde.rinsim.core.model.time.RealtimeClockController;
-import com.github.rinde.rinsim.core.model.time.TickListener;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.event.Event;
 import com.github.rinde.rinsim.event.EventAPI;
@@ -64,14 +64,16 @@ import com.google.common.collect.ImmutableSet;
  * A scenario controller represents a single simulation run using a
  * {@link Scenario}. The scenario controller makes sure that all events in the
  * scenario are dispatched at their respective time and it checks whether they
- * are handled.
+ * are handled. When the clock skips idle ticks (see
+ * {@link NextEventTickListener}) the controller declares the time of the next
+ * scenario event as its next event time.
  *
  * @author Rinde van Lon
  * @author Bartosz Michalik
  * @since 2.0
  */
 public final class ScenarioController extends AbstractModel<StopModel>
-    implements TickListener {
+    implements NextEventTickListener {
   /**
    * Logger for this class.
    */
@@ -112,6 +114,7 @@ public final class ScenarioController extends AbstractModel<StopModel>
   @Nullable
   private EventType status;
   private int ticks;
+  private long lastTickTime;
 
   ScenarioController(SimulatorAPI sim, ClockController c, Scenario s,
       ImmutableMap<Class<? extends TimedEvent>, TimedEventHandler<?>> m,
@@ -119,6 +122,7 @@ public final class ScenarioController extends AbstractModel<StopModel>
     simulator = sim;
     clock = c;
     ticks = t;
+    lastTickTime = -1L;
 
     scenario = s;
     scenarioQueue = scenario.asQueue();
@@ -199,11 +203,38 @@ public final class ScenarioController extends AbstractModel<StopModel>
     return scenarioQueue.isEmpty();
   }
 
+  @Override
+  public long getNextEventTime(long currentTime) {
+    if (endOfScenario) {
+      return IDLE;
+    }
+    final TimedEvent next = scenarioQueue.peek();
+    if (next == null && status != EventType.SCENARIO_FINISHED) {
+      return currentTime;
+    }
+    long time = IDLE;
+    if (next != null) {
+      time = next.getTime();
+    }
+    if (ticks >= 0) {
+      // the tick in which the clock is stopped can not be skipped
+      time = Math.min(time, currentTime + ticks * clock.getTickLength());
+    }
+    return time;
+  }
+
   @Override
   public void tick(TimeLapse timeLapse) {
     if (endOfScenario) {
       return;
     }
+    // ticks that are skipped by the clock count as ticks
+    if (ticks > 0 && lastTickTime >= 0) {
+      final long skipped = (timeLapse.getStartTime() - lastTickTime)
+        / timeLapse.getTickLength() - 1;
+      ticks -= (int) Math.min(ticks, skipped);
+    }
+    lastTickTime = timeLapse.getStartTime();
     if (ticks == 0) {
       stopClock(timeLapse);
     }
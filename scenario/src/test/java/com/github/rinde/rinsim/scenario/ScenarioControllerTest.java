@@ -36,9 +36,11 @@ import com.github.rinde.rinsim.core.SimulatorAPI;
 import com.github.rinde.rinsim.core.model.DependencyProvider;
 import com.github.rinde.rinsim.core.model.time.Clock;
 import com.github.rinde.rinsim.core.model.time.ClockController;
+import com.github.rinde.rinsim.core.model.time.NextEventTickListener;
 import com.github.rinde.rinsim.core.model.time.TickListener;
 import com.github.rinde.rinsim.core.model.time.TimeLapse;
 import com.github.rinde.rinsim.core.model.time.TimeLapseFactory;
+import com.github.rinde.rinsim.core.model.time.TimeModel;
 import com.github.rinde.rinsim.event.Event;
 import com.github.rinde.rinsim.event.EventAPI;
 import com.github.rinde.rinsim.event.Listener;
@@ -186,6 +188,56 @@ public class ScenarioControllerTest {
     sc.tick(emptyTime);
   }
 
+  /**
+   * Tests that a scenario with a limited number of ticks is played correctly
+   * when the clock skips idle ticks.
+   */
+  @Test
+  public void finiteSimulationNextEventTimeAdvance() {
+    final NopHandler<?> handler = new NopHandler<>();
+    @SuppressWarnings("unchecked")
+    final Simulator sim = Simulator
+      .builder()
+      .addModel(TimeModel.builder()
+        .withTickLength(1L)
+        .withTimeUnit(SI.SECOND)
+        .withNextEventTimeAdvance())
+      .addModel(
+        ScenarioController.builder(scenario)
+          .withEventHandler(EventA.class, (NopHandler<EventA>) handler)
+          .withEventHandler(EventB.class, (NopHandler<EventB>) handler)
+          .withEventHandler(EventC.class, (NopHandler<EventC>) handler)
+          .withNumberOfTicks(101))
+      .build();
+
+    final List<Long> ticks = new ArrayList<>();
+    sim.addTickListener(new NextEventTickListener() {
+      @Override
+      public void tick(TimeLapse timeLapse) {
+        ticks.add(timeLapse.getStartTime());
+      }
+
+      @Override
+      public void afterTick(TimeLapse timeLapse) {}
+
+      @Override
+      public long getNextEventTime(long currentTime) {
+        return IDLE;
+      }
+    });
+    sim.start();
+
+    assertThat(handler.getEvents()).containsExactly(
+      EventA.create(0),
+      EventB.create(0),
+      EventB.create(0),
+      EventA.create(1),
+      EventC.create(5),
+      EventC.create(100)).inOrder();
+    assertThat(ticks).containsExactly(0L, 1L, 5L, 100L).inOrder();
+    assertThat(sim.getCurrentTime()).isEqualTo(101L);
+  }
+
   /**
    * Test for stop condition.
    */
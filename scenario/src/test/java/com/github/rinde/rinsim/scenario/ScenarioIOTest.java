@@ -105,7 +105,7 @@ public class ScenarioIOTest {
   @Test
   public void testGraphRmbIO() throws IOException {
     final String ser =
-      "{\"events\":[],\"modelBuilders\":[{\"class\":\"com.github.rinde.rinsim.core.model.time.AutoValue_TimeModel_Builder\",\"value\":{\"tickLength\":7,\"timeUnit\":\"ms\",\"provTypes\":[{\"class\":\"java.lang.Class\",\"value\":\"com.github.rinde.rinsim.core.model.time.Clock\"},{\"class\":\"java.lang.Class\",\"value\":\"com.github.rinde.rinsim.core.model.time.ClockController\"}],\"deps\":[],\"modelType\":\"com.github.rinde.rinsim.core.model.time.TimeModel\",\"associatedType\":\"com.github.rinde.rinsim.core.model.time.TickListener\"}},{\"class\":\"com.github.rinde.rinsim.core.model.road.AutoValue_RoadModelBuilders_StaticGraphRMB\",\"value\":{\"distanceUnit\":\"km\",\"speedUnit\":\"km/h\",\"graphSupplier\":{\"class\":\"com.github.rinde.rinsim.geom.io.AutoValue_DotGraphIO_LengthDataSup\",\"value\":{\"path\":\"tmp.json\"}},\"provTypes\":[{\"class\":\"java.lang.Class\",\"value\":\"com.github.rinde.rinsim.core.model.road.RoadModel\"},{\"class\":\"java.lang.Class\",\"value\":\"com.github.rinde.rinsim.core.model.road.GraphRoadModel\"}],\"deps\":[],\"modelType\":\"com.github.rinde.rinsim.core.model.road.GraphRoadModel\",\"associatedType\":\"com.github.rinde.rinsim.core.model.road.RoadUser\"}}],\"timeWindow\":\"0,28800000\",\"stopCondition\":{\"class\":\"com.github.rinde.rinsim.scenario.StopConditions$Default\",\"value\":\"ALWAYS_FALSE\"},\"problemClass\":{\"class\":\"com.github.rinde.rinsim.scenario.AutoValue_Scenario_SimpleProblemClass\",\"value\":{\"id\":\"DEFAULT\"}},\"problemInstanceId\":\"\"}";
+      "{\"events\":[],\"modelBuilders\":[{\"class\":\"com.github.rinde.rinsim.core.model.time.AutoValue_TimeModel_Builder\",\"value\":{\"tickLength\":7,\"timeUnit\":\"ms\",\"tickProfiling\":false,\"nextEventTimeAdvance\":false,\"tickParallelism\":0,\"provTypes\":[{\"class\":\"java.lang.Class\",\"value\":\"com.github.rinde.rinsim.core.model.time.Clock\"},{\"class\":\"java.lang.Class\",\"value\":\"com.github.rinde.rinsim.core.model.time.ClockController\"}],\"deps\":[],\"modelType\":\"com.github.rinde.rinsim.core.model.time.TimeModel\",\"associatedType\":\"com.github.rinde.rinsim.core.model.time.TickListener\"}},{\"class\":\"com.github.rinde.rinsim.core.model.road.AutoValue_RoadModelBuilders_StaticGraphRMB\",\"value\":{\"distanceUnit\":\"km\",\"speedUnit\":\"km/h\",\"graphSupplier\":{\"class\":\"com.github.rinde.rinsim.geom.io.AutoValue_DotGraphIO_LengthDataSup\",\"value\":{\"path\":\"tmp.json\"}},\"provTypes\":[{\"class\":\"java.lang.Class\",\"value\":\"com.github.rinde.rinsim.core.model.road.RoadModel\"},{\"class\":\"java.lang.Class\",\"value\":\"com.github.rinde.rinsim.core.model.road.GraphRoadModel\"}],\"deps\":[],\"modelType\":\"com.github.rinde.rinsim.core.model.road.GraphRoadModel\",\"associatedType\":\"com.github.rinde.rinsim.core.model.road.RoadUser\"}}],\"timeWindow\":\"0,28800000\",\"stopCondition\":{\"class\":\"com.github.rinde.rinsim.scenario.StopConditions$Default\",\"value\":\"ALWAYS_FALSE\"},\"problemClass\":{\"class\":\"com.github.rinde.rinsim.scenario.AutoValue_Scenario_SimpleProblemClass\",\"value\":{\"id\":\"DEFAULT\"}},\"problemInstanceId\":\"\"}";
 
     final Graph<LengthData> g = new TableGraph<>();
     g.addConnection(new Point(0, 0), new Point(1, 0));